@@ -141,7 +141,6 @@ public class MastodonAppModel<
 		final GraphIdBimap< V, E > idmap = model.getGraphIdBimap();
 
 		final DefaultSelectionModel< V, E > selectionModel = new DefaultSelectionModel<>( graph, idmap );
-		graph.addGraphListener( selectionModel );
 		this.selectionModel = selectionModel;
 
 		final DefaultHighlightModel< V, E > highlightModel = new DefaultHighlightModel<>( idmap );
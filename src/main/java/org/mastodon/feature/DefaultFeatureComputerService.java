@@ -35,6 +35,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.mastodon.collection.RefList;
 import org.mastodon.feature.FeatureDependencyGraph.Edge;
@@ -70,11 +76,27 @@ public class DefaultFeatureComputerService implements FeatureComputerService
 
 	private final FeatureDependencyGraph dependencies = new FeatureDependencyGraph();
 
-	private final FeatureComputationStatus status = new FeatureComputationStatus();
+	private final Listeners.List< FeatureComputationStatusListener > statusListeners =
+			new Listeners.SynchronizedList<>();
 
-	private String cancelReason;
+	private volatile String cancelReason;
 
-	private FeatureComputer currentFeatureComputer;
+	/**
+	 * The status of each feature computer scheduled in the current
+	 * computation. A new status is created for each computation, so that the
+	 * cancel state of a computer is only cleared by this service.
+	 */
+	private final Map< FeatureComputer, FeatureComputationStatus > statuses = new ConcurrentHashMap<>();
+
+	/**
+	 * The feature computers currently running, and the key of the feature
+	 * they compute.
+	 */
+	private final Map< FeatureComputer, String > runningComputers = new ConcurrentHashMap<>();
+
+	private final Object statusLock = new Object();
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
 
 	public DefaultFeatureComputerService()
 	{
@@ -241,34 +263,210 @@ public class DefaultFeatureComputerService implements FeatureComputerService
 		final FeatureDependencyGraph dependencyGraph = dependencies.subGraphFor( specs );
 		final RefList< FeatureDependencyGraph.Vertex > sequence = new TopologicalSort<>( dependencyGraph ).get();
 
+		/*
+		 * Schedule the computers on the DAG: a computer is submitted as soon
+		 * as all the features it depends on have been computed. Parameters
+		 * are provided and outputs are collected on the calling thread only,
+		 * so the feature map does not need to be thread-safe.
+		 */
 		final Map< FeatureSpec< ?, ? >, Feature< ? > > featureModel = new HashMap<>();
+		final Map< FeatureDependencyGraph.Vertex, Integer > missingInputs = new HashMap<>();
 		for ( final FeatureDependencyGraph.Vertex vertex : sequence )
 		{
-			if ( isCanceled() )
-				break;
+			missingInputs.put( vertex, vertex.outgoingEdges().size() );
+			statuses.put( vertex.getFeatureComputer(), new FeatureComputationStatus( this::notifyRunningComputers ) );
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, numThreads ) );
+		final CompletionService< FeatureDependencyGraph.Vertex > completionService =
+				new ExecutorCompletionService<>( executor );
+		final Map< FeatureDependencyGraph.Vertex, CommandModule > modules = new HashMap<>();
+		final Map< FeatureDependencyGraph.Vertex, Throwable > errors = new ConcurrentHashMap<>();
+		Throwable error = null;
+		try
+		{
+			for ( final FeatureDependencyGraph.Vertex vertex : sequence )
+				if ( missingInputs.get( vertex ) == 0 )
+					submit( vertex, completionService, modules, errors, featureModel );
 
-			currentFeatureComputer = vertex.getFeatureComputer();
-			final CommandInfo info = vertex.getFeatureComputerInfo();
-			final CommandModule module = new CommandModule( info, currentFeatureComputer );
-			for ( final ModuleItem< ? > item : info.inputs() )
+			while ( !modules.isEmpty() )
 			{
-				final Class< ? > klass = item.getType();
-				provideParameters( item, module, klass, featureModel );
-			}
+				final FeatureDependencyGraph.Vertex vertex = completionService.take().get();
+				final Throwable failure = errors.get( vertex );
+				if ( failure != null )
+				{
+					modules.remove( vertex );
+					if ( error == null )
+					{
+						error = failure;
+						cancel( "Error in feature computer for " + vertex.getFeatureSpec().getKey()
+								+ ": " + failure.getMessage() );
+					}
+					continue;
+				}
+
+				final CommandModule module = modules.remove( vertex );
+				final CommandInfo info = vertex.getFeatureComputerInfo();
+				final Feature< ? > output = ( Feature< ? > ) info.outputs().iterator().next().getValue( module );
+				if ( output != null )
+					featureModel.put( vertex.getFeatureSpec(), output );
 
-			status.notifyStatus( vertex.getFeatureSpec().getKey() );
-			currentFeatureComputer.createOutput();
-			currentFeatureComputer.run();
+				if ( isCanceled() )
+					continue;
 
-			final Feature< ? > output = ( Feature< ? > ) info.outputs().iterator().next().getValue( module );
-			featureModel.put( vertex.getFeatureSpec(), output );
+				// Release the computers that were waiting for this feature.
+				for ( final FeatureDependencyGraph.Edge edge : vertex.incomingEdges() )
+				{
+					final FeatureDependencyGraph.Vertex dependent = edge.getSource();
+					final int missing = missingInputs.get( dependent ) - 1;
+					missingInputs.put( dependent, missing );
+					if ( missing == 0 )
+						submit( dependent, completionService, modules, errors, featureModel );
+				}
+			}
+		}
+		catch ( final InterruptedException e )
+		{
+			cancel( "Interrupted" );
+			Thread.currentThread().interrupt();
+		}
+		catch ( final ExecutionException e )
+		{
+			// Should not happen, the tasks catch their own exceptions.
+			error = e.getCause();
+		}
+		finally
+		{
+			executor.shutdown();
+			runningComputers.clear();
+			synchronized ( statusLock )
+			{
+				statuses.clear();
+				statusListeners.list.forEach( FeatureComputationStatusListener::clear );
+			}
 		}
 
-		currentFeatureComputer = null;
-		status.notifyClear();
+		if ( error instanceof RuntimeException )
+			throw ( RuntimeException ) error;
+		if ( error instanceof Error )
+			throw ( Error ) error;
+		if ( error != null )
+			throw new RuntimeException( error );
+
 		return ( featureModel );
 	}
 
+	/**
+	 * Provides the parameters of the computer of the specified vertex, and
+	 * submits it for execution.
+	 */
+	private void submit(
+			final FeatureDependencyGraph.Vertex vertex,
+			final CompletionService< FeatureDependencyGraph.Vertex > completionService,
+			final Map< FeatureDependencyGraph.Vertex, CommandModule > modules,
+			final Map< FeatureDependencyGraph.Vertex, Throwable > errors,
+			final Map< FeatureSpec< ?, ? >, Feature< ? > > featureModel )
+	{
+		final FeatureComputer featureComputer = vertex.getFeatureComputer();
+		final CommandInfo info = vertex.getFeatureComputerInfo();
+		final CommandModule module = new CommandModule( info, featureComputer );
+		for ( final ModuleItem< ? > item : info.inputs() )
+		{
+			final Class< ? > klass = item.getType();
+			provideParameters( item, module, klass, featureModel );
+		}
+		modules.put( vertex, module );
+
+		final FeatureComputationStatus status = statuses.get( featureComputer );
+		completionService.submit( () -> {
+			final String key = vertex.getFeatureSpec().getKey();
+			runningComputers.put( featureComputer, key );
+			try
+			{
+				notifyRunningComputers();
+				if ( !isCanceled() )
+				{
+					featureComputer.createOutput();
+					featureComputer.run();
+				}
+			}
+			catch ( final Throwable t )
+			{
+				errors.put( vertex, t );
+			}
+			finally
+			{
+				runningComputers.remove( featureComputer );
+				status.done();
+				notifyRunningComputers();
+			}
+			return vertex;
+		} );
+	}
+
+	/**
+	 * Notifies the keys of the features being computed, with the last message
+	 * of their computer, and the overall progress, that is the mean progress
+	 * of all the computers scheduled in the current computation.
+	 * <p>
+	 * Computers running concurrently call this method from their own thread.
+	 * The notification is synchronized so that listeners receive the
+	 * snapshots in the order they were made.
+	 */
+	private void notifyRunningComputers()
+	{
+		synchronized ( statusLock )
+		{
+			final StringBuilder running = new StringBuilder();
+			for ( final Map.Entry< FeatureComputer, String > entry : runningComputers.entrySet() )
+			{
+				if ( running.length() > 0 )
+					running.append( ", " );
+				running.append( entry.getValue() );
+				final FeatureComputationStatus status = statuses.get( entry.getKey() );
+				if ( status != null && status.message != null )
+					running.append( ": " ).append( status.message );
+			}
+			final String str = running.toString();
+			statusListeners.list.forEach( l -> l.status( str ) );
+
+			double sum = 0;
+			int n = 0;
+			for ( final FeatureComputationStatus status : statuses.values() )
+			{
+				sum += status.progress;
+				n++;
+			}
+			final double progress = n == 0 ? 0 : sum / n;
+			statusListeners.list.forEach( l -> l.progress( progress ) );
+		}
+	}
+
+	/**
+	 * Sets the maximal number of feature computers that can run concurrently.
+	 * Feature computers that do not depend on each other are run in parallel,
+	 * up to this number.
+	 *
+	 * @param numThreads
+	 *            the number of threads. If 1, the feature computers are run
+	 *            one after the other.
+	 */
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = Math.max( 1, numThreads );
+	}
+
+	/**
+	 * Returns the maximal number of feature computers that can run
+	 * concurrently.
+	 *
+	 * @return the number of threads.
+	 */
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
 	/**
 	 * Try to set a value for the specified {@link ModuleItem} that is a parameter
 	 * of the {@link FeatureComputer} described by the specified
@@ -308,7 +506,7 @@ public class DefaultFeatureComputerService implements FeatureComputerService
 		{
 			@SuppressWarnings( "unchecked" )
 			final ModuleItem< FeatureComputationStatus > statusModule = ( ModuleItem< FeatureComputationStatus > ) item;
-			statusModule.setValue( module, status );
+			statusModule.setValue( module, statuses.get( ( FeatureComputer ) module.getCommand() ) );
 			return;
 		}
 
@@ -325,8 +523,11 @@ public class DefaultFeatureComputerService implements FeatureComputerService
 	public void cancel( final String reason )
 	{
 		this.cancelReason = reason;
-		if ( currentFeatureComputer instanceof Cancelable )
-			( ( Cancelable ) currentFeatureComputer ).cancel( reason );
+		for ( final FeatureComputationStatus status : statuses.values() )
+			status.cancel( reason );
+		for ( final FeatureComputer featureComputer : runningComputers.keySet() )
+			if ( featureComputer instanceof Cancelable )
+				( ( Cancelable ) featureComputer ).cancel( reason );
 	}
 
 	@Override
@@ -343,7 +544,7 @@ public class DefaultFeatureComputerService implements FeatureComputerService
 	 */
 	public Listeners< FeatureComputationStatusListener > computationStatusListeners()
 	{
-		return status.listeners;
+		return statusListeners;
 	}
 
 	/*
@@ -361,18 +562,51 @@ public class DefaultFeatureComputerService implements FeatureComputerService
 		void clear();
 	}
 
-	public static class FeatureComputationStatus
+	/**
+	 * The status of one feature computer in one computation. Progress
+	 * notified here is combined with the progress of the other computers that
+	 * run concurrently. The status also holds the cancel state of the
+	 * computer: it is canceled when the computation is, and a new status, not
+	 * canceled, is given to the computer for each computation.
+	 */
+	public static class FeatureComputationStatus implements Cancelable
 	{
-		private final Listeners.List< FeatureComputationStatusListener > listeners;
+		private final Runnable changed;
+
+		private volatile double progress;
+
+		private volatile String message;
+
+		private volatile String cancelReason;
+
+		FeatureComputationStatus( final Runnable changed )
+		{
+			this.changed = changed;
+		}
 
-		FeatureComputationStatus()
+		/**
+		 * Creates a status that is not attached to a computation, for feature
+		 * computers that are run outside of a {@link FeatureComputerService}.
+		 * Status and progress are not reported anywhere, but the cancel state
+		 * is kept.
+		 *
+		 * @return a new status.
+		 */
+		public static FeatureComputationStatus detached()
 		{
-			listeners = new Listeners.SynchronizedList<>();
+			return new FeatureComputationStatus( () -> {} );
 		}
 
+		/**
+		 * @param status
+		 *            a message describing what the computer is doing. It is
+		 *            shown next to the messages of the other computers that
+		 *            run concurrently.
+		 */
 		public void notifyStatus( final String status )
 		{
-			listeners.list.forEach( l -> l.status( status ) );
+			this.message = status;
+			changed.run();
 		}
 
 		/**
@@ -380,12 +614,38 @@ public class DefaultFeatureComputerService implements FeatureComputerService
 		 */
 		public void notifyProgress( final double progress )
 		{
-			listeners.list.forEach( l -> l.progress( progress ) );
+			this.progress = Math.max( 0, Math.min( 1, progress ) );
+			changed.run();
 		}
 
+		/**
+		 * Does nothing. The status is cleared by the service when all the
+		 * computers are done.
+		 */
 		public void notifyClear()
+		{}
+
+		void done()
+		{
+			progress = 1;
+		}
+
+		@Override
+		public boolean isCanceled()
+		{
+			return cancelReason != null;
+		}
+
+		@Override
+		public void cancel( final String reason )
+		{
+			cancelReason = reason;
+		}
+
+		@Override
+		public String getCancelReason()
 		{
-			listeners.list.forEach( l -> l.clear() );
+			return cancelReason;
 		}
 	}
 }
@@ -30,13 +30,20 @@ package org.mastodon.feature;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import org.scijava.listeners.Listeners;
 
 /**
  * Class that manage a collection of features in a model graph.
+ * <p>
+ * Features can be declared lazily, with a loader that is only called the
+ * first time the feature is retrieved with {@link #getFeature(FeatureSpec)}.
+ * This is used to open projects without reading all feature values upfront.
  *
  * @author Jean-Yves Tinevez
  */
@@ -70,9 +77,15 @@ public class FeatureModel
 
 	private final Map< FeatureSpec< ?, ? >, Feature< ? > > features;
 
+	/**
+	 * Features declared with a loader, and not loaded yet.
+	 */
+	private final Map< FeatureSpec< ?, ? >, PendingFeature > pending;
+
 	public FeatureModel()
 	{
-		this.features = new HashMap<>();
+		this.features = new ConcurrentHashMap<>();
+		this.pending = new ConcurrentHashMap<>();
 		this.listeners = new Listeners.SynchronizedList<>();
 	}
 
@@ -82,6 +95,7 @@ public class FeatureModel
 	public void clear()
 	{
 		features.clear();
+		pending.clear();
 		notifyFeatureModelChanged();
 	}
 
@@ -93,8 +107,9 @@ public class FeatureModel
 	 */
 	public void clear( final FeatureSpec< ?, ? > key )
 	{
-		final boolean removed = features.remove( key ) != null;
-		if ( removed )
+		final boolean removedFeature = features.remove( key ) != null;
+		final boolean removedPending = pending.remove( key ) != null;
+		if ( removedFeature || removedPending )
 			notifyFeatureModelChanged();
 	}
 
@@ -106,33 +121,94 @@ public class FeatureModel
 	 */
 	public void declareFeature( final Feature< ? > feature )
 	{
+		pending.remove( feature.getSpec() );
 		features.put( feature.getSpec(), feature );
 		notifyFeatureModelChanged();
 	}
 
 	/**
-	 * Returns the feature with the specified key.
+	 * Registers a feature that will be loaded the first time it is retrieved
+	 * with {@link #getFeature(FeatureSpec)}, or when
+	 * {@link #loadPendingFeatures()} is called.
+	 * <p>
+	 * The loader is called at most once. If it returns {@code null}, the
+	 * feature is removed from this model. Listeners are notified after the
+	 * feature is loaded or removed, on the thread that loaded it.
+	 *
+	 * @param spec
+	 *            the {@link FeatureSpec} of the feature to register.
+	 * @param loader
+	 *            the loader of the feature.
+	 */
+	public void declareFeature( final FeatureSpec< ?, ? > spec, final Supplier< Feature< ? > > loader )
+	{
+		features.remove( spec );
+		pending.put( spec, new PendingFeature( spec, loader ) );
+		notifyFeatureModelChanged();
+	}
+
+	/**
+	 * Returns the feature with the specified key. If the feature was declared
+	 * with a loader and is not loaded yet, it is loaded by this call.
+	 * <p>
+	 * Callers that only need the features that are already loaded should
+	 * check {@link #isPending(FeatureSpec)} first, so as not to load them.
 	 *
 	 * @param key
 	 *            the {@link FeatureSpec} of the feature to retrieve.
 	 * @return the feature, or {@code null} if a feature with the specified
-	 *         key is not registered in this model.
+	 *         key is not registered in this model, or if it could not be
+	 *         loaded. The latter can happen for a spec that was returned by
+	 *         {@link #getFeatureSpecs()} just before.
 	 */
 	public Feature< ? > getFeature( final FeatureSpec< ?, ? > key )
 	{
-		return features.get( key );
+		final Feature< ? > feature = features.get( key );
+		if ( feature != null )
+			return feature;
+
+		// Check again in case the feature was loaded in the meantime.
+		final PendingFeature p = pending.get( key );
+		return p == null ? features.get( key ) : p.load();
+	}
+
+	/**
+	 * Returns whether the feature with the specified key was declared with a
+	 * loader and is not loaded yet.
+	 *
+	 * @param key
+	 *            the {@link FeatureSpec} of the feature.
+	 * @return {@code true} if the feature is not loaded yet.
+	 */
+	public boolean isPending( final FeatureSpec< ?, ? > key )
+	{
+		return pending.containsKey( key );
+	}
+
+	/**
+	 * Loads all the features declared with a loader and not loaded yet.
+	 */
+	public void loadPendingFeatures()
+	{
+		for ( final PendingFeature p : pending.values() )
+			p.load();
 	}
 
 	/**
 	 * Returns the collection of the {@link FeatureSpec}s declared in this
-	 * feature model.
+	 * feature model, including the ones of features not loaded yet.
 	 *
 	 * @return the collection of the {@link FeatureSpec}s declared in this
 	 *         feature model.
 	 */
 	public Collection< FeatureSpec< ?, ? > > getFeatureSpecs()
 	{
-		return Collections.unmodifiableSet( features.keySet() );
+		if ( pending.isEmpty() )
+			return Collections.unmodifiableSet( features.keySet() );
+
+		final Set< FeatureSpec< ?, ? > > specs = new HashSet<>( features.keySet() );
+		specs.addAll( pending.keySet() );
+		return Collections.unmodifiableSet( specs );
 	}
 
 	/*
@@ -184,4 +260,54 @@ public class FeatureModel
 		else
 			shouldEmitEvent = true;
 	}
+
+	/**
+	 * A feature declared with a loader.
+	 */
+	private class PendingFeature
+	{
+
+		private final FeatureSpec< ?, ? > spec;
+
+		private final Supplier< Feature< ? > > loader;
+
+		private boolean loaded;
+
+		private Feature< ? > feature;
+
+		private PendingFeature( final FeatureSpec< ?, ? > spec, final Supplier< Feature< ? > > loader )
+		{
+			this.spec = spec;
+			this.loader = loader;
+		}
+
+		private Feature< ? > load()
+		{
+			boolean changed = false;
+			synchronized ( this )
+			{
+				if ( loaded )
+					return feature;
+				loaded = true;
+				try
+				{
+					feature = loader.get();
+				}
+				finally
+				{
+					/*
+					 * Only store the feature if it was not cleared or replaced
+					 * while it was loading.
+					 */
+					changed = pending.remove( spec, this );
+					if ( changed && feature != null )
+						features.put( spec, feature );
+				}
+			}
+			// Notify outside of the lock, listeners may get other features.
+			if ( changed )
+				notifyFeatureModelChanged();
+			return feature;
+		}
+	}
 }
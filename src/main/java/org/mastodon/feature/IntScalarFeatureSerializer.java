@@ -33,10 +33,10 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 
 import org.mastodon.collection.RefCollection;
+import org.mastodon.feature.io.FeatureColumns;
 import org.mastodon.feature.io.FeatureSerializer;
 import org.mastodon.io.FileIdToObjectMap;
 import org.mastodon.io.ObjectToFileIdMap;
-import org.mastodon.io.properties.IntPropertyMapSerializer;
 import org.mastodon.properties.IntPropertyMap;
 
 public abstract class IntScalarFeatureSerializer< F extends IntScalarFeature< O >, O >
@@ -55,27 +55,29 @@ public abstract class IntScalarFeatureSerializer< F extends IntScalarFeature< O
 		final Dimension dimension = projectionSpec.projectionDimension;
 		final String units = feature.projections().iterator().next().units();
 
+		oos.writeUTF( FeatureColumns.FORMAT_MARKER_KEY );
 		oos.writeUTF( key );
 		oos.writeUTF( info );
 		oos.writeObject( dimension );
 		oos.writeUTF( units );
 
 		final IntPropertyMap< O > map = feature.values;
-		final IntPropertyMapSerializer< O > mapSerializer = new IntPropertyMapSerializer<>( map );
-		mapSerializer.writePropertyMap( idmap, oos );
+		FeatureColumns.writePropertyMap( map, idmap, oos );
 	}
 
 	protected DeserializedStruct read( final FileIdToObjectMap< O > idmap, final RefCollection< O > pool,
 			final ObjectInputStream ois ) throws IOException, ClassNotFoundException
 	{
-		final String key = ois.readUTF();
+		String key = ois.readUTF();
+		final boolean columnar = FeatureColumns.FORMAT_MARKER_KEY.equals( key );
+		if ( columnar )
+			key = ois.readUTF();
 		final String info = ois.readUTF();
 		final Dimension dimension = ( Dimension ) ois.readObject();
 		final String units = ois.readUTF();
 
 		final IntPropertyMap< O > map = new IntPropertyMap<>( pool, Integer.MIN_VALUE );
-		final IntPropertyMapSerializer< O > mapSerializer = new IntPropertyMapSerializer<>( map );
-		mapSerializer.readPropertyMap( idmap, ois );
+		FeatureColumns.readPropertyMap( map, idmap, pool, ois, columnar );
 
 		return new DeserializedStruct( key, info, dimension, units, map );
 	}
@@ -0,0 +1,691 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.feature.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.mastodon.collection.RefCollection;
+import org.mastodon.collection.RefDoubleMap;
+import org.mastodon.collection.RefIntMap;
+import org.mastodon.io.FileIdToObjectMap;
+import org.mastodon.io.ObjectToFileIdMap;
+import org.mastodon.io.properties.DoublePropertyMapSerializer;
+import org.mastodon.io.properties.IntPropertyMapSerializer;
+import org.mastodon.properties.DoublePropertyMap;
+import org.mastodon.properties.IntPropertyMap;
+
+/**
+ * Columnar binary layout for feature values.
+ * <p>
+ * Feature values are stored as contiguous primitive columns rather than as
+ * interleaved {@code (id, value)} pairs: one column for the file ids of the
+ * objects, followed by one column per set of values. If the ids are exactly
+ * {@code 0 ... n-1}, which is the case when a feature covers every object of
+ * a graph, the id column is omitted and values are stored in file-id order
+ * (<i>dense</i> mode).
+ * <p>
+ * An id column is made of:
+ * <ul>
+ * <li><i>n</i> the number of entries (<code>int</code>).
+ * <li>whether the column is dense (<code>boolean</code>).
+ * <li>if not dense, a column of <i>n</i> file ids (<code>int</code>).
+ * </ul>
+ * A column is made of:
+ * <ul>
+ * <li>the codec, {@link #RAW} or {@link #DEFLATE} (<code>byte</code>).
+ * <li>the number of stored bytes (<code>int</code>).
+ * <li>the stored bytes: the big-endian primitive values, deflated if the
+ * codec is {@link #DEFLATE}.
+ * </ul>
+ * Columns are encoded and decoded in bulk with NIO buffers. Columns of at
+ * least {@link #MIN_DEFLATE_LENGTH} bytes are deflated, and stored so only if
+ * this makes them smaller. Project archives store their entries uncompressed
+ * by default, so this is what keeps large feature files small on disk.
+ * <p>
+ * The number of entries read from a file is not trusted: the stored bytes of
+ * a column are read before its values are allocated, so that a corrupted count
+ * fails with an {@link IOException} instead of exhausting the memory.
+ * <p>
+ * Feature serializers that switch to this layout write
+ * {@link #FORMAT_MARKER} or {@link #FORMAT_MARKER_KEY} in place of their first
+ * field, so that files written in their former layout can still be read.
+ *
+ * @see LazyFeatureSerializer
+ */
+public class FeatureColumns
+{
+
+	/**
+	 * Codec of a column stored as raw big-endian primitive values.
+	 */
+	public static final byte RAW = 0;
+
+	/**
+	 * Codec of a column stored as deflated big-endian primitive values.
+	 */
+	public static final byte DEFLATE = 1;
+
+	/**
+	 * Columns smaller than this number of bytes are always stored
+	 * {@link #RAW}.
+	 */
+	public static final int MIN_DEFLATE_LENGTH = 1024;
+
+	/**
+	 * Stored bytes are read in chunks of at most this size, so that the buffer
+	 * only grows with the bytes actually present in the input.
+	 */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Written in place of a leading, non-negative, <code>int</code> field to
+	 * signal that the rest of a feature file uses the columnar layout.
+	 */
+	public static final int FORMAT_MARKER = -1;
+
+	/**
+	 * Written in place of a leading feature key (<code>UTF string</code>) to
+	 * signal that the rest of a feature file uses the columnar layout.
+	 */
+	public static final String FORMAT_MARKER_KEY = "\0columnar";
+
+	private FeatureColumns()
+	{}
+
+	/**
+	 * Returns whether the specified ids are exactly {@code 0 ... n-1}, in any
+	 * order.
+	 *
+	 * @param ids
+	 *            the ids.
+	 * @param n
+	 *            the number of ids to consider.
+	 * @return {@code true} if values for these ids can be written in dense
+	 *         mode.
+	 */
+	public static boolean isDense( final int[] ids, final int n )
+	{
+		final BitSet seen = new BitSet( n );
+		for ( int i = 0; i < n; i++ )
+		{
+			final int id = ids[ i ];
+			if ( id < 0 || id >= n || seen.get( id ) )
+				return false;
+			seen.set( id );
+		}
+		return true;
+	}
+
+	/**
+	 * Writes an id column.
+	 *
+	 * @param ids
+	 *            the file ids, the first {@code n} are written.
+	 * @param n
+	 *            the number of entries.
+	 * @param out
+	 *            the output to write to.
+	 * @return {@code true} if the column was written in dense mode. In this
+	 *         case the value columns must be written with the same ids, so
+	 *         that they are stored in file-id order.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public static boolean writeIdColumn( final int[] ids, final int n, final DataOutput out ) throws IOException
+	{
+		final boolean dense = isDense( ids, n );
+		out.writeInt( n );
+		out.writeBoolean( dense );
+		if ( !dense )
+			writeColumn( ids, n, out );
+		return dense;
+	}
+
+	/**
+	 * Reads an id column.
+	 *
+	 * @param in
+	 *            the input to read from.
+	 * @return the ids.
+	 * @throws IOException
+	 *             if an I/O error occurs or the column is corrupted.
+	 */
+	public static IdColumn readIdColumn( final DataInput in ) throws IOException
+	{
+		final int n = in.readInt();
+		if ( n < 0 )
+			throw new IOException( "Corrupted feature id column: negative number of entries " + n + "." );
+		final boolean dense = in.readBoolean();
+		return new IdColumn( n, dense ? null : readIntColumn( n, in ) );
+	}
+
+	/**
+	 * Writes a column of {@code double} values for the ids of an id column.
+	 *
+	 * @param values
+	 *            the values, in the order of {@code ids}.
+	 * @param ids
+	 *            the ids passed to
+	 *            {@link #writeIdColumn(int[], int, DataOutput)}.
+	 * @param n
+	 *            the number of entries.
+	 * @param dense
+	 *            whether the id column was written in dense mode.
+	 * @param out
+	 *            the output to write to.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public static void writeValueColumn( final double[] values, final int[] ids, final int n, final boolean dense,
+			final DataOutput out ) throws IOException
+	{
+		if ( dense )
+		{
+			final double[] sorted = new double[ n ];
+			for ( int i = 0; i < n; i++ )
+				sorted[ ids[ i ] ] = values[ i ];
+			writeColumn( sorted, n, out );
+		}
+		else
+			writeColumn( values, n, out );
+	}
+
+	/**
+	 * Writes a column of {@code int} values for the ids of an id column.
+	 *
+	 * @param values
+	 *            the values, in the order of {@code ids}.
+	 * @param ids
+	 *            the ids passed to
+	 *            {@link #writeIdColumn(int[], int, DataOutput)}.
+	 * @param n
+	 *            the number of entries.
+	 * @param dense
+	 *            whether the id column was written in dense mode.
+	 * @param out
+	 *            the output to write to.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public static void writeValueColumn( final int[] values, final int[] ids, final int n, final boolean dense,
+			final DataOutput out ) throws IOException
+	{
+		if ( dense )
+		{
+			final int[] sorted = new int[ n ];
+			for ( int i = 0; i < n; i++ )
+				sorted[ ids[ i ] ] = values[ i ];
+			writeColumn( sorted, n, out );
+		}
+		else
+			writeColumn( values, n, out );
+	}
+
+	/**
+	 * Writes the first {@code n} values of an {@code int} array as a column.
+	 */
+	public static void writeColumn( final int[] values, final int n, final DataOutput out )
+			throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( n * Integer.BYTES );
+		buffer.asIntBuffer().put( values, 0, n );
+		writeBytes( buffer.array(), out );
+	}
+
+	/**
+	 * Writes the first {@code n} values of a {@code double} array as a column.
+	 */
+	public static void writeColumn( final double[] values, final int n, final DataOutput out )
+			throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( n * Double.BYTES );
+		buffer.asDoubleBuffer().put( values, 0, n );
+		writeBytes( buffer.array(), out );
+	}
+
+	/**
+	 * Reads a column of {@code n} {@code int} values.
+	 */
+	public static int[] readIntColumn( final int n, final DataInput in ) throws IOException
+	{
+		final byte[] bytes = readBytes( columnLength( n, Integer.BYTES ), in );
+		final int[] values = new int[ n ];
+		ByteBuffer.wrap( bytes ).asIntBuffer().get( values );
+		return values;
+	}
+
+	/**
+	 * Reads a column of {@code n} {@code double} values.
+	 */
+	public static double[] readDoubleColumn( final int n, final DataInput in ) throws IOException
+	{
+		final byte[] bytes = readBytes( columnLength( n, Double.BYTES ), in );
+		final double[] values = new double[ n ];
+		ByteBuffer.wrap( bytes ).asDoubleBuffer().get( values );
+		return values;
+	}
+
+	/**
+	 * Writes the values of a property map as an id column followed by a value
+	 * column.
+	 *
+	 * @param map
+	 *            the property map.
+	 * @param idmap
+	 *            the map linking objects to their file id.
+	 * @param out
+	 *            the output to write to.
+	 * @param <O>
+	 *            the type of objects in the map.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public static < O > void writePropertyMap( final DoublePropertyMap< O > map, final ObjectToFileIdMap< O > idmap,
+			final DataOutput out ) throws IOException
+	{
+		final RefDoubleMap< O > values = map.getMap();
+		final int n = values.size();
+		final int[] ids = new int[ n ];
+		final double[] column = new double[ n ];
+		int i = 0;
+		for ( final O o : values.keySet() )
+		{
+			ids[ i ] = idmap.getId( o );
+			column[ i ] = values.get( o );
+			i++;
+		}
+		final boolean dense = writeIdColumn( ids, n, out );
+		writeValueColumn( column, ids, n, dense, out );
+	}
+
+	/**
+	 * Writes the values of a property map as an id column followed by a value
+	 * column.
+	 *
+	 * @param map
+	 *            the property map.
+	 * @param idmap
+	 *            the map linking objects to their file id.
+	 * @param out
+	 *            the output to write to.
+	 * @param <O>
+	 *            the type of objects in the map.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public static < O > void writePropertyMap( final IntPropertyMap< O > map, final ObjectToFileIdMap< O > idmap,
+			final DataOutput out ) throws IOException
+	{
+		final RefIntMap< O > values = map.getMap();
+		final int n = values.size();
+		final int[] ids = new int[ n ];
+		final int[] column = new int[ n ];
+		int i = 0;
+		for ( final O o : values.keySet() )
+		{
+			ids[ i ] = idmap.getId( o );
+			column[ i ] = values.get( o );
+			i++;
+		}
+		final boolean dense = writeIdColumn( ids, n, out );
+		writeValueColumn( column, ids, n, dense, out );
+	}
+
+	/**
+	 * Reads values written with
+	 * {@link #writePropertyMap(DoublePropertyMap, ObjectToFileIdMap, DataOutput)}
+	 * into a property map. Ids that do not map to an object are ignored.
+	 *
+	 * @param map
+	 *            the property map to fill.
+	 * @param idmap
+	 *            the map linking file ids to objects.
+	 * @param pool
+	 *            the collection of objects, used to create a reference.
+	 * @param in
+	 *            the input to read from.
+	 * @param <O>
+	 *            the type of objects in the map.
+	 * @throws IOException
+	 *             if an I/O error occurs or the columns are corrupted.
+	 */
+	public static < O > void readPropertyMap( final DoublePropertyMap< O > map, final FileIdToObjectMap< O > idmap,
+			final RefCollection< O > pool, final DataInput in ) throws IOException
+	{
+		final IdColumn ids = readIdColumn( in );
+		final double[] column = readDoubleColumn( ids.size(), in );
+		final O ref = pool.createRef();
+		try
+		{
+			for ( int i = 0; i < column.length; i++ )
+			{
+				final O o = idmap.getObject( ids.id( i ), ref );
+				if ( o != null )
+					map.set( o, column[ i ] );
+			}
+		}
+		finally
+		{
+			pool.releaseRef( ref );
+		}
+	}
+
+	/**
+	 * Reads values written with
+	 * {@link #writePropertyMap(IntPropertyMap, ObjectToFileIdMap, DataOutput)}
+	 * into a property map. Ids that do not map to an object are ignored.
+	 *
+	 * @param map
+	 *            the property map to fill.
+	 * @param idmap
+	 *            the map linking file ids to objects.
+	 * @param pool
+	 *            the collection of objects, used to create a reference.
+	 * @param in
+	 *            the input to read from.
+	 * @param <O>
+	 *            the type of objects in the map.
+	 * @throws IOException
+	 *             if an I/O error occurs or the columns are corrupted.
+	 */
+	public static < O > void readPropertyMap( final IntPropertyMap< O > map, final FileIdToObjectMap< O > idmap,
+			final RefCollection< O > pool, final DataInput in ) throws IOException
+	{
+		final IdColumn ids = readIdColumn( in );
+		final int[] column = readIntColumn( ids.size(), in );
+		final O ref = pool.createRef();
+		try
+		{
+			for ( int i = 0; i < column.length; i++ )
+			{
+				final O o = idmap.getObject( ids.id( i ), ref );
+				if ( o != null )
+					map.set( o, column[ i ] );
+			}
+		}
+		finally
+		{
+			pool.releaseRef( ref );
+		}
+	}
+
+	/**
+	 * Reads values into a property map, either in the columnar layout written
+	 * with
+	 * {@link #writePropertyMap(DoublePropertyMap, ObjectToFileIdMap, DataOutput)}
+	 * or in the former layout written with {@link DoublePropertyMapSerializer}.
+	 *
+	 * @param map
+	 *            the property map to fill.
+	 * @param idmap
+	 *            the map linking file ids to objects.
+	 * @param pool
+	 *            the collection of objects, used to create a reference.
+	 * @param ois
+	 *            the input to read from.
+	 * @param columnar
+	 *            whether the values are in the columnar layout.
+	 * @param <O>
+	 *            the type of objects in the map.
+	 * @throws IOException
+	 *             if an I/O error occurs or the values are corrupted.
+	 * @throws ClassNotFoundException
+	 *             if a class of the former layout cannot be found.
+	 */
+	public static < O > void readPropertyMap( final DoublePropertyMap< O > map, final FileIdToObjectMap< O > idmap,
+			final RefCollection< O > pool, final ObjectInputStream ois, final boolean columnar )
+			throws IOException, ClassNotFoundException
+	{
+		if ( columnar )
+			readPropertyMap( map, idmap, pool, ois );
+		else
+			new DoublePropertyMapSerializer<>( map ).readPropertyMap( idmap, ois );
+	}
+
+	/**
+	 * Reads values into a property map, either in the columnar layout written
+	 * with
+	 * {@link #writePropertyMap(IntPropertyMap, ObjectToFileIdMap, DataOutput)}
+	 * or in the former layout written with {@link IntPropertyMapSerializer}.
+	 *
+	 * @param map
+	 *            the property map to fill.
+	 * @param idmap
+	 *            the map linking file ids to objects.
+	 * @param pool
+	 *            the collection of objects, used to create a reference.
+	 * @param ois
+	 *            the input to read from.
+	 * @param columnar
+	 *            whether the values are in the columnar layout.
+	 * @param <O>
+	 *            the type of objects in the map.
+	 * @throws IOException
+	 *             if an I/O error occurs or the values are corrupted.
+	 * @throws ClassNotFoundException
+	 *             if a class of the former layout cannot be found.
+	 */
+	public static < O > void readPropertyMap( final IntPropertyMap< O > map, final FileIdToObjectMap< O > idmap,
+			final RefCollection< O > pool, final ObjectInputStream ois, final boolean columnar )
+			throws IOException, ClassNotFoundException
+	{
+		if ( columnar )
+			readPropertyMap( map, idmap, pool, ois );
+		else
+			new IntPropertyMapSerializer<>( map ).readPropertyMap( idmap, ois );
+	}
+
+	private static void writeBytes( final byte[] bytes, final DataOutput out )
+			throws IOException
+	{
+		if ( bytes.length >= MIN_DEFLATE_LENGTH )
+		{
+			final byte[] deflated = deflate( bytes );
+			if ( deflated != null )
+			{
+				out.writeByte( DEFLATE );
+				out.writeInt( deflated.length );
+				out.write( deflated );
+				return;
+			}
+		}
+		out.writeByte( RAW );
+		out.writeInt( bytes.length );
+		out.write( bytes );
+	}
+
+	/**
+	 * Deflates the specified bytes. Returns {@code null} if the result would
+	 * not be smaller.
+	 */
+	private static byte[] deflate( final byte[] bytes )
+	{
+		final Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+		try
+		{
+			deflater.setInput( bytes );
+			deflater.finish();
+			final byte[] buffer = new byte[ bytes.length - 1 ];
+			int length = 0;
+			while ( !deflater.finished() )
+			{
+				if ( length == buffer.length )
+					return null;
+				length += deflater.deflate( buffer, length, buffer.length - length );
+			}
+			return Arrays.copyOf( buffer, length );
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	private static int columnLength( final int n, final int bytesPerValue ) throws IOException
+	{
+		if ( n < 0 || n > Integer.MAX_VALUE / bytesPerValue )
+			throw new IOException( "Corrupted feature column: invalid number of entries " + n + "." );
+		return n * bytesPerValue;
+	}
+
+	private static byte[] readBytes( final int expectedLength, final DataInput in ) throws IOException
+	{
+		final byte codec = in.readByte();
+		final int length = in.readInt();
+		switch ( codec )
+		{
+		case RAW:
+			if ( length != expectedLength )
+				throw new IOException( "Corrupted feature column: expected " + expectedLength + " bytes, found "
+						+ length + "." );
+			return readFully( length, in );
+		case DEFLATE:
+			if ( length < 0 )
+				throw new IOException( "Corrupted feature column: negative length " + length + "." );
+			return inflate( readFully( length, in ), expectedLength );
+		default:
+			throw new IOException( "Unknown feature column codec: " + codec + "." );
+		}
+	}
+
+	/**
+	 * Reads {@code length} bytes in chunks, so that a length larger than the
+	 * input fails at its end rather than with a large allocation upfront.
+	 */
+	private static byte[] readFully( final int length, final DataInput in ) throws IOException
+	{
+		if ( length <= CHUNK_SIZE )
+		{
+			final byte[] bytes = new byte[ length ];
+			in.readFully( bytes );
+			return bytes;
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream( CHUNK_SIZE );
+		final byte[] chunk = new byte[ CHUNK_SIZE ];
+		for ( int remaining = length; remaining > 0; )
+		{
+			final int size = Math.min( remaining, CHUNK_SIZE );
+			in.readFully( chunk, 0, size );
+			bytes.write( chunk, 0, size );
+			remaining -= size;
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] inflate( final byte[] deflated, final int expectedLength ) throws IOException
+	{
+		final Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput( deflated );
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream( Math.min( expectedLength, CHUNK_SIZE ) );
+			final byte[] chunk = new byte[ CHUNK_SIZE ];
+			while ( !inflater.finished() )
+			{
+				final int size = inflater.inflate( chunk, 0, Math.min( CHUNK_SIZE, expectedLength - bytes.size() + 1 ) );
+				if ( size == 0 && ( inflater.needsInput() || inflater.needsDictionary() ) )
+					throw new IOException( "Corrupted feature column: truncated deflated data." );
+				bytes.write( chunk, 0, size );
+				if ( bytes.size() > expectedLength )
+					break;
+			}
+			if ( bytes.size() != expectedLength )
+				throw new IOException( "Corrupted feature column: expected " + expectedLength
+						+ " bytes, inflated " + ( bytes.size() > expectedLength ? "more" : bytes.size() ) + "." );
+			return bytes.toByteArray();
+		}
+		catch ( final DataFormatException e )
+		{
+			throw new IOException( "Corrupted feature column.", e );
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+
+	/**
+	 * The file ids read from an id column.
+	 */
+	public static class IdColumn
+	{
+
+		private final int size;
+
+		private final int[] ids;
+
+		private IdColumn( final int size, final int[] ids )
+		{
+			this.size = size;
+			this.ids = ids;
+		}
+
+		/**
+		 * Returns the number of entries.
+		 *
+		 * @return the number of entries.
+		 */
+		public int size()
+		{
+			return size;
+		}
+
+		/**
+		 * Returns whether the column was written in dense mode.
+		 *
+		 * @return {@code true} if the ids are {@code 0 ... n-1}, in order.
+		 */
+		public boolean isDense()
+		{
+			return ids == null;
+		}
+
+		/**
+		 * Returns the file id of the specified entry.
+		 *
+		 * @param i
+		 *            the entry index.
+		 * @return the file id.
+		 */
+		public int id( final int i )
+		{
+			return ids == null ? i : ids[ i ];
+		}
+	}
+}
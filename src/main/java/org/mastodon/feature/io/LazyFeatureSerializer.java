@@ -30,7 +30,6 @@ package org.mastodon.feature.io;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
-import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.Set;
 
@@ -53,21 +52,25 @@ public class LazyFeatureSerializer
 	 * Serialize a feature via its collection of projections, over a specified
 	 * collection of objects.
 	 * <p>
-	 * Serialization is the result of the concatenation of:
+	 * Serialization uses the columnar layout of {@link FeatureColumns} and is
+	 * the result of the concatenation of:
 	 * <ul>
+	 * <li>{@link FeatureColumns#FORMAT_MARKER} (<code>int</code>). Files
+	 * written before the columnar layout start with the number of objects
+	 * instead, which is never negative.
 	 * <li><i>No</i> the number of objects serialized (<code>int</code>).
 	 * <li><i>Np</i> the number of projections serialized (<code>int</code>).
 	 * There will be <i>No x Np</i> values to read.
+	 * <li>the id column of the <i>No</i> objects, shared by all projections.
+	 * It is empty in dense mode, when the objects are exactly all the objects
+	 * with file ids <code>0 ... No-1</code>.
 	 * <li>a list of <i>Np</i> blocks, one per projection, made of:
 	 * <ul>
 	 * <li>the projection name (<code>UTF string</code>).
 	 * <li>the projection dimension (<code>UTF string</code>).
 	 * <li>the projection units (<code>UTF string</code>).
-	 * <li>a block of object id x projection value, alternating <i>No</i> times:
-	 * <ul>
-	 * <li>the object file id (<code>int</code>).
-	 * <li>the projection value for this object (<code>double</code>).
-	 * </ul>
+	 * <li>a column of <i>No</i> projection values (<code>double</code>), in
+	 * the order of the id column, or in file-id order in dense mode.
 	 * </ul>
 	 * </ul>
 	 * 
@@ -91,15 +94,27 @@ public class LazyFeatureSerializer
 			final ObjectToFileIdMap< O > idmap,
 			final ObjectOutputStream oos ) throws IOException
 	{
+		// LAYOUT.
+		oos.writeInt( FeatureColumns.FORMAT_MARKER );
+
 		// NUMBER OF ENTRIES
-		oos.writeInt( objs.size() );
+		final int n = objs.size();
+		oos.writeInt( n );
 
 		final Set< FeatureProjection< O > > projs = feature.projections();
 
 		// NUMBER OF PROJECTIONS.
 		oos.writeInt( projs.size() );
 
+		// IDS.
+		final int[] ids = new int[ n ];
+		int i = 0;
+		for ( final O o : objs )
+			ids[ i++ ] = idmap.getId( o );
+		final boolean dense = FeatureColumns.writeIdColumn( ids, n, oos );
+
 		// PER PROJ
+		final double[] values = new double[ n ];
 		for ( final FeatureProjection< O > proj : projs )
 		{
 			final FeatureProjectionKey key = proj.getKey();
@@ -113,25 +128,11 @@ public class LazyFeatureSerializer
 			// UNITS.
 			oos.writeUTF( proj.units() );
 
-			// ENTRIES.
-			try
-			{
-				objs.forEach( o -> {
-					try
-					{
-						oos.writeInt( idmap.getId( o ) );
-						oos.writeDouble( proj.value( o ) );
-					}
-					catch ( final IOException e )
-					{
-						throw new UncheckedIOException( e );
-					}
-				} );
-			}
-			catch ( final UncheckedIOException e )
-			{
-				throw e.getCause();
-			}
+			// VALUES.
+			i = 0;
+			for ( final O o : objs )
+				values[ i++ ] = proj.value( o );
+			FeatureColumns.writeValueColumn( values, ids, n, dense, oos );
 		}
 	}
 }
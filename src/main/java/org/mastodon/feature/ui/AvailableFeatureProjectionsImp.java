@@ -362,8 +362,15 @@ public class AvailableFeatureProjectionsImp implements AvailableFeatureProjectio
 		{
 			for ( final FeatureSpec< ?, ? > fs : featureModel.getFeatureSpecs() )
 			{
+				// Do not load pending features, their spec is enough for now.
+				if ( featureModel.isPending( fs ) )
+				{
+					projections.add( fs );
+					continue;
+				}
 				final Feature< ? > feature = featureModel.getFeature( fs );
-				projections.add( feature.getSpec() );
+				if ( feature != null )
+					projections.add( feature.getSpec() );
 			}
 		}
 
@@ -49,6 +49,9 @@ public class GraphFeatureUpdateListeners
 	 * Returns a new {@link PropertyChangeListener} that will remove vertices
 	 * and their neighbor edges from a feature model if their property are
 	 * modified.
+	 * <p>
+	 * Features of the feature model that are not loaded yet are only loaded
+	 * by this listener when a property actually changes.
 	 * 
 	 * @param featureModel
 	 *            the feature model.
@@ -82,6 +85,12 @@ public class GraphFeatureUpdateListeners
 
 		private final List< Feature< V > > vertexFeatures;
 
+		/**
+		 * Specs of the features of the feature model that were not loaded
+		 * when the feature lists were built.
+		 */
+		private final List< FeatureSpec< ?, ? > > pendingSpecs;
+
 		public MyVertexPropertyChangeListener( final FeatureModel featureModel, final Class< V > vertexClass,
 				final Class< E > edgeClass )
 		{
@@ -90,35 +99,59 @@ public class GraphFeatureUpdateListeners
 			this.edgeClass = edgeClass;
 			this.edgeFeatures = new ArrayList<>();
 			this.vertexFeatures = new ArrayList<>();
+			this.pendingSpecs = new ArrayList<>();
 			featureModelChanged();
 			featureModel.listeners().add( this );
 		}
 
 		@Override
-		public void propertyChanged( final V v )
+		public synchronized void propertyChanged( final V v )
 		{
+			if ( !pendingSpecs.isEmpty() )
+				loadPendingFeatures();
 			vertexFeatures.forEach( f -> f.invalidate( v ) );
 			for ( final Feature< E > f : edgeFeatures )
 				v.edges().forEach( e -> f.invalidate( e ) );
 		}
 
 		@Override
-		public void featureModelChanged()
+		public synchronized void featureModelChanged()
 		{
-			featuresOfTarget( featureModel, vertexClass, vertexFeatures );
-			featuresOfTarget( featureModel, edgeClass, edgeFeatures );
+			pendingSpecs.clear();
+			featuresOfTarget( vertexClass, vertexFeatures );
+			featuresOfTarget( edgeClass, edgeFeatures );
+		}
+
+		/**
+		 * Loads the features that were pending when the feature lists were
+		 * built, so that the values they stored can be invalidated.
+		 */
+		private void loadPendingFeatures()
+		{
+			for ( final FeatureSpec< ?, ? > fs : new ArrayList<>( pendingSpecs ) )
+				featureModel.getFeature( fs );
+			featureModelChanged();
 		}
 
 		@SuppressWarnings( "unchecked" )
-		private static < O > void featuresOfTarget(
-				final FeatureModel featureModel,
+		private < O > void featuresOfTarget(
 				final Class< O > targetClass,
 				final List< Feature< O > > featureList )
 		{
 			featureList.clear();
 			for ( final FeatureSpec< ?, ? > fs : featureModel.getFeatureSpecs() )
-				if ( fs.getTargetClass().equals( targetClass ) )
-					featureList.add( ( Feature< O > ) featureModel.getFeature( fs ) );
+			{
+				if ( !fs.getTargetClass().equals( targetClass ) )
+					continue;
+				if ( featureModel.isPending( fs ) )
+				{
+					pendingSpecs.add( fs );
+					continue;
+				}
+				final Feature< O > feature = ( Feature< O > ) featureModel.getFeature( fs );
+				if ( feature != null )
+					featureList.add( feature );
+			}
 		}
 	}
 }
@@ -0,0 +1,230 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.feature.update;
+
+import org.mastodon.collection.RefCollection;
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefSet;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.Vertex;
+
+/**
+ * The set of vertices and edges that were added or modified in a graph since
+ * a consumer last {@link #poll() polled} them.
+ * <p>
+ * Instances are created and fed by a {@link GraphUpdateTracker}, one per
+ * feature. A feature computer polls the changes accumulated for its feature
+ * and only recomputes values for the vertices and edges it receives. When too
+ * many objects were changed, or when the graph was rebuilt, the update
+ * degenerates into a <i>full</i> update, signaling that the consumer should
+ * revisit every object.
+ * <p>
+ * Methods of this class are synchronized: the graph listeners fill it on the
+ * thread that edits the graph while feature computers poll it on the
+ * computation thread.
+ *
+ * @param <V>
+ *            the type of vertices in the graph.
+ * @param <E>
+ *            the type of edges in the graph.
+ */
+public class GraphUpdate< V extends Vertex< E >, E extends Edge< V > >
+{
+
+	private final RefCollection< V > vertexPool;
+
+	private final RefCollection< E > edgePool;
+
+	private final int maxSize;
+
+	private RefSet< V > vertices;
+
+	private RefSet< E > edges;
+
+	private boolean full;
+
+	/**
+	 * Creates a new, full, update.
+	 *
+	 * @param vertexPool
+	 *            the vertices of the graph.
+	 * @param edgePool
+	 *            the edges of the graph.
+	 * @param maxSize
+	 *            the number of changed objects above which the update becomes
+	 *            full, instead of recording individual objects.
+	 */
+	GraphUpdate( final RefCollection< V > vertexPool, final RefCollection< E > edgePool, final int maxSize )
+	{
+		this.vertexPool = vertexPool;
+		this.edgePool = edgePool;
+		this.maxSize = maxSize;
+		this.vertices = RefCollections.createRefSet( vertexPool );
+		this.edges = RefCollections.createRefSet( edgePool );
+		this.full = true;
+	}
+
+	synchronized void addVertex( final V v )
+	{
+		if ( full )
+			return;
+		vertices.add( v );
+		checkSize();
+	}
+
+	synchronized void addEdge( final E e )
+	{
+		if ( full )
+			return;
+		edges.add( e );
+		checkSize();
+	}
+
+	synchronized void removeVertex( final V v )
+	{
+		if ( !full )
+			vertices.remove( v );
+	}
+
+	synchronized void removeEdge( final E e )
+	{
+		if ( !full )
+			edges.remove( e );
+	}
+
+	/**
+	 * Marks this update as full: the consumer will have to revisit all the
+	 * objects of the graph.
+	 */
+	public synchronized void setFull()
+	{
+		full = true;
+		vertices.clear();
+		edges.clear();
+	}
+
+	/**
+	 * Returns the changes accumulated so far, and resets this update so that
+	 * it accumulates the changes made from now on.
+	 *
+	 * @return the changes since the last call to this method.
+	 */
+	public synchronized Changes< V, E > poll()
+	{
+		final Changes< V, E > changes = new Changes<>( full, vertices, edges );
+		vertices = RefCollections.createRefSet( vertexPool );
+		edges = RefCollections.createRefSet( edgePool );
+		full = false;
+		return changes;
+	}
+
+	/**
+	 * Puts back changes that were {@link #poll() polled} but could not be
+	 * processed, for instance because the computation was canceled.
+	 *
+	 * @param changes
+	 *            the changes to put back.
+	 */
+	public synchronized void restore( final Changes< V, E > changes )
+	{
+		if ( changes.isFull() )
+		{
+			setFull();
+			return;
+		}
+		if ( full )
+			return;
+		vertices.addAll( changes.vertices() );
+		edges.addAll( changes.edges() );
+		checkSize();
+	}
+
+	private void checkSize()
+	{
+		if ( vertices.size() + edges.size() > maxSize )
+			setFull();
+	}
+
+	/**
+	 * A snapshot of the objects changed in a graph.
+	 *
+	 * @param <V>
+	 *            the type of vertices in the graph.
+	 * @param <E>
+	 *            the type of edges in the graph.
+	 */
+	public static class Changes< V, E >
+	{
+
+		private final boolean full;
+
+		private final RefSet< V > vertices;
+
+		private final RefSet< E > edges;
+
+		private Changes( final boolean full, final RefSet< V > vertices, final RefSet< E > edges )
+		{
+			this.full = full;
+			this.vertices = vertices;
+			this.edges = edges;
+		}
+
+		/**
+		 * Returns <code>true</code> if all the objects of the graph must be
+		 * considered as changed. In that case, {@link #vertices()} and
+		 * {@link #edges()} are empty.
+		 *
+		 * @return whether this is a full update.
+		 */
+		public boolean isFull()
+		{
+			return full;
+		}
+
+		/**
+		 * Returns the vertices that were added or modified.
+		 *
+		 * @return the changed vertices.
+		 */
+		public RefSet< V > vertices()
+		{
+			return vertices;
+		}
+
+		/**
+		 * Returns the edges that were added or modified.
+		 *
+		 * @return the changed edges.
+		 */
+		public RefSet< E > edges()
+		{
+			return edges;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.feature.update;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mastodon.feature.FeatureSpec;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.graph.ListenableReadOnlyGraph;
+import org.mastodon.graph.Vertex;
+import org.mastodon.properties.PropertyChangeListener;
+
+/**
+ * Tracks the vertices and edges that are added or modified in a graph, on
+ * behalf of the feature computers that support incremental computation.
+ * <p>
+ * Each feature gets its own {@link GraphUpdate}, so that a computer that is
+ * not run in a computation session does not miss the changes made before the
+ * next session. An update is created full the first time it is requested,
+ * because nothing is known of what the feature saw before.
+ * <p>
+ * The tracker must be registered as a {@link GraphListener} of the graph, and
+ * as a {@link PropertyChangeListener} of the vertex properties the features
+ * depend on. When a vertex is modified, it and its edges are marked as
+ * changed. When an edge is added or removed, it and its source and target
+ * vertices are marked as changed.
+ *
+ * @param <V>
+ *            the type of vertices in the graph.
+ * @param <E>
+ *            the type of edges in the graph.
+ */
+public class GraphUpdateTracker< V extends Vertex< E >, E extends Edge< V > >
+		implements GraphListener< V, E >, PropertyChangeListener< V >
+{
+
+	/**
+	 * Above this fraction of the graph size, updates become full instead of
+	 * recording individual objects.
+	 */
+	private static final double MAX_FRACTION = 0.25;
+
+	private final ListenableReadOnlyGraph< V, E > graph;
+
+	private final Map< FeatureSpec< ?, ? >, GraphUpdate< V, E > > updates;
+
+	private final V vref1;
+
+	private final V vref2;
+
+	public GraphUpdateTracker( final ListenableReadOnlyGraph< V, E > graph )
+	{
+		this.graph = graph;
+		this.updates = new HashMap<>();
+		this.vref1 = graph.vertexRef();
+		this.vref2 = graph.vertexRef();
+	}
+
+	/**
+	 * Returns the update that accumulates changes for the specified feature.
+	 *
+	 * @param spec
+	 *            the feature specification.
+	 * @return the update for this feature.
+	 */
+	public synchronized GraphUpdate< V, E > getUpdate( final FeatureSpec< ?, ? > spec )
+	{
+		return updates.computeIfAbsent( spec,
+				k -> new GraphUpdate<>( graph.vertices(), graph.edges(), maxSize() ) );
+	}
+
+	private int maxSize()
+	{
+		return Math.max( 1024, ( int ) ( MAX_FRACTION * ( graph.vertices().size() + graph.edges().size() ) ) );
+	}
+
+	@Override
+	public synchronized void graphRebuilt()
+	{
+		updates.values().forEach( GraphUpdate::setFull );
+	}
+
+	@Override
+	public synchronized void vertexAdded( final V vertex )
+	{
+		updates.values().forEach( u -> u.addVertex( vertex ) );
+	}
+
+	@Override
+	public synchronized void vertexRemoved( final V vertex )
+	{
+		updates.values().forEach( u -> u.removeVertex( vertex ) );
+	}
+
+	@Override
+	public synchronized void edgeAdded( final E edge )
+	{
+		final V source = edge.getSource( vref1 );
+		final V target = edge.getTarget( vref2 );
+		for ( final GraphUpdate< V, E > u : updates.values() )
+		{
+			u.addEdge( edge );
+			u.addVertex( source );
+			u.addVertex( target );
+		}
+	}
+
+	@Override
+	public synchronized void edgeRemoved( final E edge )
+	{
+		final V source = edge.getSource( vref1 );
+		final V target = edge.getTarget( vref2 );
+		for ( final GraphUpdate< V, E > u : updates.values() )
+		{
+			u.removeEdge( edge );
+			u.addVertex( source );
+			u.addVertex( target );
+		}
+	}
+
+	@Override
+	public synchronized void propertyChanged( final V vertex )
+	{
+		for ( final GraphUpdate< V, E > u : updates.values() )
+		{
+			u.addVertex( vertex );
+			for ( final E e : vertex.edges() )
+				u.addEdge( e );
+		}
+	}
+}
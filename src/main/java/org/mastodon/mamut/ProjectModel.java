@@ -111,7 +111,8 @@ public class ProjectModel extends MastodonAppModel< Model, Spot, Link > implemen
 		// Register save / export actions
 		ProjectActions.installAppActions( getModelActions(), this, null );
 
-		this.branchGraphSync = new BranchGraphSynchronizer( model.getBranchGraph(), model.getGraph().getLock().readLock() );
+		this.branchGraphSync = new BranchGraphSynchronizer( model.getGraph(), model.getBranchGraph(),
+				model.getGraph().getLock().readLock() );
 		model.getGraph().addGraphChangeListener( branchGraphSync );
 		/*
 		 * TODO: (?) For now, we use timepoint indices in MaMuT model, instead
@@ -56,6 +56,7 @@ import org.mastodon.app.ui.ViewMenu;
 import org.mastodon.feature.FeatureSpecsService;
 import org.mastodon.feature.ui.FeatureColorModeConfigPage;
 import org.mastodon.mamut.feature.MamutFeatureProjectionsManager;
+import org.mastodon.mamut.io.ProjectSavingSettingsPage;
 import org.mastodon.mamut.managers.StyleManagerFactory;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
@@ -234,6 +235,7 @@ public class WindowManager
 		settings.addPage( new KeymapSettingsPage( "Settings > Keymap", keymapManager, descriptions ) );
 		settings.addPage( new FeatureColorModeConfigPage( "Settings > Feature Color Modes", featureColorModeManager,
 				featureProjectionsManager, "Spot", "Link" ) );
+		settings.addPage( new ProjectSavingSettingsPage( "Settings > Saving" ) );
 		settings.pack();
 		appModel.projectClosedListeners().add( settings::dispose );
 
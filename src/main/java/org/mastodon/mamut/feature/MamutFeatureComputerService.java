@@ -38,6 +38,8 @@ import org.mastodon.feature.FeatureModel;
 import org.mastodon.feature.FeatureSpec;
 import org.mastodon.feature.FeatureSpecsService;
 import org.mastodon.feature.update.GraphFeatureUpdateListeners;
+import org.mastodon.feature.update.GraphUpdate;
+import org.mastodon.feature.update.GraphUpdateTracker;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.ModelGraph;
@@ -74,6 +76,8 @@ public class MamutFeatureComputerService extends DefaultFeatureComputerService
 
 	private PropertyChangeListener< Spot > vertexPropertyListener;
 
+	private GraphUpdateTracker< Spot, Link > updateTracker;
+
 	public static MamutFeatureComputerService newInstance( Context context ) {
 		MamutFeatureComputerService service = new MamutFeatureComputerService();
 		context.inject( service );
@@ -152,9 +156,34 @@ public class MamutFeatureComputerService extends DefaultFeatureComputerService
 			return;
 		}
 
+		// Pass the changes made to the graph since the last computation.
+		if ( GraphUpdate.class.isAssignableFrom( parameterClass ) )
+		{
+			@SuppressWarnings( "unchecked" )
+			final ModuleItem< GraphUpdate< Spot, Link > > updateItem = ( ModuleItem< GraphUpdate< Spot, Link > > ) item;
+			updateItem.setValue( module, updateFor( module ) );
+			return;
+		}
+
 		super.provideParameters( item, module, parameterClass, featureModel );
 	}
 
+	/**
+	 * Returns the graph update that accumulates changes for the feature
+	 * computed by the feature computer of the specified module.
+	 */
+	private GraphUpdate< Spot, Link > updateFor( final CommandModule module )
+	{
+		if ( updateTracker == null )
+			return null;
+
+		@SuppressWarnings( "unchecked" )
+		final Class< ? extends Feature< ? > > outputClass =
+				( Class< ? extends Feature< ? > > ) module.getInfo().outputs().iterator().next().getType();
+		final FeatureSpec< ?, ? > spec = featureSpecsService.getSpec( outputClass );
+		return spec == null ? null : updateTracker.getUpdate( spec );
+	}
+
 	/**
 	 * Sets the image data to be used by the feature computers.
 	 *
@@ -183,6 +212,9 @@ public class MamutFeatureComputerService extends DefaultFeatureComputerService
 			final SpotPool previousSpotPool = ( SpotPool ) this.model.getGraph().vertices().getRefPool();
 			previousSpotPool.covarianceProperty().propertyChangeListeners().remove( vertexPropertyListener );
 			previousSpotPool.positionProperty().propertyChangeListeners().remove( vertexPropertyListener );
+			previousSpotPool.covarianceProperty().propertyChangeListeners().remove( updateTracker );
+			previousSpotPool.positionProperty().propertyChangeListeners().remove( updateTracker );
+			this.model.getGraph().removeGraphListener( updateTracker );
 		}
 
 		/*
@@ -215,5 +247,15 @@ public class MamutFeatureComputerService extends DefaultFeatureComputerService
 		final SpotPool spotPool = ( SpotPool ) graph.vertices().getRefPool();
 		spotPool.covarianceProperty().propertyChangeListeners().add( vertexPropertyListener );
 		spotPool.positionProperty().propertyChangeListeners().add( vertexPropertyListener );
+
+		/*
+		 * Also record which spots and links were changed, so that feature
+		 * computers that accept a GraphUpdate parameter can recompute values
+		 * for these objects only, without scanning the whole graph.
+		 */
+		this.updateTracker = new GraphUpdateTracker<>( graph );
+		graph.addGraphListener( updateTracker );
+		spotPool.covarianceProperty().propertyChangeListeners().add( updateTracker );
+		spotPool.positionProperty().propertyChangeListeners().add( updateTracker );
 	}
 }
@@ -31,18 +31,22 @@ package org.mastodon.mamut.feature;
 import static org.mastodon.feature.ui.AvailableFeatureProjectionsImp.createAvailableFeatureProjections;
 
 import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureModel.FeatureModelListener;
 import org.mastodon.feature.FeatureSpecsService;
 import org.mastodon.feature.ui.AvailableFeatureProjections;
 import org.mastodon.feature.ui.FeatureProjectionsManager;
+import org.mastodon.graph.GraphChangeListener;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.mamut.model.branch.BranchLink;
 import org.mastodon.mamut.model.branch.BranchSpot;
-import org.mastodon.ui.coloring.feature.DefaultFeatureRangeCalculator;
+import org.mastodon.spatial.VertexPositionListener;
 import org.mastodon.ui.coloring.feature.FeatureColorModeManager;
 import org.mastodon.ui.coloring.feature.FeatureProjectionId;
 import org.mastodon.ui.coloring.feature.FeatureRangeCalculator;
+import org.mastodon.ui.coloring.feature.FeatureStatistics;
+import org.mastodon.ui.coloring.feature.FeatureStatisticsCalculator;
 import org.mastodon.ui.coloring.feature.Projections;
 import org.mastodon.ui.coloring.feature.ProjectionsFromFeatureModel;
 import org.scijava.listeners.Listeners;
@@ -57,6 +61,10 @@ import org.scijava.listeners.Listeners;
  * {@code FeatureRangeCalculator} on the {@code Model}s vertices and edges. It
  * listens to changes in the {@code Model}s {@link FeatureModel} to update the
  * available feature projections.
+ * <p>
+ * Feature statistics are cached by {@link FeatureStatisticsCalculator}s and
+ * invalidated when the {@code FeatureModel}, the graph or spot positions
+ * change, so that coloring, color bars and other views can share them.
  *
  * @author Tobias Pietzsch
  */
@@ -74,6 +82,12 @@ public class MamutFeatureProjectionsManager implements FeatureProjectionsManager
 
 	private int numSources = 1;
 
+	private final FeatureModelListener featureModelListener = this::featuresChanged;
+
+	private final GraphChangeListener graphChangeListener = () -> featureRangeCalculator.invalidate();
+
+	private final VertexPositionListener< Spot > vertexPositionListener = v -> featureRangeCalculator.invalidate();
+
 	public MamutFeatureProjectionsManager(
 			final FeatureSpecsService featureSpecsService,
 			final FeatureColorModeManager featureColorModeManager )
@@ -95,6 +109,13 @@ public class MamutFeatureProjectionsManager implements FeatureProjectionsManager
 	 */
 	public void setModel( final Model model, final int numSources )
 	{
+		if ( this.model != null )
+		{
+			this.model.getFeatureModel().listeners().remove( featureModelListener );
+			this.model.getGraph().removeGraphChangeListener( graphChangeListener );
+			this.model.getGraph().removeVertexPositionListener( vertexPositionListener );
+		}
+
 		this.model = model;
 		this.numSources = Math.max( 1, numSources );
 
@@ -103,21 +124,23 @@ public class MamutFeatureProjectionsManager implements FeatureProjectionsManager
 			final FeatureModel featureModel = model.getFeatureModel();
 			final Projections projections = new ProjectionsFromFeatureModel( featureModel );
 			featureRangeCalculator.vertexCalculator =
-					new DefaultFeatureRangeCalculator<>( model.getGraph().vertices(), projections );
+					new FeatureStatisticsCalculator<>( model.getGraph().vertices(), projections );
 			featureRangeCalculator.edgeCalculator =
-					new DefaultFeatureRangeCalculator<>( model.getGraph().edges(), projections );
+					new FeatureStatisticsCalculator<>( model.getGraph().edges(), projections );
 			featureRangeCalculator.branchVertexCalculator =
-					new DefaultFeatureRangeCalculator<>( model.getBranchGraph().vertices(), projections );
+					new FeatureStatisticsCalculator<>( model.getBranchGraph().vertices(), projections );
 			featureRangeCalculator.branchEdgeCalculator =
-					new DefaultFeatureRangeCalculator<>( model.getBranchGraph().edges(), projections );
-			featureModel.listeners().add( this::notifyAvailableFeatureProjectionsChanged );
+					new FeatureStatisticsCalculator<>( model.getBranchGraph().edges(), projections );
+			featureModel.listeners().add( featureModelListener );
+			model.getGraph().addGraphChangeListener( graphChangeListener );
+			model.getGraph().addVertexPositionListener( vertexPositionListener );
 		}
 		else
 		{
 			featureRangeCalculator.vertexCalculator = null;
 			featureRangeCalculator.edgeCalculator = null;
 			featureRangeCalculator.branchVertexCalculator = null;
-			featureRangeCalculator.edgeCalculator = null;
+			featureRangeCalculator.branchEdgeCalculator = null;
 		}
 
 		notifyAvailableFeatureProjectionsChanged();
@@ -152,19 +175,50 @@ public class MamutFeatureProjectionsManager implements FeatureProjectionsManager
 		listeners.list.forEach( AvailableFeatureProjectionsListener::availableFeatureProjectionsChanged );
 	}
 
+	private void featuresChanged()
+	{
+		featureRangeCalculator.invalidate();
+		notifyAvailableFeatureProjectionsChanged();
+	}
+
 	private static class AggregateFeatureRangeCalculator implements FeatureRangeCalculator
 	{
 
-		FeatureRangeCalculator vertexCalculator;
+		FeatureStatisticsCalculator< ? > vertexCalculator;
 
-		FeatureRangeCalculator edgeCalculator;
+		FeatureStatisticsCalculator< ? > edgeCalculator;
 
-		FeatureRangeCalculator branchVertexCalculator;
+		FeatureStatisticsCalculator< ? > branchVertexCalculator;
 
-		FeatureRangeCalculator branchEdgeCalculator;
+		FeatureStatisticsCalculator< ? > branchEdgeCalculator;
 
 		@Override
 		public double[] computeMinMax( final FeatureProjectionId projection )
+		{
+			final FeatureRangeCalculator calculator = calculator( projection );
+			return calculator == null
+					? null
+					: calculator.computeMinMax( projection );
+		}
+
+		@Override
+		public FeatureStatistics getStatistics( final FeatureProjectionId projection )
+		{
+			final FeatureRangeCalculator calculator = calculator( projection );
+			return calculator == null
+					? null
+					: calculator.getStatistics( projection );
+		}
+
+		void invalidate()
+		{
+			for ( final FeatureStatisticsCalculator< ? > calculator : new FeatureStatisticsCalculator< ? >[] {
+					vertexCalculator, edgeCalculator, branchVertexCalculator, branchEdgeCalculator } )
+				if ( calculator != null )
+					calculator.invalidate();
+		}
+
+		private FeatureRangeCalculator calculator( final FeatureProjectionId projection )
 		{
 			if ( projection == null )
 				return null;
@@ -172,21 +226,13 @@ public class MamutFeatureProjectionsManager implements FeatureProjectionsManager
 			switch ( projection.getTargetType() )
 			{
 			case VERTEX:
-				return vertexCalculator == null
-						? null
-						: vertexCalculator.computeMinMax( projection );
+				return vertexCalculator;
 			case EDGE:
-				return edgeCalculator == null
-						? null
-						: edgeCalculator.computeMinMax( projection );
+				return edgeCalculator;
 			case BRANCH_VERTEX:
-				return branchVertexCalculator == null
-						? null
-						: branchVertexCalculator.computeMinMax( projection );
+				return branchVertexCalculator;
 			case BRANCH_EDGE:
-				return branchEdgeCalculator == null
-						? null
-						: branchEdgeCalculator.computeMinMax( projection );
+				return branchEdgeCalculator;
 			default:
 				throw new IllegalArgumentException(
 						"Unknown target type: " + projection.getTargetType() + " of projection " + projection );
@@ -30,25 +30,31 @@ package org.mastodon.mamut.feature;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.mastodon.collection.RefCollection;
 import org.mastodon.feature.Feature;
 import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureModel.FeatureModelListener;
 import org.mastodon.feature.FeatureSpec;
 import org.mastodon.feature.FeatureSpecsService;
 import org.mastodon.feature.io.FeatureSerializationService;
 import org.mastodon.feature.io.FeatureSerializer;
+import org.mastodon.graph.GraphListener;
 import org.mastodon.graph.io.RawGraphIO.FileIdToGraphMap;
 import org.mastodon.graph.io.RawGraphIO.GraphToFileIdMap;
 import org.mastodon.io.FileIdToObjectMap;
 import org.mastodon.io.ObjectToFileIdMap;
 import org.mastodon.mamut.feature.branch.BranchFeatureSerializer;
+import org.mastodon.mamut.io.project.MamutProject;
 import org.mastodon.mamut.io.project.MamutProject.ProjectReader;
 import org.mastodon.mamut.io.project.MamutProject.ProjectWriter;
 import org.mastodon.mamut.model.Link;
@@ -76,6 +82,8 @@ public class MamutRawFeatureModelIO
 		for ( final FeatureSpec< ?, ? > spec : featureModel.getFeatureSpecs() )
 		{
 			final Feature< ? > rawFeature = featureModel.getFeature( spec );
+			if ( null == rawFeature )
+				continue;
 			final FeatureSerializer< ?, ? > rawSerializer =
 					featureSerializationService.getFeatureSerializerFor( rawFeature.getSpec() );
 			if ( null == rawSerializer )
@@ -150,89 +158,312 @@ public class MamutRawFeatureModelIO
 
 		for ( final String featureKey : featureKeys )
 		{
-			final FeatureSpec< ?, ? > spec = featureSpecsService.getSpec( featureKey );
-			if ( null == spec )
-			{
-				System.err.println( "Unknown feature: " + featureKey );
-				continue;
-			}
-			final FeatureSerializer< ?, ? > serializer = featureSerializationService.getFeatureSerializerFor( spec );
+			final FeatureSerializer< ?, ? > serializer =
+					getSerializer( featureKey, featureSpecsService, featureSerializationService );
 			if ( null == serializer )
-			{
-				System.err.println( "Do not know how to deserialize the feature with key: " + featureKey );
 				continue;
-			}
-
-			final Class< ? > targetClass = serializer.getFeatureSpec().getTargetClass();
-			@SuppressWarnings( "rawtypes" )
-			Feature feature;
-			if ( targetClass == Spot.class )
-				feature = read(
-						serializer,
-						idmap.vertices(),
-						model.getGraph().vertices(),
-						reader );
-			else if ( targetClass == Link.class )
-				feature = read(
-						serializer,
-						idmap.edges(),
-						model.getGraph().edges(),
-						reader );
-			else if ( targetClass == BranchSpot.class )
-			{
-				if ( !BranchFeatureSerializer.class.isInstance( serializer ) )
-				{
-					System.err.println( "The branch feature: " + spec.getKey()
-							+ " requires a serializer that can work on the branch graph.\n"
-							+ "The serializer discovered for this feature was of class: "
-							+ serializer.getClass().getName() );
-					continue;
-				}
-				@SuppressWarnings( "rawtypes" )
-				final BranchFeatureSerializer branchFeatureSerializer = ( BranchFeatureSerializer ) serializer;
-				feature = readBranchFeature(
-						branchFeatureSerializer,
-						idmap.vertices(),
-						model.getBranchGraph(),
-						model.getGraph(),
-						reader );
-			}
-			else if ( targetClass == BranchLink.class )
-			{
-				if ( !BranchFeatureSerializer.class.isInstance( serializer ) )
-				{
-					System.err.println( "The branch feature: " + spec.getKey()
-							+ " requires a serializer that can work on the branch graph.\n"
-							+ "The serializer discovered for this feature was of class: "
-							+ serializer.getClass().getName() );
-					continue;
-				}
-				@SuppressWarnings( "rawtypes" )
-				final BranchFeatureSerializer branchFeatureSerializer = ( BranchFeatureSerializer ) serializer;
-				feature = readBranchFeature(
-						branchFeatureSerializer,
-						idmap.edges(),
-						model.getBranchGraph(),
-						model.getGraph(),
-						reader );
-			}
-			else
-			{
-				System.err.println( "Do not know how to deserialize a feature that targets " + targetClass );
-				continue;
-			}
 
 			/*
 			 * Only declare the feature if it was properly deserialized. A null
 			 * value indicates that the feature we are trying to deserialize is
 			 * anyway computed on the fly and does not require deserialization.
 			 */
+			final Feature< ? > feature = readFeature( serializer, model, idmap, reader );
 			if ( feature != null )
 				featureModel.declareFeature( feature );
 		}
 		featureModel.resumeListeners();
 	}
 
+	/**
+	 * Declares the features stored in a project in the feature model of the
+	 * specified model, without reading their values. The values of a feature
+	 * are read from the project the first time the feature is retrieved from
+	 * the feature model, or when
+	 * {@link FeatureModel#loadPendingFeatures()} is called.
+	 * <p>
+	 * The file ids of the project only stay valid while the graph is
+	 * unchanged. All the pending features are therefore loaded before the
+	 * first change made to the graph, and discarded if the graph is rebuilt
+	 * (for instance by an import).
+	 *
+	 * @param context
+	 *            the context, used to get the feature serializers.
+	 * @param model
+	 *            the model, freshly loaded from the project.
+	 * @param idmap
+	 *            the map from file ids to the objects of the model graph.
+	 * @param projectRoot
+	 *            the project folder or zip file to read feature values from.
+	 *            It must not be written to until the pending features are
+	 *            loaded.
+	 * @param reader
+	 *            a reader on this project, used to list the stored features.
+	 * @throws IOException
+	 *             if the list of stored features cannot be read.
+	 */
+	public static void deserializeLazily(
+			final Context context,
+			final Model model,
+			final FileIdToGraphMap< Spot, Link > idmap,
+			final File projectRoot,
+			final ProjectReader reader ) throws IOException
+	{
+		final FeatureSerializationService featureSerializationService =
+				context.getService( FeatureSerializationService.class );
+		final FeatureSpecsService featureSpecsService = context.getService( FeatureSpecsService.class );
+		final Collection< String > featureKeys = reader.getFeatureKeys();
+		final FeatureModel featureModel = model.getFeatureModel();
+		featureModel.pauseListeners();
+		featureModel.clear();
+
+		// Regen branch-graph.
+		model.getBranchGraph().graphRebuilt();
+
+		final PendingFeaturesReader pendingReader = new PendingFeaturesReader( projectRoot, featureModel );
+		for ( final String featureKey : featureKeys )
+		{
+			final FeatureSerializer< ?, ? > serializer =
+					getSerializer( featureKey, featureSpecsService, featureSerializationService );
+			if ( null == serializer )
+				continue;
+
+			pendingReader.add( serializer.getFeatureSpec() );
+			featureModel.declareFeature( serializer.getFeatureSpec(),
+					() -> pendingReader.read( serializer, model, idmap ) );
+		}
+		featureModel.listeners().add( pendingReader );
+		model.getGraph().addGraphListener( new PendingFeaturesGuard( featureModel ) );
+		featureModel.resumeListeners();
+	}
+
+	/**
+	 * A reader on a project, shared by the loaders of the pending features of
+	 * this project. The project is opened by the first loader and kept open
+	 * until none of its features is pending anymore, whether they were
+	 * loaded, cleared or replaced.
+	 */
+	private static class PendingFeaturesReader implements FeatureModelListener
+	{
+
+		private final File projectRoot;
+
+		private final FeatureModel featureModel;
+
+		/**
+		 * The specs of the features of the project that were not read yet.
+		 */
+		private final Set< FeatureSpec< ?, ? > > remaining = new HashSet<>();
+
+		private ProjectReader reader;
+
+		private PendingFeaturesReader( final File projectRoot, final FeatureModel featureModel )
+		{
+			this.projectRoot = projectRoot;
+			this.featureModel = featureModel;
+		}
+
+		private synchronized void add( final FeatureSpec< ?, ? > spec )
+		{
+			remaining.add( spec );
+		}
+
+		private synchronized Feature< ? > read(
+				final FeatureSerializer< ?, ? > serializer,
+				final Model model,
+				final FileIdToGraphMap< Spot, Link > idmap )
+		{
+			final FeatureSpec< ?, ? > spec = serializer.getFeatureSpec();
+			remaining.remove( spec );
+			try
+			{
+				if ( reader == null )
+					reader = new MamutProject( projectRoot ).openForReading();
+				return readFeature( serializer, model, idmap, reader );
+			}
+			catch ( final IOException | ClassNotFoundException e )
+			{
+				System.err.println( "Could not read the feature with key: " + spec.getKey() );
+				e.printStackTrace();
+				return null;
+			}
+			finally
+			{
+				if ( remaining.isEmpty() )
+					close();
+			}
+		}
+
+		@Override
+		public synchronized void featureModelChanged()
+		{
+			remaining.removeIf( spec -> !featureModel.isPending( spec ) );
+			if ( remaining.isEmpty() )
+				close();
+		}
+
+		private void close()
+		{
+			featureModel.listeners().remove( this );
+			if ( reader == null )
+				return;
+			try
+			{
+				reader.close();
+			}
+			catch ( final IOException e )
+			{
+				e.printStackTrace();
+			}
+			reader = null;
+		}
+	}
+
+	/**
+	 * Loads the pending features of a feature model before the first change
+	 * to the graph, while their file ids are still valid.
+	 */
+	private static class PendingFeaturesGuard implements GraphListener< Spot, Link >
+	{
+
+		private final FeatureModel featureModel;
+
+		private boolean done;
+
+		private PendingFeaturesGuard( final FeatureModel featureModel )
+		{
+			this.featureModel = featureModel;
+		}
+
+		private void beforeChange()
+		{
+			if ( done )
+				return;
+			done = true;
+			featureModel.loadPendingFeatures();
+		}
+
+		@Override
+		public void graphRebuilt()
+		{
+			if ( done )
+				return;
+			done = true;
+			for ( final FeatureSpec< ?, ? > spec : featureModel.getFeatureSpecs() )
+				if ( featureModel.isPending( spec ) )
+					featureModel.clear( spec );
+		}
+
+		@Override
+		public void vertexAdded( final Spot vertex )
+		{
+			beforeChange();
+		}
+
+		@Override
+		public void vertexRemoved( final Spot vertex )
+		{
+			beforeChange();
+		}
+
+		@Override
+		public void edgeAdded( final Link edge )
+		{
+			beforeChange();
+		}
+
+		@Override
+		public void edgeRemoved( final Link edge )
+		{
+			beforeChange();
+		}
+	}
+
+	private static FeatureSerializer< ?, ? > getSerializer(
+			final String featureKey,
+			final FeatureSpecsService featureSpecsService,
+			final FeatureSerializationService featureSerializationService )
+	{
+		final FeatureSpec< ?, ? > spec = featureSpecsService.getSpec( featureKey );
+		if ( null == spec )
+		{
+			System.err.println( "Unknown feature: " + featureKey );
+			return null;
+		}
+		final FeatureSerializer< ?, ? > serializer = featureSerializationService.getFeatureSerializerFor( spec );
+		if ( null == serializer )
+			System.err.println( "Do not know how to deserialize the feature with key: " + featureKey );
+		return serializer;
+	}
+
+	/**
+	 * Reads a feature with the specified serializer. Returns {@code null} if
+	 * the feature cannot be read or is computed on the fly.
+	 */
+	@SuppressWarnings( "rawtypes" )
+	private static Feature< ? > readFeature(
+			final FeatureSerializer< ?, ? > serializer,
+			final Model model,
+			final FileIdToGraphMap< Spot, Link > idmap,
+			final ProjectReader reader ) throws ClassNotFoundException, IOException
+	{
+		final FeatureSpec< ?, ? > spec = serializer.getFeatureSpec();
+		final Class< ? > targetClass = spec.getTargetClass();
+		if ( targetClass == Spot.class )
+			return read(
+					serializer,
+					idmap.vertices(),
+					model.getGraph().vertices(),
+					reader );
+		else if ( targetClass == Link.class )
+			return read(
+					serializer,
+					idmap.edges(),
+					model.getGraph().edges(),
+					reader );
+		else if ( targetClass == BranchSpot.class )
+		{
+			if ( !BranchFeatureSerializer.class.isInstance( serializer ) )
+			{
+				System.err.println( "The branch feature: " + spec.getKey()
+						+ " requires a serializer that can work on the branch graph.\n"
+						+ "The serializer discovered for this feature was of class: "
+						+ serializer.getClass().getName() );
+				return null;
+			}
+			final BranchFeatureSerializer branchFeatureSerializer = ( BranchFeatureSerializer ) serializer;
+			return readBranchFeature(
+					branchFeatureSerializer,
+					idmap.vertices(),
+					model.getBranchGraph(),
+					model.getGraph(),
+					reader );
+		}
+		else if ( targetClass == BranchLink.class )
+		{
+			if ( !BranchFeatureSerializer.class.isInstance( serializer ) )
+			{
+				System.err.println( "The branch feature: " + spec.getKey()
+						+ " requires a serializer that can work on the branch graph.\n"
+						+ "The serializer discovered for this feature was of class: "
+						+ serializer.getClass().getName() );
+				return null;
+			}
+			final BranchFeatureSerializer branchFeatureSerializer = ( BranchFeatureSerializer ) serializer;
+			return readBranchFeature(
+					branchFeatureSerializer,
+					idmap.edges(),
+					model.getBranchGraph(),
+					model.getGraph(),
+					reader );
+		}
+		else
+		{
+			System.err.println( "Do not know how to deserialize a feature that targets " + targetClass );
+			return null;
+		}
+	}
+
 	@SuppressWarnings( { "unchecked", "rawtypes" } )
 	private static void write(
 			final Feature< ? > rawFeature,
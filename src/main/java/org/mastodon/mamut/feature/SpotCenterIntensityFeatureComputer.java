@@ -81,13 +81,11 @@ public class SpotCenterIntensityFeatureComputer implements MamutFeatureComputer,
 	private AtomicBoolean forceComputeAll;
 
 	@Parameter
-	private FeatureComputationStatus status;
+	private FeatureComputationStatus status = FeatureComputationStatus.detached();
 
 	@Parameter( type = ItemIO.OUTPUT )
 	private SpotCenterIntensityFeature output;
 
-	private String cancelReason;
-
 	@Override
 	public void createOutput()
 	{
@@ -113,7 +111,6 @@ public class SpotCenterIntensityFeatureComputer implements MamutFeatureComputer,
 	@Override
 	public void run()
 	{
-		cancelReason = null;
 		final boolean recomputeAll = forceComputeAll.get();
 
 		if ( recomputeAll )
@@ -169,19 +166,19 @@ public class SpotCenterIntensityFeatureComputer implements MamutFeatureComputer,
 	@Override
 	public boolean isCanceled()
 	{
-		return null != cancelReason;
+		return status.isCanceled();
 	}
 
 	@Override
 	public void cancel( final String reason )
 	{
-		cancelReason = reason;
+		status.cancel( reason );
 	}
 
 	@Override
 	public String getCancelReason()
 	{
-		return cancelReason;
+		return status.getCancelReason();
 	}
 
 	private final class SpotIntensityComputer implements Callable< Void >
@@ -35,10 +35,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.mastodon.collection.RefCollection;
+import org.mastodon.feature.io.FeatureColumns;
 import org.mastodon.feature.io.FeatureSerializer;
 import org.mastodon.io.FileIdToObjectMap;
 import org.mastodon.io.ObjectToFileIdMap;
-import org.mastodon.io.properties.DoublePropertyMapSerializer;
 import org.mastodon.mamut.feature.SpotCenterIntensityFeature.Spec;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.properties.DoublePropertyMap;
@@ -59,21 +59,25 @@ public class SpotCenterIntensityFeatureSerializer implements FeatureSerializer<
 			final ObjectOutputStream oos ) throws IOException
 	{
 		final int nSources = feature.maps.size();
+		oos.writeInt( FeatureColumns.FORMAT_MARKER );
 		oos.writeInt( nSources );
 		for ( int i = 0; i < nSources; i++ )
-			new DoublePropertyMapSerializer<>( feature.maps.get( i ) ).writePropertyMap( idmap, oos );
+			FeatureColumns.writePropertyMap( feature.maps.get( i ), idmap, oos );
 	}
 
 	@Override
 	public SpotCenterIntensityFeature deserialize( final FileIdToObjectMap< Spot > idmap,
 			final RefCollection< Spot > pool, final ObjectInputStream ois ) throws IOException, ClassNotFoundException
 	{
-		final int nSources = ois.readInt();
+		int nSources = ois.readInt();
+		final boolean columnar = nSources == FeatureColumns.FORMAT_MARKER;
+		if ( columnar )
+			nSources = ois.readInt();
 		final List< DoublePropertyMap< Spot > > maps = new ArrayList<>( nSources );
 		for ( int i = 0; i < nSources; i++ )
 		{
 			final DoublePropertyMap< Spot > meanMap = new DoublePropertyMap<>( pool, Double.NaN );
-			new DoublePropertyMapSerializer<>( meanMap ).readPropertyMap( idmap, ois );
+			FeatureColumns.readPropertyMap( meanMap, idmap, pool, ois, columnar );
 			maps.add( meanMap );
 		}
 		return new SpotCenterIntensityFeature( maps );
@@ -29,13 +29,19 @@
 package org.mastodon.mamut.feature;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntFunction;
 
+import org.mastodon.RefPool;
 import org.mastodon.feature.DefaultFeatureComputerService.FeatureComputationStatus;
 import org.mastodon.feature.Feature;
+import org.mastodon.feature.update.GraphUpdate;
+import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.properties.DoublePropertyMap;
@@ -49,6 +55,7 @@ import org.scijava.util.DoubleArray;
 
 import bdv.viewer.Source;
 import bdv.viewer.SourceAndConverter;
+import gnu.trove.list.array.TIntArrayList;
 import net.imglib2.type.numeric.RealType;
 
 @Plugin( type = MamutFeatureComputer.class )
@@ -64,13 +71,24 @@ public class SpotIntensityFeatureComputer implements MamutFeatureComputer, Cance
 	@Parameter
 	private AtomicBoolean forceComputeAll;
 
+	/**
+	 * Replaced by the service when the computer runs as part of a feature
+	 * computation. The detached default lets the computer be run and canceled
+	 * on its own.
+	 */
 	@Parameter
-	private FeatureComputationStatus status;
+	private FeatureComputationStatus status = FeatureComputationStatus.detached();
+
+	@Parameter
+	private GraphUpdate< Spot, Link > update;
 
 	@Parameter( type = ItemIO.OUTPUT )
 	private SpotIntensityFeature output;
 
-	private String cancelReason;
+	/**
+	 * Multithreading.
+	 */
+	private int numThreads = Runtime.getRuntime().availableProcessors();
 
 	@Override
 	public void createOutput()
@@ -109,7 +127,6 @@ public class SpotIntensityFeatureComputer implements MamutFeatureComputer, Cance
 	@Override
 	public void run()
 	{
-		cancelReason = null;
 		final boolean recomputeAll = forceComputeAll.get();
 
 		if ( recomputeAll )
@@ -130,38 +147,206 @@ public class SpotIntensityFeatureComputer implements MamutFeatureComputer, Cance
 		}
 
 		final int numTimepoints = bdvData.getNumTimepoints();
-		final int nSourcesToCompute = bdvData.getSources().size();
-		final int todo = numTimepoints * nSourcesToCompute;
-
 		final ArrayList< SourceAndConverter< ? > > sources = bdvData.getSources();
 		final int nSources = sources.size();
-		int done = 0;
-		MAIN_LOOP: for ( int iSource = 0; iSource < nSources; iSource++ )
+
+		/*
+		 * Collect the ids of the spots to process in each timepoint on the
+		 * calling thread, so that workers do not have to touch the
+		 * spatio-temporal index. If we know what changed since the last
+		 * computation, only the changed spots are processed.
+		 */
+		final GraphUpdate.Changes< Spot, Link > changes = ( update == null ) ? null : update.poll();
+		final boolean incremental = !recomputeAll && changes != null && !changes.isFull();
+		final RefPool< Spot > pool = model.getGraph().vertices().getRefPool();
+		final TIntArrayList[] spotIds = new TIntArrayList[ numTimepoints ];
+		if ( incremental )
+		{
+			for ( int timepoint = 0; timepoint < numTimepoints; timepoint++ )
+				spotIds[ timepoint ] = new TIntArrayList();
+			for ( final Spot spot : changes.vertices() )
+			{
+				final int timepoint = spot.getTimepoint();
+				if ( timepoint >= 0 && timepoint < numTimepoints )
+					spotIds[ timepoint ].add( pool.getId( spot ) );
+			}
+		}
+		else
+		{
+			for ( int timepoint = 0; timepoint < numTimepoints; timepoint++ )
+			{
+				final SpatialIndex< Spot > index = model.getSpatioTemporalIndex().getSpatialIndex( timepoint );
+				final TIntArrayList ids = new TIntArrayList( index.size() );
+				for ( final Spot spot : index )
+					ids.add( pool.getId( spot ) );
+				spotIds[ timepoint ] = ids;
+			}
+		}
+		final boolean skipComputed = !recomputeAll && !incremental;
+
+		/*
+		 * One tile per (source, timepoint). Tiles are computed by at most
+		 * numThreads workers of the common pool, so that concurrent feature
+		 * computers share the same threads. Each worker owns its iterable and
+		 * scratch buffers, and hands its results over to the calling thread,
+		 * which is the only one to write in the output maps.
+		 */
+		final List< TileComputer > tiles = new ArrayList<>( numTimepoints * nSources );
+		final Spot ref = pool.createRef();
+		for ( int iSource = 0; iSource < nSources; iSource++ )
 		{
 			@SuppressWarnings( "unchecked" )
 			final Source< RealType< ? > > source = ( Source< RealType< ? > > ) sources.get( iSource ).getSpimSource();
+			final DoublePropertyMap< Spot > meanMap = output.means.get( iSource );
+			for ( int timepoint = 0; timepoint < numTimepoints; timepoint++ )
+			{
+				/*
+				 * Skip if we are not force to recompute all, if we do not know
+				 * what changed and if a value is already computed.
+				 */
+				TIntArrayList ids = spotIds[ timepoint ];
+				if ( skipComputed )
+				{
+					ids = new TIntArrayList( ids.size() );
+					for ( int s = 0; s < spotIds[ timepoint ].size(); s++ )
+					{
+						final int id = spotIds[ timepoint ].getQuick( s );
+						if ( !meanMap.isSet( pool.getObject( id, ref ) ) )
+							ids.add( id );
+					}
+				}
+				tiles.add( new TileComputer( source, iSource, ids ) );
+			}
+		}
+
+		final int todo = tiles.size();
+		final BlockingQueue< TileResult > results = new LinkedBlockingQueue<>();
+		final AtomicInteger next = new AtomicInteger( 0 );
+		final AtomicBoolean failed = new AtomicBoolean( false );
+		final int nWorkers = Math.min( numThreads, todo );
+		for ( int w = 0; w < nWorkers; w++ )
+		{
+			ForkJoinPool.commonPool().execute( () -> {
+				int t;
+				while ( ( t = next.getAndIncrement() ) < todo )
+				{
+					TileResult result = TileResult.EMPTY;
+					try
+					{
+						if ( !isCanceled() && !failed.get() )
+							result = tiles.get( t ).compute();
+					}
+					catch ( final RuntimeException | Error e )
+					{
+						failed.set( true );
+						result = new TileResult( e );
+					}
+					results.add( result );
+				}
+			} );
+		}
+
+		Throwable failure = null;
+		try
+		{
+			for ( int received = 0; received < todo; received++ )
+			{
+				final TileResult result = results.take();
+				if ( result.error != null )
+				{
+					if ( failure == null )
+						failure = result.error;
+				}
+				else
+				{
+					result.flush( output, pool, ref );
+				}
+				status.notifyProgress( ( double ) ( received + 1 ) / todo );
+			}
+		}
+		catch ( final InterruptedException e )
+		{
+			cancel( "Interrupted" );
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			pool.releaseRef( ref );
+		}
+
+		// Do not lose the changes we could not process.
+		if ( ( isCanceled() || failure != null ) && changes != null )
+			update.restore( changes );
+
+		if ( failure instanceof RuntimeException )
+			throw ( RuntimeException ) failure;
+		if ( failure instanceof Error )
+			throw ( Error ) failure;
+	}
+
+	/**
+	 * Sets the number of threads used to compute intensities.
+	 *
+	 * @param numThreads
+	 *            the maximal number of threads of the common pool that compute
+	 *            tiles concurrently. If 1, the tiles are computed one after
+	 *            the other.
+	 */
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = Math.max( 1, numThreads );
+	}
+
+	/**
+	 * Computes the intensity statistics of all the spots of one source in one
+	 * timepoint. Results are accumulated in local arrays, that are written to
+	 * the output maps by the calling thread.
+	 */
+	private final class TileComputer
+	{
+
+		private final Source< RealType< ? > > source;
+
+		private final int iSource;
+
+		private final TIntArrayList ids;
+
+		public TileComputer(
+				final Source< RealType< ? > > source,
+				final int iSource,
+				final TIntArrayList ids )
+		{
+			this.source = source;
+			this.iSource = iSource;
+			this.ids = ids;
+		}
+
+		public TileResult compute()
+		{
+			final RefPool< Spot > pool = model.getGraph().vertices().getRefPool();
+			final Spot spot = pool.createRef();
+
 			// Calculation are made on resolution level 0 by default.
 			final EllipsoidIterable< RealType< ? > > ellipsoidIter = new EllipsoidIterable<>( source );
 			final DoubleArray store = new DoubleArray();
 
-			for ( int timepoint = 0; timepoint < numTimepoints; timepoint++ )
-			{
+			final int n = ids.size();
+			final TIntArrayList computed = new TIntArrayList( n );
+			final double[] means = new double[ n ];
+			final double[] stds = new double[ n ];
+			final double[] mins = new double[ n ];
+			final double[] maxs = new double[ n ];
+			final double[] medians = new double[ n ];
+			final double[] sums = new double[ n ];
 
-				status.notifyProgress( ( double ) done++ / todo );
-
-				final SpatialIndex< Spot > toProcess = model.getSpatioTemporalIndex().getSpatialIndex( timepoint );
-				for ( final Spot spot : toProcess )
+			try
+			{
+				for ( int s = 0; s < n; s++ )
 				{
 					if ( isCanceled() )
-						break MAIN_LOOP;
-
-					/*
-					 * Skip if we are not force to recompute all and if a value
-					 * is already computed.
-					 */
-					if ( !recomputeAll && output.means.get( iSource ).isSet( spot ) )
-						continue;
+						break;
 
+					pool.getObject( ids.getQuick( s ), spot );
 					ellipsoidIter.reset( spot );
 					store.clear();
 					ellipsoidIter.forEach( p -> store.addValue( p.getRealDouble() ) );
@@ -171,20 +356,31 @@ public class SpotIntensityFeatureComputer implements MamutFeatureComputer, Cance
 						continue;
 
 					final double[] array = store.getArray();
+					final int k = computed.size();
+					computed.add( ids.getQuick( s ) );
 					if ( size < 2 )
 					{
-						output.means.get( iSource ).set( spot, array[ 0 ] );
-						output.stds.get( iSource ).set( spot, 0 );
-						output.mins.get( iSource ).set( spot, array[ 0 ] );
-						output.maxs.get( iSource ).set( spot, array[ 0 ] );
-						output.medians.get( iSource ).set( spot, array[ 0 ] );
-						output.sums.get( iSource ).set( spot, array[ 0 ] );
+						means[ k ] = array[ 0 ];
+						stds[ k ] = 0;
+						mins[ k ] = array[ 0 ];
+						maxs[ k ] = array[ 0 ];
+						medians[ k ] = array[ 0 ];
+						sums[ k ] = array[ 0 ];
 						continue;
 					}
 
 					double sum = 0.;
+					double min = Double.POSITIVE_INFINITY;
+					double max = Double.NEGATIVE_INFINITY;
 					for ( int i = 0; i < size; i++ )
-						sum += array[ i ];
+					{
+						final double v = array[ i ];
+						sum += v;
+						if ( v < min )
+							min = v;
+						if ( v > max )
+							max = v;
+					}
 
 					final double mean = sum / size;
 					double sum2 = 0.;
@@ -195,20 +391,146 @@ public class SpotIntensityFeatureComputer implements MamutFeatureComputer, Cance
 					}
 					final double variance = sum2 / ( size - 1 );
 
-					Arrays.sort( array, 0, size );
-					final double min = array[ 0 ];
-					final double max = array[ size - 1 ];
-					final double median = array[ size / 2 ];
-
-					output.means.get( iSource ).set( spot, mean );
-					output.stds.get( iSource ).set( spot, Math.sqrt( variance ) );
-					output.mins.get( iSource ).set( spot, min );
-					output.maxs.get( iSource ).set( spot, max );
-					output.medians.get( iSource ).set( spot, median );
-					output.sums.get( iSource ).set( spot, sum );
+					means[ k ] = mean;
+					stds[ k ] = Math.sqrt( variance );
+					mins[ k ] = min;
+					maxs[ k ] = max;
+					medians[ k ] = select( array, size, size / 2 );
+					sums[ k ] = sum;
+				}
+
+				return new TileResult( iSource, computed, means, stds, mins, maxs, medians, sums );
+			}
+			finally
+			{
+				pool.releaseRef( spot );
+			}
+		}
+	}
+
+	/**
+	 * The intensity statistics computed for the spots of one tile, or the
+	 * error that prevented computing them.
+	 */
+	private static final class TileResult
+	{
+
+		private static final TileResult EMPTY = new TileResult( null );
+
+		private final int iSource;
+
+		private final TIntArrayList ids;
+
+		private final double[] means;
+
+		private final double[] stds;
+
+		private final double[] mins;
+
+		private final double[] maxs;
+
+		private final double[] medians;
+
+		private final double[] sums;
+
+		private final Throwable error;
+
+		public TileResult(
+				final int iSource,
+				final TIntArrayList ids,
+				final double[] means,
+				final double[] stds,
+				final double[] mins,
+				final double[] maxs,
+				final double[] medians,
+				final double[] sums )
+		{
+			this.iSource = iSource;
+			this.ids = ids;
+			this.means = means;
+			this.stds = stds;
+			this.mins = mins;
+			this.maxs = maxs;
+			this.medians = medians;
+			this.sums = sums;
+			this.error = null;
+		}
+
+		public TileResult( final Throwable error )
+		{
+			this.iSource = -1;
+			this.ids = new TIntArrayList( 0 );
+			this.means = null;
+			this.stds = null;
+			this.mins = null;
+			this.maxs = null;
+			this.medians = null;
+			this.sums = null;
+			this.error = error;
+		}
+
+		public void flush( final SpotIntensityFeature output, final RefPool< Spot > pool, final Spot ref )
+		{
+			for ( int k = 0; k < ids.size(); k++ )
+			{
+				pool.getObject( ids.getQuick( k ), ref );
+				output.means.get( iSource ).set( ref, means[ k ] );
+				output.stds.get( iSource ).set( ref, stds[ k ] );
+				output.mins.get( iSource ).set( ref, mins[ k ] );
+				output.maxs.get( iSource ).set( ref, maxs[ k ] );
+				output.medians.get( iSource ).set( ref, medians[ k ] );
+				output.sums.get( iSource ).set( ref, sums[ k ] );
+			}
+		}
+	}
+
+	/**
+	 * Returns the value that would be at index {@code k} of the first
+	 * {@code size} elements of the specified array, if they were sorted. The
+	 * array is partially reordered in place. Uses Hoare's selection algorithm,
+	 * which is linear on average instead of the {@code n log(n)} of a full
+	 * sort.
+	 *
+	 * @param array
+	 *            the array.
+	 * @param size
+	 *            the number of elements to consider.
+	 * @param k
+	 *            the rank of the element to return.
+	 * @return the k-th smallest element.
+	 */
+	static final double select( final double[] array, final int size, final int k )
+	{
+		int left = 0;
+		int right = size - 1;
+		while ( left < right )
+		{
+			final double pivot = array[ ( left + right ) >>> 1 ];
+			int i = left;
+			int j = right;
+			while ( i <= j )
+			{
+				while ( array[ i ] < pivot )
+					i++;
+				while ( array[ j ] > pivot )
+					j--;
+				if ( i <= j )
+				{
+					final double tmp = array[ i ];
+					array[ i ] = array[ j ];
+					array[ j ] = tmp;
+					i++;
+					j--;
 				}
 			}
+			if ( k <= j )
+				right = j;
+			else if ( k >= i )
+				left = i;
+			else
+				break;
 		}
+		return array[ k ];
 	}
 
 	public static final long nSpots( final IntFunction< Iterable< Spot > > index, final int numTimepoints )
@@ -227,18 +549,18 @@ public class SpotIntensityFeatureComputer implements MamutFeatureComputer, Cance
 	@Override
 	public boolean isCanceled()
 	{
-		return null != cancelReason;
+		return status.isCanceled();
 	}
 
 	@Override
 	public void cancel( final String reason )
 	{
-		cancelReason = reason;
+		status.cancel( reason );
 	}
 
 	@Override
 	public String getCancelReason()
 	{
-		return cancelReason;
+		return status.getCancelReason();
 	}
 }
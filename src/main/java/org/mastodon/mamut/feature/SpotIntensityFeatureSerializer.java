@@ -35,10 +35,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.mastodon.collection.RefCollection;
+import org.mastodon.feature.io.FeatureColumns;
 import org.mastodon.feature.io.FeatureSerializer;
 import org.mastodon.io.FileIdToObjectMap;
 import org.mastodon.io.ObjectToFileIdMap;
-import org.mastodon.io.properties.DoublePropertyMapSerializer;
 import org.mastodon.mamut.feature.SpotIntensityFeature.Spec;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.properties.DoublePropertyMap;
@@ -59,15 +59,16 @@ public class SpotIntensityFeatureSerializer implements FeatureSerializer< SpotIn
 			final ObjectOutputStream oos ) throws IOException
 	{
 		final int nSources = feature.means.size();
+		oos.writeInt( FeatureColumns.FORMAT_MARKER );
 		oos.writeInt( nSources );
 		for ( int i = 0; i < nSources; i++ )
 		{
-			new DoublePropertyMapSerializer<>( feature.means.get( i ) ).writePropertyMap( idmap, oos );
-			new DoublePropertyMapSerializer<>( feature.stds.get( i ) ).writePropertyMap( idmap, oos );
-			new DoublePropertyMapSerializer<>( feature.mins.get( i ) ).writePropertyMap( idmap, oos );
-			new DoublePropertyMapSerializer<>( feature.maxs.get( i ) ).writePropertyMap( idmap, oos );
-			new DoublePropertyMapSerializer<>( feature.medians.get( i ) ).writePropertyMap( idmap, oos );
-			new DoublePropertyMapSerializer<>( feature.sums.get( i ) ).writePropertyMap( idmap, oos );
+			FeatureColumns.writePropertyMap( feature.means.get( i ), idmap, oos );
+			FeatureColumns.writePropertyMap( feature.stds.get( i ), idmap, oos );
+			FeatureColumns.writePropertyMap( feature.mins.get( i ), idmap, oos );
+			FeatureColumns.writePropertyMap( feature.maxs.get( i ), idmap, oos );
+			FeatureColumns.writePropertyMap( feature.medians.get( i ), idmap, oos );
+			FeatureColumns.writePropertyMap( feature.sums.get( i ), idmap, oos );
 		}
 	}
 
@@ -75,7 +76,10 @@ public class SpotIntensityFeatureSerializer implements FeatureSerializer< SpotIn
 	public SpotIntensityFeature deserialize( final FileIdToObjectMap< Spot > idmap, final RefCollection< Spot > pool,
 			final ObjectInputStream ois ) throws IOException, ClassNotFoundException
 	{
-		final int nSources = ois.readInt();
+		int nSources = ois.readInt();
+		final boolean columnar = nSources == FeatureColumns.FORMAT_MARKER;
+		if ( columnar )
+			nSources = ois.readInt();
 		final List< DoublePropertyMap< Spot > > means = new ArrayList<>( nSources );
 		final List< DoublePropertyMap< Spot > > stds = new ArrayList<>( nSources );
 		final List< DoublePropertyMap< Spot > > mins = new ArrayList<>( nSources );
@@ -86,27 +90,27 @@ public class SpotIntensityFeatureSerializer implements FeatureSerializer< SpotIn
 		for ( int i = 0; i < nSources; i++ )
 		{
 			final DoublePropertyMap< Spot > meanMap = new DoublePropertyMap<>( pool, Double.NaN );
-			new DoublePropertyMapSerializer<>( meanMap ).readPropertyMap( idmap, ois );
+			FeatureColumns.readPropertyMap( meanMap, idmap, pool, ois, columnar );
 			means.add( meanMap );
 
 			final DoublePropertyMap< Spot > stdMap = new DoublePropertyMap<>( pool, Double.NaN );
-			new DoublePropertyMapSerializer<>( stdMap ).readPropertyMap( idmap, ois );
+			FeatureColumns.readPropertyMap( stdMap, idmap, pool, ois, columnar );
 			stds.add( stdMap );
 
 			final DoublePropertyMap< Spot > minMap = new DoublePropertyMap<>( pool, Double.NaN );
-			new DoublePropertyMapSerializer<>( minMap ).readPropertyMap( idmap, ois );
+			FeatureColumns.readPropertyMap( minMap, idmap, pool, ois, columnar );
 			mins.add( minMap );
 
 			final DoublePropertyMap< Spot > maxMap = new DoublePropertyMap<>( pool, Double.NaN );
-			new DoublePropertyMapSerializer<>( maxMap ).readPropertyMap( idmap, ois );
+			FeatureColumns.readPropertyMap( maxMap, idmap, pool, ois, columnar );
 			maxs.add( maxMap );
 
 			final DoublePropertyMap< Spot > medianMap = new DoublePropertyMap<>( pool, Double.NaN );
-			new DoublePropertyMapSerializer<>( medianMap ).readPropertyMap( idmap, ois );
+			FeatureColumns.readPropertyMap( medianMap, idmap, pool, ois, columnar );
 			medians.add( medianMap );
 
 			final DoublePropertyMap< Spot > sumMap = new DoublePropertyMap<>( pool, Double.NaN );
-			new DoublePropertyMapSerializer<>( sumMap ).readPropertyMap( idmap, ois );
+			FeatureColumns.readPropertyMap( sumMap, idmap, pool, ois, columnar );
 			sums.add( sumMap );
 		}
 		return new SpotIntensityFeature( means, stds, mins, maxs, medians, sums );
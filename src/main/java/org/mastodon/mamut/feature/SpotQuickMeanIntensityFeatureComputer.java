@@ -35,6 +35,8 @@ import java.util.function.IntFunction;
 
 import org.mastodon.feature.DefaultFeatureComputerService.FeatureComputationStatus;
 import org.mastodon.feature.Feature;
+import org.mastodon.feature.update.GraphUpdate;
+import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.properties.DoublePropertyMap;
@@ -63,13 +65,14 @@ public class SpotQuickMeanIntensityFeatureComputer implements MamutFeatureComput
 	private AtomicBoolean forceComputeAll;
 
 	@Parameter
-	private FeatureComputationStatus status;
+	private FeatureComputationStatus status = FeatureComputationStatus.detached();
+
+	@Parameter
+	private GraphUpdate< Spot, Link > update;
 
 	@Parameter( type = ItemIO.OUTPUT )
 	private SpotQuickMeanIntensityFeature output;
 
-	private String cancelReason;
-
 	@Override
 	public void createOutput()
 	{
@@ -95,7 +98,6 @@ public class SpotQuickMeanIntensityFeatureComputer implements MamutFeatureComput
 	@Override
 	public void run()
 	{
-		cancelReason = null;
 		final boolean recomputeAll = forceComputeAll.get();
 
 		if ( recomputeAll )
@@ -109,6 +111,10 @@ public class SpotQuickMeanIntensityFeatureComputer implements MamutFeatureComput
 		final int nSourcesToCompute = bdvData.getSources().size();
 		final int todo = numTimepoints * nSourcesToCompute;
 
+		// If we know what changed since the last computation, only process it.
+		final GraphUpdate.Changes< Spot, Link > changes = ( update == null ) ? null : update.poll();
+		final boolean incremental = !recomputeAll && changes != null && !changes.isFull();
+
 		final ArrayList< SourceAndConverter< ? > > sources = bdvData.getSources();
 		final int nSources = sources.size();
 		int done = 0;
@@ -119,6 +125,19 @@ public class SpotQuickMeanIntensityFeatureComputer implements MamutFeatureComput
 			// Calculation are made on resolution level 0 by default.
 			final EllipsoidIterable< RealType< ? > > ellipsoidIter = new EllipsoidIterable<>( source );
 
+			if ( incremental )
+			{
+				status.notifyProgress( ( double ) iSource / nSources );
+				for ( final Spot spot : changes.vertices() )
+				{
+					if ( isCanceled() )
+						break MAIN_LOOP;
+					if ( spot.getTimepoint() < numTimepoints )
+						compute( spot, source, iSource, ellipsoidIter );
+				}
+				continue;
+			}
+
 			for ( int timepoint = 0; timepoint < numTimepoints; timepoint++ )
 			{
 
@@ -137,30 +156,40 @@ public class SpotQuickMeanIntensityFeatureComputer implements MamutFeatureComput
 					if ( !recomputeAll && output.means.get( iSource ).isSet( spot ) )
 						continue;
 
-					// Iterate over the highest available resolution level.
-					ellipsoidIter.reset( spot, source.getNumMipmapLevels() - 1 );
-					double sum = 0.;
-					int size = 0;
-					for ( final RealType< ? > p : ellipsoidIter )
-					{
-						sum += p.getRealDouble();
-						size++;
-					}
-
-					if ( size < 1 )
-						continue;
-
-					if ( size < 2 )
-					{
-						output.means.get( iSource ).set( spot, sum );
-						continue;
-					}
-
-					final double mean = sum / size;
-					output.means.get( iSource ).set( spot, mean );
+					compute( spot, source, iSource, ellipsoidIter );
 				}
 			}
 		}
+
+		// Do not lose the changes we could not process.
+		if ( isCanceled() && changes != null )
+			update.restore( changes );
+	}
+
+	private void compute( final Spot spot, final Source< RealType< ? > > source, final int iSource,
+			final EllipsoidIterable< RealType< ? > > ellipsoidIter )
+	{
+		// Iterate over the highest available resolution level.
+		ellipsoidIter.reset( spot, source.getNumMipmapLevels() - 1 );
+		double sum = 0.;
+		int size = 0;
+		for ( final RealType< ? > p : ellipsoidIter )
+		{
+			sum += p.getRealDouble();
+			size++;
+		}
+
+		if ( size < 1 )
+			return;
+
+		if ( size < 2 )
+		{
+			output.means.get( iSource ).set( spot, sum );
+			return;
+		}
+
+		final double mean = sum / size;
+		output.means.get( iSource ).set( spot, mean );
 	}
 
 	public static final long nSpots( final IntFunction< Iterable< Spot > > index, final int numTimepoints )
@@ -179,18 +208,18 @@ public class SpotQuickMeanIntensityFeatureComputer implements MamutFeatureComput
 	@Override
 	public boolean isCanceled()
 	{
-		return null != cancelReason;
+		return status.isCanceled();
 	}
 
 	@Override
 	public void cancel( final String reason )
 	{
-		cancelReason = reason;
+		status.cancel( reason );
 	}
 
 	@Override
 	public String getCancelReason()
 	{
-		return cancelReason;
+		return status.getCancelReason();
 	}
 }
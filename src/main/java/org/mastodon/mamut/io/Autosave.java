@@ -0,0 +1,337 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.mastodon.graph.io.RawGraphIO.FileIdToGraphMap;
+import org.mastodon.mamut.ProjectModel;
+import org.mastodon.mamut.model.ChangeJournal;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically writes the {@link ChangeJournal} of an opened project to a
+ * journal file next to the project, so that the changes made since the last
+ * save can be recovered after a crash.
+ * <p>
+ * Recording the changes is cheap and happens under the model lock, as edits
+ * are made. Writing them to disk happens on a background thread, every
+ * {@link #getInterval()} seconds, and never rewrites the project itself. When
+ * the project is saved, the journal starts over on the new save. When the
+ * project is closed normally, the journal file is deleted: changes that were
+ * not saved then were discarded on purpose.
+ * <p>
+ * When a project is opened, {@link #recover(Model, FileIdToGraphMap, File)}
+ * replays the journal left by a crash onto the saved model, if it was
+ * recorded on this very save.
+ */
+public class Autosave
+{
+
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final int MAGIC = 0x4d4a524e;
+
+	private static final int VERSION = 1;
+
+	private static volatile int interval = 30;
+
+	private final ProjectModel appModel;
+
+	private final ChangeJournal journal;
+
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * The journal file written so far, and the generation of the journal it
+	 * holds.
+	 */
+	private File journalFile;
+
+	private long generation = -1;
+
+	private Autosave( final ProjectModel appModel )
+	{
+		this.appModel = appModel;
+		this.journal = appModel.getModel().getChangeJournal();
+		this.executor = Executors.newSingleThreadScheduledExecutor( r -> {
+			final Thread thread = new Thread( r, "Mastodon autosave" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		final int seconds = interval;
+		executor.scheduleWithFixedDelay( this::flushQuietly, seconds, seconds, TimeUnit.SECONDS );
+	}
+
+	/**
+	 * Sets how often the journal of opened projects is written, for the
+	 * projects opened afterwards. 0 disables autosave.
+	 *
+	 * @param seconds
+	 *            the interval in seconds.
+	 */
+	public static void setInterval( final int seconds )
+	{
+		interval = Math.max( 0, seconds );
+	}
+
+	/**
+	 * Returns how often the journal of opened projects is written, in
+	 * seconds. 0 means autosave is disabled.
+	 *
+	 * @return the interval in seconds.
+	 */
+	public static int getInterval()
+	{
+		return interval;
+	}
+
+	/**
+	 * Returns the journal file of the specified project.
+	 *
+	 * @param projectRoot
+	 *            the project folder or file.
+	 * @return the journal file, next to the project.
+	 */
+	public static File getJournalFile( final File projectRoot )
+	{
+		final File root = projectRoot.getAbsoluteFile();
+		return new File( root.getParentFile(), root.getName() + ".journal" );
+	}
+
+	/**
+	 * Starts autosaving the specified project, unless autosave is disabled.
+	 * The project model must have been recovered with
+	 * {@link #recover(Model, FileIdToGraphMap, File)} if it was loaded from
+	 * disk.
+	 *
+	 * @param appModel
+	 *            the project model.
+	 * @return the new {@link Autosave}, or <code>null</code> if autosave is
+	 *         disabled.
+	 */
+	public static Autosave install( final ProjectModel appModel )
+	{
+		final ChangeJournal journal = appModel.getModel().getChangeJournal();
+		if ( interval <= 0 )
+		{
+			journal.setEnabled( false );
+			return null;
+		}
+		journal.setEnabled( true );
+		final Autosave autosave = new Autosave( appModel );
+		appModel.projectClosedListeners().add( autosave::close );
+		return autosave;
+	}
+
+	/**
+	 * Starts journaling the model just loaded from the specified project, and
+	 * replays onto it the journal left by a previous session that did not
+	 * close properly, if that journal was recorded on this very save.
+	 * <p>
+	 * The model must not have been edited since it was loaded. Call this
+	 * method once the listeners of the model are installed, for instance
+	 * after the {@link ProjectModel} is created, so that the replayed changes
+	 * invalidate the features of the objects they affect.
+	 *
+	 * @param model
+	 *            the model just loaded.
+	 * @param idmap
+	 *            the file ids of the loaded spots and links.
+	 * @param projectRoot
+	 *            the project the model was loaded from.
+	 * @return the number of changes recovered.
+	 */
+	public static int recover( final Model model, final FileIdToGraphMap< Spot, Link > idmap, final File projectRoot )
+	{
+		final File file = getJournalFile( projectRoot );
+		if ( interval <= 0 && !file.isFile() )
+			return 0;
+
+		final ChangeJournal journal = model.getChangeJournal();
+		journal.setEnabled( true );
+		journal.reset( idmap );
+		if ( !file.isFile() )
+			return 0;
+
+		final ReentrantReadWriteLock lock = model.getGraph().getLock();
+		lock.writeLock().lock();
+		try (final DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 1 << 16 ) ))
+		{
+			if ( in.readInt() != MAGIC || in.readInt() != VERSION )
+			{
+				logger.warn( "Ignoring journal {}: unknown format.", file );
+				return 0;
+			}
+			final long length = in.readLong();
+			final long lastModified = in.readLong();
+			final int numVertices = in.readInt();
+			final int numEdges = in.readInt();
+			final File stampFile = getStampFile( projectRoot );
+			if ( length != stampFile.length() || lastModified != stampFile.lastModified()
+					|| numVertices != model.getGraph().vertices().size()
+					|| numEdges != model.getGraph().edges().size() )
+			{
+				logger.warn( "Ignoring journal {}: it was not recorded on the last save of the project.", file );
+				return 0;
+			}
+			final int count = journal.replay( in, idmap );
+			model.setUndoPoint();
+			logger.info( "Recovered {} unsaved changes from journal {}.", count, file );
+			return count;
+		}
+		catch ( final IOException e )
+		{
+			logger.error( "Could not recover the unsaved changes from journal {}.", file, e );
+			return 0;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * The file whose size and modification date identify a save of the
+	 * project.
+	 */
+	private static File getStampFile( final File projectRoot )
+	{
+		return projectRoot.isDirectory()
+				? new File( projectRoot, "model.raw" )
+				: projectRoot;
+	}
+
+	/**
+	 * Writes the changes recorded since the last call to the journal file.
+	 * Called periodically from the autosave thread.
+	 *
+	 * @throws IOException
+	 *             if the journal file cannot be written.
+	 */
+	public synchronized void flush() throws IOException
+	{
+		final File projectRoot = appModel.getProject().getProjectRoot();
+		if ( projectRoot == null )
+			return;
+		final ChangeJournal.Records records = journal.drain();
+		if ( records == null )
+			return;
+
+		final File file = getJournalFile( projectRoot );
+		final boolean append = records.getGeneration() == generation && file.equals( journalFile );
+		if ( !append && journalFile != null && !journalFile.equals( file ) )
+			journalFile.delete();
+		if ( records.getBytes().length == 0 )
+		{
+			// Nothing to write. The journal of a previous save is obsolete.
+			if ( !append && journalFile != null )
+			{
+				journalFile.delete();
+				journalFile = null;
+				generation = -1;
+			}
+			return;
+		}
+
+		try (final FileOutputStream fos = new FileOutputStream( file, append );
+				final DataOutputStream out = new DataOutputStream( fos ))
+		{
+			if ( !append )
+			{
+				// Header: identifies the save the journal applies to.
+				final File stampFile = getStampFile( projectRoot );
+				out.writeInt( MAGIC );
+				out.writeInt( VERSION );
+				out.writeLong( stampFile.length() );
+				out.writeLong( stampFile.lastModified() );
+				out.writeInt( records.getNumBaseVertices() );
+				out.writeInt( records.getNumBaseEdges() );
+			}
+			out.write( records.getBytes() );
+			out.flush();
+			fos.getFD().sync();
+			generation = records.getGeneration();
+			journalFile = file;
+		}
+		catch ( final IOException e )
+		{
+			// The drained records are lost: a partial journal must not be replayed.
+			generation = -1;
+			file.delete();
+			journal.setEnabled( false );
+			throw e;
+		}
+	}
+
+	private void flushQuietly()
+	{
+		try
+		{
+			flush();
+		}
+		catch ( final IOException e )
+		{
+			logger.error( "Could not write the journal of project {}. Autosave is disabled until Mastodon is restarted.",
+					appModel.getProjectName(), e );
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Stops autosaving and deletes the journal file.
+	 */
+	public synchronized void close()
+	{
+		executor.shutdownNow();
+		journal.setEnabled( false );
+		if ( journalFile != null )
+			journalFile.delete();
+		journalFile = null;
+		// Also the journal recovered from a crash, if it was never rewritten.
+		final File projectRoot = appModel.getProject().getProjectRoot();
+		if ( projectRoot != null )
+			getJournalFile( projectRoot ).delete();
+	}
+}
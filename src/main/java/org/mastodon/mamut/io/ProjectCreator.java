@@ -34,6 +34,7 @@ import java.io.IOException;
 import org.mastodon.mamut.ProjectModel;
 import org.mastodon.mamut.io.project.MamutProject;
 import org.mastodon.mamut.io.project.MamutProjectIO;
+import org.mastodon.ui.ProgressListener;
 import org.scijava.Context;
 
 import ij.ImagePlus;
@@ -57,11 +58,31 @@ public class ProjectCreator
 	 *             if the BDV file cannot be opened properly.
 	 */
 	public static ProjectModel createProjectFromBdvFile( final File file, final Context context ) throws SpimDataException
+	{
+		return createProjectFromBdvFile( file, context, null );
+	}
+
+	/**
+	 * Creates a new project from a BDV/XML file, reporting the progress of
+	 * the loading.
+	 * 
+	 * @param file
+	 *            the BDV file.
+	 * @param context
+	 *            the current context.
+	 * @param progress
+	 *            a listener notified as the loading stages complete. Can be
+	 *            <code>null</code>.
+	 * @return a new {@link ProjectModel}.
+	 * @throws SpimDataException
+	 *             if the BDV file cannot be opened properly.
+	 */
+	public static ProjectModel createProjectFromBdvFile( final File file, final Context context, final ProgressListener progress ) throws SpimDataException
 	{
 		final MamutProject project = MamutProjectIO.fromBdvFile( file );
 		try
 		{
-			return ProjectLoader.open( project, context );
+			return ProjectLoader.open( project, context, false, false, progress );
 		}
 		catch ( final IOException e )
 		{
@@ -84,11 +105,32 @@ public class ProjectCreator
 	 *             image data, and that BDV cannot be opened properly.
 	 */
 	public static ProjectModel createProjectFromImp( final ImagePlus imp, final Context context ) throws SpimDataException
+	{
+		return createProjectFromImp( imp, context, null );
+	}
+
+	/**
+	 * Creates a new project from an {@link ImagePlus}, reporting the progress
+	 * of the loading.
+	 * 
+	 * @param imp
+	 *            the source image.
+	 * @param context
+	 *            the current context.
+	 * @param progress
+	 *            a listener notified as the loading stages complete. Can be
+	 *            <code>null</code>.
+	 * @return a new {@link ProjectModel}.
+	 * @throws SpimDataException
+	 *             SpimDataException if the project points to a BDV file for
+	 *             image data, and that BDV cannot be opened properly.
+	 */
+	public static ProjectModel createProjectFromImp( final ImagePlus imp, final Context context, final ProgressListener progress ) throws SpimDataException
 	{
 		final MamutProject project = MamutProjectIO.fromImagePlus( imp );
 		try
 		{
-			return ProjectLoader.open( project, context );
+			return ProjectLoader.open( project, context, false, false, progress );
 		}
 		catch ( final IOException e )
 		{
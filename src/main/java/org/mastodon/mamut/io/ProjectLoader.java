@@ -32,8 +32,18 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -49,9 +59,12 @@ import org.mastodon.mamut.io.project.MamutProjectIO;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.Spot;
+import org.mastodon.ui.ProgressListener;
 import org.mastodon.util.DummySpimData;
 import org.mastodon.views.bdv.SharedBigDataViewerData;
 import org.scijava.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import ij.IJ;
 import ij.ImagePlus;
@@ -64,6 +77,23 @@ import mpicbg.spim.data.generic.sequence.BasicViewSetup;
 public class ProjectLoader
 {
 
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final ProgressListener NO_PROGRESS = new ProgressListener()
+	{
+		@Override
+		public void showStatus( final String string )
+		{}
+
+		@Override
+		public void showProgress( final int current, final int total )
+		{}
+
+		@Override
+		public void clearStatus()
+		{}
+	};
+
 	static final String GUI_TAG = "MamutGui";
 
 	static final String WINDOWS_TAG = "Windows";
@@ -167,39 +197,204 @@ public class ProjectLoader
 	 */
 	public static ProjectModel open( final MamutProject project, final Context context, final boolean restoreGUIState, final boolean authorizeSubstituteDummyData ) throws IOException, SpimDataException
 	{
-		// Load image data.
-		final SharedBigDataViewerData imageData = loadImageData( project, authorizeSubstituteDummyData );
+		return open( project, context, restoreGUIState, authorizeSubstituteDummyData, NO_PROGRESS );
+	}
+
+	/**
+	 * Opens a specified project, reporting progress to the specified
+	 * listener.
+	 * <p>
+	 * The image data is loaded in a background thread while the model is read,
+	 * and the feature values are read in the background after the model is
+	 * returned (see {@link #loadModel(MamutProject, Context)}). A timing
+	 * breakdown of the stages is logged at the end.
+	 * 
+	 * @param project
+	 *            the object describing the project on disk.
+	 * @param context
+	 *            the current context.
+	 * @param restoreGUIState
+	 *            if <code>true</code>, the GUI state will be restored.
+	 * @param authorizeSubstituteDummyData
+	 *            if <code>true</code>, and if the image data cannot be loaded,
+	 *            a dummy image data will be substituted. In that case a
+	 *            {@link SpimDataException} is never thrown.
+	 * @param progress
+	 *            a listener notified as the loading stages complete. It may be
+	 *            called from another thread than the calling one. Can be
+	 *            <code>null</code>.
+	 * @return the loaded {@link ProjectModel}.
+	 * @throws IOException
+	 *             if the project points to a regular image file for image data,
+	 *             and that file cannot be opened properly, or if there is a
+	 *             problem loading the model data, or if there is a problem
+	 *             reading the GUI state.
+	 * @throws SpimDataException
+	 *             if the project points to a BDV file for image data, and that
+	 *             BDV cannot be opened properly.
+	 */
+	public static ProjectModel open( final MamutProject project, final Context context, final boolean restoreGUIState, final boolean authorizeSubstituteDummyData, final ProgressListener progress ) throws IOException, SpimDataException
+	{
+		final Stages stages = new Stages( progress == null ? NO_PROGRESS : progress, restoreGUIState ? 5 : 4 );
+		final ExecutorService executor = Executors.newSingleThreadExecutor( r -> {
+			final Thread thread = new Thread( r, "Mastodon image data loader" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		try
+		{
+			// Load image data, in parallel with the model when possible.
+			final Future< SharedBigDataViewerData > futureImageData = executor.submit(
+					() -> stages.run( "image data", () -> loadImageData( project, authorizeSubstituteDummyData ) ) );
+
+			/*
+			 * The model is created with the units of the project. If they are
+			 * not present, they are read from the image data, which we then
+			 * have to wait for.
+			 */
+			SharedBigDataViewerData imageData = null;
+			if ( project.getSpaceUnits() == null )
+			{
+				imageData = get( futureImageData );
+				project.setSpaceUnits(
+						imageData.getSpimData().getSequenceDescription().getViewSetupsOrdered().stream()
+								.filter( BasicViewSetup::hasVoxelSize )
+								.map( setup -> setup.getVoxelSize().unit() )
+								.findFirst()
+								.orElse( "pixel" ) );
+			}
+
+			if ( project.getTimeUnits() == null )
+			{
+				project.setTimeUnits( "frame" );
+			}
 
-		// Try to read units from spimData is they are not present.
-		if ( project.getSpaceUnits() == null )
+			// Load model.
+			final Model model = new Model( project.getSpaceUnits(), project.getTimeUnits() );
+			final FileIdToGraphMap< Spot, Link > idmap = stages.run( "model", () -> readModel( project, context, model ) );
+			if ( imageData == null )
+				imageData = get( futureImageData );
+
+			// Build app model.
+			final SharedBigDataViewerData sharedImageData = imageData;
+			final ProjectModel appModel = stages.run( "project model",
+					() -> ProjectModel.create( context, model, sharedImageData, project ) );
+
+			/*
+			 * Recover the changes journaled by a session that did not close
+			 * properly. They are replayed once the feature computer service
+			 * listens to the model, so that they invalidate the features and
+			 * are tracked for the next computation like any other edit.
+			 */
+			if ( idmap != null )
+				Autosave.recover( model, idmap, project.getProjectRoot() );
+			Autosave.install( appModel );
+
+			// Build the branch graph now.
+			stages.run( "branch graph", () -> {
+				appModel.getBranchGraphSync().sync();
+				return null;
+			} );
+
+			// Restore GUI state.
+			if ( restoreGUIState )
+				stages.run( "GUI state", () -> {
+					loadGUI( project, appModel.getWindowManager() );
+					return null;
+				} );
+
+			stages.done( project );
+			return appModel;
+		}
+		finally
 		{
-			project.setSpaceUnits(
-					imageData.getSpimData().getSequenceDescription().getViewSetupsOrdered().stream()
-							.filter( BasicViewSetup::hasVoxelSize )
-							.map( setup -> setup.getVoxelSize().unit() )
-							.findFirst()
-							.orElse( "pixel" ) );
+			executor.shutdownNow();
 		}
+	}
 
-		if ( project.getTimeUnits() == null )
+	/**
+	 * Waits for the image data loaded in the background, and rethrows the
+	 * exception of the loading if any.
+	 */
+	private static SharedBigDataViewerData get( final Future< SharedBigDataViewerData > future ) throws IOException, SpimDataException
+	{
+		try
 		{
-			project.setTimeUnits( "frame" );
+			return future.get();
 		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException( "Interrupted while loading the image data.", e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof IOException )
+				throw ( IOException ) cause;
+			if ( cause instanceof SpimDataException )
+				throw ( SpimDataException ) cause;
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new IOException( cause );
+		}
+	}
+
+	/**
+	 * A step of the loading of a project.
+	 */
+	@FunctionalInterface
+	private interface Stage< T >
+	{
+		public T run() throws IOException, SpimDataException;
+	}
+
+	/**
+	 * Runs the stages of the loading of a project, reports their progress, and
+	 * logs how long they took. Stages may run in different threads.
+	 */
+	private static final class Stages
+	{
 
-		// Load model.
-		final Model model = loadModel( project, context );
+		private final ProgressListener progress;
 
-		// Build app model.
-		final ProjectModel appModel = ProjectModel.create( context, model, imageData, project );
+		private final int total;
 
-		// Build the branch graph now.
-		appModel.getBranchGraphSync().sync();
+		private final AtomicInteger completed = new AtomicInteger();
 
-		// Restore GUI state.
-		if ( restoreGUIState )
-			loadGUI( project, appModel.getWindowManager() );
+		private final Map< String, Long > times = Collections.synchronizedMap( new LinkedHashMap<>() );
 
-		return appModel;
+		private final long start = System.nanoTime();
+
+		private Stages( final ProgressListener progress, final int total )
+		{
+			this.progress = progress;
+			this.total = total;
+		}
+
+		private < T > T run( final String name, final Stage< T > stage ) throws IOException, SpimDataException
+		{
+			progress.showStatus( "Loading " + name + "..." );
+			final long t0 = System.nanoTime();
+			final T result = stage.run();
+			times.put( name, ( System.nanoTime() - t0 ) / 1_000_000 );
+			progress.showProgress( completed.incrementAndGet(), total );
+			return result;
+		}
+
+		private void done( final MamutProject project )
+		{
+			progress.clearStatus();
+			final StringBuilder str = new StringBuilder();
+			synchronized ( times )
+			{
+				times.forEach( ( name, ms ) -> str.append( ", " ).append( name ).append( ": " ).append( ms ).append( " ms" ) );
+			}
+			logger.info( "Opened project {} in {} ms{}.", project.getProjectRoot(),
+					( System.nanoTime() - start ) / 1_000_000, str );
+		}
 	}
 
 	/**
@@ -277,28 +472,67 @@ public class ProjectLoader
 	public static final Model loadModel( final MamutProject project, final Context context ) throws IOException
 	{
 		final Model model = new Model( project.getSpaceUnits(), project.getTimeUnits() );
+		readModel( project, context, model );
+		return model;
+	}
+
+	/**
+	 * Reads the model of a project into the specified empty model.
+	 *
+	 * @return the file ids of the loaded spots and links, or <code>null</code>
+	 *         if the project is new.
+	 */
+	private static FileIdToGraphMap< Spot, Link > readModel( final MamutProject project, final Context context, final Model model ) throws IOException
+	{
 		final boolean isNewProject = project.getProjectRoot() == null;
+		FileIdToGraphMap< Spot, Link > idmap = null;
 		if ( !isNewProject )
 		{
 			try (final MamutProject.ProjectReader reader = project.openForReading())
 			{
-				final FileIdToGraphMap< Spot, Link > idmap = model.loadRaw( reader );
-				// Load features.
-				MamutRawFeatureModelIO.deserialize(
+				idmap = model.loadRaw( reader );
+				/*
+				 * Load features. Their values are read on first access, and
+				 * by a background thread in the meantime.
+				 */
+				MamutRawFeatureModelIO.deserializeLazily(
 						context,
 						model,
 						idmap,
+						project.getProjectRoot(),
 						reader );
 			}
-			catch ( final ClassNotFoundException e )
-			{
-				e.printStackTrace();
-			}
+			prefetchFeatures( model );
 		}
 
 		model.setSavePoint();
 		model.declareDefaultFeatures();
-		return model;
+		return idmap;
+	}
+
+	/**
+	 * Reads the values of the features of a freshly loaded model in a
+	 * background thread. The graph read lock is held while reading, so that
+	 * the graph cannot be edited under the feature loaders.
+	 */
+	private static void prefetchFeatures( final Model model )
+	{
+		final Thread thread = new Thread( () -> {
+			final ReentrantReadWriteLock lock = model.getGraph().getLock();
+			final long start = System.nanoTime();
+			lock.readLock().lock();
+			try
+			{
+				model.getFeatureModel().loadPendingFeatures();
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+			logger.info( "Read feature values in {} ms.", ( System.nanoTime() - start ) / 1_000_000 );
+		}, "Mastodon feature loader" );
+		thread.setDaemon( true );
+		thread.start();
 	}
 
 	/**
@@ -45,6 +45,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
+import java.util.zip.Deflater;
 
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
@@ -75,6 +77,7 @@ import org.mastodon.ui.util.FileChooser.SelectionMode;
 import org.mastodon.util.BDVImagePlusExporter;
 import org.mastodon.views.bdv.SharedBigDataViewerData;
 import org.scijava.Context;
+import org.scijava.prefs.DefaultPrefService;
 
 import ij.gui.ImageWindow;
 
@@ -84,6 +87,50 @@ import ij.gui.ImageWindow;
 public class ProjectSaver
 {
 
+	/**
+	 * Preference key of the compression level of saved project files. The
+	 * level is stored with the SciJava preferences of this class, and edited
+	 * in the <i>Settings &gt; Saving</i> page of the preferences dialog, see
+	 * {@link ProjectSavingSettingsPage}.
+	 */
+	private static final String COMPRESSION_LEVEL_KEY = "CompressionLevel";
+
+	/**
+	 * Returns the level used to compress the entries of saved project files.
+	 * It is stored in the user preferences under the
+	 * <code>CompressionLevel</code> key of this class, and defaults to
+	 * {@link Deflater#NO_COMPRESSION}, like projects saved by earlier
+	 * versions. Large feature columns are deflated by the feature serializers
+	 * whatever this level.
+	 *
+	 * @return the compression level, from {@link Deflater#NO_COMPRESSION} to
+	 *         {@link Deflater#BEST_COMPRESSION}.
+	 */
+	public static int getCompressionLevel()
+	{
+		final int level = new DefaultPrefService().getInt( ProjectSaver.class, COMPRESSION_LEVEL_KEY, Deflater.NO_COMPRESSION );
+		return ( level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION )
+				? Deflater.NO_COMPRESSION
+				: level;
+	}
+
+	/**
+	 * Sets the level used to compress the entries of saved project files, and
+	 * stores it in the user preferences. Higher levels make smaller files;
+	 * entries are compressed in parallel, so saving stays fast on machines
+	 * with several cores. Project folders are not compressed.
+	 *
+	 * @param level
+	 *            the compression level, from {@link Deflater#NO_COMPRESSION}
+	 *            to {@link Deflater#BEST_COMPRESSION}.
+	 */
+	public static void setCompressionLevel( final int level )
+	{
+		if ( level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION )
+			throw new IllegalArgumentException( "Invalid compression level: " + level );
+		new DefaultPrefService().put( ProjectSaver.class, COMPRESSION_LEVEL_KEY, level );
+	}
+
 	/**
 	 * Interactively saves the specified project. A dialog is shown prompting
 	 * the user to a save path.
@@ -241,7 +288,8 @@ public class ProjectSaver
 	/**
 	 * Saves the specified project to the specified file. The file should be a
 	 * path ending in <code>.mastodon</code> (but folders from previous versions
-	 * are supported).
+	 * are supported). The entries of a <code>.mastodon</code> file are
+	 * compressed with the level returned by {@link #getCompressionLevel()}.
 	 * 
 	 * @param saveTo
 	 *            the file to save the project to.
@@ -256,16 +304,31 @@ public class ProjectSaver
 		final MamutProject project = appModel.getProject();
 		final File tmpDatasetXml = ProjectLoader.originalOrBackupDatasetXml( project );
 
+		// Read the features not loaded yet before overwriting their files.
+		appModel.getModel().getFeatureModel().loadPendingFeatures();
+
 		// Possibly update project root.
 		project.setProjectRoot( saveTo );
-		try (final MamutProject.ProjectWriter writer = project.openForWriting())
+		final Model model = appModel.getModel();
+		final GraphToFileIdMap< Spot, Link > idmap;
+		try (final MamutProject.ProjectWriter writer = project.openForWriting( getCompressionLevel() ))
 		{
 			MamutProjectIO.save( project, writer );
 			// Synchronize branch graph with main graph before saving. This is required to make saved state consistent.
 			appModel.getBranchGraphSync().sync();
-			final Model model = appModel.getModel();
-			// Save Raw Graph Model
-			final GraphToFileIdMap< Spot, Link > idmap = model.saveRaw( writer );
+			// Save Raw Graph Model, and journal the next changes against this
+			// save. No edit must happen in between.
+			final ReadLock readLock = model.getGraph().getLock().readLock();
+			readLock.lock();
+			try
+			{
+				idmap = model.saveRaw( writer );
+				model.getChangeJournal().reset( idmap );
+			}
+			finally
+			{
+				readLock.unlock();
+			}
 			// Serialize feature model.
 			MamutRawFeatureModelIO.serialize( appModel.getContext(), model, idmap, writer );
 			// Serialize GUI state.
@@ -275,6 +338,13 @@ public class ProjectSaver
 			// Set save point.
 			model.setSavePoint();
 		}
+		catch ( final IOException | RuntimeException e )
+		{
+			// The journal would refer to a save that did not complete.
+			model.getChangeJournal().suspend();
+			throw e;
+		}
+		model.getChangeJournal().saveCompleted();
 
 		// Save BDV settings.
 		// Imperfect because a full saving requires have a view opened,
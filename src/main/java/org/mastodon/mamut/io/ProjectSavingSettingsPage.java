@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+package org.mastodon.mamut.io;
+
+import java.awt.BorderLayout;
+import java.util.zip.Deflater;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+
+import org.scijava.listeners.Listeners;
+
+import bdv.ui.settings.ModificationListener;
+import bdv.ui.settings.SettingsPage;
+
+/**
+ * Settings page to edit the compression level of saved project files, see
+ * {@link ProjectSaver#setCompressionLevel(int)}.
+ */
+public class ProjectSavingSettingsPage implements SettingsPage
+{
+	private final String treePath;
+
+	private final JPanel panel;
+
+	private final JSlider compressionLevel;
+
+	private final Listeners.SynchronizedList< ModificationListener > modificationListeners;
+
+	private boolean trackModifications = true;
+
+	/**
+	 * Creates a new settings page for saving projects.
+	 *
+	 * @param treePath
+	 *            path of this page in the settings tree.
+	 */
+	public ProjectSavingSettingsPage( final String treePath )
+	{
+		this.treePath = treePath;
+		this.modificationListeners = new Listeners.SynchronizedList<>();
+
+		compressionLevel = new JSlider( Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION,
+				ProjectSaver.getCompressionLevel() );
+		compressionLevel.setMajorTickSpacing( 1 );
+		compressionLevel.setPaintTicks( true );
+		compressionLevel.setPaintLabels( true );
+		compressionLevel.setSnapToTicks( true );
+		compressionLevel.addChangeListener( e -> {
+			if ( trackModifications )
+				modificationListeners.list.forEach( ModificationListener::setModified );
+		} );
+
+		final JLabel description = new JLabel( "<html>"
+				+ "Compression level of the project files (.mastodon) written when saving. "
+				+ "0 stores them uncompressed, like earlier versions of Mastodon. "
+				+ "Higher levels make smaller files and slower saves. "
+				+ "Project folders are never compressed."
+				+ "</html>" );
+
+		panel = new JPanel( new BorderLayout( 0, 10 ) );
+		panel.setBorder( BorderFactory.createEmptyBorder( 10, 10, 10, 10 ) );
+		panel.add( description, BorderLayout.NORTH );
+		panel.add( compressionLevel, BorderLayout.CENTER );
+	}
+
+	@Override
+	public String getTreePath()
+	{
+		return treePath;
+	}
+
+	@Override
+	public JPanel getJPanel()
+	{
+		return panel;
+	}
+
+	@Override
+	public Listeners< ModificationListener > modificationListeners()
+	{
+		return modificationListeners;
+	}
+
+	@Override
+	public void cancel()
+	{
+		trackModifications = false;
+		compressionLevel.setValue( ProjectSaver.getCompressionLevel() );
+		trackModifications = true;
+	}
+
+	@Override
+	public void apply()
+	{
+		ProjectSaver.setCompressionLevel( compressionLevel.getValue() );
+	}
+}
@@ -0,0 +1,187 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.exporter.table;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formats numbers as ASCII bytes straight into a byte array, without going
+ * through {@link String}s.
+ */
+final class AsciiFormat
+{
+
+	/**
+	 * The maximal number of bytes written by {@link #format(int, byte[], int)}.
+	 */
+	static final int MAX_INT_LENGTH = 11;
+
+	/**
+	 * The maximal number of bytes written by
+	 * {@link #format(double, byte[], int)}.
+	 */
+	static final int MAX_DOUBLE_LENGTH = 24;
+
+	private static final int MAX_FRACTION_DIGITS = 9;
+
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9 };
+
+	private static final long[] LONG_POW10 = { 1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L,
+			100_000_000L, 1_000_000_000L };
+
+	private static final double TWO_POW_53 = 0x1p53;
+
+	/**
+	 * Below this, distinct multiples of 10<sup>-9</sup> are distinct doubles.
+	 */
+	private static final double MAX_FIXED = 0x1p23;
+
+	private static final byte[] INT_MIN_VALUE = Integer.toString( Integer.MIN_VALUE ).getBytes( StandardCharsets.US_ASCII );
+
+	/**
+	 * Writes the decimal representation of an <code>int</code>, as
+	 * {@link Integer#toString(int)}.
+	 *
+	 * @param value
+	 *            the value.
+	 * @param buf
+	 *            the array to write to.
+	 * @param pos
+	 *            the position to write at.
+	 * @return the position after the last byte written.
+	 */
+	static int format( final int value, final byte[] buf, int pos )
+	{
+		if ( value == Integer.MIN_VALUE )
+		{
+			System.arraycopy( INT_MIN_VALUE, 0, buf, pos, INT_MIN_VALUE.length );
+			return pos + INT_MIN_VALUE.length;
+		}
+		int v = value;
+		if ( v < 0 )
+		{
+			buf[ pos++ ] = '-';
+			v = -v;
+		}
+		return formatDigits( v, buf, pos, 0 );
+	}
+
+	/**
+	 * Writes the decimal representation of a <code>double</code>, that is
+	 * parsed back to the same value.
+	 * <p>
+	 * Values between 10<sup>-3</sup> and 2<sup>23</sup> that have at most 9
+	 * fraction digits, such as positions, small counts, or values rounded by
+	 * the feature computers, are written with the fewest fraction digits that
+	 * identify them. This is the text {@link Double#toString(double)} returns
+	 * for them. Other values are written with {@link Double#toString(double)}.
+	 *
+	 * @param value
+	 *            the value.
+	 * @param buf
+	 *            the array to write to.
+	 * @param pos
+	 *            the position to write at.
+	 * @return the position after the last byte written.
+	 */
+	static int format( final double value, final byte[] buf, int pos )
+	{
+		final double abs = Math.abs( value );
+		if ( abs >= 1e-3 && abs < MAX_FIXED )
+		{
+			final double scaled = abs * POW10[ MAX_FRACTION_DIGITS ];
+			if ( scaled < TWO_POW_53 )
+			{
+				long m = Math.round( scaled );
+				// Exact operands, so the division is correctly rounded.
+				if ( m / POW10[ MAX_FRACTION_DIGITS ] == abs )
+				{
+					int k = MAX_FRACTION_DIGITS;
+					while ( k > 0 && m % 10 == 0 )
+					{
+						m /= 10;
+						k--;
+					}
+					if ( value < 0 )
+						buf[ pos++ ] = '-';
+					return formatFixed( m, k, buf, pos );
+				}
+			}
+		}
+		else if ( value == 0 )
+		{
+			if ( Double.doubleToRawLongBits( value ) != 0 )
+				buf[ pos++ ] = '-';
+			buf[ pos++ ] = '0';
+			buf[ pos++ ] = '.';
+			buf[ pos++ ] = '0';
+			return pos;
+		}
+
+		final String str = Double.toString( value );
+		for ( int i = 0; i < str.length(); i++ )
+			buf[ pos++ ] = ( byte ) str.charAt( i );
+		return pos;
+	}
+
+	/**
+	 * Writes <code>m / 10^k</code> with <code>k</code> fraction digits, or one
+	 * if <code>k</code> is 0.
+	 */
+	private static int formatFixed( final long m, final int k, final byte[] buf, int pos )
+	{
+		final long integer = m / LONG_POW10[ k ];
+		final long fraction = m % LONG_POW10[ k ];
+		pos = formatDigits( integer, buf, pos, 0 );
+		buf[ pos++ ] = '.';
+		return formatDigits( fraction, buf, pos, Math.max( k, 1 ) );
+	}
+
+	/**
+	 * Writes a non-negative value, left-padded with zeros to at least
+	 * <code>minDigits</code> digits.
+	 */
+	private static int formatDigits( long v, final byte[] buf, final int pos, final int minDigits )
+	{
+		int n = 1;
+		for ( long t = v / 10; t != 0; t /= 10 )
+			n++;
+		n = Math.max( n, minDigits );
+		final int end = pos + n;
+		for ( int p = end - 1; p >= pos; p-- )
+		{
+			buf[ p ] = ( byte ) ( '0' + v % 10 );
+			v /= 10;
+		}
+		return end;
+	}
+
+	private AsciiFormat()
+	{}
+}
@@ -0,0 +1,804 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.exporter.table;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import org.mastodon.RefPool;
+import org.mastodon.feature.Feature;
+import org.mastodon.feature.FeatureProjection;
+import org.mastodon.feature.FeatureSpec;
+import org.mastodon.feature.IntFeatureProjection;
+import org.mastodon.feature.io.FeatureColumns;
+import org.mastodon.model.tag.ObjTagMap;
+import org.mastodon.model.tag.ObjTags;
+import org.mastodon.model.tag.TagSetStructure.Tag;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
+
+/**
+ * Writes the feature and tag values of a collection of objects as a table,
+ * without a table view.
+ * <p>
+ * The table has the same columns as the table view: the object label and id,
+ * one column per feature projection, with features sorted by key, and one
+ * column per tag, with tag sets sorted by name. Values are read straight from
+ * the feature projections and tag maps, a block of rows at a time. The columns
+ * of a block are read in parallel, one task per feature, and the rows of a
+ * block are then formatted in parallel and written in order.
+ * <p>
+ * The output can be:
+ * <ul>
+ * <li>{@link Format#CSV}: a CSV file with the three header lines of the table
+ * view export (feature, projection, units). Text fields are quoted, numbers are
+ * not, and unset values are empty fields.
+ * <li>{@link Format#CSV_GZIP}: the same CSV file, gzip-compressed. Blocks of
+ * rows are compressed in parallel as consecutive gzip members, which gzip
+ * readers decompress as a single stream.
+ * <li>{@link Format#BINARY}: a columnar binary file, made of big-endian
+ * primitive columns in the {@link FeatureColumns} layout:
+ * <ul>
+ * <li>a magic number and a version (<code>int</code>s);
+ * <li>the number of rows <i>n</i> (<code>int</code>) and a column of the
+ * <i>n</i> object ids;
+ * <li><i>n</i> labels (UTF strings);
+ * <li>the number of feature columns, and for each its feature key, projection
+ * key and units (UTF strings), whether its values are <code>int</code>s
+ * (<code>boolean</code>), an id column of the rows where the value is set, and
+ * the column of these values;
+ * <li>the number of tag sets, and for each its name (UTF string), its number of
+ * tags and their labels, and a column of the index of the tag of each row in
+ * the tag set, <code>-1</code> if the row is not tagged.
+ * </ul>
+ * </ul>
+ * Feature projections and tag maps are read from several threads, one thread
+ * per feature at a time. The caller must prevent changes to the objects and
+ * their features while writing, for instance by holding the graph read lock.
+ *
+ * @param <O>
+ *            the type of objects in the table.
+ */
+public class FeatureTableWriter< O >
+{
+
+	/**
+	 * Output formats.
+	 */
+	public enum Format
+	{
+		CSV( ".csv" ),
+		CSV_GZIP( ".csv.gz" ),
+		BINARY( ".bin" );
+
+		private final String extension;
+
+		private Format( final String extension )
+		{
+			this.extension = extension;
+		}
+
+		/**
+		 * Returns the file extension of this format, with the leading dot.
+		 *
+		 * @return the extension.
+		 */
+		public String getExtension()
+		{
+			return extension;
+		}
+	}
+
+	static final int BINARY_MAGIC = 0x4d544142;
+
+	static final int BINARY_VERSION = 1;
+
+	/**
+	 * Number of rows read at once.
+	 */
+	private static final int BLOCK_ROWS = 1 << 16;
+
+	/**
+	 * Number of rows formatted by one task.
+	 */
+	private static final int CHUNK_ROWS = 1 << 12;
+
+	private final RefPool< O > pool;
+
+	private final Collection< O > objects;
+
+	private Function< O, String > labelGenerator;
+
+	private final List< FeatureColumnGroup > featureGroups = new ArrayList<>();
+
+	private ObjTags< O > tags;
+
+	private final List< TagSet > tagSets = new ArrayList<>();
+
+	private char separator = ',';
+
+	private Format format = Format.CSV;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	private FeatureTableWriter( final RefPool< O > pool, final Collection< O > objects )
+	{
+		this.pool = pool;
+		this.objects = objects;
+		this.labelGenerator = o -> o.toString();
+	}
+
+	/**
+	 * Creates a writer for the specified objects.
+	 *
+	 * @param <O>
+	 *            the type of objects.
+	 * @param pool
+	 *            the pool of the objects, used to get their ids.
+	 * @param objects
+	 *            the objects, one per row, in the order of the rows.
+	 * @return a new writer.
+	 */
+	public static < O > FeatureTableWriter< O > create( final RefPool< O > pool, final Collection< O > objects )
+	{
+		if ( pool == null )
+			throw new IllegalArgumentException( "The object pool cannot be null." );
+		return new FeatureTableWriter<>( pool, objects );
+	}
+
+	public FeatureTableWriter< O > labelGetter( final Function< O, String > labelGetter )
+	{
+		this.labelGenerator = labelGetter;
+		return this;
+	}
+
+	public FeatureTableWriter< O > features( final Map< FeatureSpec< ?, O >, Feature< O > > features )
+	{
+		featureGroups.clear();
+		if ( features == null )
+			return this;
+		final List< FeatureSpec< ?, O > > fss = new ArrayList<>( features.keySet() );
+		fss.sort( Comparator.comparing( FeatureSpec::getKey ) );
+		for ( final FeatureSpec< ?, O > fs : fss )
+		{
+			final Feature< O > feature = features.get( fs );
+			if ( feature.projections() == null || feature.projections().isEmpty() )
+				continue;
+			featureGroups.add( new FeatureColumnGroup( fs.getKey(), new ArrayList<>( feature.projections() ) ) );
+		}
+		return this;
+	}
+
+	public FeatureTableWriter< O > tags( final ObjTags< O > tags, final List< TagSet > tagSets )
+	{
+		this.tags = tags;
+		this.tagSets.clear();
+		if ( tags != null && tagSets != null )
+		{
+			this.tagSets.addAll( tagSets );
+			this.tagSets.sort( ( o1, o2 ) -> o1.getName().compareTo( o2.getName() ) );
+		}
+		return this;
+	}
+
+	public FeatureTableWriter< O > separator( final char separator )
+	{
+		this.separator = separator;
+		return this;
+	}
+
+	public FeatureTableWriter< O > format( final Format format )
+	{
+		this.format = format;
+		return this;
+	}
+
+	public FeatureTableWriter< O > numThreads( final int numThreads )
+	{
+		this.numThreads = Math.max( 1, numThreads );
+		return this;
+	}
+
+	/**
+	 * Writes the table to the specified file.
+	 *
+	 * @param file
+	 *            the file to write, overwritten if it exists.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public void write( final File file ) throws IOException
+	{
+		// Object ids, in row order.
+		final int[] ids = new int[ objects.size() ];
+		int n = 0;
+		for ( final O o : objects )
+			ids[ n++ ] = pool.getId( o );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( numThreads, r -> {
+			final Thread thread = new Thread( r, "Mastodon table export" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		try (final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE ))
+		{
+			if ( format == Format.BINARY )
+				writeBinary( ids, n, channel, executor );
+			else
+				writeCsv( ids, n, channel, executor );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * CSV.
+	 */
+
+	private void writeCsv( final int[] ids, final int n, final FileChannel channel, final ExecutorService executor )
+			throws IOException
+	{
+		final boolean gzip = format == Format.CSV_GZIP;
+		final ByteSink header = new ByteSink( 1 << 12 );
+		writeCsvHeader( header );
+		write( gzip ? header.gzip() : header, channel );
+
+		final Block block = new Block( Math.min( n, BLOCK_ROWS ) );
+		for ( int from = 0; from < n; from += BLOCK_ROWS )
+		{
+			final int to = Math.min( n, from + BLOCK_ROWS );
+			block.read( ids, from, to, executor );
+
+			final List< Callable< ByteSink > > tasks = new ArrayList<>();
+			for ( int chunk = from; chunk < to; chunk += CHUNK_ROWS )
+			{
+				final int chunkFrom = chunk;
+				final int chunkTo = Math.min( to, chunk + CHUNK_ROWS );
+				tasks.add( () -> {
+					final ByteSink sink = block.format( ids, chunkFrom, chunkTo );
+					return gzip ? sink.gzip() : sink;
+				} );
+			}
+			for ( final Future< ByteSink > future : invokeAll( executor, tasks ) )
+				write( get( future ), channel );
+		}
+	}
+
+	private void writeCsvHeader( final ByteSink sink )
+	{
+		final List< String[] > columns = new ArrayList<>();
+		columns.add( new String[] { "Label", "", "" } );
+		columns.add( new String[] { "ID", "", "" } );
+		for ( final FeatureColumnGroup group : featureGroups )
+		{
+			// Same headers as in the table view.
+			final boolean single = group.projections.size() == 1
+					&& group.projections.get( 0 ).getKey().toString().equals( group.featureKey );
+			for ( final FeatureProjection< O > projection : group.projections )
+			{
+				final String units = projection.units();
+				columns.add( new String[] {
+						group.featureKey,
+						single ? " " : projection.getKey().toString(),
+						( units == null || units.isEmpty() ) ? "" : "(" + units + ")" } );
+			}
+		}
+		for ( final TagSet tagSet : tagSets )
+			for ( final Tag tag : tagSet.getTags() )
+				columns.add( new String[] { tagSet.getName(), tag.label(), "" } );
+
+		for ( int line = 0; line < 3; line++ )
+		{
+			for ( int c = 0; c < columns.size(); c++ )
+			{
+				if ( c > 0 )
+					sink.put( separator );
+				sink.putQuoted( columns.get( c )[ line ] );
+			}
+			sink.put( '\n' );
+		}
+	}
+
+	/*
+	 * Binary.
+	 */
+
+	private void writeBinary( final int[] ids, final int n, final FileChannel channel, final ExecutorService executor )
+			throws IOException
+	{
+		final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream( Channels.newOutputStream( channel ), 1 << 16 ) );
+		out.writeInt( BINARY_MAGIC );
+		out.writeInt( BINARY_VERSION );
+		out.writeInt( n );
+		FeatureColumns.writeColumn( ids, n, out );
+
+		// Labels and tags are read in one task, features a few at a time.
+		final LabelsAndTags labelsAndTags = new LabelsAndTags( n );
+		final Future< Void > labelsAndTagsRead = executor.submit( () -> {
+			labelsAndTags.read( ids, 0, n );
+			return null;
+		} );
+		final List< Future< FeatureValues > > featuresRead = new ArrayList<>();
+		final int window = Math.max( 1, numThreads - 1 );
+		for ( int g = 0; g < featureGroups.size() && g < window; g++ )
+			featuresRead.add( submitRead( featureGroups.get( g ), ids, n, executor ) );
+
+		get( labelsAndTagsRead );
+		for ( int i = 0; i < n; i++ )
+			out.writeUTF( labelsAndTags.labels[ i ] == null ? "" : labelsAndTags.labels[ i ] );
+
+		int numColumns = 0;
+		for ( final FeatureColumnGroup group : featureGroups )
+			numColumns += group.projections.size();
+		out.writeInt( numColumns );
+		for ( int g = 0; g < featureGroups.size(); g++ )
+		{
+			if ( g + window < featureGroups.size() )
+				featuresRead.add( submitRead( featureGroups.get( g + window ), ids, n, executor ) );
+			writeBinaryFeature( get( featuresRead.set( g, null ) ), n, out );
+		}
+
+		out.writeInt( tagSets.size() );
+		for ( int s = 0; s < tagSets.size(); s++ )
+		{
+			final TagSet tagSet = tagSets.get( s );
+			out.writeUTF( tagSet.getName() );
+			out.writeInt( tagSet.getTags().size() );
+			for ( final Tag tag : tagSet.getTags() )
+				out.writeUTF( tag.label() );
+			FeatureColumns.writeColumn( labelsAndTags.tagIndices[ s ], n, out );
+		}
+		out.flush();
+	}
+
+	private Future< FeatureValues > submitRead( final FeatureColumnGroup group, final int[] ids, final int n,
+			final ExecutorService executor )
+	{
+		return executor.submit( () -> group.read( ids, 0, n ) );
+	}
+
+	private void writeBinaryFeature( final FeatureValues values, final int n, final DataOutputStream out )
+			throws IOException
+	{
+		final FeatureColumnGroup group = values.group;
+		final int[] rows = new int[ n ];
+		for ( int p = 0; p < group.projections.size(); p++ )
+		{
+			final FeatureProjection< O > projection = group.projections.get( p );
+			final boolean isInt = projection instanceof IntFeatureProjection;
+			final String units = projection.units();
+			out.writeUTF( group.featureKey );
+			out.writeUTF( projection.getKey().toString() );
+			out.writeUTF( units == null ? "" : units );
+			out.writeBoolean( isInt );
+
+			// Rows where the value is set, and these values.
+			final double[] v = values.values[ p ];
+			final boolean[] set = values.set[ p ];
+			int count = 0;
+			for ( int i = 0; i < n; i++ )
+				if ( set[ i ] )
+					rows[ count++ ] = i;
+			final boolean dense = FeatureColumns.writeIdColumn( rows, count, out );
+			if ( isInt )
+			{
+				final int[] ints = new int[ count ];
+				for ( int i = 0; i < count; i++ )
+					ints[ i ] = ( int ) v[ rows[ i ] ];
+				FeatureColumns.writeValueColumn( ints, rows, count, dense, out );
+			}
+			else
+			{
+				final double[] doubles = new double[ count ];
+				for ( int i = 0; i < count; i++ )
+					doubles[ i ] = v[ rows[ i ] ];
+				FeatureColumns.writeValueColumn( doubles, rows, count, dense, out );
+			}
+		}
+	}
+
+	/*
+	 * Reading values.
+	 */
+
+	/**
+	 * The projections of a feature, read together by one thread, in case
+	 * they share state.
+	 */
+	private final class FeatureColumnGroup
+	{
+
+		private final String featureKey;
+
+		private final List< FeatureProjection< O > > projections;
+
+		private FeatureColumnGroup( final String featureKey, final List< FeatureProjection< O > > projections )
+		{
+			this.featureKey = featureKey;
+			this.projections = projections;
+		}
+
+		private FeatureValues read( final int[] ids, final int from, final int to )
+		{
+			final FeatureValues values = new FeatureValues( this, to - from );
+			read( ids, from, to, values.values, values.set, 0 );
+			return values;
+		}
+
+		private void read( final int[] ids, final int from, final int to, final double[][] values,
+				final boolean[][] set, final int offset )
+		{
+			final O ref = pool.createRef();
+			try
+			{
+				for ( int r = from; r < to; r++ )
+				{
+					final O o = pool.getObject( ids[ r ], ref );
+					for ( int p = 0; p < projections.size(); p++ )
+					{
+						final FeatureProjection< O > projection = projections.get( p );
+						final boolean isSet = projection.isSet( o );
+						set[ offset + p ][ r - from ] = isSet;
+						if ( isSet )
+							values[ offset + p ][ r - from ] = projection.value( o );
+					}
+				}
+			}
+			finally
+			{
+				pool.releaseRef( ref );
+			}
+		}
+	}
+
+	private final class FeatureValues
+	{
+
+		private final FeatureColumnGroup group;
+
+		private final double[][] values;
+
+		private final boolean[][] set;
+
+		private FeatureValues( final FeatureColumnGroup group, final int size )
+		{
+			this.group = group;
+			this.values = new double[ group.projections.size() ][ size ];
+			this.set = new boolean[ group.projections.size() ][ size ];
+		}
+	}
+
+	/**
+	 * The labels and tag indices of a range of rows.
+	 */
+	private final class LabelsAndTags
+	{
+
+		private final String[] labels;
+
+		private final int[][] tagIndices;
+
+		private LabelsAndTags( final int size )
+		{
+			this.labels = new String[ size ];
+			this.tagIndices = new int[ tagSets.size() ][ size ];
+		}
+
+		private void read( final int[] ids, final int from, final int to )
+		{
+			final List< ObjTagMap< O, Tag > > tagMaps = new ArrayList<>( tagSets.size() );
+			final List< Map< Tag, Integer > > tagIndexMaps = new ArrayList<>( tagSets.size() );
+			for ( final TagSet tagSet : tagSets )
+			{
+				tagMaps.add( tags.tags( tagSet ) );
+				final Map< Tag, Integer > indices = new HashMap<>();
+				final List< Tag > tagList = tagSet.getTags();
+				for ( int t = 0; t < tagList.size(); t++ )
+					indices.put( tagList.get( t ), Integer.valueOf( t ) );
+				tagIndexMaps.add( indices );
+			}
+
+			final O ref = pool.createRef();
+			try
+			{
+				for ( int r = from; r < to; r++ )
+				{
+					final O o = pool.getObject( ids[ r ], ref );
+					labels[ r - from ] = labelGenerator.apply( o );
+					for ( int s = 0; s < tagMaps.size(); s++ )
+					{
+						final Tag tag = tagMaps.get( s ).get( o );
+						final Integer index = tag == null ? null : tagIndexMaps.get( s ).get( tag );
+						tagIndices[ s ][ r - from ] = index == null ? -1 : index.intValue();
+					}
+				}
+			}
+			finally
+			{
+				pool.releaseRef( ref );
+			}
+		}
+	}
+
+	/**
+	 * The values of a block of rows.
+	 */
+	private final class Block
+	{
+
+		private final double[][] values;
+
+		private final boolean[][] set;
+
+		private final boolean[] isInt;
+
+		private final LabelsAndTags labelsAndTags;
+
+		private int from;
+
+		private Block( final int size )
+		{
+			int numColumns = 0;
+			for ( final FeatureColumnGroup group : featureGroups )
+				numColumns += group.projections.size();
+			this.values = new double[ numColumns ][ size ];
+			this.set = new boolean[ numColumns ][ size ];
+			this.isInt = new boolean[ numColumns ];
+			int c = 0;
+			for ( final FeatureColumnGroup group : featureGroups )
+				for ( final FeatureProjection< O > projection : group.projections )
+					isInt[ c++ ] = projection instanceof IntFeatureProjection;
+			this.labelsAndTags = new LabelsAndTags( size );
+		}
+
+		/**
+		 * Reads rows <code>from</code> to <code>to</code> (exclusive), one
+		 * task for the labels and tags, and one per feature.
+		 */
+		private void read( final int[] ids, final int from, final int to, final ExecutorService executor )
+				throws IOException
+		{
+			this.from = from;
+			final List< Callable< Void > > tasks = new ArrayList<>();
+			tasks.add( () -> {
+				labelsAndTags.read( ids, from, to );
+				return null;
+			} );
+			int offset = 0;
+			for ( final FeatureColumnGroup group : featureGroups )
+			{
+				final int groupOffset = offset;
+				tasks.add( () -> {
+					group.read( ids, from, to, values, set, groupOffset );
+					return null;
+				} );
+				offset += group.projections.size();
+			}
+			for ( final Future< Void > future : invokeAll( executor, tasks ) )
+				get( future );
+		}
+
+		/**
+		 * Formats rows <code>from</code> to <code>to</code> (exclusive) of
+		 * the last block read as CSV lines.
+		 */
+		private ByteSink format( final int[] ids, final int from, final int to )
+		{
+			final int numTags = tagSets.stream().mapToInt( ts -> ts.getTags().size() ).sum();
+			final int maxNumbersLength = AsciiFormat.MAX_INT_LENGTH + 1
+					+ values.length * ( AsciiFormat.MAX_DOUBLE_LENGTH + 1 )
+					+ numTags * 2 + 1;
+			final String[] labels = labelsAndTags.labels;
+			final int[][] tagIndices = labelsAndTags.tagIndices;
+			final ByteSink sink = new ByteSink( ( to - from ) * ( 12 * values.length + 2 * numTags + 32 ) );
+			for ( int r = from; r < to; r++ )
+			{
+				final int i = r - this.from;
+				sink.putQuoted( labels[ i ] );
+				sink.ensureCapacity( maxNumbersLength );
+				sink.put( separator );
+				sink.putInt( ids[ r ] );
+				for ( int c = 0; c < values.length; c++ )
+				{
+					sink.put( separator );
+					if ( !set[ c ][ i ] )
+						continue;
+					if ( isInt[ c ] )
+						sink.putInt( ( int ) values[ c ][ i ] );
+					else
+						sink.putDouble( values[ c ][ i ] );
+				}
+				for ( int s = 0; s < tagIndices.length; s++ )
+				{
+					final int index = tagIndices[ s ][ i ];
+					final int size = tagSets.get( s ).getTags().size();
+					for ( int t = 0; t < size; t++ )
+					{
+						sink.put( separator );
+						sink.put( t == index ? '1' : '0' );
+					}
+				}
+				sink.put( '\n' );
+			}
+			return sink;
+		}
+	}
+
+	/*
+	 * Output.
+	 */
+
+	/**
+	 * A growable byte array.
+	 */
+	private static final class ByteSink
+	{
+
+		private byte[] buf;
+
+		private int size;
+
+		private ByteSink( final int capacity )
+		{
+			this.buf = new byte[ Math.max( 16, capacity ) ];
+		}
+
+		private void ensureCapacity( final int extra )
+		{
+			if ( size + extra > buf.length )
+				buf = Arrays.copyOf( buf, Math.max( size + extra, 2 * buf.length ) );
+		}
+
+		private void put( final char c )
+		{
+			ensureCapacity( 1 );
+			buf[ size++ ] = ( byte ) c;
+		}
+
+		private void putInt( final int value )
+		{
+			size = AsciiFormat.format( value, buf, size );
+		}
+
+		private void putDouble( final double value )
+		{
+			size = AsciiFormat.format( value, buf, size );
+		}
+
+		/**
+		 * Writes a quoted text field, doubling quotes, in UTF-8.
+		 */
+		private void putQuoted( final String str )
+		{
+			final String s = str == null ? "" : str;
+			ensureCapacity( 2 + 6 * s.length() );
+			buf[ size++ ] = '"';
+			for ( int i = 0; i < s.length(); i++ )
+			{
+				final char c = s.charAt( i );
+				if ( c >= 0x80 )
+				{
+					// Rare: encode the rest of the string.
+					final byte[] bytes = s.substring( i ).replace( "\"", "\"\"" ).getBytes( StandardCharsets.UTF_8 );
+					ensureCapacity( bytes.length + 1 );
+					System.arraycopy( bytes, 0, buf, size, bytes.length );
+					size += bytes.length;
+					break;
+				}
+				if ( c == '"' )
+					buf[ size++ ] = '"';
+				buf[ size++ ] = ( byte ) c;
+			}
+			buf[ size++ ] = '"';
+		}
+
+		private ByteSink gzip() throws IOException
+		{
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream( size / 4 + 64 );
+			try (final GZIPOutputStream out = new GZIPOutputStream( bytes, 1 << 16 ))
+			{
+				out.write( buf, 0, size );
+			}
+			final ByteSink sink = new ByteSink( 0 );
+			sink.buf = bytes.toByteArray();
+			sink.size = sink.buf.length;
+			return sink;
+		}
+	}
+
+	private static void write( final ByteSink sink, final FileChannel channel ) throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.wrap( sink.buf, 0, sink.size );
+		while ( buffer.hasRemaining() )
+			channel.write( buffer );
+	}
+
+	private static < T > List< Future< T > > invokeAll( final ExecutorService executor,
+			final List< ? extends Callable< T > > tasks ) throws IOException
+	{
+		try
+		{
+			return executor.invokeAll( tasks );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException( "Interrupted while exporting.", e );
+		}
+	}
+
+	private static < T > T get( final Future< T > future ) throws IOException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException( "Interrupted while exporting.", e );
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof IOException )
+				throw ( IOException ) cause;
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new IOException( cause );
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.exporter.table;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.mastodon.collection.RefCollections;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.ReadOnlyGraph;
+import org.mastodon.graph.Vertex;
+import org.mastodon.mamut.io.exporter.table.FeatureTableWriter.Format;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.branch.BranchLink;
+import org.mastodon.mamut.model.branch.BranchSpot;
+import org.mastodon.mamut.model.branch.ModelBranchGraph;
+import org.mastodon.model.branch.BranchGraphTagSetAdapter;
+import org.mastodon.model.tag.ObjTags;
+import org.mastodon.model.tag.TagSetModel;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
+import org.mastodon.util.FeatureUtils;
+
+/**
+ * Exports the spot, link, branch-spot and branch-link tables of a model,
+ * without opening a table view.
+ * <p>
+ * The tables have the same columns as in the table view, and are written with
+ * a {@link FeatureTableWriter}. The model graph read lock is held while
+ * exporting.
+ */
+public class MamutTableExporter
+{
+
+	/**
+	 * Exports the spot, link, branch-spot and branch-link tables of a model, to
+	 * files named after the specified file, as the table view export does: for
+	 * <code>tables.csv</code>, <code>tables-Spot.csv</code>,
+	 * <code>tables-Link.csv</code>, <code>tables-BranchSpot.csv</code> and
+	 * <code>tables-BranchLink.csv</code>. The extension depends on the format.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param file
+	 *            the file the table files are named after.
+	 * @param format
+	 *            the output format.
+	 * @return the files written.
+	 * @throws IOException
+	 *             if a file cannot be written.
+	 */
+	public static List< File > export( final Model model, final File file, final Format format ) throws IOException
+	{
+		final String name = file.getName();
+		final int p = name.indexOf( '.' );
+		final String base = new File( file.getParentFile(), p > 0 ? name.substring( 0, p ) : name ).getPath();
+		final List< File > files = new ArrayList<>( 4 );
+		files.add( exportSpots( model, new File( base + "-Spot" + format.getExtension() ), format ) );
+		files.add( exportLinks( model, new File( base + "-Link" + format.getExtension() ), format ) );
+		files.add( exportBranchSpots( model, new File( base + "-BranchSpot" + format.getExtension() ), format ) );
+		files.add( exportBranchLinks( model, new File( base + "-BranchLink" + format.getExtension() ), format ) );
+		return files;
+	}
+
+	/**
+	 * Exports the spot table of a model.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param file
+	 *            the file to write.
+	 * @param format
+	 *            the output format.
+	 * @return the file written.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public static File exportSpots( final Model model, final File file, final Format format ) throws IOException
+	{
+		final ModelGraph graph = model.getGraph();
+		final TagSetModel< Spot, Link > tagSetModel = model.getTagSetModel();
+		return export( model, graph.vertices(), Spot.class, Spot::getLabel,
+				tagSetModel.getVertexTags(), tagSetModel.getTagSetStructure().getTagSets(), file, format );
+	}
+
+	/**
+	 * Exports the link table of a model.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param file
+	 *            the file to write.
+	 * @param format
+	 *            the output format.
+	 * @return the file written.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public static File exportLinks( final Model model, final File file, final Format format ) throws IOException
+	{
+		final ModelGraph graph = model.getGraph();
+		final TagSetModel< Spot, Link > tagSetModel = model.getTagSetModel();
+		return export( model, graph.edges(), Link.class, edgeLabels( graph, Spot::getLabel ),
+				tagSetModel.getEdgeTags(), tagSetModel.getTagSetStructure().getTagSets(), file, format );
+	}
+
+	/**
+	 * Exports the branch-spot table of a model.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param file
+	 *            the file to write.
+	 * @param format
+	 *            the output format.
+	 * @return the file written.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public static File exportBranchSpots( final Model model, final File file, final Format format ) throws IOException
+	{
+		final ModelBranchGraph branchGraph = model.getBranchGraph();
+		final TagSetModel< BranchSpot, BranchLink > tagSetModel = branchTagSetModel( model );
+		return export( model, branchGraph.vertices(), BranchSpot.class, BranchSpot::getLabel,
+				tagSetModel.getVertexTags(), tagSetModel.getTagSetStructure().getTagSets(), file, format );
+	}
+
+	/**
+	 * Exports the branch-link table of a model.
+	 *
+	 * @param model
+	 *            the model to export.
+	 * @param file
+	 *            the file to write.
+	 * @param format
+	 *            the output format.
+	 * @return the file written.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public static File exportBranchLinks( final Model model, final File file, final Format format ) throws IOException
+	{
+		final ModelBranchGraph branchGraph = model.getBranchGraph();
+		final TagSetModel< BranchSpot, BranchLink > tagSetModel = branchTagSetModel( model );
+		return export( model, branchGraph.edges(), BranchLink.class, edgeLabels( branchGraph, BranchSpot::getLabel ),
+				tagSetModel.getEdgeTags(), tagSetModel.getTagSetStructure().getTagSets(), file, format );
+	}
+
+	private static < O > File export(
+			final Model model,
+			final Collection< O > objects,
+			final Class< O > clazz,
+			final Function< O, String > labelGetter,
+			final ObjTags< O > tags,
+			final List< TagSet > tagSets,
+			final File file,
+			final Format format ) throws IOException
+	{
+		final ReentrantReadWriteLock lock = model.getGraph().getLock();
+		lock.readLock().lock();
+		try
+		{
+			FeatureTableWriter.create( RefCollections.tryGetRefPool( objects ), objects )
+					.labelGetter( labelGetter )
+					.features( FeatureUtils.collectFeatureMap( model.getFeatureModel(), clazz ) )
+					.tags( tags, tagSets )
+					.format( format )
+					.write( file );
+			return file;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Edge labels as in the table view: source and target labels separated by
+	 * an arrow. Not thread-safe.
+	 */
+	private static < V extends Vertex< E >, E extends Edge< V > > Function< E, String > edgeLabels(
+			final ReadOnlyGraph< V, E > graph, final Function< V, String > vertexLabels )
+	{
+		final V ref = graph.vertexRef();
+		return e -> vertexLabels.apply( e.getSource( ref ) ) + " \u2192 " + vertexLabels.apply( e.getTarget( ref ) );
+	}
+
+	private static TagSetModel< BranchSpot, BranchLink > branchTagSetModel( final Model model )
+	{
+		final ModelGraph graph = model.getGraph();
+		return new BranchGraphTagSetAdapter<>( model.getBranchGraph(), graph, graph.getGraphIdBimap(),
+				model.getTagSetModel() );
+	}
+
+	private MamutTableExporter()
+	{}
+}
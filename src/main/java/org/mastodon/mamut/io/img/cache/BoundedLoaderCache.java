@@ -0,0 +1,592 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.img.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.LoaderCache;
+
+/**
+ * A {@link LoaderCache} that keeps strong references to its values, up to a
+ * maximum total size in bytes.
+ * <p>
+ * The size of each value is given by a weigher function. When the total size
+ * exceeds the budget, entries are evicted following a segmented LRU policy:
+ * newly loaded entries enter a <em>probation</em> segment and are promoted to
+ * a <em>protected</em> segment when they are requested again. Eviction takes
+ * the least recently used entries of the probation segment first, so that a
+ * single sweep through many cells (e.g. when scrolling through time) does not
+ * flush the cells that are used repeatedly. The protected segment holds at
+ * most {@value #PROTECTED_FRACTION} of the budget; least recently used
+ * protected entries are demoted back to probation.
+ * <p>
+ * A request only marks its entry as accessed, without locking. Promotion is
+ * applied when the entry reaches the end of its segment during eviction:
+ * accessed entries are moved to the front of the protected segment instead of
+ * being evicted or demoted.
+ * <p>
+ * If another cache sits in front of this one and answers requests itself (like
+ * the {@code WeakRefVolatileCache} of the cell images), it must report these
+ * requests with {@link #touch(Object)}, otherwise the values it serves are not
+ * recognized as being used.
+ * <p>
+ * Concurrent requests of the same key load the value only once. The cache
+ * counts hits, misses and evictions, see {@link #getStatistics()}.
+ *
+ * @param <K>
+ *            key type.
+ * @param <V>
+ *            value type.
+ */
+public class BoundedLoaderCache< K, V > implements LoaderCache< K, V >
+{
+    /**
+     * Fraction of the budget that can be used by the protected segment.
+     */
+    public static final double PROTECTED_FRACTION = 0.8;
+
+    private final ConcurrentHashMap< K, Entry > map = new ConcurrentHashMap<>();
+
+    private final ToLongFunction< ? super V > weigher;
+
+    /**
+     * Guards the segment lists and the byte counts. Not taken on hits.
+     */
+    private final Object lock = new Object();
+
+    private final Segment probation = new Segment();
+
+    private final Segment protectedSegment = new Segment();
+
+    private long maxBytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxBytes
+     *            the maximum total size of the values in the cache, in bytes.
+     * @param weigher
+     *            returns the size of a value in bytes.
+     */
+    public BoundedLoaderCache( final long maxBytes, final ToLongFunction< ? super V > weigher )
+    {
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+    }
+
+    @Override
+    public V getIfPresent( final K key )
+    {
+        final Entry entry = map.get( key );
+        if ( entry == null )
+            return null;
+        final V value = entry.value;
+        if ( value != null )
+            hit( entry );
+        return value;
+    }
+
+    /**
+     * Records a request for the specified key that was answered by a cache in
+     * front of this one, without going through {@link #getIfPresent(Object)}
+     * or {@link #get(Object, CacheLoader)}. Does nothing if the key is not
+     * present.
+     * <p>
+     * If the front cache did consult this cache for the same request (or the
+     * value was loaded by the requesting thread), the request was already
+     * counted and is not counted again.
+     *
+     * @param key
+     *            the requested key.
+     */
+    public void touch( final K key )
+    {
+        final Entry entry = map.get( key );
+        if ( entry == null || entry.value == null )
+            return;
+        entry.accessed = true;
+        if ( entry.countedBy == Thread.currentThread() )
+            entry.countedBy = null;
+        else
+            hits.increment();
+    }
+
+    @Override
+    public V get( final K key, final CacheLoader< ? super K, ? extends V > loader ) throws ExecutionException
+    {
+        while ( true )
+        {
+            final Entry entry = map.computeIfAbsent( key, Entry::new );
+            V value = entry.value;
+            if ( value != null )
+            {
+                hit( entry );
+                return value;
+            }
+
+            synchronized ( entry )
+            {
+                value = entry.value;
+                if ( value != null )
+                {
+                    hit( entry );
+                    return value;
+                }
+                if ( entry.removed )
+                    // Invalidated while we were waiting. Try again.
+                    continue;
+
+                misses.increment();
+                try
+                {
+                    value = loader.get( key );
+                }
+                catch ( final InterruptedException e )
+                {
+                    map.remove( key, entry );
+                    entry.removed = true;
+                    Thread.currentThread().interrupt();
+                    throw new ExecutionException( e );
+                }
+                catch ( final Exception e )
+                {
+                    map.remove( key, entry );
+                    entry.removed = true;
+                    throw new ExecutionException( e );
+                }
+                entry.weight = weigher.applyAsLong( value );
+                entry.countedBy = Thread.currentThread();
+                entry.value = value;
+                insert( entry );
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Does nothing. This cache does not write back values.
+     */
+    @Override
+    public void persist( final K key )
+    {}
+
+    /**
+     * Does nothing. This cache does not write back values.
+     */
+    @Override
+    public void persistIf( final Predicate< K > condition )
+    {}
+
+    /**
+     * Does nothing. This cache does not write back values.
+     */
+    @Override
+    public void persistAll()
+    {}
+
+    @Override
+    public void invalidate( final K key )
+    {
+        final Entry entry = map.remove( key );
+        if ( entry != null )
+            remove( entry );
+    }
+
+    @Override
+    public void invalidateIf( final long parallelismThreshold, final Predicate< K > condition )
+    {
+        final List< K > keys = new ArrayList<>();
+        map.forEachKey( parallelismThreshold, key -> {
+            if ( condition.test( key ) )
+                synchronized ( keys )
+                {
+                    keys.add( key );
+                }
+        } );
+        for ( final K key : keys )
+            invalidate( key );
+    }
+
+    @Override
+    public void invalidateAll( final long parallelismThreshold )
+    {
+        synchronized ( lock )
+        {
+            for ( final Entry entry : map.values() )
+                entry.removed = true;
+            map.clear();
+            probation.clear();
+            protectedSegment.clear();
+        }
+    }
+
+    /**
+     * Returns the maximum total size of the values in the cache, in bytes.
+     *
+     * @return the cache budget in bytes.
+     */
+    public long getMaxBytes()
+    {
+        synchronized ( lock )
+        {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * Sets the maximum total size of the values in the cache, in bytes. If the
+     * cache currently holds more, least recently used entries are evicted
+     * immediately.
+     *
+     * @param maxBytes
+     *            the cache budget in bytes.
+     */
+    public void setMaxBytes( final long maxBytes )
+    {
+        synchronized ( lock )
+        {
+            this.maxBytes = maxBytes;
+            evict();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache counters and size.
+     *
+     * @return the cache statistics.
+     */
+    public Statistics getStatistics()
+    {
+        synchronized ( lock )
+        {
+            return new Statistics(
+                    hits.sum(),
+                    misses.sum(),
+                    evictions.sum(),
+                    probation.size + protectedSegment.size,
+                    probation.bytes + protectedSegment.bytes,
+                    maxBytes );
+        }
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics()
+    {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * Adds a newly loaded entry to the probation segment, unless it was
+     * invalidated while loading.
+     */
+    private void insert( final Entry entry )
+    {
+        synchronized ( lock )
+        {
+            if ( entry.removed || map.get( entry.key ) != entry )
+                return;
+            probation.addFirst( entry );
+            evict();
+        }
+    }
+
+    /**
+     * Counts a hit and marks the entry as accessed. Does not lock.
+     */
+    private void hit( final Entry entry )
+    {
+        hits.increment();
+        entry.accessed = true;
+        entry.countedBy = Thread.currentThread();
+    }
+
+    private void remove( final Entry entry )
+    {
+        synchronized ( lock )
+        {
+            entry.removed = true;
+            if ( entry.segment != null )
+                entry.segment.remove( entry );
+        }
+    }
+
+    /**
+     * Evicts least recently used entries, probation segment first, until the
+     * cache fits into its budget. Entries that were accessed since they were
+     * last moved are promoted to the front of the protected segment instead.
+     * Must be called while holding {@link #lock}.
+     */
+    private void evict()
+    {
+        while ( probation.bytes + protectedSegment.bytes > maxBytes )
+        {
+            final Segment segment = probation.last != null ? probation : protectedSegment;
+            final Entry entry = segment.last;
+            if ( entry == null )
+                return;
+            segment.remove( entry );
+            if ( entry.accessed )
+            {
+                entry.accessed = false;
+                protectedSegment.addFirst( entry );
+                demote();
+                continue;
+            }
+            entry.removed = true;
+            map.remove( entry.key, entry );
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Moves least recently used entries of the protected segment to the
+     * probation segment until the protected segment fits into
+     * {@value #PROTECTED_FRACTION} of the budget. Entries that were accessed
+     * since they were last moved stay protected. Must be called while holding
+     * {@link #lock}.
+     */
+    private void demote()
+    {
+        final long maxProtectedBytes = ( long ) ( PROTECTED_FRACTION * maxBytes );
+        while ( protectedSegment.bytes > maxProtectedBytes && protectedSegment.size > 1 )
+        {
+            final Entry entry = protectedSegment.remove( protectedSegment.last );
+            if ( entry.accessed )
+            {
+                entry.accessed = false;
+                protectedSegment.addFirst( entry );
+            }
+            else
+                probation.addFirst( entry );
+        }
+    }
+
+    private final class Entry
+    {
+        final K key;
+
+        volatile V value;
+
+        long weight;
+
+        /**
+         * The segment this entry is linked into, or {@code null} while it is
+         * loading or after it was removed.
+         */
+        Segment segment;
+
+        Entry prev;
+
+        Entry next;
+
+        /**
+         * Whether this entry was invalidated or evicted.
+         */
+        volatile boolean removed;
+
+        /**
+         * Whether this entry was requested since it was last moved between
+         * segments. Set without locking.
+         */
+        volatile boolean accessed;
+
+        /**
+         * The thread whose request of this entry was counted last, so that a
+         * subsequent {@link #touch(Object)} for the same request is not
+         * counted twice.
+         */
+        volatile Thread countedBy;
+
+        Entry( final K key )
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * A doubly linked list of entries, most recently used first.
+     */
+    private final class Segment
+    {
+        Entry first;
+
+        Entry last;
+
+        int size;
+
+        long bytes;
+
+        void addFirst( final Entry entry )
+        {
+            entry.segment = this;
+            entry.prev = null;
+            entry.next = first;
+            if ( first != null )
+                first.prev = entry;
+            else
+                last = entry;
+            first = entry;
+            ++size;
+            bytes += entry.weight;
+        }
+
+        Entry remove( final Entry entry )
+        {
+            if ( entry.prev != null )
+                entry.prev.next = entry.next;
+            else
+                first = entry.next;
+            if ( entry.next != null )
+                entry.next.prev = entry.prev;
+            else
+                last = entry.prev;
+            entry.prev = null;
+            entry.next = null;
+            entry.segment = null;
+            --size;
+            bytes -= entry.weight;
+            return entry;
+        }
+
+        void clear()
+        {
+            for ( Entry e = first; e != null; )
+            {
+                final Entry next = e.next;
+                e.prev = null;
+                e.next = null;
+                e.segment = null;
+                e = next;
+            }
+            first = null;
+            last = null;
+            size = 0;
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Snapshot of the counters and size of a {@link BoundedLoaderCache}.
+     */
+    public static class Statistics
+    {
+        private final long hits;
+
+        private final long misses;
+
+        private final long evictions;
+
+        private final int numEntries;
+
+        private final long bytes;
+
+        private final long maxBytes;
+
+        Statistics(
+                final long hits,
+                final long misses,
+                final long evictions,
+                final int numEntries,
+                final long bytes,
+                final long maxBytes )
+        {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.numEntries = numEntries;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+        }
+
+        public long getHitCount()
+        {
+            return hits;
+        }
+
+        public long getMissCount()
+        {
+            return misses;
+        }
+
+        public long getEvictionCount()
+        {
+            return evictions;
+        }
+
+        public int getNumEntries()
+        {
+            return numEntries;
+        }
+
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        public long getMaxBytes()
+        {
+            return maxBytes;
+        }
+
+        /**
+         * Returns the fraction of requests that were served from the cache.
+         *
+         * @return the hit rate, or 0 if there were no requests.
+         */
+        public double getHitRate()
+        {
+            final long requests = hits + misses;
+            return requests == 0 ? 0 : ( double ) hits / requests;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format( "%d entries, %.1f / %.1f MB, %d hits, %d misses (hit rate %.1f%%), %d evictions",
+                    numEntries, bytes / 1e6, maxBytes / 1e6, hits, misses, 100 * getHitRate(), evictions );
+        }
+    }
+}
@@ -29,6 +29,7 @@
 package org.mastodon.mamut.io.img.cache;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import bdv.cache.CacheControl;
 import bdv.cache.SharedQueue;
@@ -46,8 +47,10 @@ import net.imglib2.cache.ref.SoftRefLoaderCache;
 import net.imglib2.cache.ref.WeakRefVolatileCache;
 import net.imglib2.cache.util.KeyBimap;
 import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.CreateInvalid;
 import net.imglib2.cache.volatiles.VolatileCache;
 import net.imglib2.img.basictypeaccess.DataAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.img.cell.Cell;
 import net.imglib2.img.cell.CellGrid;
 import net.imglib2.type.NativeType;
@@ -100,7 +103,7 @@ public class MastodonVolatileGlobalCellCache implements CacheControl
         {
             if ( this == other )
                 return true;
-            if ( !( other instanceof VolatileGlobalCellCache.Key ) )
+            if ( !( other instanceof Key ) )
                 return false;
             final Key that = ( Key ) other;
             return ( this.index == that.index ) && ( this.timepoint == that.timepoint ) && ( this.setup == that.setup )
@@ -120,9 +123,25 @@ public class MastodonVolatileGlobalCellCache implements CacheControl
 
     protected final LoaderCache< Key, Cell< ? > > backingCache;
 
+    /**
+     * The {@link #backingCache} if it is bounded, {@code null} otherwise.
+     */
+    private final BoundedLoaderCache< Key, Cell< ? > > boundedCache;
+
+    /**
+     * Default cache budget, as a fraction of the maximum heap size.
+     */
+    public static final double DEFAULT_MAX_CACHE_FRACTION = 0.25;
+
+    /**
+     * Estimated memory overhead of a cached cell besides its data, in bytes.
+     */
+    private static final long CELL_OVERHEAD_BYTES = 128;
+
     /**
      * Create a new global cache with a new fetch queue served by the specified
-     * number of fetcher threads.
+     * number of fetcher threads. The cache uses the
+     * {@link #defaultMaxCacheBytes() default budget}.
      *
      * @param maxNumLevels
      *            the highest occurring mipmap level plus 1.
@@ -131,21 +150,112 @@ public class MastodonVolatileGlobalCellCache implements CacheControl
      */
     public MastodonVolatileGlobalCellCache( final int maxNumLevels, final int numFetcherThreads )
     {
-        queue = new SharedQueue( numFetcherThreads, maxNumLevels );
-        backingCache = new SoftRefLoaderCache<>();
+        this( new SharedQueue( numFetcherThreads, maxNumLevels ) );
     }
 
     /**
      * Create a new global cache with the specified fetch queue. (It is the
      * callers responsibility to create fetcher threads that serve the queue.)
+     * The cache uses the {@link #defaultMaxCacheBytes() default budget}.
      *
      * @param queue
      *            queue to which asynchronous data loading jobs are submitted
      */
     public MastodonVolatileGlobalCellCache( final BlockingFetchQueues< Callable< ? > > queue )
+    {
+        this( queue, defaultMaxCacheBytes() );
+    }
+
+    /**
+     * Create a new global cache with the specified fetch queue and cache
+     * budget. (It is the callers responsibility to create fetcher threads that
+     * serve the queue.)
+     * <p>
+     * If {@code maxCacheBytes > 0}, loaded cells are kept in a
+     * {@link BoundedLoaderCache} that evicts the least recently used cells,
+     * weighted by their size, when the budget is exceeded. Otherwise, cells
+     * are only softly referenced and are dropped by the garbage collector
+     * when memory runs low.
+     *
+     * @param queue
+     *            queue to which asynchronous data loading jobs are submitted
+     * @param maxCacheBytes
+     *            the maximum total size of the cached cells in bytes, or
+     *            {@code 0} to use soft references.
+     */
+    public MastodonVolatileGlobalCellCache( final BlockingFetchQueues< Callable< ? > > queue, final long maxCacheBytes )
     {
         this.queue = queue;
-        backingCache = new SoftRefLoaderCache<>();
+        if ( maxCacheBytes > 0 )
+        {
+            boundedCache = new BoundedLoaderCache<>( maxCacheBytes, MastodonVolatileGlobalCellCache::sizeInBytes );
+            backingCache = boundedCache;
+        }
+        else
+        {
+            boundedCache = null;
+            backingCache = new SoftRefLoaderCache<>();
+        }
+    }
+
+    /**
+     * Returns the default cache budget, that is
+     * {@value #DEFAULT_MAX_CACHE_FRACTION} times the maximum heap size.
+     *
+     * @return the default cache budget in bytes.
+     */
+    public static long defaultMaxCacheBytes()
+    {
+        return ( long ) ( DEFAULT_MAX_CACHE_FRACTION * Runtime.getRuntime().maxMemory() );
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters and the size of this cache.
+     *
+     * @return the cache statistics, or {@code null} if this cache uses soft
+     *         references.
+     */
+    public BoundedLoaderCache.Statistics getStatistics()
+    {
+        return boundedCache == null ? null : boundedCache.getStatistics();
+    }
+
+    /**
+     * Sets the maximum total size of the cached cells. Has no effect if this
+     * cache uses soft references.
+     *
+     * @param maxCacheBytes
+     *            the cache budget in bytes.
+     */
+    public void setMaxCacheBytes( final long maxCacheBytes )
+    {
+        if ( boundedCache != null )
+            boundedCache.setMaxBytes( maxCacheBytes );
+    }
+
+    /**
+     * Estimates the memory used by a cell.
+     */
+    static long sizeInBytes( final Cell< ? > cell )
+    {
+        final Object data = cell.getData();
+        if ( data instanceof ArrayDataAccess )
+        {
+            final Object array = ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray();
+            final long length = ( ( ArrayDataAccess< ? > ) data ).getArrayLength();
+            final long bytesPerElement;
+            if ( array instanceof byte[] || array instanceof boolean[] )
+                bytesPerElement = 1;
+            else if ( array instanceof short[] || array instanceof char[] )
+                bytesPerElement = 2;
+            else if ( array instanceof long[] || array instanceof double[] )
+                bytesPerElement = 8;
+            else
+                bytesPerElement = 4;
+            return CELL_OVERHEAD_BYTES + length * bytesPerElement;
+        }
+        // Unknown access type: assume 2 bytes per pixel.
+        return CELL_OVERHEAD_BYTES + 2 * cell.size();
     }
 
     /**
@@ -263,11 +373,64 @@ public class MastodonVolatileGlobalCellCache implements CacheControl
                 ? CreateInvalidVolatileCell.get( grid, type, false )
                 : new CreateInvalidVolatileCell<>( grid, type.getEntitiesPerPixel(), emptyArrayCreator );
 
-        final VolatileCache< Long, Cell< ? > > vcache = new WeakRefVolatileCache<>( cache, queue, createInvalid );
+        final VolatileCache< Long, Cell< ? > > vcache = ( boundedCache == null )
+                ? new WeakRefVolatileCache<>( cache, queue, createInvalid )
+                : new TouchingVolatileCache( cache, queue, createInvalid, boundedCache, timepoint, setup, level );
 
 		@SuppressWarnings( { "unchecked", "rawtypes" } )
 		final VolatileCachedCellImg< T, A > img = new VolatileCachedCellImg<>( grid, type, cacheHints, ( VolatileCache ) vcache );
 
         return img;
     }
+
+    /**
+     * A {@link WeakRefVolatileCache} that reports the requests it answers
+     * itself to the {@link BoundedLoaderCache} behind it. Otherwise cells that
+     * are in use would never be seen as requested again by the bounded cache,
+     * and would be evicted first-in first-out.
+     */
+    private static class TouchingVolatileCache extends WeakRefVolatileCache< Long, Cell< ? > >
+    {
+        private final BoundedLoaderCache< Key, Cell< ? > > boundedCache;
+
+        private final int timepoint;
+
+        private final int setup;
+
+        private final int level;
+
+        TouchingVolatileCache(
+                final Cache< Long, Cell< ? > > backingCache,
+                final BlockingFetchQueues< Callable< ? > > fetchQueue,
+                final CreateInvalid< ? super Long, ? extends Cell< ? > > createInvalid,
+                final BoundedLoaderCache< Key, Cell< ? > > boundedCache,
+                final int timepoint,
+                final int setup,
+                final int level )
+        {
+            super( backingCache, fetchQueue, createInvalid );
+            this.boundedCache = boundedCache;
+            this.timepoint = timepoint;
+            this.setup = setup;
+            this.level = level;
+        }
+
+        @Override
+        public Cell< ? > getIfPresent( final Long key, final CacheHints hints ) throws ExecutionException
+        {
+            final Cell< ? > cell = super.getIfPresent( key, hints );
+            if ( cell != null )
+                boundedCache.touch( new Key( timepoint, setup, level, key ) );
+            return cell;
+        }
+
+        @Override
+        public Cell< ? > get( final Long key, final CacheHints hints ) throws ExecutionException
+        {
+            final Cell< ? > cell = super.get( key, hints );
+            if ( cell != null )
+                boundedCache.touch( new Key( timepoint, setup, level, key ) );
+            return cell;
+        }
+    }
 }
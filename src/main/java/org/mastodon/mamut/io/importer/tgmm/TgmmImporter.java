@@ -28,21 +28,31 @@
  */
 package org.mastodon.mamut.io.importer.tgmm;
 
-import static mpicbg.spim.data.XmlHelpers.getDoubleArrayAttribute;
-import static mpicbg.spim.data.XmlHelpers.getDoubleAttribute;
-import static mpicbg.spim.data.XmlHelpers.getIntAttribute;
-
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
 import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
-import org.jdom2.Document;
-import org.jdom2.Element;
 import org.jdom2.JDOMException;
-import org.jdom2.input.SAXBuilder;
 import org.mastodon.collection.IntRefMap;
 import org.mastodon.collection.RefMaps;
 import org.mastodon.graph.Graph;
@@ -51,21 +61,34 @@ import org.mastodon.mamut.io.project.MamutProject;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.Spot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import Jama.Matrix;
 import bdv.spimdata.SpimDataMinimal;
 import bdv.spimdata.XmlIoSpimDataMinimal;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
 import mpicbg.spim.data.SpimDataException;
 import mpicbg.spim.data.generic.AbstractSpimData;
 import mpicbg.spim.data.registration.ViewRegistrations;
 import mpicbg.spim.data.sequence.TimePoint;
 import mpicbg.spim.data.sequence.TimePoints;
 import mpicbg.spim.data.sequence.TimePointsPattern;
-import net.imglib2.realtransform.AffineTransform3D;
-import net.imglib2.util.LinAlgHelpers;
 
+/**
+ * Imports the XML files generated by the TGMM algorithm in a model.
+ * <p>
+ * The TGMM files, one per time-point, are parsed and converted to the global
+ * coordinate system in parallel. The spots and links are then added to the
+ * graph on the calling thread, in time-point order, because a time-point
+ * only needs the spots of the previous one to link parents.
+ */
 public class TgmmImporter extends ModelImporter
 {
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final String GMM_TAG = "GaussianMixtureModel";
+
 	/**
 	 * Import a set of XML file generated by the TGMM algorithm in a model.
 	 *
@@ -153,55 +176,145 @@ public class TgmmImporter extends ModelImporter
 		super( model );
 		startImport();
 
-		final Graph< Spot, Link > graph = model.getGraph();
-		final Spot spot = graph.vertexRef();
-		final Spot parent = graph.vertexRef();
-		final Spot tmp = graph.vertexRef();
-		final Link edge = graph.edgeRef();
-
-		IntRefMap< Spot > idToSpot = RefMaps.createIntRefMap( graph.vertices(), -1, 2000 );
-		IntRefMap< Spot > previousIdToSpot = RefMaps.createIntRefMap( graph.vertices(), -1, 2000 );
-
-		for ( final TimePoint timepoint : timepointsToRead.getTimePointsOrdered() )
+		final int numThreads = Math.max( 1, Runtime.getRuntime().availableProcessors() );
+		final ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+		final GraphWriter graphWriter = new GraphWriter( model.getGraph(), useThisCovariance );
+		try
 		{
-			final int timepointId = timepoint.getId();
-			final int timepointIndex = timepointToIndex.get( timepoint );
-			final AffineTransform3D transform =
-					viewRegistrations.getViewRegistration( timepointId, setupID ).getModel();
-			final String tgmmFileName = String.format( tgmmFileNameFormat, timepointId );
-			System.out.println( tgmmFileName );
-
-			final SAXBuilder sax = new SAXBuilder();
-			final Document doc = sax.build( tgmmFileName );
-			final Element root = doc.getRootElement();
-
-			final List< Element > gaussianMixtureModels = root.getChildren( "GaussianMixtureModel" );
-			for ( final Element elem : gaussianMixtureModels )
+			/*
+			 * Parse and convert at most 2 files per thread ahead of the graph
+			 * writer, to bound the memory used by parsed time-points.
+			 */
+			final int maxPending = 2 * numThreads;
+			final ArrayDeque< Future< ParsedTimepoint > > pending = new ArrayDeque<>();
+			final Iterator< TimePoint > it = timepointsToRead.getTimePointsOrdered().iterator();
+			while ( it.hasNext() || !pending.isEmpty() )
 			{
-				try
+				while ( it.hasNext() && pending.size() < maxPending )
 				{
-					final double nu = getDoubleAttribute( elem, "nu" );
-					final double[] m = getDoubleArrayAttribute( elem, "m" );
-					final double[] W = getDoubleArrayAttribute( elem, "W" );
-					final int id = getIntAttribute( elem, "id" );
-					//					final int lineage = getIntAttribute( elem, "lineage" );
-					final int parentId = getIntAttribute( elem, "parent" );
-
-					final double[][] S = ( useThisCovariance != null ) ? useThisCovariance
-							: getCovariance( transform, nu / ( nSigmas * nSigmas ), W );
-					graph.addVertex( spot ).init(
-							timepointIndex,
-							getPosition( transform, m ),
-							S );
-					idToSpot.put( id, spot, tmp );
-
-					if ( ( parentId >= 0 ) && ( previousIdToSpot.get( parentId, parent ) != null ) )
-						graph.addEdge( parent, spot, edge ).init();
+					final TimePoint timepoint = it.next();
+					final int timepointId = timepoint.getId();
+					final int timepointIndex = timepointToIndex.get( timepoint );
+					final double[] transform = viewRegistrations
+							.getViewRegistration( timepointId, setupID )
+							.getModel()
+							.getRowPackedCopy();
+					final String tgmmFileName = String.format( tgmmFileNameFormat, timepointId );
+					final boolean convertCovariances = useThisCovariance == null;
+					pending.add( executor.submit( () -> parse( tgmmFileName, timepointIndex, transform,
+							nSigmas, convertCovariances ) ) );
 				}
-				catch ( final NumberFormatException e )
+				graphWriter.add( get( pending.remove() ) );
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+			graphWriter.releaseRefs();
+			finishImport();
+		}
+	}
+
+	/**
+	 * Waits for a parsed time-point and rethrows the parsing errors.
+	 */
+	private static ParsedTimepoint get( final Future< ParsedTimepoint > future ) throws JDOMException, IOException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			final InterruptedIOException ie = new InterruptedIOException( "TGMM import interrupted." );
+			ie.initCause( e );
+			throw ie;
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof IOException )
+				throw ( IOException ) cause;
+			if ( cause instanceof XMLStreamException )
+				throw new JDOMException( cause.getMessage(), cause );
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new IOException( cause );
+		}
+	}
+
+	/**
+	 * Adds parsed time-points to the graph, in time-point order.
+	 */
+	private static final class GraphWriter
+	{
+		private final Graph< Spot, Link > graph;
+
+		private final double[][] useThisCovariance;
+
+		private final Spot spot;
+
+		private final Spot parent;
+
+		private final Spot tmp;
+
+		private final Link edge;
+
+		private final double[] pos = new double[ 3 ];
+
+		private final double[][] cov = new double[ 3 ][ 3 ];
+
+		private IntRefMap< Spot > idToSpot;
+
+		private IntRefMap< Spot > previousIdToSpot;
+
+		GraphWriter( final Graph< Spot, Link > graph, final double[][] useThisCovariance )
+		{
+			this.graph = graph;
+			this.useThisCovariance = useThisCovariance;
+			spot = graph.vertexRef();
+			parent = graph.vertexRef();
+			tmp = graph.vertexRef();
+			edge = graph.edgeRef();
+			idToSpot = RefMaps.createIntRefMap( graph.vertices(), -1, 2000 );
+			previousIdToSpot = RefMaps.createIntRefMap( graph.vertices(), -1, 2000 );
+		}
+
+		void add( final ParsedTimepoint tp )
+		{
+			logger.debug( "Importing {}", tp.fileName );
+			for ( final String message : tp.ignored )
+				logger.warn( "{}: {}", tp.fileName, message );
+			if ( !tp.singular.isEmpty() )
+				logger.warn( "Skipped {} {}s with a singular precision matrix in {}, with ids: {}",
+						tp.singular.size(), GMM_TAG, tp.fileName, tp.singular );
+
+			final int size = tp.ids.size();
+			for ( int i = 0; i < size; i++ )
+			{
+				for ( int d = 0; d < 3; d++ )
+					pos[ d ] = tp.positions.get( 3 * i + d );
+
+				final double[][] S;
+				if ( useThisCovariance != null )
+					S = useThisCovariance;
+				else
 				{
-					System.out.println( "- Ignoring " + elem + ": " + e.getMessage() );
+					for ( int r = 0; r < 3; r++ )
+						for ( int c = 0; c < 3; c++ )
+							cov[ r ][ c ] = tp.covariances.get( 9 * i + 3 * r + c );
+					S = cov;
 				}
+
+				graph.addVertex( spot ).init( tp.timepointIndex, pos, S );
+				idToSpot.put( tp.ids.get( i ), spot, tmp );
+
+				final int parentId = tp.parentIds.get( i );
+				if ( ( parentId >= 0 ) && ( previousIdToSpot.get( parentId, parent ) != null ) )
+					graph.addEdge( parent, spot, edge ).init();
 			}
 
 			previousIdToSpot.clear();
@@ -210,40 +323,293 @@ public class TgmmImporter extends ModelImporter
 			idToSpot = m;
 		}
 
-		graph.releaseRef( spot );
-		graph.releaseRef( parent );
-		graph.releaseRef( tmp );
-		graph.releaseRef( edge );
+		void releaseRefs()
+		{
+			graph.releaseRef( spot );
+			graph.releaseRef( parent );
+			graph.releaseRef( tmp );
+			graph.releaseRef( edge );
+		}
+	}
+
+	/**
+	 * The Gaussian mixture models of one TGMM file, converted to the global
+	 * coordinate system and stored in flat arrays.
+	 */
+	private static final class ParsedTimepoint
+	{
+		final String fileName;
+
+		final int timepointIndex;
+
+		final TIntArrayList ids = new TIntArrayList();
+
+		final TIntArrayList parentIds = new TIntArrayList();
+
+		/**
+		 * 3 values per Gaussian mixture model.
+		 */
+		final TDoubleArrayList positions = new TDoubleArrayList();
+
+		/**
+		 * 9 values per Gaussian mixture model, row-major. Empty if the
+		 * covariances are not converted.
+		 */
+		final TDoubleArrayList covariances = new TDoubleArrayList();
 
-		finishImport();
+		/**
+		 * Messages for the Gaussian mixture models that could not be read.
+		 */
+		final List< String > ignored = new ArrayList<>();
+
+		/**
+		 * Ids of the Gaussian mixture models skipped because their precision
+		 * matrix is singular.
+		 */
+		final TIntArrayList singular = new TIntArrayList();
+
+		ParsedTimepoint( final String fileName, final int timepointIndex )
+		{
+			this.fileName = fileName;
+			this.timepointIndex = timepointIndex;
+		}
+	}
+
+	/**
+	 * Reads the Gaussian mixture models of a TGMM file with a streaming
+	 * parser, and converts them to the global coordinate system.
+	 *
+	 * @param fileName
+	 *            the TGMM file.
+	 * @param timepointIndex
+	 *            the index of the time-point of this file.
+	 * @param transform
+	 *            the row-packed affine transform to the global coordinate
+	 *            system.
+	 * @param nSigmas
+	 *            the number of sigmas to convert a TGMM probability into
+	 *            ellipsoids semi-axis lengths.
+	 * @param convertCovariances
+	 *            whether to compute the covariances from the TGMM precision
+	 *            matrices.
+	 */
+	private static ParsedTimepoint parse(
+			final String fileName,
+			final int timepointIndex,
+			final double[] transform,
+			final double nSigmas,
+			final boolean convertCovariances )
+			throws IOException, XMLStreamException
+	{
+		final ParsedTimepoint tp = new ParsedTimepoint( fileName, timepointIndex );
+		final double[] m = new double[ 3 ];
+		final double[] W = new double[ 9 ];
+		final double[] out = new double[ 9 ];
+
+		try (final InputStream is = new BufferedInputStream( new FileInputStream( fileName ) ))
+		{
+			final XMLStreamReader reader = createXMLStreamReader( is );
+			try
+			{
+				int depth = 0;
+				while ( reader.hasNext() )
+				{
+					final int event = reader.next();
+					if ( event == XMLStreamConstants.END_ELEMENT )
+						depth--;
+					else if ( event == XMLStreamConstants.START_ELEMENT )
+					{
+						depth++;
+						if ( depth == 2 && GMM_TAG.equals( reader.getLocalName() ) )
+							readGmm( reader, tp, transform, nSigmas, convertCovariances, m, W, out );
+					}
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		return tp;
 	}
 
-	private static double[][] getCovariance( final AffineTransform3D transform, final double nu, final double[] W )
+	private static void readGmm(
+			final XMLStreamReader reader,
+			final ParsedTimepoint tp,
+			final double[] transform,
+			final double nSigmas,
+			final boolean convertCovariances,
+			final double[] m,
+			final double[] W,
+			final double[] out )
 	{
-		final double[] wtmp = new double[ 9 ];
-		LinAlgHelpers.scale( W, nu, wtmp );
+		String nuStr = null;
+		String mStr = null;
+		String wStr = null;
+		String idStr = null;
+		String parentStr = null;
+		final int n = reader.getAttributeCount();
+		for ( int i = 0; i < n; i++ )
+		{
+			switch ( reader.getAttributeLocalName( i ) )
+			{
+			case "nu":
+				nuStr = reader.getAttributeValue( i );
+				break;
+			case "m":
+				mStr = reader.getAttributeValue( i );
+				break;
+			case "W":
+				wStr = reader.getAttributeValue( i );
+				break;
+			case "id":
+				idStr = reader.getAttributeValue( i );
+				break;
+			case "parent":
+				parentStr = reader.getAttributeValue( i );
+				break;
+			}
+		}
 
-		final Matrix precMat = new Matrix( wtmp, 3 );
-		final Matrix covMat = precMat.inverse();
-		final double[][] S = covMat.getArray();
+		final int id;
+		final int parentId;
+		try
+		{
+			final double nu = parseDouble( nuStr, "nu" );
+			parseDoubles( mStr, "m", m );
+			parseDoubles( wStr, "W", W );
+			id = parseInt( idStr, "id" );
+			parentId = parseInt( parentStr, "parent" );
+
+			if ( convertCovariances && !getCovariance( transform, nu / ( nSigmas * nSigmas ), W, out ) )
+			{
+				tp.singular.add( id );
+				return;
+			}
+		}
+		catch ( final NumberFormatException e )
+		{
+			tp.ignored.add( "Ignoring " + GMM_TAG + " " + idStr + ": " + e.getMessage() );
+			return;
+		}
+
+		tp.ids.add( id );
+		tp.parentIds.add( parentId );
+		for ( int r = 0; r < 3; r++ )
+			tp.positions.add( transform[ 4 * r ] * m[ 0 ]
+					+ transform[ 4 * r + 1 ] * m[ 1 ]
+					+ transform[ 4 * r + 2 ] * m[ 2 ]
+					+ transform[ 4 * r + 3 ] );
+		if ( convertCovariances )
+			tp.covariances.add( out );
+	}
+
+	/**
+	 * Computes the covariance {@code T (nu W)^-1 T^T} of a TGMM Gaussian
+	 * mixture model in the global coordinate system, where {@code T} is the
+	 * linear part of the transform.
+	 *
+	 * @param transform
+	 *            the row-packed affine transform.
+	 * @param nu
+	 *            the scale of the precision matrix.
+	 * @param W
+	 *            the row-major precision matrix.
+	 * @param out
+	 *            the row-major covariance matrix to write.
+	 * @return {@code false} if the precision matrix is singular.
+	 */
+	static boolean getCovariance( final double[] transform, final double nu, final double[] W, final double[] out )
+	{
+		final double a = nu * W[ 0 ], b = nu * W[ 1 ], c = nu * W[ 2 ];
+		final double d = nu * W[ 3 ], e = nu * W[ 4 ], f = nu * W[ 5 ];
+		final double g = nu * W[ 6 ], h = nu * W[ 7 ], k = nu * W[ 8 ];
+
+		// Cofactors.
+		final double A = e * k - f * h;
+		final double B = f * g - d * k;
+		final double C = d * h - e * g;
+		final double det = a * A + b * B + c * C;
+		if ( det == 0 || !Double.isFinite( det ) )
+			return false;
+		final double s = 1. / det;
+
+		// Inverse = adjugate / det.
+		final double s00 = s * A;
+		final double s01 = s * ( c * h - b * k );
+		final double s02 = s * ( b * f - c * e );
+		final double s10 = s * B;
+		final double s11 = s * ( a * k - c * g );
+		final double s12 = s * ( c * d - a * f );
+		final double s20 = s * C;
+		final double s21 = s * ( b * g - a * h );
+		final double s22 = s * ( a * e - b * d );
+
+		// TS = T * S, then out = TS * T^T.
+		for ( int r = 0; r < 3; r++ )
+		{
+			final double t0 = transform[ 4 * r ];
+			final double t1 = transform[ 4 * r + 1 ];
+			final double t2 = transform[ 4 * r + 2 ];
+			final double ts0 = t0 * s00 + t1 * s10 + t2 * s20;
+			final double ts1 = t0 * s01 + t1 * s11 + t2 * s21;
+			final double ts2 = t0 * s02 + t1 * s12 + t2 * s22;
+			for ( int col = 0; col < 3; col++ )
+				out[ 3 * r + col ] = ts0 * transform[ 4 * col ]
+						+ ts1 * transform[ 4 * col + 1 ]
+						+ ts2 * transform[ 4 * col + 2 ];
+		}
+		return true;
+	}
 
-		final double[][] T = new double[ 3 ][ 3 ];
-		for ( int r = 0; r < 3; ++r )
-			for ( int c = 0; c < 3; ++c )
-				T[ r ][ c ] = transform.get( r, c );
+	private static double parseDouble( final String str, final String name )
+	{
+		if ( str == null )
+			throw new NumberFormatException( "Missing attribute " + name + "." );
+		return Double.parseDouble( str.trim() );
+	}
 
-		final double[][] TS = new double[ 3 ][ 3 ];
-		LinAlgHelpers.mult( T, S, TS );
-		LinAlgHelpers.multABT( TS, T, S );
+	private static int parseInt( final String str, final String name )
+	{
+		if ( str == null )
+			throw new NumberFormatException( "Missing attribute " + name + "." );
+		return Integer.parseInt( str.trim() );
+	}
 
-		return S;
+	/**
+	 * Parses exactly {@code out.length} white-space separated doubles.
+	 */
+	private static void parseDoubles( final String str, final String name, final double[] out )
+	{
+		if ( str == null )
+			throw new NumberFormatException( "Missing attribute " + name + "." );
+		final int length = str.length();
+		int count = 0;
+		int i = 0;
+		while ( true )
+		{
+			while ( i < length && Character.isWhitespace( str.charAt( i ) ) )
+				i++;
+			if ( i >= length )
+				break;
+			final int start = i;
+			while ( i < length && !Character.isWhitespace( str.charAt( i ) ) )
+				i++;
+			if ( count >= out.length )
+				throw new NumberFormatException( "Too many values in attribute " + name + "." );
+			out[ count++ ] = Double.parseDouble( str.substring( start, i ) );
+		}
+		if ( count != out.length )
+			throw new NumberFormatException( "Expected " + out.length + " values in attribute " + name
+					+ ", found " + count + "." );
 	}
 
-	private static double[] getPosition( final AffineTransform3D transform, final double[] m )
+	private static XMLStreamReader createXMLStreamReader( final InputStream is ) throws XMLStreamException
 	{
-		final double[] pos = new double[ 3 ];
-		transform.apply( m, pos );
-		return pos;
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+		factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+		return factory.createXMLStreamReader( is );
 	}
 
 	public static Map< TimePoint, Integer > getTimepointToIndex( final AbstractSpimData< ? > spimData )
@@ -269,22 +635,20 @@ public class TgmmImporter extends ModelImporter
 		final String target = "/Volumes/Data/mamutproject";
 		final TimePoints timepoints = new TimePointsPattern( "1-528" );
 
-		System.out.println( "Started reading TGMM files." );
-		System.out.println( " - TGMM files:\t\t" + tgmmFiles );
-		System.out.println( " - SPIM data file:\t" + bdvFile );
-		System.out.println( " - Setup ID:\t\t" + setupID );
-		System.out.println( " - Time-points to import:\t" + timepoints );
-		System.out.println( " - Save to:\t\t" + target );
+		logger.info( "Started reading TGMM files." );
+		logger.info( " - TGMM files: {}", tgmmFiles );
+		logger.info( " - SPIM data file: {}", bdvFile );
+		logger.info( " - Setup ID: {}", setupID );
+		logger.info( " - Time-points to import: {}", timepoints );
+		logger.info( " - Save to: {}", target );
 
 		final long start = System.currentTimeMillis();
 
-		System.out.print( "\nReading view registrations." );
+		logger.info( "Reading view registrations." );
 		final SpimDataMinimal spimData = new XmlIoSpimDataMinimal().load( bdvFile );
 		final Map< TimePoint, Integer > timepointToIndex = getTimepointToIndex( spimData );
 		final ViewRegistrations viewRegistrations = spimData.getViewRegistrations();
-		System.out.println( " Done." );
-
-		System.out.println( "Reading the model." );
+		logger.info( "Reading the model." );
 		final String timeUnits = "frame";
 		final String spaceUnits;
 		if ( spimData.getSequenceDescription().getViewSetupsOrdered().isEmpty() )
@@ -294,15 +658,15 @@ public class TgmmImporter extends ModelImporter
 		final Model model = new Model( spaceUnits, timeUnits );
 		read( tgmmFiles, timepoints, timepointToIndex, viewRegistrations, setupID, 2, model );
 		final long end = System.currentTimeMillis();
-		System.out.println( "Done  in " + ( end - start ) / 1000d + " s." );
+		logger.info( "Done in {} s.", ( end - start ) / 1000d );
 
-		System.out.println( "\nExporting to " + target );
+		logger.info( "Exporting to {}", target );
 
 		final MamutProject project = new MamutProject( new File( target ), new File( bdvFile ) );
 		final MamutProject.ProjectWriter writer = project.openForWriting();
 		model.saveRaw( writer );
 		writer.close();
 		final long end2 = System.currentTimeMillis();
-		System.out.println( "Exporting done in " + ( end2 - end ) / 1000d + " s." );
+		logger.info( "Exporting done in {} s.", ( end2 - end ) / 1000d );
 	}
 }
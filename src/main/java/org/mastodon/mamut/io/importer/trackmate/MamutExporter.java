@@ -97,9 +97,11 @@ import static org.mastodon.mamut.io.importer.trackmate.TrackMateXMLKeys.VISIBILI
 import static org.mastodon.mamut.io.importer.trackmate.TrackMateXMLKeys.VOXEL_DEPTH_ATTRIBUTE;
 import static org.mastodon.mamut.io.importer.trackmate.TrackMateXMLKeys.WIDTH_ATTRIBUTE;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -109,13 +111,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.jdom2.Attribute;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
-import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
 import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefList;
 import org.mastodon.collection.RefSet;
@@ -131,6 +135,7 @@ import org.mastodon.graph.algorithm.RootFinder;
 import org.mastodon.graph.algorithm.traversal.DepthFirstSearch;
 import org.mastodon.graph.algorithm.traversal.GraphSearch.SearchDirection;
 import org.mastodon.graph.algorithm.traversal.SearchListener;
+import org.mastodon.mamut.io.importer.trackmate.CommonTrackMateFeatureDeclarations.CommonTrackMateFeatureDeclaration;
 import org.mastodon.mamut.io.project.MamutProject;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
@@ -154,12 +159,20 @@ import mpicbg.spim.data.sequence.XmlIoTimePoints;
 public class MamutExporter
 {
 
+	/**
+	 * Size of the buffer between the XML writer and the file.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Indentation used for each nesting level in the output XML.
+	 */
+	private static final String INDENT = "  ";
+
 	private final Model model;
 
 	private final MamutProject project;
 
-	private final Element root;
-
 	/**
 	 * Used to retrieve equivalent radius.
 	 */
@@ -174,12 +187,37 @@ public class MamutExporter
 
 	private final List< ExportFeatureProjection< Link > > linkFeatureProjections;
 
+	/**
+	 * Attribute names under which the {@link #spotFeatureProjections} are
+	 * written in spot elements. {@code null} for projections that are not
+	 * written.
+	 */
+	private final String[] spotAttributeNames;
+
+	/**
+	 * Attribute names under which the {@link #linkFeatureProjections} are
+	 * written in edge elements. {@code null} for projections that are not
+	 * written.
+	 */
+	private final String[] linkAttributeNames;
+
+	private XMLStreamWriter writer;
+
+	/**
+	 * Current nesting level in the output XML.
+	 */
+	private int depth;
+
+	/**
+	 * Whether the last thing written was a start tag or text, in which case
+	 * the next end tag is written on the same line.
+	 */
+	private boolean inline;
+
 	private MamutExporter( final Model model, final MamutProject project )
 	{
 		this.model = model;
 		this.project = project;
-		this.root = new Element( TRACKMATE_TAG );
-		root.setAttribute( VERSION_ATTRIBUTE, "7.0.4" );
 		this.eig = new JamaEigenvalueDecomposition( 3 );
 		this.cov = new double[ 3 ][ 3 ];
 
@@ -187,38 +225,46 @@ public class MamutExporter
 				getExportFeatureProjections( model.getFeatureModel(), Spot.class, TrackMateImportedSpotFeatures.class );
 		linkFeatureProjections =
 				getExportFeatureProjections( model.getFeatureModel(), Link.class, TrackMateImportedLinkFeatures.class );
+		spotAttributeNames = exportAttributeNames( spotFeatureProjections,
+				CommonTrackMateFeatureDeclarations.redundantSpotProjectionKeys, IMPORTED_SPOT_BUILTIN_FEATURES );
+		linkAttributeNames = exportAttributeNames( linkFeatureProjections,
+				CommonTrackMateFeatureDeclarations.redundantLinkProjectionKeys, IMPORTED_LINK_BUILTIN_FEATURES );
 	}
 
-	private void write( final File file ) throws IOException
+	/**
+	 * Writes the TrackMate document to the specified writer. The model is
+	 * written while it is traversed, without building the document in memory.
+	 */
+	private void write( final XMLStreamWriter writer ) throws XMLStreamException
 	{
-		try (FileOutputStream fos = new FileOutputStream( file ))
-		{
-			final Document document = new Document( root );
-			final XMLOutputter outputter = new XMLOutputter( Format.getPrettyFormat() );
-			outputter.output( document, fos );
-		}
+		this.writer = writer;
+		this.depth = 0;
+		writer.writeStartDocument( "UTF-8", "1.0" );
+		startElement( TRACKMATE_TAG );
+		writer.writeAttribute( VERSION_ATTRIBUTE, "7.0.4" );
+		writeModel();
+		writeElement( settingsToXml() );
+		final Element guiStateElement = guiStateToXml();
+		if ( guiStateElement != null )
+			writeElement( guiStateElement );
+		endElement();
+		writer.writeCharacters( "\n" );
+		writer.writeEndDocument();
+		writer.flush();
 	}
 
-	private void appendModel()
+	private void writeModel() throws XMLStreamException
 	{
-		final Element modelElement = new Element( MODEL_TAG );
-		modelElement.setAttribute( SPATIAL_UNITS_ATTRIBUTE, model.getSpaceUnits() );
-		modelElement.setAttribute( TIME_UNITS_ATTRIBUTE, model.getTimeUnits() );
-
-		final Element featureDeclarationElement = featuresDeclarationToXml();
-		modelElement.addContent( featureDeclarationElement );
-
-		final Element spotElement = spotCollectionToXml();
-		modelElement.addContent( spotElement );
-
-		final Element[] tracksElements = trackCollectionToXml();
-		for ( final Element element : tracksElements )
-			modelElement.addContent( element );
-
-		root.addContent( modelElement );
+		startElement( MODEL_TAG );
+		writer.writeAttribute( SPATIAL_UNITS_ATTRIBUTE, model.getSpaceUnits() );
+		writer.writeAttribute( TIME_UNITS_ATTRIBUTE, model.getTimeUnits() );
+		writeFeaturesDeclaration();
+		writeSpotCollection();
+		writeTrackCollection();
+		endElement();
 	}
 
-	private void appendSettings()
+	private Element settingsToXml()
 	{
 		final Element settingsElement = new Element( SETTINGS_TAG );
 
@@ -237,14 +283,17 @@ public class MamutExporter
 		final Element analyzerCollection = analyzerCollectionToXml();
 		settingsElement.addContent( analyzerCollection );
 
-		root.addContent( settingsElement );
+		return settingsElement;
 	}
 
 	/**
 	 * Try to locates a .settings file for the bdv file and import the content
 	 * that MaMuT can recognize (setup assignments and bookmarks).
+	 *
+	 * @return the GUI state element, or {@code null} if there is no readable
+	 *         settings file.
 	 */
-	private void appendGuiState()
+	private Element guiStateToXml()
 	{
 		final String fs = project.getDatasetXmlFile().getAbsolutePath();
 		final int ixml = fs.lastIndexOf( ".xml" );
@@ -262,13 +311,14 @@ public class MamutExporter
 				guiStateElement.addContent( setupAssignmentsElement );
 				final Element bookmarksElement = root.getChild( BOOKMARKS_TAG ).detach();
 				guiStateElement.addContent( bookmarksElement );
-				this.root.addContent( guiStateElement );
+				return guiStateElement;
 			}
 			catch ( final JDOMException | IOException e )
 			{
 				e.printStackTrace();
 			}
 		}
+		return null;
 	}
 
 	private Element analyzerCollectionToXml()
@@ -386,12 +436,12 @@ public class MamutExporter
 		return imageDataElement;
 	}
 
-	private Element[] trackCollectionToXml()
+	private void writeTrackCollection() throws XMLStreamException
 	{
 		/*
 		 * Track collection element.
 		 */
-		final Element allTracksElement = new Element( TRACK_COLLECTION_TAG );
+		startElement( TRACK_COLLECTION_TAG );
 
 		// Collect roots, as candidates for single tracks.
 		final RefList< Spot > roots = RefCollections.createRefList( model.getGraph().vertices() );
@@ -403,86 +453,94 @@ public class MamutExporter
 
 		/*
 		 * We will iterate the graph, cross component by cross component, to
-		 * serialize the tracks.
+		 * serialize the tracks. Edges are written as they are iterated.
 		 */
 		final DepthFirstSearch< Spot, Link > search =
 				new DepthFirstSearch<>( model.getGraph(), SearchDirection.UNDIRECTED );
 		final RefSet< Spot > toSkip = RefCollections.createRefSet( model.getGraph().vertices() );
 		final RefList< Spot > iteratedRoots = RefCollections.createRefList( model.getGraph().vertices() );
+		final XMLStreamException[] error = new XMLStreamException[ 1 ];
+		final SearchListener< Spot, Link, DepthFirstSearch< Spot, Link > > searchListener =
+				new SearchListener< Spot, Link, DepthFirstSearch< Spot, Link > >()
+				{
 
-		for ( final Spot root : roots )
-		{
-			// Skip over the roots that were path of a track already dealt with.
-			if ( toSkip.contains( root ) )
-				continue;
-
-			// Create the track element.
-			final Element trackElement = trackToXml( root );
-			final SearchListener< Spot, Link, DepthFirstSearch< Spot, Link > > searchListener =
-					new SearchListener< Spot, Link, DepthFirstSearch< Spot, Link > >()
+					@Override
+					public void processVertexLate( final Spot vertex, final DepthFirstSearch< Spot, Link > search )
 					{
-
-						@Override
-						public void processVertexLate( final Spot vertex, final DepthFirstSearch< Spot, Link > search )
+						/*
+						 * 1 root = 1 track, unless a track has several roots.
+						 * Add the iterated vertex to the list of root to skip
+						 * if needed.
+						 */
+						if ( vertex.incomingEdges().isEmpty() )
+							toSkip.add( vertex );
+					}
+
+					@Override
+					public void processVertexEarly( final Spot vertex, final DepthFirstSearch< Spot, Link > search )
+					{}
+
+					@Override
+					public void processEdge( final Link edge, final Spot from, final Spot to,
+							final DepthFirstSearch< Spot, Link > search )
+					{
+						if ( error[ 0 ] != null )
+							return;
+						try
 						{
-							/*
-							 * 1 root = 1 track, unless a track has several
-							 * roots. Add the iterated vertex to the list of
-							 * root to skip if needed.
-							 */
-							if ( vertex.incomingEdges().isEmpty() )
-								toSkip.add( vertex );
+							writeEdge( edge, from.getInternalPoolIndex(), to.getInternalPoolIndex() );
 						}
-
-						@Override
-						public void processVertexEarly( final Spot vertex, final DepthFirstSearch< Spot, Link > search )
-						{}
-
-						@Override
-						public void processEdge( final Link edge, final Spot from, final Spot to,
-								final DepthFirstSearch< Spot, Link > search )
+						catch ( final XMLStreamException e )
 						{
-							// Add iterated edge to the track element.
-							final Element edgeElement =
-									edgeToXml( edge, from.getInternalPoolIndex(), to.getInternalPoolIndex() );
-							trackElement.addContent( edgeElement );
+							error[ 0 ] = e;
 						}
+					}
 
-						@Override
-						public void crossComponent( final Spot from, final Spot to,
-								final DepthFirstSearch< Spot, Link > search )
-						{}
-					};
-			search.setTraversalListener( searchListener );
-			search.start( root );
+					@Override
+					public void crossComponent( final Spot from, final Spot to,
+							final DepthFirstSearch< Spot, Link > search )
+					{}
+				};
+		search.setTraversalListener( searchListener );
+
+		for ( final Spot root : roots )
+		{
+			// Skip over the roots that were path of a track already dealt with.
+			if ( toSkip.contains( root ) )
+				continue;
 
 			// Don't serialize empty track (no edges).
-			if ( trackElement.getContentSize() > 0 )
-			{
-				allTracksElement.addContent( trackElement );
-				iteratedRoots.add( root );
-			}
+			if ( root.edges().isEmpty() )
+				continue;
+
+			// Write the track element and its edges.
+			startElement( TRACK_TAG );
+			writeTrackAttributes( root );
+			search.start( root );
+			if ( error[ 0 ] != null )
+				throw error[ 0 ];
+			endElement();
+			iteratedRoots.add( root );
 		}
+		endElement();
 
 		/*
 		 * Filtered track collection element.
 		 */
 
-		final Element filteredTracksElement = new Element( FILTERED_TRACKS_TAG );
+		startElement( FILTERED_TRACKS_TAG );
 		for ( final Spot spot : iteratedRoots )
 		{
-			final Element filteredTrackID = new Element( TRACK_ID_TAG );
-			filteredTrackID.setAttribute( TRACK_ID_ATTRIBUTE, Integer.toString( spot.getInternalPoolIndex() ) );
-			filteredTracksElement.addContent( filteredTrackID );
+			emptyElement( TRACK_ID_TAG );
+			writer.writeAttribute( TRACK_ID_ATTRIBUTE, Integer.toString( spot.getInternalPoolIndex() ) );
 		}
-
-		return new Element[] { allTracksElement, filteredTracksElement };
+		endElement();
 	}
 
-	private Element spotCollectionToXml()
+	private void writeSpotCollection() throws XMLStreamException
 	{
-		final Element spotCollectionElement = new Element( SPOT_COLLECTION_TAG );
-		spotCollectionElement.setAttribute( SPOT_COLLECTION_NSPOTS_ATTRIBUTE,
+		startElement( SPOT_COLLECTION_TAG );
+		writer.writeAttribute( SPOT_COLLECTION_NSPOTS_ATTRIBUTE,
 				Integer.toString( model.getGraph().vertices().size() ) );
 
 		// Read time points from dataset xml.
@@ -508,18 +566,14 @@ public class MamutExporter
 		{
 			final TimePoint tp = tps.get( tpIndex );
 
-			final Element frameSpotsElement = new Element( SPOT_FRAME_COLLECTION_TAG );
-			frameSpotsElement.setAttribute( FRAME_ATTRIBUTE, tp.getName() );
-
+			startElement( SPOT_FRAME_COLLECTION_TAG );
+			writer.writeAttribute( FRAME_ATTRIBUTE, tp.getName() );
 			for ( final Spot spot : spots.getSpatialIndex( tpIndex ) )
-			{
-				final Element spotElement = spotToXml( spot );
-				frameSpotsElement.addContent( spotElement );
-			}
-			spotCollectionElement.addContent( frameSpotsElement );
+				writeSpot( spot );
+			endElement();
 		}
 
-		return spotCollectionElement;
+		endElement();
 	}
 
 	/**
@@ -531,76 +585,36 @@ public class MamutExporter
 	private final static Set< String > IMPORTED_LINK_BUILTIN_FEATURES = new HashSet<>( Arrays.asList(
 			EDGE_SOURCE_ATTRIBUTE, EDGE_TARGET_ATTRIBUTE ) );
 
-	private Element edgeToXml( final Link edge, final int sourceSpotID, final int targetSpotID )
+	private void writeEdge( final Link edge, final int sourceSpotID, final int targetSpotID )
+			throws XMLStreamException
 	{
-		final Collection< Attribute > attributes = new ArrayList<>();
+		emptyElement( EDGE_TAG );
 
 		// Source and target ID.
-		attributes.add( new Attribute( EDGE_SOURCE_ATTRIBUTE, Integer.toString( sourceSpotID ) ) );
-		attributes.add( new Attribute( EDGE_TARGET_ATTRIBUTE, Integer.toString( targetSpotID ) ) );
+		writer.writeAttribute( EDGE_SOURCE_ATTRIBUTE, Integer.toString( sourceSpotID ) );
+		writer.writeAttribute( EDGE_TARGET_ATTRIBUTE, Integer.toString( targetSpotID ) );
 
 		// Link features.
-		for ( final ExportFeatureProjection< Link > p : linkFeatureProjections )
+		for ( int i = 0; i < linkAttributeNames.length; i++ )
 		{
-			final String origName = p.attributeName;
-			/*
-			 * Do not export link features that are common TrackMate features
-			 * and that we already exported above.
-			 */
-			if ( CommonTrackMateFeatureDeclarations.redundantLinkProjectionKeys.contains( origName ) )
-				continue;
-
-			final String attName;
-			/*
-			 * If the model to export was imported from a TrackMate or a MaMuT
-			 * file, it will already contain features with the same name that
-			 * the builtin feature we added just above. Which will cause an
-			 * error.
-			 * 
-			 * To avoid this, rename these imported features.
-			 */
-			if ( IMPORTED_LINK_BUILTIN_FEATURES.contains( origName ) )
-			{
-				final String importedAttName = "IMPORTED_" + origName;
-				attName = importedAttName;
-			}
-			else if ( origName.startsWith( "IMPORTED_" ) )
-			{
-				// We skip features that have been re-imported.
+			final String attName = linkAttributeNames[ i ];
+			if ( attName == null )
 				continue;
-			}
-			else
-			{
-				// All good.
-				attName = origName;
-			}
-
-			attributes.add( new Attribute(
-					attName,
-					Double.toString( p.projection.value( edge ) ) ) );
+			final ExportFeatureProjection< Link > p = linkFeatureProjections.get( i );
+			writer.writeAttribute( attName, Double.toString( p.projection.value( edge ) ) );
 		}
-
-		final Element edgeElement = new Element( EDGE_TAG );
-		edgeElement.setAttributes( attributes );
-		return edgeElement;
 	}
 
-	private Element trackToXml( final Spot root )
+	private void writeTrackAttributes( final Spot root ) throws XMLStreamException
 	{
-		final Collection< Attribute > attributes = new ArrayList<>();
-
 		// Track name.
-		attributes.add( new Attribute( TRACK_NAME_ATTRIBUTE, root.getLabel() ) );
+		writer.writeAttribute( TRACK_NAME_ATTRIBUTE, root.getLabel() );
 
 		// Track ID.
-		attributes.add( new Attribute( TRACK_ID_ATTRIBUTE, Integer.toString( root.getInternalPoolIndex() ) ) );
+		writer.writeAttribute( TRACK_ID_ATTRIBUTE, Integer.toString( root.getInternalPoolIndex() ) );
 
 		// Other track features.
 		// TODO: when we compute and store track features, modify this.
-
-		final Element trackElement = new Element( TRACK_TAG );
-		trackElement.setAttributes( attributes );
-		return trackElement;
 	}
 
 	/**
@@ -614,116 +628,109 @@ public class MamutExporter
 			POSITION_T_FEATURE_NAME, QUALITY_FEATURE_NAME, VISIBILITY_FEATURE_NAME,
 			RADIUS_FEATURE_NAME ) );
 
-	private Element spotToXml( final Spot spot )
+	private void writeSpot( final Spot spot ) throws XMLStreamException
 	{
-		final List< Attribute > attributes = new ArrayList<>();
+		emptyElement( SPOT_ELEMENT_TAG );
 
 		// Id.
-		attributes.add( new Attribute( ID_FEATURE_NAME, Integer.toString( spot.getInternalPoolIndex() ) ) );
+		writer.writeAttribute( ID_FEATURE_NAME, Integer.toString( spot.getInternalPoolIndex() ) );
 		// Name.
-		attributes.add( new Attribute( LABEL_FEATURE_NAME, spot.getLabel() ) );
+		writer.writeAttribute( LABEL_FEATURE_NAME, spot.getLabel() );
 		// Position.
-		attributes.add( new Attribute( POSITION_X_FEATURE_NAME, Double.toString( spot.getDoublePosition( 0 ) ) ) );
-		attributes.add( new Attribute( POSITION_Y_FEATURE_NAME, Double.toString( spot.getDoublePosition( 1 ) ) ) );
-		attributes.add( new Attribute( POSITION_Z_FEATURE_NAME, Double.toString( spot.getDoublePosition( 2 ) ) ) );
+		writer.writeAttribute( POSITION_X_FEATURE_NAME, Double.toString( spot.getDoublePosition( 0 ) ) );
+		writer.writeAttribute( POSITION_Y_FEATURE_NAME, Double.toString( spot.getDoublePosition( 1 ) ) );
+		writer.writeAttribute( POSITION_Z_FEATURE_NAME, Double.toString( spot.getDoublePosition( 2 ) ) );
 		// Frame and time.
-		attributes.add( new Attribute( FRAME_FEATURE_NAME, Integer.toString( spot.getTimepoint() ) ) );
-		attributes.add( new Attribute( POSITION_T_FEATURE_NAME, Double.toString( spot.getTimepoint() ) ) );
+		writer.writeAttribute( FRAME_FEATURE_NAME, Integer.toString( spot.getTimepoint() ) );
+		writer.writeAttribute( POSITION_T_FEATURE_NAME, Double.toString( spot.getTimepoint() ) );
 		// Quality.
-		attributes.add( new Attribute( QUALITY_FEATURE_NAME, Double.toString( -1. ) ) );
+		writer.writeAttribute( QUALITY_FEATURE_NAME, Double.toString( -1. ) );
 		// Visibility.
-		attributes.add( new Attribute( VISIBILITY_FEATURE_NAME, Integer.toString( 1 ) ) );
+		writer.writeAttribute( VISIBILITY_FEATURE_NAME, Integer.toString( 1 ) );
 
 		// Radius. We have to scale it by transform norm because in MaMuT they
 		// are before rendering.
 		spot.getCovariance( cov );
 		eig.decomposeSymmetric( cov );
-		final double meanRadius = Arrays.stream( eig.getRealEigenvalues() ).map( Math::sqrt ).average().getAsDouble();
-		attributes.add( new Attribute( RADIUS_FEATURE_NAME, Double.toString( meanRadius ) ) );
+		final double[] eigenvalues = eig.getRealEigenvalues();
+		final double meanRadius = ( Math.sqrt( eigenvalues[ 0 ] ) + Math.sqrt( eigenvalues[ 1 ] ) + Math.sqrt( eigenvalues[ 2 ] ) ) / 3.;
+		writer.writeAttribute( RADIUS_FEATURE_NAME, Double.toString( meanRadius ) );
 
-		for (final ExportFeatureProjection< Spot > p : spotFeatureProjections )
+		for ( int i = 0; i < spotAttributeNames.length; i++ )
 		{
-			final String origName = p.attributeName;
-			/*
-			 * Do not export spot features that are common TrackMate features
-			 * and that we already exported above.
-			 */
-			if ( CommonTrackMateFeatureDeclarations.redundantSpotProjectionKeys.contains( origName ) )
-				continue;
-
-			final String attName;
-			/*
-			 * If the model to export was imported from a TrackMate or a MaMuT
-			 * file, it will already contain features with the same name that
-			 * the builtin feature we added just above. Which will cause an
-			 * error.
-			 * 
-			 * To avoid this, rename these imported features.
-			 */
-			if ( IMPORTED_SPOT_BUILTIN_FEATURES.contains( origName ) )
-			{
-				final String importedAttName = "IMPORTED_" + origName;
-				attName = importedAttName;
-			}
-			else if ( origName.startsWith( "IMPORTED_" ) )
-			{
-				// We skip features that have been re-imported.
+			final String attName = spotAttributeNames[ i ];
+			if ( attName == null )
 				continue;
-			}
-			else
-			{
-				// All good.
-				attName = origName;
-			}
-			
-			
-			String val;
+			final ExportFeatureProjection< Spot > p = spotFeatureProjections.get( i );
+			final String val;
 			if ( p.projection instanceof IntFeatureProjection )
 			{
-				val = Integer.toString( (int) p.projection.value( spot ) );
+				val = Integer.toString( ( int ) p.projection.value( spot ) );
 			}
 			else
 			{
 				// Assume double.
 				val = Double.toString( p.projection.value( spot ) );
 			}
-			attributes.add( new Attribute( attName, val ) );
+			writer.writeAttribute( attName, val );
 		}
-
-		final Element spotElement = new Element( SPOT_ELEMENT_TAG );
-		spotElement.setAttributes( attributes );
-		return spotElement;
 	}
 
-	private Element featuresDeclarationToXml()
+	/**
+	 * Determines the attribute names under which the specified feature
+	 * projections are exported.
+	 * <p>
+	 * Projections that are common TrackMate features, and that are exported
+	 * from the data currently set in Mastodon, are not exported and get a
+	 * {@code null} name. If the model to export was imported from a TrackMate
+	 * or a MaMuT file, it will already contain features with the same name
+	 * that the builtin features. These imported features are renamed to avoid
+	 * clashes, and features that have been re-imported already are skipped.
+	 *
+	 * @param projections
+	 *            the feature projections to export.
+	 * @param redundantKeys
+	 *            the keys of the common TrackMate features.
+	 * @param builtinFeatures
+	 *            the names of the builtin features.
+	 * @return a new array with one attribute name or {@code null} per
+	 *         projection.
+	 */
+	private static < T > String[] exportAttributeNames( final List< ExportFeatureProjection< T > > projections,
+			final List< String > redundantKeys, final Set< String > builtinFeatures )
 	{
-		final Element featuresElement = new Element( FEATURE_DECLARATION_TAG );
-		appendBasicFeatureDeclarations( featuresElement );
-		appendFeaturesDeclarationOfClass( Spot.class, featuresElement, SPOT_FEATURE_DECLARATION_TAG );
-		appendFeaturesDeclarationOfClass( Link.class, featuresElement, EDGE_FEATURE_DECLARATION_TAG );
-		// Create an empty declaration for track features, for now.
-		appendFeaturesDeclarationOfClass( Boolean.class, featuresElement, TRACK_FEATURE_DECLARATION_TAG );
-		return featuresElement;
+		final String[] names = new String[ projections.size() ];
+		for ( int i = 0; i < names.length; i++ )
+		{
+			final String origName = projections.get( i ).attributeName;
+			if ( redundantKeys.contains( origName ) )
+				names[ i ] = null;
+			else if ( builtinFeatures.contains( origName ) )
+				names[ i ] = "IMPORTED_" + origName;
+			else if ( origName.startsWith( "IMPORTED_" ) )
+				names[ i ] = null;
+			else
+				names[ i ] = origName;
+		}
+		return names;
 	}
 
-	private void appendBasicFeatureDeclarations( final Element featuresElement )
+	private void writeFeaturesDeclaration() throws XMLStreamException
 	{
-		// Spots.
-		final Element spotFeaturesElement = getOrAddChild( featuresElement, SPOT_FEATURE_DECLARATION_TAG );
-		CommonTrackMateFeatureDeclarations.spotFeatureDeclarations.forEach( cf -> spotFeaturesElement.addContent( cf.toElement() ) );
-
-		// Edges.
-		final Element edgeFeaturesElement = getOrAddChild( featuresElement, EDGE_FEATURE_DECLARATION_TAG );
-		CommonTrackMateFeatureDeclarations.edgeFeatureDeclarations.forEach( cf -> edgeFeaturesElement.addContent( cf.toElement() ) );
-
-		// Tracks.
-		final Element trackFeaturesElement = getOrAddChild( featuresElement, TRACK_FEATURE_DECLARATION_TAG );
-		CommonTrackMateFeatureDeclarations.trackFeatureDeclarations.forEach( cf -> trackFeaturesElement.addContent( cf.toElement() ) );
+		startElement( FEATURE_DECLARATION_TAG );
+		writeFeaturesDeclarationOfClass( Spot.class, SPOT_FEATURE_DECLARATION_TAG,
+				CommonTrackMateFeatureDeclarations.spotFeatureDeclarations );
+		writeFeaturesDeclarationOfClass( Link.class, EDGE_FEATURE_DECLARATION_TAG,
+				CommonTrackMateFeatureDeclarations.edgeFeatureDeclarations );
+		// Create an empty declaration for track features, for now.
+		writeFeaturesDeclarationOfClass( Boolean.class, TRACK_FEATURE_DECLARATION_TAG,
+				CommonTrackMateFeatureDeclarations.trackFeatureDeclarations );
+		endElement();
 	}
 
 	@SuppressWarnings( { "unchecked", "rawtypes" } )
-	private < T > void appendFeaturesDeclarationOfClass( final Class< T > clazz, final Element featuresElement,
-			final String classFeatureDeclarationTag )
+	private < T > void writeFeaturesDeclarationOfClass( final Class< T > clazz, final String classFeatureDeclarationTag,
+			final List< CommonTrackMateFeatureDeclaration > basicDeclarations ) throws XMLStreamException
 	{
 		final List< ExportFeatureProjection< T > > projections;
 		List< String > redundantFeatures;
@@ -743,7 +750,10 @@ public class MamutExporter
 			redundantFeatures = CommonTrackMateFeatureDeclarations.redundantTrackProjectionKeys;
 		}
 
-		final Element classFeaturesElement = getOrAddChild( featuresElement, classFeatureDeclarationTag );
+		startElement( classFeatureDeclarationTag );
+		for ( final CommonTrackMateFeatureDeclaration cf : basicDeclarations )
+			writeFeatureDeclaration( cf.key, cf.name, cf.shortName, cf.dimension, cf.isInt );
+
 		for ( final ExportFeatureProjection< T > p : projections )
 		{
 			/*
@@ -753,32 +763,85 @@ public class MamutExporter
 			if ( redundantFeatures.contains( p.attributeName ) )
 				continue;
 
-			final String isint = ( p.projection instanceof IntFeatureProjection )
-					? "true"
-					: "false";
-
-			final Element fel = new Element( FEATURE_TAG );
-			fel.setAttribute( FEATURE_ATTRIBUTE, p.attributeName );
 			// Mastodon does not support feature name yet.
-			fel.setAttribute( FEATURE_NAME_ATTRIBUTE, p.featureName );
-			fel.setAttribute( FEATURE_SHORT_NAME_ATTRIBUTE, p.featureShortName );
-			final String units = p.projection.units();
-			fel.setAttribute( FEATURE_DIMENSION_ATTRIBUTE,
-					unitsToDimension( units, model.getSpaceUnits(), model.getTimeUnits() ) );
-			fel.setAttribute( FEATURE_ISINT_ATTRIBUTE, isint );
-			classFeaturesElement.addContent( fel );
+			writeFeatureDeclaration( p.attributeName, p.featureName, p.featureShortName,
+					unitsToDimension( p.projection.units(), model.getSpaceUnits(), model.getTimeUnits() ),
+					p.projection instanceof IntFeatureProjection );
 		}
+		endElement();
 	}
 
-	private Element getOrAddChild( final Element parent, final String childName )
+	private void writeFeatureDeclaration( final String key, final String name, final String shortName,
+			final String dimension, final boolean isInt ) throws XMLStreamException
 	{
-		Element child = parent.getChild( childName );
-		if ( null == child )
-		{
-			child = new Element( childName );
-			parent.addContent( child );
-		}
-		return child;
+		emptyElement( FEATURE_TAG );
+		writer.writeAttribute( FEATURE_ATTRIBUTE, key );
+		writer.writeAttribute( FEATURE_NAME_ATTRIBUTE, name );
+		writer.writeAttribute( FEATURE_SHORT_NAME_ATTRIBUTE, shortName );
+		writer.writeAttribute( FEATURE_DIMENSION_ATTRIBUTE, dimension );
+		writer.writeAttribute( FEATURE_ISINT_ATTRIBUTE, Boolean.toString( isInt ) );
+	}
+
+	/*
+	 * Indented output. The attributes of the started element can be written
+	 * with the XMLStreamWriter right after these calls.
+	 */
+
+	private void startElement( final String tag ) throws XMLStreamException
+	{
+		newLine();
+		writer.writeStartElement( tag );
+		depth++;
+		inline = true;
+	}
+
+	private void emptyElement( final String tag ) throws XMLStreamException
+	{
+		newLine();
+		writer.writeEmptyElement( tag );
+		inline = false;
+	}
+
+	private void endElement() throws XMLStreamException
+	{
+		depth--;
+		if ( !inline )
+			newLine();
+		writer.writeEndElement();
+		inline = false;
+	}
+
+	private void newLine() throws XMLStreamException
+	{
+		writer.writeCharacters( "\n" );
+		for ( int i = 0; i < depth; i++ )
+			writer.writeCharacters( INDENT );
+	}
+
+	/**
+	 * Writes a (small) JDOM element and its children with the current
+	 * indentation.
+	 */
+	private void writeElement( final Element element ) throws XMLStreamException
+	{
+		final List< Element > children = element.getChildren();
+		final String text = element.getTextTrim();
+		if ( children.isEmpty() && text.isEmpty() )
+			emptyElement( element.getName() );
+		else
+			startElement( element.getName() );
+
+		for ( final Attribute attribute : element.getAttributes() )
+			writer.writeAttribute( attribute.getName(), attribute.getValue() );
+
+		if ( children.isEmpty() && text.isEmpty() )
+			return;
+
+		if ( !text.isEmpty() )
+			writer.writeCharacters( text );
+		for ( final Element child : children )
+			writeElement( child );
+		endElement();
 	}
 
 	private static Document getSAXParsedDocument( final String fileName )
@@ -866,7 +929,7 @@ public class MamutExporter
 				@SuppressWarnings( "unchecked" )
 				final Feature< T > feature = ( Feature< T > ) featureModel.getFeature( fspec );
 				final String fname = fspec.getKey();
-				if ( null == feature.projections() )
+				if ( null == feature || null == feature.projections() )
 					continue;
 
 				if ( trackMateImporterFeatureClass.isInstance( feature ) )
@@ -896,7 +959,7 @@ public class MamutExporter
 				@SuppressWarnings( "unchecked" )
 				final Feature< T > feature = ( Feature< T > ) featureModel.getFeature( fspec );
 				final String fname = fspec.getKey();
-				if ( null == feature.projections() )
+				if ( null == feature || null == feature.projections() )
 					continue;
 
 				/*
@@ -1050,14 +1113,40 @@ public class MamutExporter
 		return sb.toString();
 	}
 
+	/**
+	 * Exports the specified model to a MaMuT file. The spots, edges and tracks
+	 * of the model are written as they are traversed, so the export does not
+	 * build the XML document in memory.
+	 *
+	 * @param target
+	 *            the file to write to.
+	 * @param model
+	 *            the model to export.
+	 * @param project
+	 *            the project, used to retrieve the image data.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
 	public static final void export( final File target, final Model model, final MamutProject project )
 			throws IOException
 	{
 		final MamutExporter exporter = new MamutExporter( model, project );
-		exporter.appendModel();
-		exporter.appendSettings();
-		exporter.appendGuiState();
-		exporter.write( target );
+		try (final OutputStream os = new BufferedOutputStream( new FileOutputStream( target ), BUFFER_SIZE ))
+		{
+			final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter( os, "UTF-8" );
+			try
+			{
+				exporter.write( writer );
+			}
+			finally
+			{
+				writer.close();
+			}
+		}
+		catch ( final XMLStreamException e )
+		{
+			throw new IOException( "Could not write MaMuT file " + target, e );
+		}
 	}
 
 }
@@ -35,11 +35,10 @@ import java.io.ObjectOutputStream;
 import org.mastodon.collection.RefCollection;
 import org.mastodon.feature.Dimension;
 import org.mastodon.feature.FeatureProjectionKey;
+import org.mastodon.feature.io.FeatureColumns;
 import org.mastodon.feature.io.FeatureSerializer;
 import org.mastodon.io.FileIdToObjectMap;
 import org.mastodon.io.ObjectToFileIdMap;
-import org.mastodon.io.properties.DoublePropertyMapSerializer;
-import org.mastodon.io.properties.IntPropertyMapSerializer;
 import org.mastodon.properties.DoublePropertyMap;
 import org.mastodon.properties.IntPropertyMap;
 
@@ -51,7 +50,8 @@ public abstract class TrackMateImportedFeaturesSerializer< F extends TrackMateIm
 	public void serialize( final F feature, final ObjectToFileIdMap< O > idmap, final ObjectOutputStream oos )
 			throws IOException
 	{
-		// WRITE N DOUBLE MAPS.
+		// WRITE N DOUBLE MAPS, IN THE COLUMNAR LAYOUT.
+		oos.writeInt( FeatureColumns.FORMAT_MARKER );
 		oos.writeInt( feature.doublePropertyMapMap.keySet().size() );
 		// WRITE EACH PROJECTION.
 		for ( final FeatureProjectionKey key : feature.doublePropertyMapMap.keySet() )
@@ -63,7 +63,7 @@ public abstract class TrackMateImportedFeaturesSerializer< F extends TrackMateIm
 			oos.writeUTF( feature.project( key ).units() );
 			// WRITE VALUES
 			final DoublePropertyMap< O > map = feature.doublePropertyMapMap.get( key );
-			new DoublePropertyMapSerializer<>( map ).writePropertyMap( idmap, oos );
+			FeatureColumns.writePropertyMap( map, idmap, oos );
 		}
 
 		// WRITE N INT MAPS.
@@ -78,7 +78,7 @@ public abstract class TrackMateImportedFeaturesSerializer< F extends TrackMateIm
 			oos.writeUTF( feature.project( key ).units() );
 			// WRITE VALUES
 			final IntPropertyMap< O > map = feature.intPropertyMapMap.get( key );
-			new IntPropertyMapSerializer<>( map ).writePropertyMap( idmap, oos );
+			FeatureColumns.writePropertyMap( map, idmap, oos );
 		}
 	}
 
@@ -86,7 +86,10 @@ public abstract class TrackMateImportedFeaturesSerializer< F extends TrackMateIm
 			final ObjectInputStream ois ) throws IOException, ClassNotFoundException
 	{
 		// READ N DOUBLE MAPS.
-		final int nDoubleMaps = ois.readInt();
+		int nDoubleMaps = ois.readInt();
+		final boolean columnar = nDoubleMaps == FeatureColumns.FORMAT_MARKER;
+		if ( columnar )
+			nDoubleMaps = ois.readInt();
 		// READ EACH MAP.
 		for ( int i = 0; i < nDoubleMaps; i++ )
 		{
@@ -96,7 +99,7 @@ public abstract class TrackMateImportedFeaturesSerializer< F extends TrackMateIm
 			final String units = ois.readUTF();
 			// READ VALUES.
 			final DoublePropertyMap< O > map = new DoublePropertyMap<>( pool, Double.NaN );
-			new DoublePropertyMapSerializer<>( map ).readPropertyMap( idmap, ois );
+			FeatureColumns.readPropertyMap( map, idmap, pool, ois, columnar );
 			// Store.
 			feature.store( projectionName, dimension, units, map );
 		}
@@ -112,7 +115,7 @@ public abstract class TrackMateImportedFeaturesSerializer< F extends TrackMateIm
 			final String units = ois.readUTF();
 			// READ VALUES.
 			final IntPropertyMap< O > map = new IntPropertyMap<>( pool, Integer.MIN_VALUE );
-			new IntPropertyMapSerializer<>( map ).readPropertyMap( idmap, ois );
+			FeatureColumns.readPropertyMap( map, idmap, pool, ois, columnar );
 			// Store.
 			feature.store( projectionName, dimension, units, map );
 		}
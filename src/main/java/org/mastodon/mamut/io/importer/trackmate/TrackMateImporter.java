@@ -66,19 +66,22 @@ import static org.mastodon.mamut.io.importer.trackmate.TrackMateXMLKeys.VISIBILI
 import static org.mastodon.mamut.io.importer.trackmate.TrackMateXMLKeys.VOXEL_DEPTH_ATTRIBUTE;
 import static org.mastodon.mamut.io.importer.trackmate.TrackMateXMLKeys.WIDTH_ATTRIBUTE;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.jdom2.input.SAXBuilder;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.mastodon.collection.IntRefMap;
 import org.mastodon.collection.RefMaps;
 import org.mastodon.feature.Dimension;
@@ -101,6 +104,14 @@ import ij.ImagePlus;
  * Importer for TrackMate (http://imagej.net/TrackMate) files.
  * <p>
  * The importer can read the model as a whole and also import feature values.
+ * <p>
+ * The XML file is read as a stream of StAX events: spots are created from
+ * {@code <Spot>} elements and links from {@code <Edge>} elements as they are
+ * read, without building a document tree first. Besides the resulting
+ * {@link Model}, only the map from TrackMate spot ids to spots is kept in
+ * memory, so that files much larger than the heap can be imported. As in
+ * files written by TrackMate and MaMuT, the feature declarations and the
+ * spots are expected before the tracks in the {@code <Model>} element.
  *
  * @author Jean-Yves Tinevez
  * @author Tobias Pietzsch
@@ -109,27 +120,19 @@ public class TrackMateImporter
 {
 	private final File file;
 
-	private final Document document;
-
 	/**
 	 * Read the specified TrackMate file.
 	 *
 	 * @param file
 	 *            the path to the TrackMate file.
 	 * @throws IOException
-	 *             if an error happens while opening or parsing the XML file.
+	 *             if the file cannot be read.
 	 */
 	public TrackMateImporter( final File file ) throws IOException
 	{
+		if ( !file.canRead() )
+			throw new IOException( "Cannot read TrackMate file " + file );
 		this.file = file;
-		try
-		{
-			document = new SAXBuilder().build( file );
-		}
-		catch ( final JDOMException e )
-		{
-			throw new IOException( e );
-		}
 	}
 
 	/**
@@ -144,14 +147,64 @@ public class TrackMateImporter
 	 */
 	public MamutProject createProject() throws IOException
 	{
-		final Element root = document.getRootElement();
-		final Element settingsEl = root.getChild( SETTINGS_TAG );
-		if ( null == settingsEl )
+		/*
+		 * Collect the attributes of the <Model> and <Settings>/<ImageData>
+		 * elements. Everything else is skipped.
+		 */
+		final Map< String, String > modelAttributes = new HashMap<>();
+		final Map< String, String > imageDataAttributes = new HashMap<>();
+		boolean settingsFound = false;
+		boolean imageDataFound = false;
+		try (final InputStream is = new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE ))
+		{
+			final XMLStreamReader reader = createXMLStreamReader( is );
+			try
+			{
+				int depth = 0;
+				boolean inSettings = false;
+				while ( reader.hasNext() && !imageDataFound )
+				{
+					final int event = reader.next();
+					if ( event == XMLStreamConstants.START_ELEMENT )
+					{
+						depth++;
+						final String name = reader.getLocalName();
+						if ( depth == 2 )
+						{
+							inSettings = SETTINGS_TAG.equals( name );
+							settingsFound |= inSettings;
+							if ( MODEL_TAG.equals( name ) )
+								readAttributes( reader, modelAttributes );
+						}
+						else if ( depth == 3 && inSettings && IMAGE_DATA_TAG.equals( name ) )
+						{
+							readAttributes( reader, imageDataAttributes );
+							imageDataFound = true;
+						}
+					}
+					else if ( event == XMLStreamConstants.END_ELEMENT )
+					{
+						depth--;
+					}
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		catch ( final XMLStreamException e )
+		{
+			throw new IOException( e );
+		}
+
+		if ( !settingsFound )
 			throw new IOException( "Could not import TrackMate project. No <" + SETTINGS_TAG + "> element found." );
+		if ( !imageDataFound )
+			throw new IOException( "Could not import TrackMate project. No <" + IMAGE_DATA_TAG + "> element found." );
 
-		final Element imageDataEl = settingsEl.getChild( IMAGE_DATA_TAG );
-		final String imageFilename = imageDataEl.getAttributeValue( FILENAME_ATTRIBUTE );
-		final String imageFolder = imageDataEl.getAttributeValue( FOLDER_ATTRIBUTE );
+		final String imageFilename = imageDataAttributes.get( FILENAME_ATTRIBUTE );
+		final String imageFolder = imageDataAttributes.get( FOLDER_ATTRIBUTE );
 		File imageFile = new File( imageFolder, imageFilename );
 		if ( !imageFile.exists() )
 		{
@@ -162,7 +215,7 @@ public class TrackMateImporter
 				System.err.println( "Warning. Cannot find the image data file: \"" + imageFilename + "\" in \""
 						+ imageFolder + "\" nor in \""
 						+ file.getParent() + "\". Substituting default void image." );
-				imageFile = makDummyImage( imageDataEl );
+				imageFile = makDummyImage( imageDataAttributes );
 			}
 		}
 		final MamutProject project;
@@ -179,16 +232,12 @@ public class TrackMateImporter
 		}
 
 		// Set project time and space units
-		final Element modelEl = root.getChild( MODEL_TAG );
-		if ( null != modelEl )
-		{
-			final String spaceUnits = modelEl.getAttributeValue( SPATIAL_UNITS_ATTRIBUTE );
-			if ( spaceUnits != null )
-				project.setSpaceUnits( spaceUnits );
-			final String timeUnits = modelEl.getAttributeValue( TIME_UNITS_ATTRIBUTE );
-			if ( timeUnits != null )
-				project.setTimeUnits( timeUnits );
-		}
+		final String spaceUnits = modelAttributes.get( SPATIAL_UNITS_ATTRIBUTE );
+		if ( spaceUnits != null )
+			project.setSpaceUnits( spaceUnits );
+		final String timeUnits = modelAttributes.get( TIME_UNITS_ATTRIBUTE );
+		if ( timeUnits != null )
+			project.setTimeUnits( timeUnits );
 
 		return project;
 	}
@@ -197,34 +246,34 @@ public class TrackMateImporter
 	 * Returns a dummy BDV file, made to reflect the metadata stored in the
 	 * <code>ImageData</code> XML element of a TrackMate file.
 	 *
-	 * @param imageDataEl
-	 *            the <code>ImageData</code> XML element.
+	 * @param imageDataAttributes
+	 *            the attributes of the <code>ImageData</code> XML element.
 	 * @return a dummy BDF file.
 	 */
-	private static File makDummyImage( final Element imageDataEl )
+	private static File makDummyImage( final Map< String, String > imageDataAttributes )
 	{
-		final String wel = imageDataEl.getAttributeValue( WIDTH_ATTRIBUTE );
+		final String wel = imageDataAttributes.get( WIDTH_ATTRIBUTE );
 		final int width = wel == null ? 1000 : Integer.parseInt( wel );
 
-		final String hel = imageDataEl.getAttributeValue( HEIGHT_ATTRIBUTE );
+		final String hel = imageDataAttributes.get( HEIGHT_ATTRIBUTE );
 		final int height = hel == null ? 1000 : Integer.parseInt( hel );
 
-		final String zel = imageDataEl.getAttributeValue( NSLICES_ATTRIBUTE );
+		final String zel = imageDataAttributes.get( NSLICES_ATTRIBUTE );
 		final int depth = zel == null ? 100 : Integer.parseInt( zel );
 
-		final String ntel = imageDataEl.getAttributeValue( NFRAMES_ATTRIBUTE );
+		final String ntel = imageDataAttributes.get( NFRAMES_ATTRIBUTE );
 		final int nTimepoints = ntel == null ? 100 : Integer.parseInt( ntel );
 
-		final String dxel = imageDataEl.getAttributeValue( PIXEL_WIDTH_ATTRIBUTE );
+		final String dxel = imageDataAttributes.get( PIXEL_WIDTH_ATTRIBUTE );
 		final double dx = dxel == null ? 1. : Double.parseDouble( dxel );
 
-		final String dyel = imageDataEl.getAttributeValue( PIXEL_HEIGHT_ATTRIBUTE );
+		final String dyel = imageDataAttributes.get( PIXEL_HEIGHT_ATTRIBUTE );
 		final double dy = dyel == null ? 1. : Double.parseDouble( dyel );
 
-		final String dzel = imageDataEl.getAttributeValue( VOXEL_DEPTH_ATTRIBUTE );
+		final String dzel = imageDataAttributes.get( VOXEL_DEPTH_ATTRIBUTE );
 		final double dz = dzel == null ? 1. : Double.parseDouble( dzel );
 
-		//		final String dtel = imageDataEl.getAttributeValue( TIME_INTERVAL_ATTRIBUTE );
+		//		final String dtel = imageDataAttributes.get( TIME_INTERVAL_ATTRIBUTE );
 		//		final double dt = dtel == null ? 1. : Double.parseDouble( dtel );
 
 		final String dummyStr = String.format( "x=%d y=%d z=%d sx=%f sy=%f sz=%f t=%d.dummy",
@@ -250,260 +299,383 @@ public class TrackMateImporter
 		new Import( model, featureSpecsService );
 	}
 
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static XMLStreamReader createXMLStreamReader( final InputStream is ) throws XMLStreamException
+	{
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+		factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+		return factory.createXMLStreamReader( is );
+	}
+
+	private static void readAttributes( final XMLStreamReader reader, final Map< String, String > attributes )
+	{
+		for ( int i = 0; i < reader.getAttributeCount(); i++ )
+			attributes.put( reader.getAttributeLocalName( i ), reader.getAttributeValue( i ) );
+	}
+
 	private final class Import extends ModelImporter
 	{
-		Import( final Model model, final FeatureSpecsService featureSpecsService ) throws IOException
-		{
-			super( model );
-			startImport();
+		/*
+		 * TODO: could get this from the spimdata XML, for now just we're safe
+		 *       for a while with 10...
+		 */
+		private static final int EXPECTED_NUM_SOURCES = 10;
 
-			final ModelGraph graph = model.getGraph();
+		private final ModelGraph graph;
 
-			final Element root = document.getRootElement();
-			final Element modelEl = root.getChild( MODEL_TAG );
-			if ( null == modelEl )
-				throw new IOException( "Could not import TrackMate project. No <" + MODEL_TAG + "> element found." );
+		private final Set< String > ignoredSpotFeatureKeys;
 
-			/*
-			 * Units.
-			 */
+		private final Set< String > ignoredLinkFeatureKeys;
 
-			final String spaceUnits = modelEl.getAttributeValue( SPATIAL_UNITS_ATTRIBUTE );
-			final String timeUnits = modelEl.getAttributeValue( TIME_UNITS_ATTRIBUTE );
+		private final TrackMateImportedSpotFeatures spotFeatures = new TrackMateImportedSpotFeatures();
 
-			/*
-			 * Read feature declaration and instantiate mastodon features.
-			 */
+		private final Map< String, DoublePropertyMap< Spot > > spotDoubleFeatureMap = new HashMap<>();
 
-			final Element featureDeclarationEl = modelEl.getChild( FEATURE_DECLARATION_TAG );
+		private final Map< String, IntPropertyMap< Spot > > spotIntFeatureMap = new HashMap<>();
 
-			/*
-			 * TODO: could get this from the spimdata XML, for now just we're
-			 *       safe for a while with 10...
-			 */
-			final int expectedNumSources = 10;
+		private final TrackMateImportedLinkFeatures linkFeatures = new TrackMateImportedLinkFeatures();
 
-			// Spot features.
-			final TrackMateImportedSpotFeatures spotFeatures = new TrackMateImportedSpotFeatures();
-			final Element spotFeatureDeclarationEl = featureDeclarationEl.getChild( SPOT_FEATURE_DECLARATION_TAG );
-			final List< Element > spotFeatureEls = spotFeatureDeclarationEl.getChildren( FEATURE_TAG );
-			final Map< String, DoublePropertyMap< Spot > > spotDoubleFeatureMap = new HashMap<>();
-			final Map< String, IntPropertyMap< Spot > > spotIntFeatureMap = new HashMap<>();
-			final Set< String > ignoredSpotFeatureKeys = MamutExporter
-					.getLikelyExportedFeatureProjections( featureSpecsService, expectedNumSources, Spot.class );
-			for ( final Element featureEl : spotFeatureEls )
+		private final Map< String, DoublePropertyMap< Link > > linkDoubleFeatureMap = new HashMap<>();
+
+		private final Map< String, IntPropertyMap< Link > > linkIntFeatureMap = new HashMap<>();
+
+		// Map spot ID -> Vertex
+		private final IntRefMap< Spot > idToSpotIDmap;
+
+		private final NumberFormat numberFormat = NumberFormat.getInstance();
+
+		private final double[] pos = new double[ 3 ];
+
+		private final Spot ref;
+
+		private final Spot putRef;
+
+		private final Spot sourceRef;
+
+		private final Spot targetRef;
+
+		private final Link edgeRef;
+
+		private String spaceUnits;
+
+		private String timeUnits;
+
+		Import( final Model model, final FeatureSpecsService featureSpecsService ) throws IOException
+		{
+			super( model );
+			startImport();
+
+			graph = model.getGraph();
+			ignoredSpotFeatureKeys = MamutExporter
+					.getLikelyExportedFeatureProjections( featureSpecsService, EXPECTED_NUM_SOURCES, Spot.class );
+			ignoredLinkFeatureKeys = MamutExporter
+					.getLikelyExportedFeatureProjections( featureSpecsService, EXPECTED_NUM_SOURCES, Link.class );
+			idToSpotIDmap = RefMaps.createIntRefMap( graph.vertices(), -1 );
+
+			ref = graph.vertexRef();
+			putRef = graph.vertexRef();
+			sourceRef = graph.vertexRef();
+			targetRef = graph.vertexRef();
+			edgeRef = graph.edgeRef();
+
+			final boolean modelFound;
+			try (final InputStream is = new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE ))
 			{
-				final String featureKey = featureEl.getAttributeValue( FEATURE_ATTRIBUTE );
-				if ( ignoredSpotFeatureKeys.contains( featureKey ) )
-					continue;
-				//				final String featureName = featureEl.getAttributeValue( FEATURE_NAME_ATTRIBUTE );
-				//				final String featureShortName = featureEl.getAttributeValue( FEATURE_SHORT_NAME_ATTRIBUTE );
-				final String featureDimension = featureEl.getAttributeValue( FEATURE_DIMENSION_ATTRIBUTE );
-				final String units = dimensionToUnits( featureDimension, spaceUnits, timeUnits );
-				final boolean featureIsInt =
-						Boolean.parseBoolean( featureEl.getAttributeValue( FEATURE_ISINT_ATTRIBUTE ) );
-				if ( featureIsInt )
+				final XMLStreamReader reader = createXMLStreamReader( is );
+				try
 				{
-					final IntPropertyMap< Spot > values =
-							new IntPropertyMap<>( graph.vertices().getRefPool(), Integer.MIN_VALUE );
-					spotFeatures.store( featureKey, dimensionToDimension( featureDimension ), units, values );
-					spotIntFeatureMap.put( featureKey, values );
+					modelFound = read( reader );
 				}
-				else
+				finally
 				{
-					final DoublePropertyMap< Spot > values =
-							new DoublePropertyMap<>( graph.vertices().getRefPool(), Double.NaN );
-					spotFeatures.store( featureKey, dimensionToDimension( featureDimension ), units, values );
-					spotDoubleFeatureMap.put( featureKey, values );
+					reader.close();
 				}
 			}
-
-			// Link features.
-			final TrackMateImportedLinkFeatures linkFeatures = new TrackMateImportedLinkFeatures();
-			final Element edgeFeatureDeclarationEl = featureDeclarationEl.getChild( EDGE_FEATURE_DECLARATION_TAG );
-			final List< Element > edgeFeatureEls = edgeFeatureDeclarationEl.getChildren( FEATURE_TAG );
-			final Map< String, DoublePropertyMap< Link > > linkDoubleFeatureMap = new HashMap<>();
-			final Map< String, IntPropertyMap< Link > > linkIntFeatureMap = new HashMap<>();
-			final Set< String > ignoredLinkFeatureKeys = MamutExporter
-					.getLikelyExportedFeatureProjections( featureSpecsService, expectedNumSources, Link.class );
-			for ( final Element featureEl : edgeFeatureEls )
+			catch ( final XMLStreamException e )
 			{
-				final String featureKey = featureEl.getAttributeValue( FEATURE_ATTRIBUTE );
-				if ( ignoredLinkFeatureKeys.contains( featureKey ) )
-					continue;
-				//				final String featureName = featureEl.getAttributeValue( FEATURE_NAME_ATTRIBUTE );
-				//				final String featureShortName = featureEl.getAttributeValue( FEATURE_SHORT_NAME_ATTRIBUTE );
-				final String featureDimension = featureEl.getAttributeValue( FEATURE_DIMENSION_ATTRIBUTE );
-				final String units = dimensionToUnits( featureDimension, spaceUnits, timeUnits );
-				final boolean featureIsInt =
-						Boolean.parseBoolean( featureEl.getAttributeValue( FEATURE_ISINT_ATTRIBUTE ) );
-				if ( featureIsInt )
-				{
-					final IntPropertyMap< Link > values =
-							new IntPropertyMap<>( graph.edges().getRefPool(), Integer.MIN_VALUE );
-					linkFeatures.store( featureKey, dimensionToDimension( featureDimension ), units, values );
-					linkIntFeatureMap.put( featureKey, values );
-				}
-				else
-				{
-					final DoublePropertyMap< Link > values =
-							new DoublePropertyMap<>( graph.edges().getRefPool(), Double.NaN );
-					linkFeatures.store( featureKey, dimensionToDimension( featureDimension ), units, values );
-					linkDoubleFeatureMap.put( featureKey, values );
-				}
+				throw new IOException( e );
+			}
+			finally
+			{
+				graph.releaseRef( ref );
+				graph.releaseRef( putRef );
+				graph.releaseRef( sourceRef );
+				graph.releaseRef( targetRef );
+				graph.releaseRef( edgeRef );
 			}
+			if ( !modelFound )
+				throw new IOException( "Could not import TrackMate project. No <" + MODEL_TAG + "> element found." );
 
 			/*
-			 * Read model and build the graph.
+			 * Feed property maps to feature model.
 			 */
 
-			final Spot ref = graph.vertexRef();
-			final Spot putRef = graph.vertexRef();
-			final Spot sourceRef = graph.vertexRef();
-			final Spot targetRef = graph.vertexRef();
-			final Link edgeRef = graph.edgeRef();
+			final FeatureModel featureModel = model.getFeatureModel();
+			featureModel.pauseListeners();
+			featureModel.declareFeature( spotFeatures );
+			featureModel.declareFeature( linkFeatures );
+			featureModel.resumeListeners();
+			finishImport();
+		}
 
-			try
+		/**
+		 * Reads the {@code <Model>} element of the file and builds the graph.
+		 * Stops after the end of the {@code <Model>} element.
+		 *
+		 * @return whether a {@code <Model>} element was found.
+		 */
+		private boolean read( final XMLStreamReader reader ) throws XMLStreamException
+		{
+			int depth = 0;
+			boolean inModel = false;
+			// Name of the current child element of <Model>.
+			String section = null;
+			// Name of the current grand-child element of <Model>.
+			String subsection = null;
+			while ( reader.hasNext() )
 			{
-				final double[] pos = new double[ 3 ];
-
-				// Map spot ID -> Vertex
-				final IntRefMap< Spot > idToSpotIDmap = RefMaps.createIntRefMap( graph.vertices(), -1 );
-
-				/*
-				 * Import spots.
-				 */
-				final Element allSpotsEl = modelEl.getChild( SPOT_COLLECTION_TAG );
-				final List< Element > allFramesEl = allSpotsEl.getChildren( SPOT_FRAME_COLLECTION_TAG );
-				for ( final Element frameEl : allFramesEl )
+				final int event = reader.next();
+				if ( event == XMLStreamConstants.START_ELEMENT )
 				{
-					final List< Element > frameSpotsEl = frameEl.getChildren( SPOT_ELEMENT_TAG );
-					for ( final Element spotEl : frameSpotsEl )
+					depth++;
+					final String name = reader.getLocalName();
+					if ( depth == 2 )
 					{
-						final boolean visible =
-								Integer.parseInt( spotEl.getAttributeValue( VISIBILITY_FEATURE_NAME ) ) != 0;
-						if ( !visible )
-							continue;
-
-						// Create spot.
-						pos[ 0 ] = Double.parseDouble( spotEl.getAttributeValue( POSITION_X_FEATURE_NAME ) );
-						pos[ 1 ] = Double.parseDouble( spotEl.getAttributeValue( POSITION_Y_FEATURE_NAME ) );
-						pos[ 2 ] = Double.parseDouble( spotEl.getAttributeValue( POSITION_Z_FEATURE_NAME ) );
-						final double radius = Double.parseDouble( spotEl.getAttributeValue( RADIUS_FEATURE_NAME ) );
-						final int frame = ( int ) Double.parseDouble( spotEl.getAttributeValue( FRAME_FEATURE_NAME ) );
-						final int id = Integer.parseInt( spotEl.getAttributeValue( ID_FEATURE_NAME ) );
-						final String label = spotEl.getAttributeValue( LABEL_FEATURE_NAME );
-
-						final Spot spot = graph.addVertex( ref ).init( frame, pos, radius );
-						spot.setLabel( label );
-						idToSpotIDmap.put( id, spot, putRef );
-
-						// Spot features.
-						for ( final String featureKey : spotDoubleFeatureMap.keySet() )
+						inModel = MODEL_TAG.equals( name );
+						if ( inModel )
 						{
-							final String attributeValue = spotEl.getAttributeValue( featureKey );
-							if ( null != attributeValue )
-							{
-								final double val = Double.parseDouble( attributeValue );
-								final DoublePropertyMap< Spot > feature = spotDoubleFeatureMap.get( featureKey );
-								feature.set( spot, val );
-							}
-						}
-						for ( final String featureKey : spotIntFeatureMap.keySet() )
-						{
-							final String attributeValue = spotEl.getAttributeValue( featureKey );
-							if ( null != attributeValue )
-							{
-								final int val = NumberFormat.getInstance().parse( attributeValue ).intValue();
-								final IntPropertyMap< Spot > feature = spotIntFeatureMap.get( featureKey );
-								feature.set( spot, val );
-							}
+							spaceUnits = reader.getAttributeValue( null, SPATIAL_UNITS_ATTRIBUTE );
+							timeUnits = reader.getAttributeValue( null, TIME_UNITS_ATTRIBUTE );
 						}
 					}
-				}
-
-				/*
-				 * Import edges.
-				 */
-				final Element trackCollectionEl = modelEl.getChild( TRACK_COLLECTION_TAG );
-				final List< Element > trakEls = trackCollectionEl.getChildren( TRACK_TAG );
-				for ( final Element trackEl : trakEls )
-				{
-					final List< Element > edgeEls = trackEl.getChildren( EDGE_TAG );
-					for ( final Element edgeEl : edgeEls )
+					else if ( !inModel )
 					{
-						// Create links.
-						final int sourceID = Integer.parseInt( edgeEl.getAttributeValue( EDGE_SOURCE_ATTRIBUTE ) );
-						final Spot source = idToSpotIDmap.get( sourceID, sourceRef );
-						final int targetID = Integer.parseInt( edgeEl.getAttributeValue( EDGE_TARGET_ATTRIBUTE ) );
-						final Spot target = idToSpotIDmap.get( targetID, targetRef );
-
-						if ( source == null )
-						{
-							// TODO Echo warnings in a logger instead of sysout.
-							System.out.println( "Could not find spot with ID " + sourceID + " - skipping edge " + sourceID + " → " + targetID );
-							continue;
-						}
-						if ( target == null )
+						continue;
+					}
+					else if ( depth == 3 )
+					{
+						section = name;
+					}
+					else if ( depth == 4 )
+					{
+						subsection = name;
+					}
+					else if ( depth == 5 )
+					{
+						if ( FEATURE_DECLARATION_TAG.equals( section ) && FEATURE_TAG.equals( name ) )
 						{
-							System.out.println( "Could not find spot with ID " + targetID + " - skipping edge " + sourceID + " → " + targetID );
-							continue;
+							if ( SPOT_FEATURE_DECLARATION_TAG.equals( subsection ) )
+								declareSpotFeature( reader );
+							else if ( EDGE_FEATURE_DECLARATION_TAG.equals( subsection ) )
+								declareLinkFeature( reader );
 						}
-
-						// Protect against link time inversion.
-						final Link link;
-						if ( source.getTimepoint() < target.getTimepoint() )
-							link = graph.addEdge( source, target, edgeRef ).init();
-						else
-							link = graph.addEdge( target, source, edgeRef ).init();
-
-						// Edge features.
-						for ( final String featureKey : linkDoubleFeatureMap.keySet() )
+						else if ( SPOT_COLLECTION_TAG.equals( section )
+								&& SPOT_FRAME_COLLECTION_TAG.equals( subsection )
+								&& SPOT_ELEMENT_TAG.equals( name ) )
 						{
-							final String attributeValue = edgeEl.getAttributeValue( featureKey );
-							if ( null != attributeValue )
-							{
-								final double val = Double.parseDouble( attributeValue );
-								final DoublePropertyMap< Link > pm = linkDoubleFeatureMap.get( featureKey );
-								pm.set( link, val );
-							}
+							readSpot( reader );
 						}
-						for ( final String featureKey : linkIntFeatureMap.keySet() )
+						else if ( TRACK_COLLECTION_TAG.equals( section )
+								&& TRACK_TAG.equals( subsection )
+								&& EDGE_TAG.equals( name ) )
 						{
-							final String attributeValue = edgeEl.getAttributeValue( featureKey );
-							if ( null != attributeValue )
-							{
-								final int val = NumberFormat.getInstance().parse( attributeValue ).intValue();
-								final IntPropertyMap< Link > pm = linkIntFeatureMap.get( featureKey );
-								pm.set( link, val );
-							}
+							readEdge( reader );
 						}
 					}
 				}
+				else if ( event == XMLStreamConstants.END_ELEMENT )
+				{
+					if ( depth == 2 && inModel )
+						return true;
+					depth--;
+				}
 			}
-			catch ( final ParseException e )
+			return false;
+		}
+
+		private void declareSpotFeature( final XMLStreamReader reader )
+		{
+			final String featureKey = reader.getAttributeValue( null, FEATURE_ATTRIBUTE );
+			if ( ignoredSpotFeatureKeys.contains( featureKey ) )
+				return;
+			//			final String featureName = reader.getAttributeValue( null, FEATURE_NAME_ATTRIBUTE );
+			//			final String featureShortName = reader.getAttributeValue( null, FEATURE_SHORT_NAME_ATTRIBUTE );
+			final String featureDimension = reader.getAttributeValue( null, FEATURE_DIMENSION_ATTRIBUTE );
+			final String units = dimensionToUnits( featureDimension, spaceUnits, timeUnits );
+			final boolean featureIsInt =
+					Boolean.parseBoolean( reader.getAttributeValue( null, FEATURE_ISINT_ATTRIBUTE ) );
+			if ( featureIsInt )
 			{
-				e.printStackTrace();
+				final IntPropertyMap< Spot > values =
+						new IntPropertyMap<>( graph.vertices().getRefPool(), Integer.MIN_VALUE );
+				spotFeatures.store( featureKey, dimensionToDimension( featureDimension ), units, values );
+				spotIntFeatureMap.put( featureKey, values );
 			}
-			finally
+			else
 			{
-				graph.releaseRef( ref );
-				graph.releaseRef( putRef );
-				graph.releaseRef( sourceRef );
-				graph.releaseRef( targetRef );
-				graph.releaseRef( edgeRef );
+				final DoublePropertyMap< Spot > values =
+						new DoublePropertyMap<>( graph.vertices().getRefPool(), Double.NaN );
+				spotFeatures.store( featureKey, dimensionToDimension( featureDimension ), units, values );
+				spotDoubleFeatureMap.put( featureKey, values );
 			}
+		}
 
-			/*
-			 * Feed property maps to feature model.
-			 */
+		private void declareLinkFeature( final XMLStreamReader reader )
+		{
+			final String featureKey = reader.getAttributeValue( null, FEATURE_ATTRIBUTE );
+			if ( ignoredLinkFeatureKeys.contains( featureKey ) )
+				return;
+			final String featureDimension = reader.getAttributeValue( null, FEATURE_DIMENSION_ATTRIBUTE );
+			final String units = dimensionToUnits( featureDimension, spaceUnits, timeUnits );
+			final boolean featureIsInt =
+					Boolean.parseBoolean( reader.getAttributeValue( null, FEATURE_ISINT_ATTRIBUTE ) );
+			if ( featureIsInt )
+			{
+				final IntPropertyMap< Link > values =
+						new IntPropertyMap<>( graph.edges().getRefPool(), Integer.MIN_VALUE );
+				linkFeatures.store( featureKey, dimensionToDimension( featureDimension ), units, values );
+				linkIntFeatureMap.put( featureKey, values );
+			}
+			else
+			{
+				final DoublePropertyMap< Link > values =
+						new DoublePropertyMap<>( graph.edges().getRefPool(), Double.NaN );
+				linkFeatures.store( featureKey, dimensionToDimension( featureDimension ), units, values );
+				linkDoubleFeatureMap.put( featureKey, values );
+			}
+		}
 
-			final FeatureModel featureModel = model.getFeatureModel();
-			featureModel.pauseListeners();
-			featureModel.declareFeature( spotFeatures );
-			featureModel.declareFeature( linkFeatures );
-			featureModel.resumeListeners();
-			finishImport();
+		private void readSpot( final XMLStreamReader reader )
+		{
+			final int n = reader.getAttributeCount();
+			String visibility = null;
+			String x = null;
+			String y = null;
+			String z = null;
+			String radius = null;
+			String frame = null;
+			String id = null;
+			String label = null;
+			for ( int i = 0; i < n; i++ )
+			{
+				final String value = reader.getAttributeValue( i );
+				switch ( reader.getAttributeLocalName( i ) )
+				{
+				case VISIBILITY_FEATURE_NAME:
+					visibility = value;
+					break;
+				case POSITION_X_FEATURE_NAME:
+					x = value;
+					break;
+				case POSITION_Y_FEATURE_NAME:
+					y = value;
+					break;
+				case POSITION_Z_FEATURE_NAME:
+					z = value;
+					break;
+				case RADIUS_FEATURE_NAME:
+					radius = value;
+					break;
+				case FRAME_FEATURE_NAME:
+					frame = value;
+					break;
+				case ID_FEATURE_NAME:
+					id = value;
+					break;
+				case LABEL_FEATURE_NAME:
+					label = value;
+					break;
+				}
+			}
+
+			final boolean visible = Integer.parseInt( visibility ) != 0;
+			if ( !visible )
+				return;
+
+			// Create spot.
+			pos[ 0 ] = Double.parseDouble( x );
+			pos[ 1 ] = Double.parseDouble( y );
+			pos[ 2 ] = Double.parseDouble( z );
+			final Spot spot = graph.addVertex( ref ).init(
+					( int ) Double.parseDouble( frame ),
+					pos,
+					Double.parseDouble( radius ) );
+			spot.setLabel( label );
+			idToSpotIDmap.put( Integer.parseInt( id ), spot, putRef );
+
+			// Spot features.
+			for ( int i = 0; i < n; i++ )
+			{
+				final String featureKey = reader.getAttributeLocalName( i );
+				final DoublePropertyMap< Spot > doubleFeature = spotDoubleFeatureMap.get( featureKey );
+				if ( doubleFeature != null )
+				{
+					doubleFeature.set( spot, Double.parseDouble( reader.getAttributeValue( i ) ) );
+					continue;
+				}
+				final IntPropertyMap< Spot > intFeature = spotIntFeatureMap.get( featureKey );
+				if ( intFeature != null )
+					intFeature.set( spot, parseInt( reader.getAttributeValue( i ) ) );
+			}
+		}
+
+		private void readEdge( final XMLStreamReader reader )
+		{
+			// Create links.
+			final int sourceID = Integer.parseInt( reader.getAttributeValue( null, EDGE_SOURCE_ATTRIBUTE ) );
+			final Spot source = idToSpotIDmap.get( sourceID, sourceRef );
+			final int targetID = Integer.parseInt( reader.getAttributeValue( null, EDGE_TARGET_ATTRIBUTE ) );
+			final Spot target = idToSpotIDmap.get( targetID, targetRef );
+
+			if ( source == null )
+			{
+				// TODO Echo warnings in a logger instead of sysout.
+				System.out.println( "Could not find spot with ID " + sourceID + " - skipping edge " + sourceID + " → " + targetID );
+				return;
+			}
+			if ( target == null )
+			{
+				System.out.println( "Could not find spot with ID " + targetID + " - skipping edge " + sourceID + " → " + targetID );
+				return;
+			}
+
+			// Protect against link time inversion.
+			final Link link;
+			if ( source.getTimepoint() < target.getTimepoint() )
+				link = graph.addEdge( source, target, edgeRef ).init();
+			else
+				link = graph.addEdge( target, source, edgeRef ).init();
+
+			// Edge features.
+			final int n = reader.getAttributeCount();
+			for ( int i = 0; i < n; i++ )
+			{
+				final String featureKey = reader.getAttributeLocalName( i );
+				final DoublePropertyMap< Link > doubleFeature = linkDoubleFeatureMap.get( featureKey );
+				if ( doubleFeature != null )
+				{
+					doubleFeature.set( link, Double.parseDouble( reader.getAttributeValue( i ) ) );
+					continue;
+				}
+				final IntPropertyMap< Link > intFeature = linkIntFeatureMap.get( featureKey );
+				if ( intFeature != null )
+					intFeature.set( link, parseInt( reader.getAttributeValue( i ) ) );
+			}
+		}
+
+		private int parseInt( final String value )
+		{
+			try
+			{
+				return numberFormat.parse( value ).intValue();
+			}
+			catch ( final ParseException e )
+			{
+				e.printStackTrace();
+				return Integer.MIN_VALUE;
+			}
 		}
 	}
 
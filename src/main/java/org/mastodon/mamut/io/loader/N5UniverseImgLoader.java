@@ -176,12 +176,29 @@ public class N5UniverseImgLoader implements ViewerImgLoader, MultiResolutionImgL
 
     private SharedQueue requestedSharedQueue;
 
+    private long requestedMaxCacheBytes = -1;
+
     @Override
     public synchronized void setNumFetcherThreads( final int n )
     {
         requestedNumFetcherThreads = n;
     }
 
+    /**
+     * Sets the maximum total size of the image cells kept in the cache. If
+     * {@code 0}, cells are only softly referenced. If negative (the default),
+     * {@link MastodonVolatileGlobalCellCache#defaultMaxCacheBytes()} is used.
+     *
+     * @param maxCacheBytes
+     *            the cache budget in bytes.
+     */
+    public synchronized void setMaxCacheBytes( final long maxCacheBytes )
+    {
+        requestedMaxCacheBytes = maxCacheBytes;
+        if ( cache != null && maxCacheBytes > 0 )
+            cache.setMaxCacheBytes( maxCacheBytes );
+    }
+
     @Override
     public void setCreatedSharedQueue( final SharedQueue createdSharedQueue )
     {
@@ -254,7 +271,10 @@ public class N5UniverseImgLoader implements ViewerImgLoader, MultiResolutionImgL
                     final SharedQueue queue = requestedSharedQueue != null
                             ? requestedSharedQueue
                             : ( createdSharedQueue = new SharedQueue( numFetcherThreads, maxNumLevels ) );
-                    cache = new MastodonVolatileGlobalCellCache( queue );
+                    final long maxCacheBytes = requestedMaxCacheBytes >= 0
+                            ? requestedMaxCacheBytes
+                            : MastodonVolatileGlobalCellCache.defaultMaxCacheBytes();
+                    cache = new MastodonVolatileGlobalCellCache( queue, maxCacheBytes );
                 }
                 catch ( final IOException e )
                 {
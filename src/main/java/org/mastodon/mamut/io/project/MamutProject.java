@@ -45,6 +45,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
 
 public class MamutProject
 {
@@ -172,10 +174,29 @@ public class MamutProject
 	}
 
 	public ProjectWriter openForWriting() throws IOException
+	{
+		return openForWriting( Deflater.NO_COMPRESSION );
+	}
+
+	/**
+	 * Opens this project for writing. If the project is a zip file, its
+	 * entries are compressed in parallel with the specified level, except for
+	 * the raw model and tags, which are dense and always stored uncompressed.
+	 *
+	 * @param compressionLevel
+	 *            the compression level of the zip entries, from
+	 *            {@link Deflater#NO_COMPRESSION} to
+	 *            {@link Deflater#BEST_COMPRESSION}. Ignored if the project is a
+	 *            folder.
+	 * @return a new {@link ProjectWriter}.
+	 * @throws IOException
+	 *             if the project cannot be opened for writing.
+	 */
+	public ProjectWriter openForWriting( final int compressionLevel ) throws IOException
 	{
 		return projectRoot.isDirectory()
 				? new WriteToDirectory()
-				: new WriteToZip();
+				: new WriteToZip( compressionLevel );
 	}
 
 	public interface ProjectReader extends Closeable
@@ -225,9 +246,12 @@ public class MamutProject
 		}
 
 		@Override
-		public InputStream getRawModelInputStream() throws FileNotFoundException
+		public InputStream getRawModelInputStream() throws IOException
 		{
-			return new FileInputStream( new File( projectRoot, RAW_MODEL_FILE_NAME ) );
+			final File file = new File( projectRoot, RAW_MODEL_FILE_NAME );
+			if ( !file.isFile() )
+				throw new FileNotFoundException( file.getAbsolutePath() );
+			return new MappedInputStream( file );
 		}
 
 		@Override
@@ -293,7 +317,7 @@ public class MamutProject
 		@Override
 		public InputStream getRawModelInputStream() throws IOException
 		{
-			return zip.getInputStream( RAW_MODEL_FILE_NAME );
+			return zip.getMappedInputStream( RAW_MODEL_FILE_NAME );
 		}
 
 		@Override
@@ -399,11 +423,11 @@ public class MamutProject
 
 		private final File pendingFile;
 
-		private WriteToZip() throws IOException
+		private WriteToZip( final int compressionLevel ) throws IOException
 		{
 			String suffix = "_pending";
 			pendingFile = new File( projectRoot.getParent(), projectRoot.getName() + suffix );
-			zip = new WriteZip( pendingFile );
+			zip = new WriteZip( pendingFile, compressionLevel );
 		}
 
 		@Override
@@ -415,13 +439,13 @@ public class MamutProject
 		@Override
 		public OutputStream getRawModelOutputStream() throws IOException
 		{
-			return zip.getOutputStream( RAW_MODEL_FILE_NAME );
+			return zip.getOutputStream( RAW_MODEL_FILE_NAME, ZipEntry.STORED );
 		}
 
 		@Override
 		public OutputStream getRawTagsOutputStream() throws IOException
 		{
-			return zip.getOutputStream( RAW_TAGS_FILE_NAME );
+			return zip.getOutputStream( RAW_TAGS_FILE_NAME, ZipEntry.STORED );
 		}
 
 		@Override
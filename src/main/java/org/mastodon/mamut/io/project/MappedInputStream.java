@@ -0,0 +1,257 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link InputStream} over a memory-mapped region of a file.
+ * <p>
+ * The region is mapped in segments of at most 1 GB, one at a time, so that
+ * files larger than 2 GB can be read. Reads are served with bulk copies from
+ * the mapped memory. The current segment is unmapped when the stream moves to
+ * the next one and when it is closed, so that the file can be overwritten
+ * afterwards, also on platforms that forbid it while it is mapped.
+ */
+public class MappedInputStream extends InputStream
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	/**
+	 * Whether a failure to unmap a buffer was already logged.
+	 */
+	private static volatile boolean unmapFailureLogged = false;
+
+	private final FileChannel channel;
+
+	private final long end;
+
+	private final long segmentSize;
+
+	private long segmentStart;
+
+	private MappedByteBuffer buffer;
+
+	private long mark;
+
+	/**
+	 * Maps the whole specified file.
+	 *
+	 * @param file
+	 *            the file to read.
+	 * @throws IOException
+	 *             if the file cannot be opened.
+	 */
+	public MappedInputStream( final File file ) throws IOException
+	{
+		this( file, 0, file.length() );
+	}
+
+	/**
+	 * Maps a region of the specified file.
+	 *
+	 * @param file
+	 *            the file to read.
+	 * @param offset
+	 *            the position of the region in the file.
+	 * @param length
+	 *            the length of the region, in bytes.
+	 * @throws IOException
+	 *             if the file cannot be opened.
+	 */
+	public MappedInputStream( final File file, final long offset, final long length ) throws IOException
+	{
+		this( file, offset, length, SEGMENT_SIZE );
+	}
+
+	MappedInputStream( final File file, final long offset, final long length, final long segmentSize ) throws IOException
+	{
+		this.channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+		this.end = offset + length;
+		this.segmentSize = segmentSize;
+		this.segmentStart = offset;
+		this.mark = offset;
+		this.buffer = null;
+	}
+
+	/**
+	 * Returns the position of the next byte to read in the file.
+	 */
+	private long position()
+	{
+		return buffer == null ? segmentStart : segmentStart + buffer.position();
+	}
+
+	/**
+	 * Makes sure the current segment has bytes left to read, mapping the next
+	 * segment if needed. Returns <code>false</code> at the end of the region.
+	 */
+	private boolean ensureRemaining() throws IOException
+	{
+		if ( buffer != null && buffer.hasRemaining() )
+			return true;
+		return seek( position() );
+	}
+
+	private boolean seek( final long position ) throws IOException
+	{
+		unmap( buffer );
+		buffer = null;
+		segmentStart = Math.min( position, end );
+		if ( segmentStart >= end )
+			return false;
+		buffer = channel.map( FileChannel.MapMode.READ_ONLY, segmentStart, Math.min( segmentSize, end - segmentStart ) );
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if ( !ensureRemaining() )
+			return -1;
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read( final byte[] b, final int off, final int len ) throws IOException
+	{
+		if ( len == 0 )
+			return 0;
+		if ( !ensureRemaining() )
+			return -1;
+		final int n = Math.min( len, buffer.remaining() );
+		buffer.get( b, off, n );
+		return n;
+	}
+
+	@Override
+	public long skip( final long n ) throws IOException
+	{
+		if ( n <= 0 )
+			return 0;
+		final long from = position();
+		final long to = Math.min( end, from + n );
+		if ( buffer != null && to < segmentStart + buffer.limit() )
+			buffer.position( ( int ) ( to - segmentStart ) );
+		else
+			seek( to );
+		return to - from;
+	}
+
+	@Override
+	public int available()
+	{
+		return ( int ) Math.min( Integer.MAX_VALUE, end - position() );
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return true;
+	}
+
+	@Override
+	public synchronized void mark( final int readlimit )
+	{
+		mark = position();
+	}
+
+	@Override
+	public synchronized void reset() throws IOException
+	{
+		seek( mark );
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		unmap( buffer );
+		buffer = null;
+		segmentStart = end;
+		channel.close();
+	}
+
+	/**
+	 * Releases the memory mapping of a buffer without waiting for it to be
+	 * garbage-collected. This relies on JDK internals, and does nothing if
+	 * they are not accessible, in which case the failure is logged once. The
+	 * buffer must not be used afterwards.
+	 */
+	private static void unmap( final ByteBuffer buffer )
+	{
+		if ( buffer == null || !buffer.isDirect() )
+			return;
+		try
+		{
+			// Java 9 and later.
+			final Class< ? > unsafeClass = Class.forName( "sun.misc.Unsafe" );
+			final Field field = unsafeClass.getDeclaredField( "theUnsafe" );
+			field.setAccessible( true );
+			final Method invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+			invokeCleaner.invoke( field.get( null ), buffer );
+			return;
+		}
+		catch ( final Exception | LinkageError e )
+		{
+			// Not on Java 9 or later, try the Java 8 way.
+		}
+		try
+		{
+			// Java 8.
+			final Method cleanerMethod = buffer.getClass().getMethod( "cleaner" );
+			cleanerMethod.setAccessible( true );
+			final Object cleaner = cleanerMethod.invoke( buffer );
+			if ( cleaner != null )
+				cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+		}
+		catch ( final Exception | LinkageError e )
+		{
+			if ( !unmapFailureLogged )
+			{
+				unmapFailureLogged = true;
+				logger.warn( "Could not unmap a memory-mapped project file. "
+						+ "It will stay mapped until garbage-collected.", e );
+			}
+		}
+	}
+}
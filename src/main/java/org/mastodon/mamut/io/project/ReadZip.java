@@ -29,10 +29,16 @@
 package org.mastodon.mamut.io.project;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.stream.Collectors;
@@ -41,6 +47,10 @@ import java.util.zip.ZipFile;
 
 public class ReadZip implements Closeable
 {
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+	private final File file;
+
 	private final ZipFile zipFile;
 
 	public ReadZip( final String fn ) throws IOException
@@ -50,6 +60,7 @@ public class ReadZip implements Closeable
 
 	public ReadZip( final File f ) throws IOException
 	{
+		file = f;
 		zipFile = new ZipFile( f );
 	}
 
@@ -68,6 +79,134 @@ public class ReadZip implements Closeable
 		throw new FileNotFoundException( "Entry \"" + fn + "\" not found in \"" + zipFile.getName() + "\"" );
 	}
 
+	/**
+	 * Returns a stream on the specified entry. If the entry is stored without
+	 * compression, its data is memory-mapped directly from the zip file.
+	 * Otherwise, the regular inflating stream is returned.
+	 *
+	 * @param fn
+	 *            the name of the entry.
+	 * @return a new input stream.
+	 * @throws IOException
+	 *             if the entry cannot be found or read.
+	 */
+	public InputStream getMappedInputStream( final String fn ) throws IOException
+	{
+		final ZipEntry entry = zipFile.getEntry( fn );
+		if ( entry == null || entry.getMethod() != ZipEntry.STORED )
+			return getInputStream( fn );
+
+		final long dataOffset = getDataOffset( fn );
+		if ( dataOffset < 0 )
+			return getInputStream( fn );
+		return new MappedInputStream( file, dataOffset, entry.getCompressedSize() );
+	}
+
+	/**
+	 * Returns the position of the data of the specified entry in the zip file,
+	 * or -1 if it cannot be found. {@link ZipFile} does not expose it, so it is
+	 * read from the central directory and the local header of the entry.
+	 */
+	private long getDataOffset( final String fn ) throws IOException
+	{
+		final byte[] name = fn.getBytes( StandardCharsets.UTF_8 );
+		try (final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ))
+		{
+			// Find the end of central directory record.
+			final long size = channel.size();
+			final int tailLength = ( int ) Math.min( size, 22 + 0xFFFF );
+			final ByteBuffer tail = read( channel, size - tailLength, tailLength );
+			int eocd = tailLength - 22;
+			while ( eocd >= 0 && tail.getInt( eocd ) != 0x06054b50 )
+				eocd--;
+			if ( eocd < 0 )
+				return -1;
+
+			long cdSize = tail.getInt( eocd + 12 ) & ZIP64_MAGIC;
+			long cdOffset = tail.getInt( eocd + 16 ) & ZIP64_MAGIC;
+			if ( cdSize == ZIP64_MAGIC || cdOffset == ZIP64_MAGIC )
+			{
+				// Read them from the ZIP64 end of central directory record.
+				final ByteBuffer locator = read( channel, size - tailLength + eocd - 20, 20 );
+				if ( locator.getInt( 0 ) != 0x07064b50 )
+					return -1;
+				final ByteBuffer zip64End = read( channel, locator.getLong( 8 ), 56 );
+				if ( zip64End.getInt( 0 ) != 0x06064b50 )
+					return -1;
+				cdSize = zip64End.getLong( 40 );
+				cdOffset = zip64End.getLong( 48 );
+			}
+
+			// Find the entry in the central directory.
+			final ByteBuffer cd = read( channel, cdOffset, ( int ) cdSize );
+			int p = 0;
+			while ( p + 46 <= cdSize && cd.getInt( p ) == 0x02014b50 )
+			{
+				final int nameLength = cd.getShort( p + 28 ) & 0xFFFF;
+				final int extraLength = cd.getShort( p + 30 ) & 0xFFFF;
+				final int commentLength = cd.getShort( p + 32 ) & 0xFFFF;
+				if ( nameLength == name.length && matches( cd, p + 46, name ) )
+				{
+					long localOffset = cd.getInt( p + 42 ) & ZIP64_MAGIC;
+					if ( localOffset == ZIP64_MAGIC )
+						localOffset = getZip64Offset( cd, p, p + 46 + nameLength, extraLength );
+					if ( localOffset < 0 )
+						return -1;
+					final ByteBuffer local = read( channel, localOffset, 30 );
+					if ( local.getInt( 0 ) != 0x04034b50 )
+						return -1;
+					return localOffset + 30 + ( local.getShort( 26 ) & 0xFFFF ) + ( local.getShort( 28 ) & 0xFFFF );
+				}
+				p += 46 + nameLength + extraLength + commentLength;
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Reads the local header offset of a central directory entry from its
+	 * ZIP64 extra field. Its fields are only present for the values that do
+	 * not fit in the central directory entry itself.
+	 */
+	private static long getZip64Offset( final ByteBuffer cd, final int entry, final int extraStart, final int extraLength )
+	{
+		int p = extraStart;
+		while ( p + 4 <= extraStart + extraLength )
+		{
+			final int id = cd.getShort( p ) & 0xFFFF;
+			final int length = cd.getShort( p + 2 ) & 0xFFFF;
+			if ( id == 0x0001 )
+			{
+				int q = p + 4;
+				if ( ( cd.getInt( entry + 24 ) & ZIP64_MAGIC ) == ZIP64_MAGIC )
+					q += 8;
+				if ( ( cd.getInt( entry + 20 ) & ZIP64_MAGIC ) == ZIP64_MAGIC )
+					q += 8;
+				return q + 8 <= p + 4 + length ? cd.getLong( q ) : -1;
+			}
+			p += 4 + length;
+		}
+		return -1;
+	}
+
+	private static boolean matches( final ByteBuffer buffer, final int offset, final byte[] name )
+	{
+		for ( int i = 0; i < name.length; i++ )
+			if ( buffer.get( offset + i ) != name[ i ] )
+				return false;
+		return true;
+	}
+
+	private static ByteBuffer read( final FileChannel channel, final long position, final int length ) throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( length ).order( ByteOrder.LITTLE_ENDIAN );
+		while ( buffer.hasRemaining() )
+			if ( channel.read( buffer, position + buffer.position() ) < 0 )
+				throw new EOFException( "Unexpected end of zip file" );
+		buffer.flip();
+		return buffer;
+	}
+
 	public Collection< String > listFile( final String fn )
 	{
 		return Collections.list( zipFile.entries() )
@@ -28,17 +28,85 @@
  */
 package org.mastodon.mamut.io.project;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
+/**
+ * Writes a zip archive, one entry at a time.
+ * <p>
+ * The data of each entry is cut in blocks that are compressed in parallel,
+ * while the caller keeps writing the next blocks and entries. Each deflated
+ * block is primed with the end of the previous one and ends on a sync flush,
+ * so the blocks of an entry concatenate into a single regular deflate stream.
+ * Archives are written with ZIP64 records when needed, and can be read with
+ * {@link java.util.zip.ZipFile}.
+ * <p>
+ * With a compression level of {@link Deflater#NO_COMPRESSION}, entries are
+ * stored without compression.
+ */
 public class WriteZip implements Closeable
 {
-	private final ZipOutputStream zos;
+	/**
+	 * The size of the blocks compressed in parallel.
+	 */
+	static final int BLOCK_SIZE = 1 << 22;
+
+	/**
+	 * Size of the first block of an entry. Blocks grow up to
+	 * {@link #BLOCK_SIZE} as the entry is written, so that small entries do
+	 * not allocate a full block.
+	 */
+	static final int INITIAL_BLOCK_SIZE = 1 << 16;
+
+	/**
+	 * The size of the deflate window, primed with the end of the previous
+	 * block.
+	 */
+	private static final int DICTIONARY_SIZE = 1 << 15;
+
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+	private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+	private final FileChannel channel;
+
+	private final int level;
+
+	private final ExecutorService executor;
+
+	private final int maxPendingBlocks;
+
+	/**
+	 * The writes to perform, in the order of the file.
+	 */
+	private final ArrayDeque< Step > steps;
+
+	private final List< Entry > entries;
+
+	private int pendingBlocks;
+
+	private long position;
 
 	private ZipEntryStream current;
 
@@ -49,67 +117,507 @@ public class WriteZip implements Closeable
 
 	public WriteZip( File f ) throws IOException
 	{
-		zos = new ZipOutputStream( new FileOutputStream( f ) );
-		zos.setMethod( ZipOutputStream.DEFLATED );
-		zos.setLevel( 0 );
+		this( f, Deflater.NO_COMPRESSION );
+	}
+
+	/**
+	 * Creates a zip archive, compressing its entries with the specified level
+	 * and as many threads as there are available processors.
+	 *
+	 * @param f
+	 *            the file to write.
+	 * @param level
+	 *            the compression level, from {@link Deflater#NO_COMPRESSION},
+	 *            which stores the entries, to {@link Deflater#BEST_COMPRESSION}.
+	 * @throws IOException
+	 *             if the file cannot be created.
+	 */
+	public WriteZip( File f, int level ) throws IOException
+	{
+		this( f, level, Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * Creates a zip archive, compressing its entries with the specified level
+	 * and number of threads.
+	 *
+	 * @param f
+	 *            the file to write.
+	 * @param level
+	 *            the compression level, from {@link Deflater#NO_COMPRESSION},
+	 *            which stores the entries, to {@link Deflater#BEST_COMPRESSION}.
+	 * @param numThreads
+	 *            the number of threads used to compress the entries.
+	 * @throws IOException
+	 *             if the file cannot be created.
+	 */
+	public WriteZip( File f, int level, int numThreads ) throws IOException
+	{
+		if ( level != Deflater.DEFAULT_COMPRESSION && ( level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION ) )
+			throw new IllegalArgumentException( "Invalid compression level: " + level );
+		this.level = level;
+		this.channel = FileChannel.open( f.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE );
+		this.executor = Executors.newFixedThreadPool( Math.max( 1, numThreads ), r -> {
+			final Thread thread = new Thread( r, "WriteZip compressor" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		this.maxPendingBlocks = 2 * Math.max( 1, numThreads );
+		this.steps = new ArrayDeque<>();
+		this.entries = new ArrayList<>();
+		this.position = 0;
 		current = null;
 	}
 
+	/**
+	 * Opens a new entry, compressed with the level of this archive.
+	 *
+	 * @param fn
+	 *            the name of the entry.
+	 * @return an output stream to write the content of the entry to.
+	 * @throws IOException
+	 *             if the stream of the previous entry is still open.
+	 */
 	public OutputStream getOutputStream( String fn ) throws IOException
 	{
+		return getOutputStream( fn, level == Deflater.NO_COMPRESSION ? ZipEntry.STORED : ZipEntry.DEFLATED );
+	}
+
+	/**
+	 * Opens a new entry with the specified compression method.
+	 *
+	 * @param fn
+	 *            the name of the entry.
+	 * @param method
+	 *            {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+	 * @return an output stream to write the content of the entry to.
+	 * @throws IOException
+	 *             if the stream of the previous entry is still open.
+	 */
+	public OutputStream getOutputStream( String fn, int method ) throws IOException
+	{
+		if ( method != ZipEntry.STORED && method != ZipEntry.DEFLATED )
+			throw new IllegalArgumentException( "Invalid compression method: " + method );
 		if ( current != null && current.isOpen )
-			throw new IOException( "OutputStream for previous entry \"" + current.entry + "\" is still open" );
-		current = new ZipEntryStream( new ZipEntry( fn ) );
+			throw new IOException( "OutputStream for previous entry \"" + current.entry.name + "\" is still open" );
+		current = new ZipEntryStream( new Entry( fn, method ) );
 		return current;
 	}
 
 	@Override
 	public void close() throws IOException
 	{
-		zos.close();
+		try
+		{
+			if ( current != null )
+				current.close();
+			while ( !steps.isEmpty() )
+				writeNextStep();
+			writeCentralDirectory();
+		}
+		finally
+		{
+			executor.shutdownNow();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Enqueues a write, and performs the writes that are ready.
+	 */
+	private void addStep( final Step step ) throws IOException
+	{
+		steps.add( step );
+		while ( !steps.isEmpty() && ( pendingBlocks > maxPendingBlocks || steps.peek().isDone() ) )
+			writeNextStep();
+	}
+
+	private void writeNextStep() throws IOException
+	{
+		steps.poll().write();
+	}
+
+	private void write( final ByteBuffer buffer ) throws IOException
+	{
+		while ( buffer.hasRemaining() )
+			position += channel.write( buffer );
+	}
+
+	private void writeLocalHeader( final Entry entry ) throws IOException
+	{
+		entry.offset = position;
+		write( entry.localHeader() );
+	}
+
+	private void patchLocalHeader( final Entry entry ) throws IOException
+	{
+		final ByteBuffer header = entry.localHeader();
+		long pos = entry.offset;
+		while ( header.hasRemaining() )
+			pos += channel.write( header, pos );
+		entries.add( entry );
+	}
+
+	private void writeCentralDirectory() throws IOException
+	{
+		final long cdOffset = position;
+		for ( final Entry entry : entries )
+			write( entry.centralHeader() );
+		final long cdSize = position - cdOffset;
+		final int count = entries.size();
+
+		final ByteBuffer end = ByteBuffer.allocate( 56 + 20 + 22 ).order( ByteOrder.LITTLE_ENDIAN );
+		if ( count >= ZIP64_MAGIC_COUNT || cdSize >= ZIP64_MAGIC || cdOffset >= ZIP64_MAGIC )
+		{
+			final long zip64EndOffset = position;
+			// ZIP64 end of central directory record.
+			end.putInt( 0x06064b50 );
+			end.putLong( 44 );
+			end.putShort( ( short ) 45 );
+			end.putShort( ( short ) 45 );
+			end.putInt( 0 );
+			end.putInt( 0 );
+			end.putLong( count );
+			end.putLong( count );
+			end.putLong( cdSize );
+			end.putLong( cdOffset );
+			// ZIP64 end of central directory locator.
+			end.putInt( 0x07064b50 );
+			end.putInt( 0 );
+			end.putLong( zip64EndOffset );
+			end.putInt( 1 );
+		}
+		// End of central directory record.
+		end.putInt( 0x06054b50 );
+		end.putShort( ( short ) 0 );
+		end.putShort( ( short ) 0 );
+		end.putShort( ( short ) Math.min( count, ZIP64_MAGIC_COUNT ) );
+		end.putShort( ( short ) Math.min( count, ZIP64_MAGIC_COUNT ) );
+		end.putInt( ( int ) Math.min( cdSize, ZIP64_MAGIC ) );
+		end.putInt( ( int ) Math.min( cdOffset, ZIP64_MAGIC ) );
+		end.putShort( ( short ) 0 );
+		end.flip();
+		write( end );
+	}
+
+	/**
+	 * Compresses a block of an entry into a raw deflate stream. The stream is
+	 * ended if this is the last block of the entry, and sync-flushed
+	 * otherwise.
+	 */
+	private static byte[] deflate( final int level, final byte[] data, final int length, final byte[] dictionary, final int dictionaryLength, final boolean last )
+	{
+		final Deflater deflater = new Deflater( level, true );
+		try
+		{
+			if ( dictionary != null )
+				deflater.setDictionary( dictionary, dictionary.length - dictionaryLength, dictionaryLength );
+			deflater.setInput( data, 0, length );
+			final ByteArrayOutputStream out = new ByteArrayOutputStream( Math.max( 64, length / 2 ) );
+			final byte[] buffer = new byte[ 1 << 16 ];
+			if ( last )
+			{
+				deflater.finish();
+				while ( !deflater.finished() )
+				{
+					final int n = deflater.deflate( buffer );
+					out.write( buffer, 0, n );
+				}
+			}
+			else
+			{
+				int n;
+				do
+				{
+					n = deflater.deflate( buffer, 0, buffer.length, Deflater.SYNC_FLUSH );
+					out.write( buffer, 0, n );
+				}
+				while ( n == buffer.length );
+			}
+			return out.toByteArray();
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * A write to the archive file.
+	 */
+	private interface Step
+	{
+		public default boolean isDone()
+		{
+			return true;
+		}
+
+		public void write() throws IOException;
+	}
+
+	/**
+	 * Writes a block of entry data once it is compressed.
+	 */
+	private class BlockStep implements Step
+	{
+		private final Entry entry;
+
+		private final Future< byte[] > data;
+
+		BlockStep( final Entry entry, final Future< byte[] > data )
+		{
+			this.entry = entry;
+			this.data = data;
+			pendingBlocks++;
+		}
+
+		@Override
+		public boolean isDone()
+		{
+			return data.isDone();
+		}
+
+		@Override
+		public void write() throws IOException
+		{
+			final byte[] bytes;
+			try
+			{
+				bytes = data.get();
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException( "Interrupted while compressing entry \"" + entry.name + "\"", e );
+			}
+			catch ( final ExecutionException e )
+			{
+				throw new IOException( "Could not compress entry \"" + entry.name + "\"", e.getCause() );
+			}
+			pendingBlocks--;
+			entry.compressedSize += bytes.length;
+			WriteZip.this.write( ByteBuffer.wrap( bytes ) );
+		}
+	}
+
+	/**
+	 * The metadata of an entry.
+	 */
+	private static class Entry
+	{
+		final String name;
+
+		final byte[] nameBytes;
+
+		final int method;
+
+		final int dosTime;
+
+		final int dosDate;
+
+		long offset;
+
+		long crc;
+
+		long size;
+
+		long compressedSize;
+
+		Entry( final String name, final int method )
+		{
+			this.name = name;
+			this.nameBytes = name.getBytes( StandardCharsets.UTF_8 );
+			this.method = method;
+			final LocalDateTime t = LocalDateTime.now();
+			if ( t.getYear() < 1980 )
+			{
+				dosDate = ( 1 << 5 ) | 1;
+				dosTime = 0;
+			}
+			else
+			{
+				dosDate = ( ( t.getYear() - 1980 ) << 9 ) | ( t.getMonthValue() << 5 ) | t.getDayOfMonth();
+				dosTime = ( t.getHour() << 11 ) | ( t.getMinute() << 5 ) | ( t.getSecond() >> 1 );
+			}
+		}
+
+		/**
+		 * The local header always has a ZIP64 extra field, because the sizes
+		 * are not known yet when it is first written. It is patched with the
+		 * sizes and CRC once the entry is complete.
+		 */
+		ByteBuffer localHeader()
+		{
+			final ByteBuffer b = ByteBuffer.allocate( 30 + nameBytes.length + 20 ).order( ByteOrder.LITTLE_ENDIAN );
+			b.putInt( 0x04034b50 );
+			b.putShort( ( short ) 45 );
+			b.putShort( ( short ) 0x0800 );
+			b.putShort( ( short ) method );
+			b.putShort( ( short ) dosTime );
+			b.putShort( ( short ) dosDate );
+			b.putInt( ( int ) crc );
+			b.putInt( ( int ) Math.min( compressedSize, ZIP64_MAGIC ) );
+			b.putInt( ( int ) Math.min( size, ZIP64_MAGIC ) );
+			b.putShort( ( short ) nameBytes.length );
+			b.putShort( ( short ) 20 );
+			b.put( nameBytes );
+			b.putShort( ( short ) 0x0001 );
+			b.putShort( ( short ) 16 );
+			b.putLong( size );
+			b.putLong( compressedSize );
+			b.flip();
+			return b;
+		}
+
+		ByteBuffer centralHeader()
+		{
+			final boolean zip64Size = size >= ZIP64_MAGIC;
+			final boolean zip64CompressedSize = compressedSize >= ZIP64_MAGIC;
+			final boolean zip64Offset = offset >= ZIP64_MAGIC;
+			final int extraLength = ( zip64Size ? 8 : 0 ) + ( zip64CompressedSize ? 8 : 0 ) + ( zip64Offset ? 8 : 0 );
+			final boolean zip64 = extraLength > 0;
+
+			final ByteBuffer b = ByteBuffer.allocate( 46 + nameBytes.length + ( zip64 ? 4 + extraLength : 0 ) ).order( ByteOrder.LITTLE_ENDIAN );
+			b.putInt( 0x02014b50 );
+			b.putShort( ( short ) 45 );
+			b.putShort( ( short ) ( zip64 ? 45 : 20 ) );
+			b.putShort( ( short ) 0x0800 );
+			b.putShort( ( short ) method );
+			b.putShort( ( short ) dosTime );
+			b.putShort( ( short ) dosDate );
+			b.putInt( ( int ) crc );
+			b.putInt( ( int ) Math.min( compressedSize, ZIP64_MAGIC ) );
+			b.putInt( ( int ) Math.min( size, ZIP64_MAGIC ) );
+			b.putShort( ( short ) nameBytes.length );
+			b.putShort( ( short ) ( zip64 ? 4 + extraLength : 0 ) );
+			b.putShort( ( short ) 0 );
+			b.putShort( ( short ) 0 );
+			b.putShort( ( short ) 0 );
+			b.putInt( 0 );
+			b.putInt( ( int ) Math.min( offset, ZIP64_MAGIC ) );
+			b.put( nameBytes );
+			if ( zip64 )
+			{
+				b.putShort( ( short ) 0x0001 );
+				b.putShort( ( short ) extraLength );
+				if ( zip64Size )
+					b.putLong( size );
+				if ( zip64CompressedSize )
+					b.putLong( compressedSize );
+				if ( zip64Offset )
+					b.putLong( offset );
+			}
+			b.flip();
+			return b;
+		}
 	}
 
 	private class ZipEntryStream extends OutputStream
 	{
 		boolean isOpen;
 
-		ZipEntry entry;
+		final Entry entry;
 
-		ZipEntryStream( ZipEntry entry ) throws IOException
+		private final CRC32 crc;
+
+		private byte[] block;
+
+		private int count;
+
+		/**
+		 * The previous block, used as dictionary for the next one.
+		 */
+		private byte[] previous;
+
+		ZipEntryStream( Entry entry ) throws IOException
 		{
-			zos.putNextEntry( entry );
+			this.entry = entry;
+			this.crc = new CRC32();
+			this.block = new byte[ INITIAL_BLOCK_SIZE ];
+			this.count = 0;
+			addStep( () -> writeLocalHeader( entry ) );
 			isOpen = true;
 		}
 
 		@Override
 		public void write( final int b ) throws IOException
 		{
-			zos.write( b );
+			ensureCapacity();
+			block[ count++ ] = ( byte ) b;
 		}
 
 		@Override
 		public void write( final byte[] b ) throws IOException
 		{
-			zos.write( b );
+			write( b, 0, b.length );
 		}
 
 		@Override
-		public void write( final byte[] b, final int off, final int len ) throws IOException
+		public void write( final byte[] b, int off, int len ) throws IOException
 		{
-			zos.write( b, off, len );
+			while ( len > 0 )
+			{
+				ensureCapacity();
+				final int n = Math.min( len, block.length - count );
+				System.arraycopy( b, off, block, count, n );
+				count += n;
+				off += n;
+				len -= n;
+			}
 		}
 
-		@Override
-		public void flush() throws IOException
+		/**
+		 * Makes room for at least one more byte, by growing the current block
+		 * or, if it is full-sized, by submitting it.
+		 */
+		private void ensureCapacity() throws IOException
 		{
-			zos.flush();
+			if ( count < block.length )
+				return;
+			if ( block.length < BLOCK_SIZE )
+				block = Arrays.copyOf( block, Math.min( BLOCK_SIZE, 2 * block.length ) );
+			else
+				submitBlock( false );
 		}
 
+		private void submitBlock( final boolean last ) throws IOException
+		{
+			final byte[] data = block;
+			final int length = count;
+			crc.update( data, 0, length );
+			entry.size += length;
+
+			final Future< byte[] > future;
+			if ( entry.method == ZipEntry.STORED )
+			{
+				future = CompletableFuture.completedFuture( length == data.length ? data : Arrays.copyOf( data, length ) );
+			}
+			else
+			{
+				final byte[] dictionary = previous;
+				final int dictionaryLength = dictionary == null ? 0 : Math.min( DICTIONARY_SIZE, dictionary.length );
+				future = executor.submit( () -> deflate( level, data, length, dictionary, dictionaryLength, last ) );
+			}
+			previous = data;
+			block = last ? null : new byte[ BLOCK_SIZE ];
+			count = 0;
+			addStep( new BlockStep( entry, future ) );
+		}
+
+		@Override
+		public void flush() throws IOException
+		{}
+
 		@Override
 		public void close() throws IOException
 		{
-			zos.closeEntry();
+			if ( !isOpen )
+				return;
 			isOpen = false;
+			submitBlock( true );
+			entry.crc = crc.getValue();
+			addStep( () -> patchLocalHeader( entry ) );
 		}
 	}
 }
@@ -58,6 +58,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 import javax.swing.text.AbstractDocument;
 import javax.swing.text.AttributeSet;
@@ -67,6 +68,8 @@ import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyleContext;
 
+import org.mastodon.ui.ProgressListener;
+
 class LauncherGUI extends JPanel
 {
 
@@ -447,6 +450,32 @@ class LauncherGUI extends JPanel
 		log( status, GREEN_COLOR );
 	}
 
+	/**
+	 * Returns a {@link ProgressListener} that logs the loading stages it is
+	 * notified of. Can be called from any thread.
+	 *
+	 * @return a new progress listener.
+	 */
+	public ProgressListener getProgressListener()
+	{
+		return new ProgressListener()
+		{
+			@Override
+			public void showStatus( final String string )
+			{
+				SwingUtilities.invokeLater( () -> log( string + "\n" ) );
+			}
+
+			@Override
+			public void showProgress( final int current, final int total )
+			{}
+
+			@Override
+			public void clearStatus()
+			{}
+		};
+	}
+
 	public void setLog( final String string )
 	{
 		logger.textPane.setEditable( true );
@@ -66,6 +66,7 @@ import org.mastodon.mamut.ProjectModel;
 import org.mastodon.mamut.io.ProjectLoader;
 import org.mastodon.mamut.io.project.MamutProject;
 import org.mastodon.mamut.io.project.MamutProjectIO;
+import org.mastodon.ui.ProgressListener;
 import org.mastodon.ui.util.EverythingDisablerAndReenabler;
 import org.mastodon.ui.util.ExtensionFileFilter;
 import org.mastodon.ui.util.FileChooser;
@@ -144,9 +145,35 @@ public class LauncherUtil
 	 * @return a new {@link ProjectModel}.
 	 */
 	public static ProjectModel createProjectFromBdvFileWithDialog( final File file, final Context context, final Component parentComponent, final Consumer< String > errorConsumer )
+	{
+		return createProjectFromBdvFileWithDialog( file, context, parentComponent, errorConsumer, null );
+	}
+
+	/**
+	 * Creates a new project from a BDV file, reporting the progress of the
+	 * loading.
+	 *
+	 * @param file
+	 *            the BDX XML file.
+	 * @param context
+	 *            the current context.
+	 * @param parentComponent
+	 *            a component to use as parent to show dialogs during opening.
+	 *            Can be <code>null</code>.
+	 * @param errorConsumer
+	 *            a consumer that will receive an user-readable error message if
+	 *            something wrong happens.
+	 * @param progress
+	 *            a listener notified as the loading stages complete. Can be
+	 *            <code>null</code>.
+	 * @return a new {@link ProjectModel}.
+	 * @see #createProjectFromBdvFileWithDialog(File, Context, Component,
+	 *      Consumer)
+	 */
+	public static ProjectModel createProjectFromBdvFileWithDialog( final File file, final Context context, final Component parentComponent, final Consumer< String > errorConsumer, final ProgressListener progress )
 	{
 		final MamutProject project = MamutProjectIO.fromBdvFile( file );
-		return openWithDialog( project, context, parentComponent, errorConsumer );
+		return openWithDialog( project, context, parentComponent, errorConsumer, progress );
 	}
 
 	/**
@@ -326,10 +353,37 @@ public class LauncherUtil
 	 *         dummy dataset.
 	 */
 	public static synchronized ProjectModel openWithDialog( final MamutProject project, final Context context, final Component parentComponent, final Consumer< String > errorConsumer )
+	{
+		return openWithDialog( project, context, parentComponent, errorConsumer, null );
+	}
+
+	/**
+	 * Opens a project interactively from a project object, reporting the
+	 * progress of the loading.
+	 *
+	 * @param project
+	 *            the object describing the project on disk.
+	 * @param context
+	 *            the current context.
+	 * @param parentComponent
+	 *            a component to use as parent to show dialogs during opening.
+	 *            Can be <code>null</code>.
+	 * @param errorConsumer
+	 *            a consumer that will receive an user-readable error message if
+	 *            something wrong happens.
+	 * @param progress
+	 *            a listener notified as the loading stages complete. Can be
+	 *            <code>null</code>.
+	 * @return the loaded {@link ProjectModel}, or <code>null</code> if the
+	 *         image cannot be loaded and the user declined to substitute a
+	 *         dummy dataset.
+	 * @see #openWithDialog(MamutProject, Context, Component, Consumer)
+	 */
+	public static synchronized ProjectModel openWithDialog( final MamutProject project, final Context context, final Component parentComponent, final Consumer< String > errorConsumer, final ProgressListener progress )
 	{
 		try
 		{
-			return ProjectLoader.open( project, context, true, false );
+			return ProjectLoader.open( project, context, true, false, progress );
 		}
 		catch ( final SpimDataException | IOException | RuntimeException e )
 		{
@@ -337,7 +391,7 @@ public class LauncherUtil
 			{
 				try
 				{
-					return ProjectLoader.open( project, context, true, true );
+					return ProjectLoader.open( project, context, true, true, progress );
 				}
 				catch ( final Exception e1 )
 				{
@@ -162,7 +162,7 @@ public class MastodonLauncher extends JFrame
 			{
 				// Create new blank project from BDV file.
 				final File bdvFile = new File( gui.importSimiBioCellPanel.textAreaBDVFile.getText() );
-				final ProjectModel appModel = LauncherUtil.createProjectFromBdvFileWithDialog( bdvFile, context, gui, gui::error );
+				final ProjectModel appModel = LauncherUtil.createProjectFromBdvFileWithDialog( bdvFile, context, gui, gui::error, gui.getProgressListener() );
 
 				final Model model = appModel.getModel();
 				final AbstractSpimData< ? > spimData = appModel.getSharedBdvData().getSpimData();
@@ -261,7 +261,7 @@ public class MastodonLauncher extends JFrame
 
 				// Create new blank project from BDV file.
 				final File bdvFile = new File( gui.importTGMMPanel.textAreaBDVFile.getText() );
-				final ProjectModel appModel = LauncherUtil.createProjectFromBdvFileWithDialog( bdvFile, context, gui, gui::error );
+				final ProjectModel appModel = LauncherUtil.createProjectFromBdvFileWithDialog( bdvFile, context, gui, gui::error, gui.getProgressListener() );
 
 				final Model model = appModel.getModel();
 				final AbstractSpimData< ? > spimData = appModel.getSharedBdvData().getSpimData();
@@ -358,7 +358,7 @@ public class MastodonLauncher extends JFrame
 			try
 			{
 				final ProjectModel appModel =
-						LauncherUtil.createProjectFromBdvFileWithDialog( gui.newFromUrlPanel.xmlFile, context, gui, gui::error );
+						LauncherUtil.createProjectFromBdvFileWithDialog( gui.newFromUrlPanel.xmlFile, context, gui, gui::error, gui.getProgressListener() );
 				new MainWindow( appModel ).setVisible( true );
 				dispose();
 			}
@@ -388,7 +388,7 @@ public class MastodonLauncher extends JFrame
 			new Thread( () -> {
 				try
 				{
-					final ProjectModel appModel = LauncherUtil.createProjectFromBdvFileWithDialog( file, context, gui, gui::error );
+					final ProjectModel appModel = LauncherUtil.createProjectFromBdvFileWithDialog( file, context, gui, gui::error, gui.getProgressListener() );
 					new MainWindow( appModel ).setVisible( true );
 					dispose();
 				}
@@ -417,7 +417,7 @@ public class MastodonLauncher extends JFrame
 			new Thread( () -> {
 				try
 				{
-					final ProjectModel appModel = ProjectCreator.createProjectFromImp( imp, context );
+					final ProjectModel appModel = ProjectCreator.createProjectFromImp( imp, context, gui.getProgressListener() );
 					final MainWindow mainWindow = new MainWindow( appModel );
 
 					/*
@@ -549,7 +549,7 @@ public class MastodonLauncher extends JFrame
 			{
 				final TrackMateImporter importer = new TrackMateImporter( file );
 				project = importer.createProject();
-				final ProjectModel appModel = ProjectLoader.open( project, context );
+				final ProjectModel appModel = ProjectLoader.open( project, context, false, false, gui.getProgressListener() );
 
 				final FeatureSpecsService featureSpecsService = context.getService( FeatureSpecsService.class );
 				importer.readModel( appModel.getModel(), featureSpecsService );
@@ -608,7 +608,7 @@ public class MastodonLauncher extends JFrame
 				try
 				{
 					final MamutProject project = MamutProjectIO.load( file.getAbsolutePath() );
-					final ProjectModel appModel = LauncherUtil.openWithDialog( project, context, this, gui::error );
+					final ProjectModel appModel = LauncherUtil.openWithDialog( project, context, this, gui::error, gui.getProgressListener() );
 					if ( appModel == null )
 						return;
 					new MainWindow( appModel ).setVisible( true );
@@ -0,0 +1,782 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.mastodon.graph.GraphIdBimap;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.graph.io.RawGraphIO.FileIdToGraphMap;
+import org.mastodon.graph.io.RawGraphIO.GraphToFileIdMap;
+import org.mastodon.model.tag.DefaultTagSetModel;
+import org.mastodon.model.tag.ObjTags;
+import org.mastodon.model.tag.TagSetStructure;
+import org.mastodon.model.tag.TagSetStructure.Tag;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
+import org.mastodon.properties.Property;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Records the changes made to a {@link ModelGraph} since it was last loaded
+ * or saved, as a compact binary journal that can be replayed onto the saved
+ * model to recover them.
+ * <p>
+ * The journal listens to the same changes as the undo recorder of the model:
+ * spots and links added and removed, spot position, covariance and label, spot
+ * and link tags, and the tag-set structure. Spots and links are identified by their file ids in the
+ * last save, and the ones created since by the following ids, in creation
+ * order. Replaying the journal on the saved model therefore recreates the
+ * same ids.
+ * <p>
+ * Recording only happens while the journal is enabled, from the moment it is
+ * reset with the file ids of a load or a save. Records accumulate in memory
+ * until they are {@link #drain() drained}, which is cheap enough to be done
+ * under the model lock. A graph rebuild, for instance by an import, cannot be
+ * journaled and stops the recording until the next reset.
+ */
+public class ChangeJournal implements GraphListener< Spot, Link >
+{
+
+	private static final byte ADD_SPOT = 1;
+
+	private static final byte MOVE_SPOT = 2;
+
+	private static final byte SET_COVARIANCE = 3;
+
+	private static final byte SET_LABEL = 4;
+
+	private static final byte REMOVE_SPOT = 5;
+
+	private static final byte ADD_LINK = 6;
+
+	private static final byte REMOVE_LINK = 7;
+
+	private static final byte TAG_SPOT = 8;
+
+	private static final byte TAG_LINK = 9;
+
+	private static final byte SET_TAG_SETS = 10;
+
+	private final ModelGraph graph;
+
+	private final GraphIdBimap< Spot, Link > idBimap;
+
+	private final DefaultTagSetModel< Spot, Link > tagSetModel;
+
+	private final double[] pos = new double[ 3 ];
+
+	private final double[][] cov = new double[ 3 ][ 3 ];
+
+	/**
+	 * Journal ids of the spots, indexed by their id in the graph.
+	 */
+	private final TIntArrayList vertexIds = new TIntArrayList();
+
+	/**
+	 * Journal ids of the links, indexed by their id in the graph.
+	 */
+	private final TIntArrayList edgeIds = new TIntArrayList();
+
+	private int nextVertexId;
+
+	private int nextEdgeId;
+
+	private int numBaseVertices;
+
+	private int numBaseEdges;
+
+	private ByteArrayOutputStream bytes;
+
+	private DataOutputStream out;
+
+	private boolean enabled;
+
+	private boolean recording;
+
+	private long generation;
+
+	/**
+	 * Whether the save this journal was reset on is still being written.
+	 */
+	private boolean saving;
+
+	ChangeJournal(
+			final ModelGraph graph,
+			final DefaultTagSetModel< Spot, Link > tagSetModel,
+			final Property< Spot > vertexTags,
+			final Property< Link > edgeTags )
+	{
+		this.graph = graph;
+		this.idBimap = graph.idmap();
+		this.tagSetModel = tagSetModel;
+		graph.addGraphListener( this );
+		graph.getVertexPool().positionProperty().propertyChangeListeners().add( this::positionChanged );
+		graph.addVertexCovarianceListener( this::covarianceChanged );
+		graph.addVertexLabelListener( this::labelChanged );
+		vertexTags.propertyChangeListeners().add( this::vertexTagsChanged );
+		edgeTags.propertyChangeListeners().add( this::edgeTagsChanged );
+		tagSetModel.listeners().add( this::tagSetStructureChanged );
+	}
+
+	/**
+	 * Enables or disables this journal. A disabled journal does not record
+	 * anything and frees its memory. An enabled journal starts recording at
+	 * the next reset.
+	 *
+	 * @param enabled
+	 *            whether to enable this journal.
+	 */
+	public synchronized void setEnabled( final boolean enabled )
+	{
+		this.enabled = enabled;
+		if ( !enabled )
+			stop();
+	}
+
+	public synchronized boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Returns whether changes are currently recorded.
+	 *
+	 * @return <code>true</code> if this journal is recording.
+	 */
+	public synchronized boolean isRecording()
+	{
+		return recording;
+	}
+
+	/**
+	 * Starts a new journal on the model just loaded with the specified file
+	 * ids. Does nothing if this journal is disabled.
+	 *
+	 * @param idmap
+	 *            the file ids of the loaded spots and links.
+	 */
+	public synchronized void reset( final FileIdToGraphMap< Spot, Link > idmap )
+	{
+		if ( !enabled )
+			return;
+		clearIds();
+		final int numVertices = graph.vertices().size();
+		final int numEdges = graph.edges().size();
+		final Spot vref = graph.vertexRef();
+		final Link eref = graph.edgeRef();
+		for ( int i = 0; i < numVertices; i++ )
+			setId( vertexIds, idBimap.getVertexId( idmap.vertices().getObject( i, vref ) ), i );
+		for ( int i = 0; i < numEdges; i++ )
+			setId( edgeIds, idBimap.getEdgeId( idmap.edges().getObject( i, eref ) ), i );
+		graph.releaseRef( vref );
+		graph.releaseRef( eref );
+		start( numVertices, numEdges );
+	}
+
+	/**
+	 * Starts a new journal on the model being saved with the specified file
+	 * ids. Must be called while holding the read lock under which the model
+	 * was written, so that no change is missed. Changes are recorded from
+	 * then on, but cannot be drained before the save is completed with
+	 * {@link #saveCompleted()}, or abandoned with {@link #suspend()}. Does
+	 * nothing if this journal is disabled.
+	 *
+	 * @param idmap
+	 *            the file ids of the saved spots and links.
+	 */
+	public synchronized void reset( final GraphToFileIdMap< Spot, Link > idmap )
+	{
+		if ( !enabled )
+			return;
+		clearIds();
+		for ( final Spot v : graph.vertices() )
+			setId( vertexIds, idBimap.getVertexId( v ), idmap.vertices().getId( v ) );
+		for ( final Link e : graph.edges() )
+			setId( edgeIds, idBimap.getEdgeId( e ), idmap.edges().getId( e ) );
+		start( graph.vertices().size(), graph.edges().size() );
+		saving = true;
+	}
+
+	/**
+	 * Signals that the save this journal was last reset on is complete and
+	 * its files are closed. The recorded changes can be drained from then on.
+	 */
+	public synchronized void saveCompleted()
+	{
+		saving = false;
+	}
+
+	/**
+	 * Stops recording until the next reset, for instance because a save
+	 * failed after the journal was reset on it.
+	 */
+	public synchronized void suspend()
+	{
+		if ( recording )
+			stop();
+	}
+
+	private void start( final int numVertices, final int numEdges )
+	{
+		numBaseVertices = numVertices;
+		numBaseEdges = numEdges;
+		nextVertexId = numVertices;
+		nextEdgeId = numEdges;
+		bytes = new ByteArrayOutputStream();
+		out = new DataOutputStream( bytes );
+		recording = true;
+		saving = false;
+		generation++;
+	}
+
+	private void stop()
+	{
+		recording = false;
+		saving = false;
+		bytes = null;
+		out = null;
+		clearIds();
+	}
+
+	private void clearIds()
+	{
+		vertexIds.clear();
+		vertexIds.trimToSize();
+		edgeIds.clear();
+		edgeIds.trimToSize();
+	}
+
+	/**
+	 * Returns the changes recorded since the last call, and clears them.
+	 *
+	 * @return the records, or <code>null</code> if this journal is not
+	 *         recording or the save it was reset on is not completed yet.
+	 */
+	public synchronized Records drain()
+	{
+		if ( !recording || saving )
+			return null;
+		final Records records = new Records( generation, numBaseVertices, numBaseEdges, bytes.toByteArray() );
+		bytes.reset();
+		return records;
+	}
+
+	/**
+	 * A batch of records drained from the journal.
+	 */
+	public static class Records
+	{
+
+		private final long generation;
+
+		private final int numBaseVertices;
+
+		private final int numBaseEdges;
+
+		private final byte[] bytes;
+
+		private Records( final long generation, final int numBaseVertices, final int numBaseEdges, final byte[] bytes )
+		{
+			this.generation = generation;
+			this.numBaseVertices = numBaseVertices;
+			this.numBaseEdges = numBaseEdges;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Returns a number that changes every time the journal is reset.
+		 * Records of different generations cannot be appended to each other.
+		 *
+		 * @return the generation of these records.
+		 */
+		public long getGeneration()
+		{
+			return generation;
+		}
+
+		/**
+		 * Returns the number of spots in the model when the journal was
+		 * reset.
+		 *
+		 * @return the number of spots.
+		 */
+		public int getNumBaseVertices()
+		{
+			return numBaseVertices;
+		}
+
+		/**
+		 * Returns the number of links in the model when the journal was
+		 * reset.
+		 *
+		 * @return the number of links.
+		 */
+		public int getNumBaseEdges()
+		{
+			return numBaseEdges;
+		}
+
+		public byte[] getBytes()
+		{
+			return bytes;
+		}
+	}
+
+	/**
+	 * Applies journaled changes to the model just loaded with the specified
+	 * file ids. The journal must be read from its first record, and the model
+	 * must be the one the journal was recorded on. Reading stops at the first
+	 * incomplete record, which is where a crash left the journal. The caller
+	 * is responsible for locking the graph.
+	 *
+	 * @param in
+	 *            the journal records.
+	 * @param idmap
+	 *            the file ids of the loaded spots and links.
+	 * @return the number of records applied.
+	 * @throws IOException
+	 *             if the journal cannot be read or does not match the model.
+	 */
+	public int replay( final DataInputStream in, final FileIdToGraphMap< Spot, Link > idmap ) throws IOException
+	{
+		// Graph ids of the spots and links, indexed by their journal ids.
+		final TIntArrayList vertices = new TIntArrayList();
+		final TIntArrayList edges = new TIntArrayList();
+		final Spot vref1 = graph.vertexRef();
+		final Spot vref2 = graph.vertexRef();
+		final Link eref = graph.edgeRef();
+		try
+		{
+			final int numVertices = graph.vertices().size();
+			for ( int i = 0; i < numVertices; i++ )
+				vertices.add( idBimap.getVertexId( idmap.vertices().getObject( i, vref1 ) ) );
+			final int numEdges = graph.edges().size();
+			for ( int i = 0; i < numEdges; i++ )
+				edges.add( idBimap.getEdgeId( idmap.edges().getObject( i, eref ) ) );
+
+			int count = 0;
+			while ( true )
+			{
+				final int type = in.read();
+				if ( type < 0 )
+					return count;
+				try
+				{
+					switch ( type )
+					{
+					case ADD_SPOT:
+					{
+						final int id = in.readInt();
+						final int timepoint = in.readInt();
+						readPosition( in );
+						readCovariance( in );
+						if ( id != vertices.size() )
+							throw new IOException( "Unexpected spot id " + id + " in journal." );
+						final Spot spot = graph.addVertex( vref1 ).init( timepoint, pos, cov );
+						vertices.add( idBimap.getVertexId( spot ) );
+						break;
+					}
+					case MOVE_SPOT:
+					{
+						final Spot spot = getVertex( vertices, in.readInt(), vref1 );
+						readPosition( in );
+						spot.setPosition( pos );
+						break;
+					}
+					case SET_COVARIANCE:
+					{
+						final Spot spot = getVertex( vertices, in.readInt(), vref1 );
+						readCovariance( in );
+						spot.setCovariance( cov );
+						break;
+					}
+					case SET_LABEL:
+					{
+						final Spot spot = getVertex( vertices, in.readInt(), vref1 );
+						spot.setLabel( in.readUTF() );
+						break;
+					}
+					case REMOVE_SPOT:
+					{
+						final int id = in.readInt();
+						graph.remove( getVertex( vertices, id, vref1 ) );
+						vertices.set( id, -1 );
+						break;
+					}
+					case ADD_LINK:
+					{
+						final int id = in.readInt();
+						final Spot source = getVertex( vertices, in.readInt(), vref1 );
+						final Spot target = getVertex( vertices, in.readInt(), vref2 );
+						if ( id != edges.size() )
+							throw new IOException( "Unexpected link id " + id + " in journal." );
+						final Link link = graph.addEdge( source, target, eref ).init();
+						edges.add( idBimap.getEdgeId( link ) );
+						break;
+					}
+					case REMOVE_LINK:
+					{
+						final int id = in.readInt();
+						graph.remove( getEdge( edges, id, eref ) );
+						edges.set( id, -1 );
+						break;
+					}
+					case TAG_SPOT:
+					{
+						final Spot spot = getVertex( vertices, in.readInt(), vref1 );
+						readTags( in, tagSetModel.getVertexTags(), spot );
+						break;
+					}
+					case TAG_LINK:
+					{
+						final Link link = getEdge( edges, in.readInt(), eref );
+						readTags( in, tagSetModel.getEdgeTags(), link );
+						break;
+					}
+					case SET_TAG_SETS:
+					{
+						final byte[] tss = new byte[ in.readInt() ];
+						in.readFully( tss );
+						tagSetModel.setTagSetStructure( readTagSetStructure( tss ) );
+						break;
+					}
+					default:
+						throw new IOException( "Unknown record type " + type + " in journal." );
+					}
+				}
+				catch ( final EOFException e )
+				{
+					// Incomplete last record.
+					return count;
+				}
+				count++;
+			}
+		}
+		finally
+		{
+			graph.releaseRef( vref1 );
+			graph.releaseRef( vref2 );
+			graph.releaseRef( eref );
+		}
+	}
+
+	private Spot getVertex( final TIntArrayList vertices, final int id, final Spot ref ) throws IOException
+	{
+		final int graphId = id < 0 || id >= vertices.size() ? -1 : vertices.get( id );
+		if ( graphId < 0 )
+			throw new IOException( "Unknown spot id " + id + " in journal." );
+		return idBimap.getVertex( graphId, ref );
+	}
+
+	private Link getEdge( final TIntArrayList edges, final int id, final Link ref ) throws IOException
+	{
+		final int graphId = id < 0 || id >= edges.size() ? -1 : edges.get( id );
+		if ( graphId < 0 )
+			throw new IOException( "Unknown link id " + id + " in journal." );
+		return idBimap.getEdge( graphId, ref );
+	}
+
+	private void readPosition( final DataInputStream in ) throws IOException
+	{
+		for ( int d = 0; d < 3; d++ )
+			pos[ d ] = in.readDouble();
+	}
+
+	private void readCovariance( final DataInputStream in ) throws IOException
+	{
+		for ( int row = 0; row < 3; row++ )
+			for ( int col = row; col < 3; col++ )
+			{
+				cov[ row ][ col ] = in.readDouble();
+				cov[ col ][ row ] = cov[ row ][ col ];
+			}
+	}
+
+	private < O > void readTags( final DataInputStream in, final ObjTags< O > tags, final O object ) throws IOException
+	{
+		final List< TagSet > tagSets = tagSetModel.getTagSetStructure().getTagSets();
+		final int n = in.readInt();
+		for ( int i = 0; i < n; i++ )
+		{
+			final int tagSetId = in.readInt();
+			final int tagId = in.readInt();
+			final TagSet tagSet = tagSets.stream().filter( ts -> ts.id() == tagSetId ).findFirst().orElse( null );
+			if ( tagSet == null )
+				continue;
+			if ( tagId < 0 )
+			{
+				tags.tags( tagSet ).remove( object );
+				continue;
+			}
+			final Tag tag = tagSet.getTags().stream().filter( t -> t.id() == tagId ).findFirst().orElse( null );
+			if ( tag != null )
+				tags.set( object, tag );
+		}
+	}
+
+	private static TagSetStructure readTagSetStructure( final byte[] bytes ) throws IOException
+	{
+		final TagSetStructure tss = new TagSetStructure();
+		try (final ObjectInputStream ois = new ObjectInputStream( new ByteArrayInputStream( bytes ) ))
+		{
+			tss.loadRaw( ois );
+		}
+		return tss;
+	}
+
+	/*
+	 * Recording.
+	 */
+
+	private static void setId( final TIntArrayList ids, final int index, final int id )
+	{
+		while ( ids.size() <= index )
+			ids.add( -1 );
+		ids.set( index, id );
+	}
+
+	private static int getId( final TIntArrayList ids, final int index )
+	{
+		return index < ids.size() ? ids.get( index ) : -1;
+	}
+
+	private int vertexId( final Spot spot )
+	{
+		return getId( vertexIds, idBimap.getVertexId( spot ) );
+	}
+
+	private int edgeId( final Link link )
+	{
+		return getId( edgeIds, idBimap.getEdgeId( link ) );
+	}
+
+	private void writePosition( final Spot spot ) throws IOException
+	{
+		spot.localize( pos );
+		for ( int d = 0; d < 3; d++ )
+			out.writeDouble( pos[ d ] );
+	}
+
+	private void writeCovariance( final Spot spot ) throws IOException
+	{
+		spot.getCovariance( cov );
+		for ( int row = 0; row < 3; row++ )
+			for ( int col = row; col < 3; col++ )
+				out.writeDouble( cov[ row ][ col ] );
+	}
+
+	private < O > void writeTags( final ObjTags< O > tags, final O object ) throws IOException
+	{
+		final List< TagSet > tagSets = tagSetModel.getTagSetStructure().getTagSets();
+		out.writeInt( tagSets.size() );
+		for ( final TagSet tagSet : tagSets )
+		{
+			final Tag tag = tags.tags( tagSet ).get( object );
+			out.writeInt( tagSet.id() );
+			out.writeInt( tag == null ? -1 : tag.id() );
+		}
+	}
+
+	/**
+	 * Writes a record to the in-memory journal.
+	 */
+	@FunctionalInterface
+	private interface Record
+	{
+		public void write() throws IOException;
+	}
+
+	private void record( final Record record )
+	{
+		try
+		{
+			record.write();
+		}
+		catch ( final IOException e )
+		{
+			// Cannot happen, we write to memory.
+			throw new UncheckedIOException( e );
+		}
+	}
+
+	@Override
+	public synchronized void graphRebuilt()
+	{
+		// Cannot be journaled. Wait for the next save.
+		if ( recording )
+			stop();
+	}
+
+	@Override
+	public synchronized void vertexAdded( final Spot spot )
+	{
+		if ( !recording )
+			return;
+		final int id = nextVertexId++;
+		setId( vertexIds, idBimap.getVertexId( spot ), id );
+		record( () -> {
+			out.writeByte( ADD_SPOT );
+			out.writeInt( id );
+			out.writeInt( spot.getTimepoint() );
+			writePosition( spot );
+			writeCovariance( spot );
+		} );
+	}
+
+	@Override
+	public synchronized void vertexRemoved( final Spot spot )
+	{
+		final int id = recording ? vertexId( spot ) : -1;
+		if ( id < 0 )
+			return;
+		setId( vertexIds, idBimap.getVertexId( spot ), -1 );
+		record( () -> {
+			out.writeByte( REMOVE_SPOT );
+			out.writeInt( id );
+		} );
+	}
+
+	@Override
+	public synchronized void edgeAdded( final Link link )
+	{
+		if ( !recording )
+			return;
+		final Spot ref = graph.vertexRef();
+		final int source = vertexId( link.getSource( ref ) );
+		final int target = vertexId( link.getTarget( ref ) );
+		graph.releaseRef( ref );
+		final int id = nextEdgeId++;
+		setId( edgeIds, idBimap.getEdgeId( link ), id );
+		record( () -> {
+			out.writeByte( ADD_LINK );
+			out.writeInt( id );
+			out.writeInt( source );
+			out.writeInt( target );
+		} );
+	}
+
+	@Override
+	public synchronized void edgeRemoved( final Link link )
+	{
+		final int id = recording ? edgeId( link ) : -1;
+		if ( id < 0 )
+			return;
+		setId( edgeIds, idBimap.getEdgeId( link ), -1 );
+		record( () -> {
+			out.writeByte( REMOVE_LINK );
+			out.writeInt( id );
+		} );
+	}
+
+	private synchronized void positionChanged( final Spot spot )
+	{
+		final int id = recording ? vertexId( spot ) : -1;
+		if ( id < 0 )
+			return;
+		record( () -> {
+			out.writeByte( MOVE_SPOT );
+			out.writeInt( id );
+			writePosition( spot );
+		} );
+	}
+
+	private synchronized void covarianceChanged( final Spot spot )
+	{
+		final int id = recording ? vertexId( spot ) : -1;
+		if ( id < 0 )
+			return;
+		record( () -> {
+			out.writeByte( SET_COVARIANCE );
+			out.writeInt( id );
+			writeCovariance( spot );
+		} );
+	}
+
+	private synchronized void labelChanged( final Spot spot )
+	{
+		final int id = recording && spot.isLabelSet() ? vertexId( spot ) : -1;
+		if ( id < 0 )
+			return;
+		record( () -> {
+			out.writeByte( SET_LABEL );
+			out.writeInt( id );
+			out.writeUTF( spot.getLabel() );
+		} );
+	}
+
+	private synchronized void tagSetStructureChanged()
+	{
+		if ( !recording )
+			return;
+		record( () -> {
+			final ByteArrayOutputStream tss = new ByteArrayOutputStream();
+			try (final ObjectOutputStream oos = new ObjectOutputStream( tss ))
+			{
+				tagSetModel.getTagSetStructure().saveRaw( oos );
+			}
+			out.writeByte( SET_TAG_SETS );
+			out.writeInt( tss.size() );
+			tss.writeTo( out );
+		} );
+	}
+
+	private synchronized void vertexTagsChanged( final Spot spot )
+	{
+		final int id = recording ? vertexId( spot ) : -1;
+		if ( id < 0 )
+			return;
+		record( () -> {
+			out.writeByte( TAG_SPOT );
+			out.writeInt( id );
+			writeTags( tagSetModel.getVertexTags(), spot );
+		} );
+	}
+
+	private synchronized void edgeTagsChanged( final Link link )
+	{
+		final int id = recording ? edgeId( link ) : -1;
+		if ( id < 0 )
+			return;
+		record( () -> {
+			out.writeByte( TAG_LINK );
+			out.writeInt( id );
+			writeTags( tagSetModel.getEdgeTags(), link );
+		} );
+	}
+}
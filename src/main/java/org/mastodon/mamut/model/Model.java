@@ -110,6 +110,8 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 
 	private final DefaultTagSetModel< Spot, Link > tagSetModel;
 
+	private final ChangeJournal changeJournal;
+
 	private final String spaceUnits;
 
 	private final String timeUnits;
@@ -152,7 +154,7 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 		featureModel = new FeatureModel();
 		declareDefaultFeatures();
 		tagSetModel = new DefaultTagSetModel<>( getGraph() );
-		vertexUndoableProperties.add(
+		final LabelSets< Spot, Integer > vertexTags =
 				new DefaultTagSetModel.SerialisationAccess< Spot, Link >( tagSetModel )
 				{
 					@Override
@@ -160,8 +162,8 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 					{
 						return super.getVertexIdLabelSets();
 					}
-				}.getVertexIdLabelSets() );
-		edgeUndoableProperties.add(
+				}.getVertexIdLabelSets();
+		final LabelSets< Link, Integer > edgeTags =
 				new DefaultTagSetModel.SerialisationAccess< Spot, Link >( tagSetModel )
 				{
 					@Override
@@ -169,7 +171,10 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 					{
 						return super.getEdgeIdLabelSets();
 					}
-				}.getEdgeIdLabelSets() );
+				}.getEdgeIdLabelSets();
+		vertexUndoableProperties.add( vertexTags );
+		edgeUndoableProperties.add( edgeTags );
+		changeJournal = new ChangeJournal( modelGraph, tagSetModel, vertexTags, edgeTags );
 
 		undoRecorder = new GraphUndoRecorder<>(
 				initialCapacity,
@@ -336,6 +341,17 @@ public class Model extends AbstractModel< ModelGraph, Spot, Link > implements Un
 		return tagSetModel;
 	}
 
+	/**
+	 * Returns the journal of the changes made to this model since it was last
+	 * loaded or saved.
+	 *
+	 * @return the change journal.
+	 */
+	public ChangeJournal getChangeJournal()
+	{
+		return changeJournal;
+	}
+
 	public String getSpaceUnits()
 	{
 		return spaceUnits;
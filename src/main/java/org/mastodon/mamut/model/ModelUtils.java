@@ -205,7 +205,7 @@ public class ModelUtils
 
 			@SuppressWarnings( "unchecked" )
 			final Feature< T > feature = ( Feature< T > ) featureModel.getFeature( featureSpec );
-			if ( feature.projections() == null )
+			if ( feature == null || feature.projections() == null )
 				continue;
 
 			feature.projections().stream().sorted( Comparator.comparing( projection -> projection.getKey().toString() ) ).forEach( projection -> {
@@ -32,7 +32,7 @@ import org.mastodon.model.AbstractSpot;
 import org.mastodon.model.HasCovariance;
 import org.mastodon.model.HasLabel;
 import org.mastodon.pool.ByteMappedElement;
-import org.mastodon.views.bdv.overlay.util.JamaEigenvalueDecomposition;
+import org.mastodon.util.GeometryUtil;
 
 /**
  * {@link AbstractSpot} implementation where the spot shape is stored in a
@@ -42,23 +42,17 @@ import org.mastodon.views.bdv.overlay.util.JamaEigenvalueDecomposition;
  */
 public final class Spot extends AbstractSpot< Spot, Link, SpotPool, ByteMappedElement, ModelGraph > implements HasLabel, HasCovariance
 {
-	private final JamaEigenvalueDecomposition eig = new JamaEigenvalueDecomposition( 3 );
-
-	private double radiusSquaredFromCovariance( final double[][] cov )
+	private static double radiusSquaredFromCovariance( final double[][] cov )
 	{
-		eig.decomposeSymmetric( cov );
-		final double[] eigVals = eig.getRealEigenvalues();
-		double max = 0;
-		for ( int k = 0; k < eigVals.length; k++ )
-			max = Math.max( max, eigVals[ k ] );
-		return max;
+		return Math.max( 0, GeometryUtil.maxEigenvalueSymmetric3x3( cov ) );
 	}
 
-	private void covarianceFromRadiusSquared( final double rsqu, final double[][] cov )
+	private void setCovarianceFromRadiusSquared( final double rsqu )
 	{
+		int i = 0;
 		for ( int row = 0; row < 3; ++row )
-			for ( int col = 0; col < 3; ++col )
-				cov[ row ][ col ] = ( row == col ) ? rsqu : 0;
+			for ( int col = row; col < 3; ++col )
+				pool.covariance.setQuiet( this, i++, ( row == col ) ? rsqu : 0 );
 	}
 
 	private void setCovarianceInternal( final double[][] cov )
@@ -108,9 +102,7 @@ public final class Spot extends AbstractSpot< Spot, Link, SpotPool, ByteMappedEl
 	{
 		super.partialInit( timepointId, pos );
 
-		final double[][] cov = new double[ 3 ][ 3 ];
-		covarianceFromRadiusSquared( radius * radius, cov );
-		setCovarianceInternal( cov );
+		setCovarianceFromRadiusSquared( radius * radius );
 		pool.boundingSphereRadiusSqu.setQuiet( this, radius * radius );
 
 		super.initDone();
@@ -32,8 +32,29 @@ import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 
 import org.mastodon.graph.GraphChangeListener;
 import org.mastodon.graph.GraphListener;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.properties.PropertyChangeListener;
 import org.scijava.listeners.Listeners;
 
+/**
+ * Keeps a branch graph in sync with the graph it is built upon.
+ * <p>
+ * The branch graph is marked as out-of-date every time the graph changes, and
+ * is brought up to date when {@link #sync()} is called. When created with
+ * {@link #BranchGraphSynchronizer(ModelGraph, ModelBranchGraph, ReadLock)},
+ * the synchronizer also monitors what changed in the graph, and skips the
+ * rebuild altogether when the branch structure could not have been affected.
+ * This is the case when spots are moved, except the last spot of a branch (the
+ * branch spot takes its position), when spots are relabeled, or when tags
+ * change.
+ * <p>
+ * This is only a short-cut for syncs that would not change anything. The
+ * branch graph is not updated incrementally: as soon as a vertex or an edge
+ * was added or removed, or the last spot of a branch was moved, the whole
+ * branch graph is rebuilt with {@link GraphListener#graphRebuilt()}.
+ */
 public class BranchGraphSynchronizer implements GraphChangeListener
 {
 
@@ -50,12 +71,52 @@ public class BranchGraphSynchronizer implements GraphChangeListener
 
 	private boolean uptodate;
 
+	/**
+	 * Monitors whether a change requires a rebuild. If <code>null</code>, the
+	 * branch graph is rebuilt at every sync.
+	 */
+	private final RebuildShortCut shortCut;
+
+	/**
+	 * Creates a synchronizer that fully rebuilds the specified branch graph
+	 * at every sync after a change.
+	 *
+	 * @param bg
+	 *            the branch graph.
+	 * @param readLock
+	 *            the read lock of the graph the branch graph is built upon.
+	 */
 	public BranchGraphSynchronizer( final GraphListener< ?, ? > bg, final ReadLock readLock )
 	{
 		this.bg = bg;
 		this.lock = readLock;
 		this.listeners = new Listeners.SynchronizedList<>();
 		this.uptodate = true;
+		this.shortCut = null;
+	}
+
+	/**
+	 * Creates a synchronizer that skips rebuilding the specified branch graph
+	 * when changes to the specified graph could not have modified the branch
+	 * structure. Otherwise, the branch graph is fully rebuilt.
+	 *
+	 * @param graph
+	 *            the graph the branch graph is built upon.
+	 * @param branchGraph
+	 *            the branch graph.
+	 * @param readLock
+	 *            the read lock of the graph.
+	 */
+	public BranchGraphSynchronizer( final ModelGraph graph, final ModelBranchGraph branchGraph,
+			final ReadLock readLock )
+	{
+		this.bg = branchGraph;
+		this.lock = readLock;
+		this.listeners = new Listeners.SynchronizedList<>();
+		this.uptodate = true;
+		this.shortCut = new RebuildShortCut( graph, branchGraph );
+		graph.addGraphListener( shortCut );
+		graph.getVertexPool().positionProperty().propertyChangeListeners().add( shortCut );
 	}
 
 	public void sync()
@@ -66,7 +127,12 @@ public class BranchGraphSynchronizer implements GraphChangeListener
 		try
 		{
 			uptodate = true;
-			bg.graphRebuilt();
+			if ( shortCut == null || shortCut.rebuildNeeded )
+			{
+				bg.graphRebuilt();
+				if ( shortCut != null )
+					shortCut.rebuildNeeded = false;
+			}
 			notifyListeners();
 		}
 		finally
@@ -97,4 +163,81 @@ public class BranchGraphSynchronizer implements GraphChangeListener
 	{
 		return uptodate;
 	}
+
+	/**
+	 * Records whether a change in the graph could have modified the branch
+	 * graph since the last rebuild. Any such change requires a full rebuild.
+	 */
+	private static final class RebuildShortCut
+			implements GraphListener< Spot, Link >, PropertyChangeListener< Spot >
+	{
+
+		private final ModelBranchGraph branchGraph;
+
+		private final BranchSpot bvRef;
+
+		private final Spot vRef;
+
+		private volatile boolean rebuildNeeded;
+
+		private RebuildShortCut( final ModelGraph graph, final ModelBranchGraph branchGraph )
+		{
+			this.branchGraph = branchGraph;
+			this.bvRef = branchGraph.vertexRef();
+			this.vRef = graph.vertexRef();
+			this.rebuildNeeded = false;
+		}
+
+		@Override
+		public void graphRebuilt()
+		{
+			rebuildNeeded = true;
+		}
+
+		@Override
+		public void vertexAdded( final Spot vertex )
+		{
+			rebuildNeeded = true;
+		}
+
+		@Override
+		public void vertexRemoved( final Spot vertex )
+		{
+			rebuildNeeded = true;
+		}
+
+		@Override
+		public void edgeAdded( final Link edge )
+		{
+			rebuildNeeded = true;
+		}
+
+		@Override
+		public void edgeRemoved( final Link edge )
+		{
+			rebuildNeeded = true;
+		}
+
+		/**
+		 * A spot moved. The branch spot it belongs to takes the position of
+		 * the last spot of the branch, so we only need a rebuild if the moved
+		 * spot is that last spot.
+		 */
+		@Override
+		public void propertyChanged( final Spot spot )
+		{
+			if ( rebuildNeeded )
+				return;
+
+			final BranchSpot bv = branchGraph.getBranchVertex( spot, bvRef );
+			if ( bv == null )
+			{
+				rebuildNeeded = true;
+				return;
+			}
+			final Spot last = branchGraph.getLastLinkedVertex( bv, vRef );
+			if ( last == null || last.getInternalPoolIndex() == spot.getInternalPoolIndex() )
+				rebuildNeeded = true;
+		}
+	}
 }
@@ -42,10 +42,12 @@ import org.mastodon.app.ViewGraph;
 import org.mastodon.app.ui.ViewFrame;
 import org.mastodon.app.ui.ViewMenuBuilder.JMenuHandle;
 import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureModel.FeatureModelListener;
 import org.mastodon.graph.Edge;
 import org.mastodon.graph.Vertex;
 import org.mastodon.grouping.GroupHandle;
 import org.mastodon.mamut.ProjectModel;
+import org.mastodon.mamut.feature.MamutFeatureProjectionsManager;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
 import org.mastodon.mamut.model.ModelGraph;
@@ -268,6 +270,11 @@ public class MamutBranchView<
 		featureModel.listeners().add( coloringMenu );
 		onClose( () -> featureModel.listeners().remove( coloringMenu ) );
 
+		// Feature values change the colors when coloring by feature.
+		final FeatureModelListener featureRefresh = refresh::run;
+		featureModel.listeners().add( featureRefresh );
+		onClose( () -> featureModel.listeners().remove( featureRefresh ) );
+
 		// Handle track color generator.
 		@SuppressWarnings( "unchecked" )
 		final TrackGraphColorGenerator< Spot, Link > tgcg = appModel.getWindowManager().getManager( TrackGraphColorGenerator.class );
@@ -313,6 +320,10 @@ public class MamutBranchView<
 	{
 		final ColorBarOverlayMenu menu = new ColorBarOverlayMenu( menuHandle.getMenu(), colorBarOverlay, refresh );
 		colorBarOverlay.listeners().add( menu );
+		final MamutFeatureProjectionsManager featureProjectionsManager =
+				appModel.getWindowManager().getManager( MamutFeatureProjectionsManager.class );
+		if ( featureProjectionsManager != null )
+			colorBarOverlay.setFeatureRangeCalculator( featureProjectionsManager.getFeatureRangeCalculator() );
 	}
 
 	protected void registerTagSetMenu(
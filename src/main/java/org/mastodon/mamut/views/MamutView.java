@@ -38,12 +38,16 @@ import org.mastodon.app.ui.MastodonFrameView;
 import org.mastodon.app.ui.ViewFrame;
 import org.mastodon.app.ui.ViewMenuBuilder.JMenuHandle;
 import org.mastodon.feature.FeatureModel;
+import org.mastodon.feature.FeatureModel.FeatureModelListener;
 import org.mastodon.graph.Edge;
+import org.mastodon.graph.GraphChangeListener;
 import org.mastodon.graph.Vertex;
 import org.mastodon.grouping.GroupHandle;
 import org.mastodon.mamut.ProjectModel;
+import org.mastodon.mamut.feature.MamutFeatureProjectionsManager;
 import org.mastodon.mamut.model.Link;
 import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
 import org.mastodon.mamut.model.Spot;
 import org.mastodon.mamut.model.branch.BranchLink;
 import org.mastodon.mamut.model.branch.BranchSpot;
@@ -51,7 +55,9 @@ import org.mastodon.mamut.model.branch.ModelBranchGraph;
 import org.mastodon.model.SelectionModel;
 import org.mastodon.model.tag.TagSetModel;
 import org.mastodon.model.tag.TagSetStructure.TagSet;
+import org.mastodon.spatial.VertexPositionListener;
 import org.mastodon.ui.TagSetMenu;
+import org.mastodon.ui.coloring.CachedGraphColorGenerator;
 import org.mastodon.ui.coloring.ColorBarOverlay;
 import org.mastodon.ui.coloring.ColorBarOverlay.Position;
 import org.mastodon.ui.coloring.ColorBarOverlayMenu;
@@ -202,12 +208,32 @@ public class MamutView< VG extends ViewGraph< Spot, Link, V, E >, V extends Vert
 		@SuppressWarnings( "unchecked" )
 		final TrackGraphColorGenerator< Spot, Link > tgcg = appModel.getWindowManager().getManager( TrackGraphColorGenerator.class );
 
+		// Cache feature colors until feature values or the graph change.
+		final ModelGraph graph = appModel.getModel().getGraph();
+		final CachedGraphColorGenerator< Spot, Link > featureColors = new CachedGraphColorGenerator<>( graph );
+		final FeatureModelListener featureColorsInvalidator = featureColors::invalidate;
+		featureModel.listeners().add( featureColorsInvalidator );
+		onClose( () -> featureModel.listeners().remove( featureColorsInvalidator ) );
+		final GraphChangeListener graphColorsInvalidator = featureColors::invalidate;
+		graph.addGraphChangeListener( graphColorsInvalidator );
+		onClose( () -> graph.removeGraphChangeListener( graphColorsInvalidator ) );
+		final VertexPositionListener< Spot > positionColorsInvalidator = v -> featureColors.invalidate();
+		graph.addVertexPositionListener( positionColorsInvalidator );
+		onClose( () -> graph.removeVertexPositionListener( positionColorsInvalidator ) );
+
+		// Feature values change the colors when coloring by feature.
+		final FeatureModelListener featureRefresh = refresh::run;
+		featureModel.listeners().add( featureRefresh );
+		onClose( () -> featureModel.listeners().remove( featureRefresh ) );
+
 		final ColoringModelMain.ColoringChangedListener coloringChangedListener = () -> {
 			final GraphColorGenerator< Spot, Link > colorGenerator;
+			featureColors.setColorGenerator( null );
 			switch ( coloringModel.getColoringStyle() )
 			{
 			case BY_FEATURE:
-				colorGenerator = coloringModel.getFeatureGraphColorGenerator();
+				featureColors.setColorGenerator( coloringModel.getFeatureGraphColorGenerator() );
+				colorGenerator = featureColors;
 				break;
 			case BY_TAGSET:
 				colorGenerator = new TagSetGraphColorGenerator<>( tagSetModel, coloringModel.getTagSet() );
@@ -236,6 +262,10 @@ public class MamutView< VG extends ViewGraph< Spot, Link, V, E >, V extends Vert
 	{
 		final ColorBarOverlayMenu menu = new ColorBarOverlayMenu( menuHandle.getMenu(), colorBarOverlay, refresh );
 		colorBarOverlay.listeners().add( menu );
+		final MamutFeatureProjectionsManager featureProjectionsManager =
+				appModel.getWindowManager().getManager( MamutFeatureProjectionsManager.class );
+		if ( featureProjectionsManager != null )
+			colorBarOverlay.setFeatureRangeCalculator( featureProjectionsManager.getFeatureRangeCalculator() );
 	}
 
 	protected void registerTagSetMenu(
@@ -156,14 +156,6 @@ public class MamutBranchViewBdv extends MamutBranchView<
 				OverlayEdgeWrapper< BranchSpot, BranchLink > > coloring =
 						new GraphColorGeneratorAdapter<>( vertexMap, edgeMap );
 
-		coloringModel = registerBranchColoring( coloring, coloringMenuHandle,
-				() -> viewer.getDisplay().repaint() );
-		colorBarOverlay = new ColorBarOverlay( coloringModel, () -> viewer.getBackground() );
-		registerColorbarOverlay( colorBarOverlay, colorbarMenuHandle, () -> viewer.getDisplay().repaint() );
-
-		registerTagSetMenu( tagSetMenuHandle,
-				() -> viewer.getDisplay().repaint() );
-
 		// Renderer.
 		final OverlayGraphRenderer< OverlayVertexWrapper< BranchSpot, BranchLink >,
 				OverlayEdgeWrapper< BranchSpot, BranchLink > > tracksOverlay =
@@ -174,6 +166,18 @@ public class MamutBranchViewBdv extends MamutBranchView<
 								selectionModel,
 								coloring );
 
+		// Repaints after changes that invalidate the cached overlay layers.
+		final Runnable refresh = () -> {
+			tracksOverlay.invalidateLayers();
+			viewer.getDisplay().repaint();
+		};
+
+		coloringModel = registerBranchColoring( coloring, coloringMenuHandle, refresh );
+		colorBarOverlay = new ColorBarOverlay( coloringModel, () -> viewer.getBackground() );
+		registerColorbarOverlay( colorBarOverlay, colorbarMenuHandle, () -> viewer.getDisplay().repaint() );
+
+		registerTagSetMenu( tagSetMenuHandle, refresh );
+
 		viewer.getDisplay().overlays().add( tracksOverlay );
 		viewer.renderTransformListeners().add( tracksOverlay );
 		viewer.timePointListeners().add( tracksOverlay );
@@ -185,9 +189,9 @@ public class MamutBranchViewBdv extends MamutBranchView<
 		// Listen to changes in models -> repaint.
 		highlightModel.listeners().add( () -> viewer.getDisplay().repaint() );
 		focusModel.listeners().add( () -> viewer.getDisplay().repaint() );
-		selectionModel.listeners().add( () -> viewer.getDisplay().repaint() );
-		graph.addGraphChangeListener( () -> viewer.getDisplay().repaint() );
-		graph.addVertexPositionListener( ( v ) -> viewer.getDisplay().repaint() );
+		selectionModel.listeners().add( refresh::run );
+		graph.addGraphChangeListener( refresh::run );
+		graph.addVertexPositionListener( ( v ) -> refresh.run() );
 
 		// Forward navigation to view.
 		final OverlayNavigation< OverlayVertexWrapper< BranchSpot, BranchLink >,
@@ -243,7 +247,10 @@ public class MamutBranchViewBdv extends MamutBranchView<
 		final RenderSettingsManager renderSettingsManager = appModel.getWindowManager().getManager( RenderSettingsManager.class );
 		final RenderSettings renderSettings = renderSettingsManager.getForwardDefaultStyle();
 		tracksOverlay.setRenderSettings( renderSettings );
-		final UpdateListener updateListener = () -> viewer.repaint();
+		final UpdateListener updateListener = () -> {
+			tracksOverlay.invalidateLayers();
+			viewer.repaint();
+		};
 		renderSettings.updateListeners().add( updateListener );
 		onClose( () -> renderSettings.updateListeners().remove( updateListener ) );
 
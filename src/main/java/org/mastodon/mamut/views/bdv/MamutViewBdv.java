@@ -187,10 +187,6 @@ public class MamutViewBdv
 		final GraphColorGeneratorAdapter< Spot, Link, OverlayVertexWrapper< Spot, Link >,
 				OverlayEdgeWrapper< Spot, Link > > coloring =
 						new GraphColorGeneratorAdapter<>( viewGraph.getVertexMap(), viewGraph.getEdgeMap() );
-		coloringModel = registerColoring( coloring, menuHandle,
-				() -> viewer.getDisplay().repaint() );
-		colorBarOverlay = new ColorBarOverlay( coloringModel, () -> viewer.getBackground() );
-		registerColorbarOverlay( colorBarOverlay, colorbarMenuHandle, () -> viewer.getDisplay().repaint() );
 
 		final OverlayGraphRenderer< OverlayVertexWrapper< Spot, Link >,
 				OverlayEdgeWrapper< Spot, Link > > tracksOverlay = createRenderer(
@@ -200,6 +196,16 @@ public class MamutViewBdv
 						selectionModel,
 						coloring );
 
+		// Repaints after changes that invalidate the cached overlay layers.
+		final Runnable refresh = () -> {
+			tracksOverlay.invalidateLayers();
+			viewer.getDisplay().repaint();
+		};
+
+		coloringModel = registerColoring( coloring, menuHandle, refresh );
+		colorBarOverlay = new ColorBarOverlay( coloringModel, () -> viewer.getBackground() );
+		registerColorbarOverlay( colorBarOverlay, colorbarMenuHandle, () -> viewer.getDisplay().repaint() );
+
 		viewer.getDisplay().overlays().add( colorBarOverlay );
 		viewer.getDisplay().overlays().add( tracksOverlay );
 		viewer.renderTransformListeners().add( tracksOverlay );
@@ -210,10 +216,10 @@ public class MamutViewBdv
 
 		highlightModel.listeners().add( () -> viewer.getDisplay().repaint() );
 		focusModel.listeners().add( () -> viewer.getDisplay().repaint() );
-		modelGraph.addGraphChangeListener( () -> viewer.getDisplay().repaint() );
-		modelGraph.addVertexPositionListener( v -> viewer.getDisplay().repaint() );
-		modelGraph.addVertexLabelListener( v -> viewer.getDisplay().repaint() );
-		selectionModel.listeners().add( () -> viewer.getDisplay().repaint() );
+		modelGraph.addGraphChangeListener( refresh::run );
+		modelGraph.addVertexPositionListener( v -> refresh.run() );
+		modelGraph.addVertexLabelListener( v -> refresh.run() );
+		selectionModel.listeners().add( refresh::run );
 
 		final OverlayNavigation< OverlayVertexWrapper< Spot, Link >,
 				OverlayEdgeWrapper< Spot, Link > > overlayNavigation = new OverlayNavigation<>( viewer, viewGraph );
@@ -279,6 +285,7 @@ public class MamutViewBdv
 		final RenderSettings renderSettings = renderSettingsManager.getForwardDefaultStyle();
 		tracksOverlay.setRenderSettings( renderSettings );
 		final UpdateListener updateListener = () -> {
+			tracksOverlay.invalidateLayers();
 			viewer.repaint();
 			contextProvider.notifyContextChanged();
 		};
@@ -334,8 +341,7 @@ public class MamutViewBdv
 						tagSetMenu( tagSetMenuHandle ) ) );
 		appModel.getPlugins().addMenus( menu );
 
-		registerTagSetMenu( tagSetMenuHandle,
-				() -> viewer.getDisplay().repaint() );
+		registerTagSetMenu( tagSetMenuHandle, refresh );
 	}
 
 	protected OverlayGraphRenderer< OverlayVertexWrapper< Spot, Link >, OverlayEdgeWrapper< Spot, Link > >
@@ -0,0 +1,191 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A growable bit set that can be read concurrently without locking.
+ * <p>
+ * Bits are stored in an {@link AtomicLongArray} that is replaced by a larger
+ * copy when a bit beyond its capacity is set. The current array is published
+ * through a volatile field, so {@link #get(int)} never blocks and always sees
+ * either the state before or after a concurrent modification.
+ * <p>
+ * Modifying methods are <em>not</em> thread-safe with respect to each other.
+ * Only one thread may modify the set at a time, which is ensured by the
+ * enclosing {@link DefaultSelectionModel} synchronizing all its writers.
+ */
+class ConcurrentBitSet
+{
+	private static final int INITIAL_WORDS = 16;
+
+	private volatile AtomicLongArray words;
+
+	private volatile int cardinality;
+
+	ConcurrentBitSet()
+	{
+		words = new AtomicLongArray( INITIAL_WORDS );
+		cardinality = 0;
+	}
+
+	/**
+	 * Returns the value of the bit with the specified index. May be called
+	 * from any thread without synchronization.
+	 *
+	 * @param index
+	 *            the bit index.
+	 * @return the value of the bit, {@code false} for negative indices.
+	 */
+	public boolean get( final int index )
+	{
+		if ( index < 0 )
+			return false;
+		final AtomicLongArray w = words;
+		final int i = index >>> 6;
+		return i < w.length() && ( w.get( i ) & ( 1L << index ) ) != 0;
+	}
+
+	/**
+	 * Sets the bit with the specified index to the specified value.
+	 *
+	 * @param index
+	 *            the bit index.
+	 * @param value
+	 *            the value to set.
+	 * @return {@code true} if the bit changed. Negative indices are ignored.
+	 */
+	public boolean set( final int index, final boolean value )
+	{
+		if ( index < 0 )
+			return false;
+		final int i = index >>> 6;
+		final long mask = 1L << index;
+		AtomicLongArray w = words;
+		if ( i >= w.length() )
+		{
+			if ( !value )
+				return false;
+			w = grow( i + 1 );
+		}
+		final long word = w.get( i );
+		if ( ( ( word & mask ) != 0 ) == value )
+			return false;
+		w.set( i, value ? word | mask : word & ~mask );
+		cardinality += value ? 1 : -1;
+		return true;
+	}
+
+	/**
+	 * Clears all bits.
+	 *
+	 * @return {@code true} if any bit was set.
+	 */
+	public boolean clear()
+	{
+		if ( cardinality == 0 )
+			return false;
+		words = new AtomicLongArray( INITIAL_WORDS );
+		cardinality = 0;
+		return true;
+	}
+
+	/**
+	 * Returns the number of set bits.
+	 *
+	 * @return the number of set bits.
+	 */
+	public int cardinality()
+	{
+		return cardinality;
+	}
+
+	/**
+	 * Returns a copy of the bits, trimmed to the last non-zero word. Must not
+	 * be called concurrently with modifications if a consistent copy is
+	 * required.
+	 *
+	 * @return the words of this bit set.
+	 */
+	public long[] toLongArray()
+	{
+		final AtomicLongArray w = words;
+		int n = w.length();
+		while ( n > 0 && w.get( n - 1 ) == 0 )
+			--n;
+		final long[] copy = new long[ n ];
+		for ( int i = 0; i < n; ++i )
+			copy[ i ] = w.get( i );
+		return copy;
+	}
+
+	/**
+	 * Returns the value of the bit with the specified index in words obtained
+	 * from {@link #toLongArray()}.
+	 */
+	static boolean get( final long[] words, final int index )
+	{
+		if ( index < 0 )
+			return false;
+		final int i = index >>> 6;
+		return i < words.length && ( words[ i ] & ( 1L << index ) ) != 0;
+	}
+
+	/**
+	 * Returns the index of the first set bit at or after {@code fromIndex} in
+	 * words obtained from {@link #toLongArray()}, or {@code -1} if there is
+	 * none.
+	 */
+	static int nextSetBit( final long[] words, final int fromIndex )
+	{
+		int i = fromIndex >>> 6;
+		if ( i >= words.length )
+			return -1;
+		long word = words[ i ] & ( -1L << fromIndex );
+		while ( true )
+		{
+			if ( word != 0 )
+				return ( i << 6 ) + Long.numberOfTrailingZeros( word );
+			if ( ++i == words.length )
+				return -1;
+			word = words[ i ];
+		}
+	}
+
+	private AtomicLongArray grow( final int minWords )
+	{
+		final AtomicLongArray w = words;
+		final AtomicLongArray grown = new AtomicLongArray( Math.max( minWords, 2 * w.length() ) );
+		for ( int i = 0; i < w.length(); ++i )
+			grown.set( i, w.get( i ) );
+		words = grown;
+		return grown;
+	}
+}
@@ -28,27 +28,41 @@
  */
 package org.mastodon.model;
 
-import java.util.BitSet;
 import java.util.Collection;
 
 import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefSet;
 import org.mastodon.graph.Edge;
+import org.mastodon.graph.GraphChangeListener;
 import org.mastodon.graph.GraphIdBimap;
 import org.mastodon.graph.GraphListener;
 import org.mastodon.graph.ListenableReadOnlyGraph;
+import org.mastodon.graph.ReadOnlyGraph;
 import org.mastodon.graph.Vertex;
 import org.scijava.listeners.Listeners;
 
 /**
  * A class that manages a selection of vertices and edges of a graph.
  * <p>
- * Created instances register themselves as a {@link GraphListener} to always
- * return consistent results. For instance, if a vertex marked as selected in
+ * Created instances register themselves as a {@link GraphListener} and a
+ * {@link GraphChangeListener} of the graph to always return consistent
+ * results. For instance, if a vertex marked as selected in
  * this class is later removed from the graph, the
  * {@link #getSelectedVertices()} method will not return it.
  * <p>
- * TODO: less severe synchronization
+ * The selected state is stored in bit sets indexed by the ids of the
+ * {@link GraphIdBimap}. Queries ({@link #isSelected(Vertex)},
+ * {@link #isSelected(Edge)}, {@link #isEmpty()}, {@link #getSnapshot()}) do
+ * not lock, so that painters in several views can query the selection
+ * concurrently with edits. Modifications are synchronized.
+ * <p>
+ * Deselections caused by removing vertices or edges from the graph are
+ * reported with a single event when the graph signals the end of the
+ * modification through {@link GraphChangeListener#graphChanged()}. Code that
+ * removes vertices or edges must therefore call
+ * {@code notifyGraphChanged()} on the graph when it is done, as it must
+ * anyway for all other views to update. Until then, the removed objects are
+ * already deselected, but listeners are not notified.
  *
  * @author Tobias Pietzsch
  *
@@ -58,19 +72,27 @@ import org.scijava.listeners.Listeners;
  *            the type of the edges.
  */
 public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
-		implements SelectionModel< V, E >, GraphListener< V, E >
+		implements SelectionModel< V, E >, GraphListener< V, E >, GraphChangeListener
 {
 	private final ListenableReadOnlyGraph< V, E > graph;
 
 	private final GraphIdBimap< V, E > idmap;
 
-	private final RefSet< V > selectedVertices;
+	private final ConcurrentBitSet vertexBits;
 
-	private final RefSet< E > selectedEdges;
+	private final ConcurrentBitSet edgeBits;
 
-	private final BitSet vertexBits;
+	/**
+	 * Snapshot of the current selection, or {@code null} if the selection
+	 * changed since the last snapshot was taken.
+	 */
+	private volatile Snapshot< V, E > snapshot;
 
-	private final BitSet edgeBits;
+	/**
+	 * Is <code>true</code> if vertices or edges were deselected because they
+	 * were removed from the graph, and listeners were not yet notified.
+	 */
+	private boolean removalPending;
 
 	private final Listeners.List< SelectionListener > listeners;
 
@@ -89,8 +111,8 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	/**
 	 * Creates a new selection for the specified graph.
 	 * <p>
-	 * This returned instance registers itself as a {@link GraphListener} of the
-	 * graph.
+	 * This returned instance registers itself as a {@link GraphListener} and a
+	 * {@link GraphChangeListener} of the graph.
 	 *
 	 * @param graph
 	 *            the graph.
@@ -102,13 +124,13 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	{
 		this.graph = graph;
 		this.idmap = idmap;
-		selectedVertices = RefCollections.createRefSet( graph.vertices() );
-		selectedEdges = RefCollections.createRefSet( graph.edges() );
-		vertexBits = new BitSet();
-		edgeBits = new BitSet();
+		vertexBits = new ConcurrentBitSet();
+		edgeBits = new ConcurrentBitSet();
 		listeners = new Listeners.SynchronizedList<>();
 		emitEvents = true;
 		shouldEmitEvent = false;
+		graph.addGraphListener( this );
+		graph.addGraphChangeListener( this );
 	}
 
 	/**
@@ -119,12 +141,9 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return {@code true} if specified vertex is selected.
 	 */
 	@Override
-	public synchronized boolean isSelected( final V v )
+	public boolean isSelected( final V v )
 	{
-		final int id = idmap.getVertexId( v );
-		if ( id < 0 )
-			return false;
-		return vertexBits.get( id );
+		return vertexBits.get( idmap.getVertexId( v ) );
 	}
 
 	/**
@@ -135,12 +154,9 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return {@code true} if specified edge is selected.
 	 */
 	@Override
-	public synchronized boolean isSelected( final E e )
+	public boolean isSelected( final E e )
 	{
-		final int id = idmap.getEdgeId( e );
-		if ( id < 0 )
-			return false;
-		return edgeBits.get( id );
+		return edgeBits.get( idmap.getEdgeId( e ) );
 	}
 
 	/**
@@ -154,15 +170,8 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	@Override
 	public synchronized void setSelected( final V v, final boolean selected )
 	{
-		if ( isSelected( v ) != selected )
-		{
-			vertexBits.set( idmap.getVertexId( v ), selected );
-			if ( selected )
-				selectedVertices.add( v );
-			else
-				selectedVertices.remove( v );
+		if ( vertexBits.set( idmap.getVertexId( v ), selected ) )
 			notifyListeners();
-		}
 	}
 
 	/**
@@ -176,15 +185,8 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	@Override
 	public synchronized void setSelected( final E e, final boolean selected )
 	{
-		if ( isSelected( e ) != selected )
-		{
-			edgeBits.set( idmap.getEdgeId( e ), selected );
-			if ( selected )
-				selectedEdges.add( e );
-			else
-				selectedEdges.remove( e );
+		if ( edgeBits.set( idmap.getEdgeId( e ), selected ) )
 			notifyListeners();
-		}
 	}
 
 	/**
@@ -223,22 +225,12 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	@Override
 	public synchronized boolean setEdgesSelected( final Collection< E > edges, final boolean selected )
 	{
+		boolean changed = false;
 		for ( final E e : edges )
-			edgeBits.set( idmap.getEdgeId( e ), selected );
-		if ( selected )
-		{
-			final boolean changed = selectedEdges.addAll( edges );
-			if ( changed )
-				notifyListeners();
-			return changed;
-		}
-		else
-		{
-			final boolean changed = selectedEdges.removeAll( edges );
-			if ( changed )
-				notifyListeners();
-			return changed;
-		}
+			changed |= edgeBits.set( idmap.getEdgeId( e ), selected );
+		if ( changed )
+			notifyListeners();
+		return changed;
 	}
 
 	/**
@@ -253,22 +245,12 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	@Override
 	public synchronized boolean setVerticesSelected( final Collection< V > vertices, final boolean selected )
 	{
+		boolean changed = false;
 		for ( final V v : vertices )
-			vertexBits.set( idmap.getVertexId( v ), selected );
-		if ( selected )
-		{
-			final boolean changed = selectedVertices.addAll( vertices );
-			if ( changed )
-				notifyListeners();
-			return changed;
-		}
-		else
-		{
-			final boolean changed = selectedVertices.removeAll( vertices );
-			if ( changed )
-				notifyListeners();
-			return changed;
-		}
+			changed |= vertexBits.set( idmap.getVertexId( v ), selected );
+		if ( changed )
+			notifyListeners();
+		return changed;
 	}
 
 	/**
@@ -280,14 +262,10 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	@Override
 	public synchronized boolean clearSelection()
 	{
-		vertexBits.clear();
-		edgeBits.clear();
-		if ( selectedEdges.isEmpty() && selectedVertices.isEmpty() )
-			return false;
-		selectedEdges.clear();
-		selectedVertices.clear();
-		notifyListeners();
-		return true;
+		final boolean changed = vertexBits.clear() | edgeBits.clear();
+		if ( changed )
+			notifyListeners();
+		return changed;
 	}
 
 	/**
@@ -296,11 +274,9 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return a <b>new</b> {@link RefSet} containing the selected edges.
 	 */
 	@Override
-	public synchronized RefSet< E > getSelectedEdges()
+	public RefSet< E > getSelectedEdges()
 	{
-		final RefSet< E > set = RefCollections.createRefSet( graph.edges() );
-		set.addAll( selectedEdges );
-		return set;
+		return getSnapshot().getSelectedEdges();
 	}
 
 	/**
@@ -309,26 +285,46 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	 * @return a <b>new</b> {@link RefSet} containing the selected vertices.
 	 */
 	@Override
-	public synchronized RefSet< V > getSelectedVertices()
+	public RefSet< V > getSelectedVertices()
 	{
-		final RefSet< V > set = RefCollections.createRefSet( graph.vertices() );
-		set.addAll( selectedVertices );
-		return set;
+		return getSnapshot().getSelectedVertices();
+	}
+
+	/**
+	 * Get an immutable snapshot of the current selection.
+	 * <p>
+	 * The same instance is returned until the selection changes, so repeated
+	 * calls between edits do not copy anything.
+	 *
+	 * @return the selection snapshot.
+	 */
+	public Snapshot< V, E > getSnapshot()
+	{
+		final Snapshot< V, E > s = snapshot;
+		if ( s != null )
+			return s;
+		synchronized ( this )
+		{
+			if ( snapshot == null )
+				snapshot = new Snapshot<>( graph, idmap, vertexBits.toLongArray(), vertexBits.cardinality(), edgeBits.toLongArray(), edgeBits.cardinality() );
+			return snapshot;
+		}
 	}
 
 	@Override
 	public boolean isEmpty()
 	{
-		return selectedVertices.isEmpty() && selectedEdges.isEmpty();
+		return vertexBits.cardinality() == 0 && edgeBits.cardinality() == 0;
 	}
 
 	@Override
 	public String toString()
 	{
+		final Snapshot< V, E > s = getSnapshot();
 		final StringBuilder sb = new StringBuilder();
 		sb.append( super.toString() );
-		sb.append( "\nVertices: " + selectedVertices );
-		sb.append( "\nEdges:    " + selectedEdges );
+		sb.append( "\nVertices: " + s.getSelectedVertices() );
+		sb.append( "\nEdges:    " + s.getSelectedEdges() );
 		return sb.toString();
 	}
 
@@ -340,28 +336,59 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	public void vertexAdded( final V v )
 	{}
 
+	/**
+	 * Deselects the removed vertex. Listeners are notified at the next
+	 * {@link #graphChanged()}.
+	 */
 	@Override
-	public void vertexRemoved( final V v )
+	public synchronized void vertexRemoved( final V v )
 	{
-		setSelected( v, false );
+		if ( vertexBits.set( idmap.getVertexId( v ), false ) )
+		{
+			snapshot = null;
+			removalPending = true;
+		}
 	}
 
 	@Override
 	public void edgeAdded( final E e )
 	{}
 
+	/**
+	 * Deselects the removed edge. Listeners are notified at the next
+	 * {@link #graphChanged()}.
+	 */
 	@Override
-	public void edgeRemoved( final E e )
+	public synchronized void edgeRemoved( final E e )
 	{
-		setSelected( e, false );
+		if ( edgeBits.set( idmap.getEdgeId( e ), false ) )
+		{
+			snapshot = null;
+			removalPending = true;
+		}
 	}
 
 	@Override
-	public void graphRebuilt()
+	public synchronized void graphRebuilt()
 	{
+		removalPending = false;
 		clearSelection();
 	}
 
+	/*
+	 * GraphChangeListener
+	 */
+
+	@Override
+	public synchronized void graphChanged()
+	{
+		if ( removalPending )
+		{
+			removalPending = false;
+			notifyListeners();
+		}
+	}
+
 	@Override
 	public Listeners< SelectionListener > listeners()
 	{
@@ -370,6 +397,7 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 
 	private void notifyListeners()
 	{
+		snapshot = null;
 		if ( emitEvents )
 			for ( final SelectionListener l : listeners.list )
 				l.selectionChanged();
@@ -401,4 +429,123 @@ public class DefaultSelectionModel< V extends Vertex< E >, E extends Edge< V > >
 	{
 		return !emitEvents;
 	}
+
+	/**
+	 * An immutable snapshot of the selected vertices and edges. Can be
+	 * queried from any thread.
+	 *
+	 * @param <V>
+	 *            the type of the vertices.
+	 * @param <E>
+	 *            the type of the edges.
+	 */
+	public static final class Snapshot< V extends Vertex< E >, E extends Edge< V > >
+	{
+		private final ReadOnlyGraph< V, E > graph;
+
+		private final GraphIdBimap< V, E > idmap;
+
+		private final long[] vertexBits;
+
+		private final int numVertices;
+
+		private final long[] edgeBits;
+
+		private final int numEdges;
+
+		private Snapshot(
+				final ReadOnlyGraph< V, E > graph,
+				final GraphIdBimap< V, E > idmap,
+				final long[] vertexBits,
+				final int numVertices,
+				final long[] edgeBits,
+				final int numEdges )
+		{
+			this.graph = graph;
+			this.idmap = idmap;
+			this.vertexBits = vertexBits;
+			this.numVertices = numVertices;
+			this.edgeBits = edgeBits;
+			this.numEdges = numEdges;
+		}
+
+		/**
+		 * Get the selected state of a vertex at the time of the snapshot.
+		 *
+		 * @param v
+		 *            a vertex.
+		 * @return {@code true} if specified vertex was selected.
+		 */
+		public boolean isSelected( final V v )
+		{
+			return ConcurrentBitSet.get( vertexBits, idmap.getVertexId( v ) );
+		}
+
+		/**
+		 * Get the selected state of an edge at the time of the snapshot.
+		 *
+		 * @param e
+		 *            an edge.
+		 * @return {@code true} if specified edge was selected.
+		 */
+		public boolean isSelected( final E e )
+		{
+			return ConcurrentBitSet.get( edgeBits, idmap.getEdgeId( e ) );
+		}
+
+		/**
+		 * @return the number of selected vertices.
+		 */
+		public int numSelectedVertices()
+		{
+			return numVertices;
+		}
+
+		/**
+		 * @return the number of selected edges.
+		 */
+		public int numSelectedEdges()
+		{
+			return numEdges;
+		}
+
+		/**
+		 * @return {@code true} if neither vertices nor edges were selected.
+		 */
+		public boolean isEmpty()
+		{
+			return numVertices == 0 && numEdges == 0;
+		}
+
+		/**
+		 * Get the selected vertices.
+		 *
+		 * @return a <b>new</b> {@link RefSet} containing the selected
+		 *         vertices.
+		 */
+		public RefSet< V > getSelectedVertices()
+		{
+			final RefSet< V > set = RefCollections.createRefSet( graph.vertices(), numVertices );
+			final V ref = graph.vertexRef();
+			for ( int id = ConcurrentBitSet.nextSetBit( vertexBits, 0 ); id >= 0; id = ConcurrentBitSet.nextSetBit( vertexBits, id + 1 ) )
+				set.add( idmap.getVertex( id, ref ) );
+			graph.releaseRef( ref );
+			return set;
+		}
+
+		/**
+		 * Get the selected edges.
+		 *
+		 * @return a <b>new</b> {@link RefSet} containing the selected edges.
+		 */
+		public RefSet< E > getSelectedEdges()
+		{
+			final RefSet< E > set = RefCollections.createRefSet( graph.edges(), numEdges );
+			final E ref = graph.edgeRef();
+			for ( int id = ConcurrentBitSet.nextSetBit( edgeBits, 0 ); id >= 0; id = ConcurrentBitSet.nextSetBit( edgeBits, id + 1 ) )
+				set.add( idmap.getEdge( id, ref ) );
+			graph.releaseRef( ref );
+			return set;
+		}
+	}
 }
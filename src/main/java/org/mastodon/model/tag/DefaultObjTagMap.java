@@ -36,6 +36,7 @@ import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.mastodon.RefPool;
 import org.mastodon.labels.LabelSet;
 import org.mastodon.labels.LabelSets;
 import org.mastodon.model.tag.TagSetStructure.Tag;
@@ -55,6 +56,16 @@ import org.mastodon.properties.ObjPropertyMap;
  * Tags must map to {@link Integer} IDs that are globally unique across all tag
  * sets. {@code DefaultObjTagMap} is backed a {@link LabelSets} property of the
  * objects (which can be shared among all {@code DefaultObjTagMap}s).
+ * <p>
+ * If a {@link RefPool} for the objects is given, the tag of each object is
+ * additionally cached in a primitive column indexed by object id, so that
+ * {@link #get(Object)} is O(1) and does not allocate. The column is filled
+ * lazily and must be kept consistent by calling {@link #invalidate(Object)}
+ * whenever the labels of an object change outside of this map, which
+ * {@link DefaultObjTags} does. The column is only a read cache:
+ * {@link #set(Object, Object)} and {@link #remove(Object)} always modify the
+ * backing {@code LabelSets}, and {@link #get(Object)} may be called
+ * concurrently with them without losing updates.
  *
  * @param <O>
  *            the type of object to tag.
@@ -70,14 +81,24 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 
 	private final Function< T, Integer > tagToIdFunction;
 
+	private final RefPool< O > pool;
+
 	private final ArrayList< Integer > ids = new ArrayList<>();
 
+	private final ArrayList< T > tags = new ArrayList<>();
+
 	private final HashMap< T, Integer > tagToId = new HashMap<>();
 
 	private final HashMap< Integer, T > idToTag = new HashMap<>();
 
 	private final HashMap< Integer, List< Integer > > idToOtherIds = new HashMap<>();
 
+	/**
+	 * Caches the tag index of each object, or {@code null} if no pool was
+	 * given.
+	 */
+	private final TagColumn column;
+
 	/**
 	 * Create a tag map with the given set of mutually exclusive {@code tags},
 	 * mapped to IDs by the specified {@code tagToIdFunction} and backed by the
@@ -94,10 +115,39 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 			final LabelSets< O, Integer > idLabelSets,
 			final Collection< T > tags,
 			final Function< T, Integer > tagToIdFunction )
+	{
+		this( idLabelSets, tags, tagToIdFunction, null );
+	}
+
+	/**
+	 * Create a tag map with the given set of mutually exclusive {@code tags},
+	 * mapped to IDs by the specified {@code tagToIdFunction} and backed by the
+	 * specified {@code idLabelSets} property. Tags are cached in a primitive
+	 * column indexed by the ids of the specified {@code pool}.
+	 *
+	 * @param idLabelSets
+	 *            the backing {@code LabelSets} property.
+	 * @param tags
+	 *            set of mutually exclusive {@code tags}.
+	 * @param tagToIdFunction
+	 *            maps tags to integer IDs (globally unique across all tag sets).
+	 * @param pool
+	 *            the pool of the tagged objects. If {@code null}, tags are not
+	 *            cached.
+	 */
+	public DefaultObjTagMap(
+			final LabelSets< O, Integer > idLabelSets,
+			final Collection< T > tags,
+			final Function< T, Integer > tagToIdFunction,
+			final RefPool< O > pool )
 	{
 		this.idLabelSets = idLabelSets;
 		this.tagToIdFunction = tagToIdFunction;
+		this.pool = pool;
 		update( tags );
+		column = ( pool == null || tags.size() > TagColumn.MAX_SHORT_TAGS )
+				? null
+				: new TagColumn( tags.size() );
 	}
 
 	@Override
@@ -109,12 +159,17 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 		}
 		else
 		{
-			final LabelSet< O, Integer > ref = idLabelSets.createRef();
 			final Integer id = tagToIdFunction.apply( tag );
+			final int index = ids.indexOf( id );
+			if ( column != null && index < 0 )
+				throw new IllegalArgumentException( "tag is not in tag set" );
+			final LabelSet< O, Integer > ref = idLabelSets.createRef();
 			final LabelSet< O, Integer > labels = idLabelSets.getLabels( object, ref );
 			labels.removeAll( idToOtherIds.get( id ) );
 			labels.add( id );
 			idLabelSets.releaseRef( ref );
+			if ( column != null )
+				column.set( pool.getId( object ), TagColumn.FIRST_TAG + index );
 		}
 	}
 
@@ -124,6 +179,8 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 		final LabelSet< O, Integer > ref = idLabelSets.createRef();
 		idLabelSets.getLabels( object, ref ).removeAll( ids );
 		idLabelSets.releaseRef( ref );
+		if ( column != null )
+			column.set( pool.getId( object ), TagColumn.NONE );
 	}
 
 	@Override
@@ -131,14 +188,70 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 	{
 		if ( object == null )
 			return null;
+		if ( column == null )
+		{
+			final int index = lookupIndex( object );
+			return index < 0 ? null : tags.get( index );
+		}
+		final int entry = getEntry( object, pool.getId( object ) );
+		return entry == TagColumn.NONE ? null : tags.get( entry - TagColumn.FIRST_TAG );
+	}
+
+	/**
+	 * Forget the cached tag of the specified object. Must be called when the
+	 * labels of the object are changed without going through this map, or
+	 * when the object is added to or removed from its pool.
+	 *
+	 * @param object
+	 *            the object.
+	 */
+	void invalidate( final O object )
+	{
+		if ( column != null )
+			column.set( pool.getId( object ), TagColumn.UNKNOWN );
+	}
+
+	/**
+	 * Forget the cached tags of all objects.
+	 */
+	void invalidateAll()
+	{
+		if ( column != null )
+			column.invalidate();
+	}
+
+	/**
+	 * Returns the column entry for the specified object, looking up and
+	 * storing its tag if it is not cached yet. The looked-up entry is only
+	 * stored if the column was not modified during the lookup.
+	 */
+	private int getEntry( final O object, final int objectId )
+	{
+		final int stamp = column.stamp();
+		int entry = column.get( objectId );
+		if ( entry == TagColumn.UNKNOWN )
+		{
+			final int index = lookupIndex( object );
+			entry = index < 0 ? TagColumn.NONE : TagColumn.FIRST_TAG + index;
+			column.fill( objectId, entry, stamp );
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns the index of the tag of the specified object, looked up in the
+	 * backing {@code LabelSets}, or {@code -1} if the object is not tagged.
+	 */
+	private int lookupIndex( final O object )
+	{
 		final LabelSet< O, Integer > ref = idLabelSets.createRef();
 		try
 		{
 			final LabelSet< O, Integer > labels = idLabelSets.getLabels( object, ref );
-			for ( final Integer id : ids )
-				if ( labels.contains( id ) )
-					return idToTag.get( id );
-			return null;
+			for ( int i = 0; i < ids.size(); ++i )
+				if ( labels.contains( ids.get( i ) ) )
+					return i;
+			return -1;
 		}
 		finally
 		{
@@ -161,6 +274,7 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 	private void update( final Collection< T > tags )
 	{
 		ids.clear();
+		this.tags.clear();
 		tagToId.clear();
 		idToTag.clear();
 		idToOtherIds.clear();
@@ -170,6 +284,7 @@ public class DefaultObjTagMap< O, T > implements ObjTagMap< O, T >
 			if ( ids.contains( id ) )
 				throw new IllegalArgumentException( "inconsistent tag set: ids are not unique" );
 			ids.add( id );
+			this.tags.add( tag );
 			tagToId.put( tag, id );
 			idToTag.put( id, tag );
 		}
@@ -32,6 +32,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.mastodon.RefPool;
 import org.mastodon.labels.LabelSets;
 import org.mastodon.model.tag.TagSetStructure.Tag;
 import org.mastodon.model.tag.TagSetStructure.TagSet;
@@ -41,6 +42,12 @@ import org.mastodon.model.tag.TagSetStructure.TagSet;
  * <p>
  * Manages tags for a collection of objects, according to a specified
  * {@link TagSetStructure}.
+ * <p>
+ * If a {@link RefPool} for the objects is given, each {@link DefaultObjTagMap}
+ * caches tags in a primitive column indexed by object id. This instance then
+ * listens to changes of the backing {@link LabelSets} to keep the columns
+ * consistent. Additions and removals of objects must be reported through
+ * {@link #objectAddedOrRemoved(Object)}.
  *
  * @param <O>
  *            the type of object to tag.
@@ -49,6 +56,8 @@ public class DefaultObjTags< O > implements ObjTags< O >
 {
 	private final LabelSets< O, Integer > idLabelSets;
 
+	private final RefPool< O > pool;
+
 	private final Map< Tag, TagSet > tagToTagSet = new HashMap<>();
 
 	private final Map< TagSet, DefaultObjTagMap< O, Tag > > tagSetToTagMap = new HashMap<>();
@@ -56,9 +65,20 @@ public class DefaultObjTags< O > implements ObjTags< O >
 	public DefaultObjTags(
 			final LabelSets< O, Integer > idLabelSets,
 			final TagSetStructure tagSetStructure )
+	{
+		this( idLabelSets, tagSetStructure, null );
+	}
+
+	public DefaultObjTags(
+			final LabelSets< O, Integer > idLabelSets,
+			final TagSetStructure tagSetStructure,
+			final RefPool< O > pool )
 	{
 		this.idLabelSets = idLabelSets;
+		this.pool = pool;
 		update( tagSetStructure );
+		if ( pool != null )
+			idLabelSets.propertyChangeListeners().add( this::invalidate );
 	}
 
 	@Override
@@ -87,6 +107,33 @@ public class DefaultObjTags< O > implements ObjTags< O >
 			return tags( tagToTagSet.get( tag ) ).getTaggedWith( tag );
 	}
 
+	/**
+	 * Forget the cached tags of an object that was added to or removed from
+	 * its pool, so that its id can be reused.
+	 *
+	 * @param object
+	 *            the object.
+	 */
+	void objectAddedOrRemoved( final O object )
+	{
+		invalidate( object );
+	}
+
+	/**
+	 * Forget the cached tags of all objects, for instance after the backing
+	 * {@link LabelSets} have been cleared or rebuilt.
+	 */
+	void invalidateAll()
+	{
+		tagSetToTagMap.values().forEach( DefaultObjTagMap::invalidateAll );
+	}
+
+	private void invalidate( final O object )
+	{
+		for ( final DefaultObjTagMap< O, Tag > tagMap : tagSetToTagMap.values() )
+			tagMap.invalidate( object );
+	}
+
 	/**
 	 * Rebuild internal data structures to handle the given
 	 * {@link TagSetStructure}.
@@ -97,7 +144,7 @@ public class DefaultObjTags< O > implements ObjTags< O >
 		tagSetToTagMap.clear();
 		for ( final TagSet tagSet : tagSetStructure.getTagSets() )
 		{
-			tagSetToTagMap.put( tagSet, new DefaultObjTagMap<>( idLabelSets, tagSet.getTags(), Tag::id ) );
+			tagSetToTagMap.put( tagSet, new DefaultObjTagMap<>( idLabelSets, tagSet.getTags(), Tag::id, pool ) );
 			for ( final Tag tag : tagSet.getTags() )
 				tagToTagSet.put( tag, tagSet );
 		}
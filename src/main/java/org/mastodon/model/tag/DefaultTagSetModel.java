@@ -35,6 +35,8 @@ import org.mastodon.RefPool;
 import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefSet;
 import org.mastodon.graph.Edge;
+import org.mastodon.graph.GraphListener;
+import org.mastodon.graph.ListenableReadOnlyGraph;
 import org.mastodon.graph.ReadOnlyGraph;
 import org.mastodon.graph.Vertex;
 import org.mastodon.labels.LabelSet;
@@ -50,6 +52,12 @@ import org.scijava.listeners.Listeners;
  * <p>
  * Assigns tags to vertices and edges of a graph, according to a {@link TagSetStructure}.
  * <p>
+ * If the graph objects are pooled, tags are cached in primitive columns (see
+ * {@link DefaultObjTagMap}). If the graph is a
+ * {@link ListenableReadOnlyGraph}, this model registers a
+ * {@link GraphListener} to keep these columns consistent when objects are
+ * added and removed.
+ * <p>
  * Provides facilities for serialization and undo/redo.
  *
  * @param <V>
@@ -92,10 +100,52 @@ public class DefaultTagSetModel< V extends Vertex< E >, E extends Edge< V > > im
 		this.tagSetStructure = new TagSetStructure();
 		vertexIdLabelSets = new LabelSets<>( vertexPool );
 		edgeIdLabelSets = new LabelSets<>( edgePool );
-		vertexTags = new DefaultObjTags<>( vertexIdLabelSets, tagSetStructure );
-		edgeTags = new DefaultObjTags<>( edgeIdLabelSets, tagSetStructure );
+		final boolean listenable = graph instanceof ListenableReadOnlyGraph;
+		vertexTags = new DefaultObjTags<>( vertexIdLabelSets, tagSetStructure, listenable ? vertexPool : null );
+		edgeTags = new DefaultObjTags<>( edgeIdLabelSets, tagSetStructure, listenable ? edgePool : null );
 		listeners = new Listeners.SynchronizedList<>();
 		emitEvents = true;
+		if ( listenable )
+			( ( ListenableReadOnlyGraph< V, E > ) graph ).addGraphListener( new TagColumnUpdater() );
+	}
+
+	/**
+	 * Keeps the tag columns of {@link #vertexTags} and {@link #edgeTags}
+	 * consistent when vertices and edges are added or removed, since their ids
+	 * are reused.
+	 */
+	private class TagColumnUpdater implements GraphListener< V, E >
+	{
+		@Override
+		public void graphRebuilt()
+		{
+			vertexTags.invalidateAll();
+			edgeTags.invalidateAll();
+		}
+
+		@Override
+		public void vertexAdded( final V vertex )
+		{
+			vertexTags.objectAddedOrRemoved( vertex );
+		}
+
+		@Override
+		public void vertexRemoved( final V vertex )
+		{
+			vertexTags.objectAddedOrRemoved( vertex );
+		}
+
+		@Override
+		public void edgeAdded( final E edge )
+		{
+			edgeTags.objectAddedOrRemoved( edge );
+		}
+
+		@Override
+		public void edgeRemoved( final E edge )
+		{
+			edgeTags.objectAddedOrRemoved( edge );
+		}
 	}
 
 	@Override
@@ -189,6 +239,8 @@ public class DefaultTagSetModel< V extends Vertex< E >, E extends Edge< V > > im
 	{
 		vertexIdLabelSets.clear();
 		edgeIdLabelSets.clear();
+		vertexTags.invalidateAll();
+		edgeTags.invalidateAll();
 	}
 
 	/**
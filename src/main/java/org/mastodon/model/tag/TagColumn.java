@@ -0,0 +1,205 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model.tag;
+
+import java.util.Arrays;
+
+/**
+ * A compact primitive column that caches, for each object id, the index of the
+ * tag assigned to the object within one tag set.
+ * <p>
+ * Entries are stored as {@code byte}s if the tag set has at most
+ * {@link #MAX_BYTE_TAGS} tags, and as {@code short}s otherwise. An entry is
+ * either {@link #UNKNOWN} (the tag must be looked up in the backing
+ * {@code LabelSets} and stored), {@link #NONE} (the object is not tagged), or
+ * {@code FIRST_TAG + index} where {@code index} is the index of the tag in the
+ * tag set.
+ * <p>
+ * Reading is lock-free. All writes are serialized on the column, and every
+ * {@link #set(int, int)} and {@link #invalidate()} increments a modification
+ * stamp. Readers that looked up a missing entry store it with
+ * {@link #fill(int, int, int)}, which is rejected if the column was modified
+ * since the reader took its stamp with {@link #stamp()}. This way a lookup
+ * that raced with a modification can never overwrite a newer entry.
+ */
+final class TagColumn
+{
+	static final int UNKNOWN = 0;
+
+	static final int NONE = 1;
+
+	static final int FIRST_TAG = 2;
+
+	/**
+	 * Maximum number of tags that can be stored in a {@code byte} column.
+	 */
+	static final int MAX_BYTE_TAGS = 0xff - FIRST_TAG + 1;
+
+	/**
+	 * Maximum number of tags that can be stored in a {@code short} column.
+	 */
+	static final int MAX_SHORT_TAGS = 0xffff - FIRST_TAG + 1;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private byte[] bytes;
+
+	private short[] shorts;
+
+	/**
+	 * Incremented after every modification (but not after a
+	 * {@link #fill(int, int, int)}). Being volatile, reading it also makes all
+	 * entries written before the last increment visible.
+	 */
+	private volatile int modCount;
+
+	/**
+	 * Create a column for a tag set with the specified number of tags.
+	 *
+	 * @param numTags
+	 *            the number of tags in the tag set, at most
+	 *            {@link #MAX_SHORT_TAGS}.
+	 */
+	TagColumn( final int numTags )
+	{
+		if ( numTags > MAX_SHORT_TAGS )
+			throw new IllegalArgumentException( "too many tags for a tag column: " + numTags );
+		if ( numTags <= MAX_BYTE_TAGS )
+			bytes = new byte[ INITIAL_CAPACITY ];
+		else
+			shorts = new short[ INITIAL_CAPACITY ];
+	}
+
+	/**
+	 * Returns the current modification stamp. Must be called before the
+	 * backing {@code LabelSets} are queried for an entry that is to be stored
+	 * with {@link #fill(int, int, int)}.
+	 *
+	 * @return the modification stamp.
+	 */
+	int stamp()
+	{
+		return modCount;
+	}
+
+	/**
+	 * Get the entry for the specified object id.
+	 *
+	 * @param id
+	 *            the object id.
+	 * @return the entry, {@link #UNKNOWN} if it was never set.
+	 */
+	int get( final int id )
+	{
+		final byte[] bytes = this.bytes;
+		if ( bytes != null )
+			return id < bytes.length ? bytes[ id ] & 0xff : UNKNOWN;
+		final short[] shorts = this.shorts;
+		return id < shorts.length ? shorts[ id ] & 0xffff : UNKNOWN;
+	}
+
+	/**
+	 * Set the entry for the specified object id.
+	 *
+	 * @param id
+	 *            the object id.
+	 * @param value
+	 *            the entry.
+	 */
+	synchronized void set( final int id, final int value )
+	{
+		write( id, value );
+		++modCount;
+	}
+
+	/**
+	 * Store a looked-up entry for the specified object id, unless the column
+	 * was modified since {@code stamp} was taken or the entry is no longer
+	 * {@link #UNKNOWN}.
+	 *
+	 * @param id
+	 *            the object id.
+	 * @param value
+	 *            the looked-up entry.
+	 * @param stamp
+	 *            the {@link #stamp()} taken before the lookup.
+	 * @return {@code true} if the entry was stored.
+	 */
+	synchronized boolean fill( final int id, final int value, final int stamp )
+	{
+		if ( stamp != modCount || get( id ) != UNKNOWN )
+			return false;
+		write( id, value );
+		// Publish the entry and a possibly grown array without invalidating
+		// the stamps of concurrent lookups.
+		modCount = stamp;
+		return true;
+	}
+
+	/**
+	 * Reset all entries to {@link #UNKNOWN}.
+	 */
+	synchronized void invalidate()
+	{
+		if ( bytes != null )
+			Arrays.fill( bytes, ( byte ) UNKNOWN );
+		else
+			Arrays.fill( shorts, ( short ) UNKNOWN );
+		++modCount;
+	}
+
+	private void write( final int id, final int value )
+	{
+		if ( bytes != null )
+		{
+			if ( id >= bytes.length )
+			{
+				if ( value == UNKNOWN )
+					return;
+				bytes = Arrays.copyOf( bytes, newCapacity( bytes.length, id ) );
+			}
+			bytes[ id ] = ( byte ) value;
+		}
+		else
+		{
+			if ( id >= shorts.length )
+			{
+				if ( value == UNKNOWN )
+					return;
+				shorts = Arrays.copyOf( shorts, newCapacity( shorts.length, id ) );
+			}
+			shorts[ id ] = ( short ) value;
+		}
+	}
+
+	private static int newCapacity( final int capacity, final int id )
+	{
+		return ( int ) Math.min( Integer.MAX_VALUE - 8, Math.max( id + 1L, 2L * capacity ) );
+	}
+}
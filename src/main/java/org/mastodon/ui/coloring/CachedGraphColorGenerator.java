@@ -0,0 +1,182 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.coloring;
+
+import java.util.Arrays;
+
+import org.mastodon.RefPool;
+import org.mastodon.collection.RefCollections;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.ReadOnlyGraph;
+import org.mastodon.graph.Vertex;
+
+/**
+ * A {@link GraphColorGenerator} that caches the colors of another one in
+ * primitive columns indexed by the pool ids of vertices and edges.
+ * <p>
+ * Colors are computed by the wrapped generator the first time a vertex or edge
+ * is painted, and then read from the columns until {@link #invalidate()} is
+ * called or another generator is set. It is meant for colorings that are
+ * costly to compute per object, such as feature colorings, and whose result
+ * only changes when the feature values or the graph change. The owner of this
+ * instance is responsible for calling {@link #invalidate()} then.
+ * <p>
+ * Invalidation is O(1): each column entry stores the generation in which it
+ * was computed, and invalidation starts a new generation. Concurrent painters
+ * may race to fill the same entry, which is harmless because they compute the
+ * same color.
+ * <p>
+ * If the vertices or edges of the graph are not pooled, colors are not cached
+ * and the wrapped generator is called directly.
+ *
+ * @param <V>
+ *            the type of the vertices.
+ * @param <E>
+ *            the type of the edges.
+ */
+public class CachedGraphColorGenerator< V extends Vertex< E >, E extends Edge< V > >
+		implements GraphColorGenerator< V, E >
+{
+	private final RefPool< V > vertexPool;
+
+	private final RefPool< E > edgePool;
+
+	private final ColorColumn vertexColors = new ColorColumn();
+
+	private final ColorColumn edgeColors = new ColorColumn();
+
+	private volatile GraphColorGenerator< V, E > colorGenerator;
+
+	/**
+	 * The current generation. Entries stamped with another generation are
+	 * stale.
+	 */
+	private volatile int generation = 1;
+
+	public CachedGraphColorGenerator( final ReadOnlyGraph< V, E > graph )
+	{
+		this.vertexPool = RefCollections.tryGetRefPool( graph.vertices() );
+		this.edgePool = RefCollections.tryGetRefPool( graph.edges() );
+	}
+
+	/**
+	 * Sets the wrapped color generator and discards all cached colors.
+	 *
+	 * @param colorGenerator
+	 *            the color generator, may be {@code null}.
+	 */
+	public void setColorGenerator( final GraphColorGenerator< V, E > colorGenerator )
+	{
+		this.colorGenerator = colorGenerator;
+		invalidate();
+	}
+
+	/**
+	 * Get the wrapped color generator.
+	 *
+	 * @return the wrapped color generator, maybe {@code null}.
+	 */
+	public GraphColorGenerator< V, E > getColorGenerator()
+	{
+		return colorGenerator;
+	}
+
+	/**
+	 * Discards all cached colors. Must be called when the colors computed by
+	 * the wrapped generator may have changed.
+	 */
+	public void invalidate()
+	{
+		generation++;
+	}
+
+	@Override
+	public int color( final V vertex )
+	{
+		final GraphColorGenerator< V, E > generator = colorGenerator;
+		if ( generator == null )
+			return 0;
+		if ( vertexPool == null )
+			return generator.color( vertex );
+
+		final int gen = generation;
+		final int id = vertexPool.getId( vertex );
+		final long entry = vertexColors.get( id );
+		if ( ( int ) ( entry >>> 32 ) == gen )
+			return ( int ) entry;
+		final int color = generator.color( vertex );
+		vertexColors.set( id, gen, color );
+		return color;
+	}
+
+	@Override
+	public int color( final E edge, final V source, final V target )
+	{
+		final GraphColorGenerator< V, E > generator = colorGenerator;
+		if ( generator == null )
+			return 0;
+		if ( edgePool == null )
+			return generator.color( edge, source, target );
+
+		final int gen = generation;
+		final int id = edgePool.getId( edge );
+		final long entry = edgeColors.get( id );
+		if ( ( int ) ( entry >>> 32 ) == gen )
+			return ( int ) entry;
+		final int color = generator.color( edge, source, target );
+		edgeColors.set( id, gen, color );
+		return color;
+	}
+
+	/**
+	 * Colors indexed by object id, each packed with the generation in which it
+	 * was computed into a {@code long}.
+	 */
+	private static final class ColorColumn
+	{
+		private volatile long[] entries = new long[ 1024 ];
+
+		long get( final int id )
+		{
+			final long[] e = entries;
+			return id < e.length ? e[ id ] : 0;
+		}
+
+		void set( final int id, final int generation, final int color )
+		{
+			long[] e = entries;
+			if ( id >= e.length )
+			{
+				e = Arrays.copyOf( e, ( int ) Math.min( Integer.MAX_VALUE - 8, Math.max( id + 1L, 2L * e.length ) ) );
+				entries = e;
+			}
+			e[ id ] = ( ( long ) generation << 32 ) | ( color & 0xffffffffL );
+		}
+	}
+}
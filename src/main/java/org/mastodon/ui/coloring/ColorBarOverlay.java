@@ -39,6 +39,8 @@ import org.mastodon.model.tag.TagSetStructure.TagSet;
 import org.mastodon.ui.coloring.ColoringModel.ColoringStyle;
 import org.mastodon.ui.coloring.feature.FeatureColorMode;
 import org.mastodon.ui.coloring.feature.FeatureProjectionId;
+import org.mastodon.ui.coloring.feature.FeatureRangeCalculator;
+import org.mastodon.ui.coloring.feature.FeatureStatistics;
 import org.scijava.listeners.Listeners;
 
 import bdv.viewer.OverlayRenderer;
@@ -146,6 +148,8 @@ public class ColorBarOverlay implements OverlayRenderer
 
 	private final Supplier< Color > bgColorSupplier;
 
+	private FeatureRangeCalculator rangeCalculator;
+
 	private final Listeners.List< ColorBarOverlayListener > listeners = new Listeners.List<>();
 
 	/**
@@ -262,6 +266,7 @@ public class ColorBarOverlay implements OverlayRenderer
 		final String vertexProjectionKey = toString( featureColorMode.getVertexFeatureProjection() );
 		final double vertexRangeMin = featureColorMode.getVertexRangeMin();
 		final double vertexRangeMax = featureColorMode.getVertexRangeMax();
+		final FeatureStatistics vertexStatistics = statistics( featureColorMode.getVertexFeatureProjection() );
 		final Color panelBGColor = bgColorSupplier.get();
 		final Color bgColor = new Color( panelBGColor.getRed(), panelBGColor.getGreen(), panelBGColor.getBlue(), 130 );
 		final Color lineColor = panelBGColor.darker().darker();
@@ -272,21 +277,32 @@ public class ColorBarOverlay implements OverlayRenderer
 		g.drawRect( x, y, tw, th );
 		if ( areVandEequal( featureColorMode ) )
 		{
-			draw( x, y, vertexColorMap, BOTH_HEADER, vertexProjectionKey, vertexRangeMin, vertexRangeMax, g );
+			draw( x, y, vertexColorMap, BOTH_HEADER, vertexProjectionKey, vertexRangeMin, vertexRangeMax,
+					vertexStatistics, g );
 		}
 		else
 		{
 			final int xShift =
-					draw( x, y, vertexColorMap, VERTEX_HEADER, vertexProjectionKey, vertexRangeMin, vertexRangeMax, g );
+					draw( x, y, vertexColorMap, VERTEX_HEADER, vertexProjectionKey, vertexRangeMin, vertexRangeMax,
+							vertexStatistics, g );
 			final String edgeColorMap = featureColorMode.getEdgeColorMap();
 			final String edgeProjectionKey = toString( featureColorMode.getEdgeFeatureProjection() );
 			final double edgeRangeMin = featureColorMode.getEdgeRangeMin();
 			final double edgeRangeMax = featureColorMode.getEdgeRangeMax();
+			final FeatureStatistics edgeStatistics = statistics( featureColorMode.getEdgeFeatureProjection() );
 			draw( x + xShift + COLORBARS_SPACING, y, edgeColorMap, EDGE_HEADER, edgeProjectionKey, edgeRangeMin,
-					edgeRangeMax, g );
+					edgeRangeMax, edgeStatistics, g );
 		}
 	}
 
+	private FeatureStatistics statistics( final FeatureProjectionId featureProjectionId )
+	{
+		final FeatureRangeCalculator calculator = rangeCalculator;
+		return ( calculator == null || featureProjectionId == null )
+				? null
+				: calculator.getStatistics( featureProjectionId );
+	}
+
 	private static boolean areVandEequal( final FeatureColorMode featureColorMode )
 	{
 		if ( !featureColorMode.getVertexColorMap().equals( featureColorMode.getEdgeColorMap() ) )
@@ -338,6 +354,7 @@ public class ColorBarOverlay implements OverlayRenderer
 			final String featureName,
 			final double rangeMin,
 			final double rangeMax,
+			final FeatureStatistics statistics,
 			final Graphics g )
 	{
 		final FontMetrics fm = g.getFontMetrics();
@@ -373,6 +390,9 @@ public class ColorBarOverlay implements OverlayRenderer
 			g.setColor( new Color( vCmap.get( ( double ) i / lw ), true ) );
 			g.drawLine( x + i, y - height, x + i, y );
 		}
+		// Distribution of the values, over the colorbar.
+		if ( statistics != null )
+			drawHistogram( statistics, rangeMin, rangeMax, x, y, lw, height, g );
 		// No value patch.
 		g.setColor( new Color( vCmap.get( Double.NaN ) ) );
 		g.fillRect( ( int ) ( x + 0.9 * localWidth ), y - height, ( int ) ( 0.1 * localWidth ), height );
@@ -395,6 +415,49 @@ public class ColorBarOverlay implements OverlayRenderer
 		return localWidth + vWidth;
 	}
 
+	/**
+	 * Draws the histogram of the feature values that fall within the color
+	 * range, as a translucent silhouette standing on the bottom of a colorbar
+	 * of width {@code lw}.
+	 */
+	private static void drawHistogram(
+			final FeatureStatistics statistics,
+			final double rangeMin,
+			final double rangeMax,
+			final int x,
+			final int y,
+			final int lw,
+			final int height,
+			final Graphics g )
+	{
+		if ( statistics.getCount() == 0 || !( rangeMax > rangeMin ) || lw <= 0 )
+			return;
+
+		final int[] histogram = statistics.getHistogram();
+		final double binWidth = ( statistics.getMax() - statistics.getMin() ) / histogram.length;
+		final int[] counts = new int[ lw ];
+		for ( int b = 0; b < histogram.length; b++ )
+		{
+			final double center = statistics.getMin() + ( b + 0.5 ) * binWidth;
+			final int i = ( int ) Math.floor( ( center - rangeMin ) / ( rangeMax - rangeMin ) * lw );
+			if ( i >= 0 && i < lw )
+				counts[ i ] += histogram[ b ];
+		}
+		int maxCount = 0;
+		for ( final int count : counts )
+			maxCount = Math.max( maxCount, count );
+		if ( maxCount == 0 )
+			return;
+
+		g.setColor( new Color( 0, 0, 0, 90 ) );
+		for ( int i = 0; i < lw; i++ )
+		{
+			final int h = ( int ) Math.ceil( ( double ) counts[ i ] * height / maxCount );
+			if ( h > 0 )
+				g.drawLine( x + i, y - h, x + i, y );
+		}
+	}
+
 	private int totalHeight( final FeatureColorMode featureColorMode, final Graphics g )
 	{
 		final FontMetrics fm = g.getFontMetrics();
@@ -458,6 +521,19 @@ public class ColorBarOverlay implements OverlayRenderer
 		insets[ 3 ] = right;
 	}
 
+	/**
+	 * Sets the calculator that provides the statistics of the feature values.
+	 * If it is not {@code null}, the histogram of the values is drawn over the
+	 * color bars.
+	 *
+	 * @param rangeCalculator
+	 *            the calculator, or {@code null} to only draw the color bars.
+	 */
+	public void setFeatureRangeCalculator( final FeatureRangeCalculator rangeCalculator )
+	{
+		this.rangeCalculator = rangeCalculator;
+	}
+
 	public boolean isVisible()
 	{
 		return visible;
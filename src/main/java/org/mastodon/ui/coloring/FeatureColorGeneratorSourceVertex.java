@@ -59,6 +59,6 @@ public class FeatureColorGeneratorSourceVertex< V extends Vertex< E >, E extends
 			return 0;
 
 		final double alpha = ( featureProjection.value( source ) - min ) / ( max - min );
-		return colorMap.get( alpha );
+		return colorMap.lookup( alpha );
 	}
 }
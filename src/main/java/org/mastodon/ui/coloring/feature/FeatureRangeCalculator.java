@@ -42,4 +42,17 @@ public interface FeatureRangeCalculator
 	 *         feature on.
 	 */
 	public double[] computeMinMax( final FeatureProjectionId projection );
+
+	/**
+	 * Returns the current statistics for the specified feature projection.
+	 *
+	 * @param projection
+	 *            the feature projection id.
+	 * @return the statistics, or <code>null</code> if the calculation could
+	 *         not proceed, or if this calculator does not provide statistics.
+	 */
+	public default FeatureStatistics getStatistics( final FeatureProjectionId projection )
+	{
+		return null;
+	}
 }
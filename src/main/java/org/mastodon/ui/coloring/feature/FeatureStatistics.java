@@ -0,0 +1,228 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.coloring.feature;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Summary statistics of the values of a feature projection over a collection
+ * of objects: count, min, max, mean, percentiles and a histogram.
+ * <p>
+ * Objects for which the projection is not set or whose value is
+ * {@link Double#NaN} are ignored. Count, min, max and mean are computed in a
+ * single pass when the instance is created. The histogram and the
+ * percentiles are only computed when first requested, from the values
+ * returned by a supplier, and kept afterwards. The percentiles are the only
+ * statistics that require sorting the values.
+ */
+public class FeatureStatistics
+{
+	/**
+	 * Number of bins of the histogram returned by {@link #getHistogram()}.
+	 */
+	public static final int HISTOGRAM_BINS = 256;
+
+	private final int count;
+
+	private final double min;
+
+	private final double max;
+
+	private final double mean;
+
+	/**
+	 * Returns a new array with the values, none of which is
+	 * {@link Double#NaN}.
+	 */
+	private final Supplier< double[] > values;
+
+	/**
+	 * Values at percentiles 0, 1, ..., 100. Computed on first request.
+	 */
+	private double[] percentiles;
+
+	/**
+	 * Computed on first request.
+	 */
+	private int[] histogram;
+
+	FeatureStatistics( final int count, final double min, final double max, final double sum,
+			final Supplier< double[] > values )
+	{
+		this.count = count;
+		this.min = count == 0 ? Double.POSITIVE_INFINITY : min;
+		this.max = count == 0 ? Double.NEGATIVE_INFINITY : max;
+		this.mean = count == 0 ? Double.NaN : sum / count;
+		this.values = values;
+	}
+
+	/**
+	 * Computes the statistics of the first {@code n} elements of the
+	 * specified array. The array is kept, and must not be modified afterwards.
+	 *
+	 * @param values
+	 *            the values, none of which may be {@link Double#NaN}.
+	 * @param n
+	 *            the number of values.
+	 * @return the statistics.
+	 */
+	static FeatureStatistics of( final double[] values, final int n )
+	{
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		for ( int i = 0; i < n; i++ )
+		{
+			final double value = values[ i ];
+			min = Math.min( min, value );
+			max = Math.max( max, value );
+			sum += value;
+		}
+		return new FeatureStatistics( n, min, max, sum, () -> Arrays.copyOf( values, n ) );
+	}
+
+	/**
+	 * @return the number of objects with a value.
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the smallest value, or {@link Double#POSITIVE_INFINITY} if
+	 *         there are no values.
+	 */
+	public double getMin()
+	{
+		return min;
+	}
+
+	/**
+	 * @return the largest value, or {@link Double#NEGATIVE_INFINITY} if there
+	 *         are no values.
+	 */
+	public double getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * @return the mean value, or {@link Double#NaN} if there are no values.
+	 */
+	public double getMean()
+	{
+		return mean;
+	}
+
+	/**
+	 * Returns the value at the specified percentile, linearly interpolated
+	 * between the values of the neighbouring integer percentiles. The values
+	 * are sorted on the first call.
+	 *
+	 * @param p
+	 *            the percentile, from 0 to 100.
+	 * @return the value at this percentile, or {@link Double#NaN} if there are
+	 *         no values.
+	 */
+	public double getPercentile( final double p )
+	{
+		if ( count == 0 )
+			return Double.NaN;
+		final double[] percentiles = percentiles();
+		final double q = Math.max( 0, Math.min( 100, p ) );
+		final int lo = ( int ) q;
+		if ( lo == 100 )
+			return percentiles[ 100 ];
+		return percentiles[ lo ] + ( q - lo ) * ( percentiles[ lo + 1 ] - percentiles[ lo ] );
+	}
+
+	/**
+	 * Returns the histogram of the values in {@link #HISTOGRAM_BINS} bins of
+	 * equal width from {@link #getMin()} to {@link #getMax()}.
+	 *
+	 * @return a new array with the counts per bin.
+	 */
+	public int[] getHistogram()
+	{
+		return histogram().clone();
+	}
+
+	private synchronized double[] percentiles()
+	{
+		if ( percentiles == null )
+		{
+			final double[] sorted = values.get();
+			final int n = sorted.length;
+			Arrays.parallelSort( sorted );
+			percentiles = new double[ 101 ];
+			if ( n == 0 )
+			{
+				// Values were removed since the statistics were created.
+				Arrays.fill( percentiles, Double.NaN );
+				return percentiles;
+			}
+			for ( int p = 0; p <= 100; p++ )
+			{
+				final double h = ( n - 1 ) * p / 100.;
+				final int lo = ( int ) h;
+				final int hi = Math.min( lo + 1, n - 1 );
+				percentiles[ p ] = sorted[ lo ] + ( h - lo ) * ( sorted[ hi ] - sorted[ lo ] );
+			}
+		}
+		return percentiles;
+	}
+
+	private synchronized int[] histogram()
+	{
+		if ( histogram == null )
+		{
+			histogram = new int[ HISTOGRAM_BINS ];
+			if ( count > 0 )
+			{
+				final double binWidth = ( max - min ) / HISTOGRAM_BINS;
+				for ( final double value : values.get() )
+				{
+					final int bin = binWidth > 0
+							? ( int ) ( ( value - min ) / binWidth )
+							: 0;
+					histogram[ Math.max( 0, Math.min( bin, HISTOGRAM_BINS - 1 ) ) ]++;
+				}
+			}
+		}
+		return histogram;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "FeatureStatistics[count=" + count + ", min=" + min + ", max=" + max + ", mean=" + mean + "]";
+	}
+}
@@ -0,0 +1,172 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.coloring.feature;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mastodon.feature.FeatureProjection;
+
+/**
+ * A {@link FeatureRangeCalculator} that computes {@link FeatureStatistics}
+ * over a {@code Collection<O>} of objects of one specific target type
+ * {@code O}, and caches them per feature projection.
+ * <p>
+ * Count, min, max and mean are computed in a single pass over the objects,
+ * without copying the values, so that auto-ranging stays cheap. The values are
+ * only collected when the histogram or the percentiles of the statistics are
+ * requested.
+ * <p>
+ * Cached statistics are reused as long as the projection instance returned by
+ * the {@link Projections} is the same and {@link #invalidate()} was not called.
+ * The owner must call {@link #invalidate()} when feature values or the
+ * collection of objects change.
+ *
+ * @param <O>
+ *            target type.
+ */
+public class FeatureStatisticsCalculator< O > implements FeatureRangeCalculator
+{
+	private final Collection< O > objs;
+
+	private final Projections projections;
+
+	private final Map< FeatureProjectionId, Entry > cache = new HashMap<>();
+
+	private int version;
+
+	public FeatureStatisticsCalculator( final Collection< O > objs, final Projections projections )
+	{
+		this.objs = objs;
+		this.projections = projections;
+	}
+
+	/**
+	 * Discards all cached statistics.
+	 */
+	public synchronized void invalidate()
+	{
+		version++;
+		cache.clear();
+	}
+
+	@Override
+	public double[] computeMinMax( final FeatureProjectionId id )
+	{
+		final FeatureStatistics stats = getStatistics( id );
+		return stats == null
+				? null
+				: new double[] { stats.getMin(), stats.getMax() };
+	}
+
+	@Override
+	public FeatureStatistics getStatistics( final FeatureProjectionId id )
+	{
+		if ( objs.isEmpty() )
+			return null;
+
+		@SuppressWarnings( "unchecked" )
+		final Class< O > target = ( Class< O > ) objs.iterator().next().getClass();
+
+		final FeatureProjection< O > projection = projections.getFeatureProjection( id, target );
+		if ( null == projection )
+			return null;
+
+		final int v;
+		synchronized ( this )
+		{
+			final Entry entry = cache.get( id );
+			if ( entry != null && entry.projection == projection )
+				return entry.statistics;
+			v = version;
+		}
+
+		final FeatureStatistics statistics = compute( projection );
+		synchronized ( this )
+		{
+			if ( v == version )
+				cache.put( id, new Entry( projection, statistics ) );
+		}
+		return statistics;
+	}
+
+	private FeatureStatistics compute( final FeatureProjection< O > projection )
+	{
+		int n = 0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		for ( final O o : objs )
+		{
+			if ( !projection.isSet( o ) )
+				continue;
+			final double value = projection.value( o );
+			if ( Double.isNaN( value ) )
+				continue;
+			n++;
+			min = Math.min( min, value );
+			max = Math.max( max, value );
+			sum += value;
+		}
+		return new FeatureStatistics( n, min, max, sum, () -> values( projection ) );
+	}
+
+	private double[] values( final FeatureProjection< O > projection )
+	{
+		double[] values = new double[ objs.size() ];
+		int n = 0;
+		for ( final O o : objs )
+		{
+			if ( !projection.isSet( o ) )
+				continue;
+			final double value = projection.value( o );
+			if ( Double.isNaN( value ) )
+				continue;
+			if ( n == values.length )
+				values = Arrays.copyOf( values, 2 * n + 1 );
+			values[ n++ ] = value;
+		}
+		return n == values.length ? values : Arrays.copyOf( values, n );
+	}
+
+	private final class Entry
+	{
+		final FeatureProjection< O > projection;
+
+		final FeatureStatistics statistics;
+
+		Entry( final FeatureProjection< O > projection, final FeatureStatistics statistics )
+		{
+			this.projection = projection;
+			this.statistics = statistics;
+		}
+	}
+}
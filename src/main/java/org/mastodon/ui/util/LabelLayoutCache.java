@@ -0,0 +1,348 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.util;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.Rectangle2D;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded cache of measured {@link TextLayout}s for vertex labels, keyed by
+ * label, font and {@link FontRenderContext}.
+ * <p>
+ * Building a {@code TextLayout} and measuring its bounds is the dominant cost
+ * of painting labels when many vertices are visible. Labels rarely change
+ * between frames, so each view keeps its own cache and only lays out labels
+ * that were not painted recently. The font render context is part of the
+ * key, so a change of the graphics transform or of the antialiasing hints
+ * produces new layouts.
+ * <p>
+ * Painters call {@link #newFrame()} before painting a frame. Layouts are
+ * evicted least-recently-used first, but a layout used in the current frame
+ * is never evicted: when a frame shows more labels than the capacity, the
+ * labels that do not fit are laid out without being cached. A view that
+ * paints the same large set of labels at every frame thus keeps hitting on
+ * as many labels as the cache holds, instead of evicting each layout just
+ * before it is needed again.
+ * <p>
+ * {@code TextLayout}s are immutable, so the cached layouts can be drawn
+ * concurrently by several painter threads. Large caches are split in
+ * segments, each with its own lock, so that concurrent painters rarely wait
+ * for each other.
+ */
+public class LabelLayoutCache
+{
+	/**
+	 * Default maximum number of cached layouts.
+	 */
+	public static final int DEFAULT_CAPACITY = 16384;
+
+	/**
+	 * Caches smaller than this are not split in segments, so that their
+	 * eviction order is exactly least-recently-used.
+	 */
+	private static final int MIN_SEGMENTED_CAPACITY = 1024;
+
+	private static final int NUM_SEGMENTS = 16;
+
+	private final Segment[] segments;
+
+	private final AtomicInteger frame = new AtomicInteger();
+
+	/**
+	 * Creates a cache that holds at most {@link #DEFAULT_CAPACITY} layouts.
+	 */
+	public LabelLayoutCache()
+	{
+		this( DEFAULT_CAPACITY );
+	}
+
+	/**
+	 * Creates a cache that holds at most {@code capacity} layouts.
+	 *
+	 * @param capacity
+	 *            the maximum number of cached layouts.
+	 */
+	public LabelLayoutCache( final int capacity )
+	{
+		final int n = capacity < MIN_SEGMENTED_CAPACITY ? 1 : NUM_SEGMENTS;
+		this.segments = new Segment[ n ];
+		for ( int i = 0; i < n; i++ )
+			segments[ i ] = new Segment( capacity / n + ( i < capacity % n ? 1 : 0 ) );
+	}
+
+	/**
+	 * Signals that a new frame is about to be painted. Layouts used in
+	 * previous frames can be evicted from then on.
+	 */
+	public void newFrame()
+	{
+		frame.incrementAndGet();
+	}
+
+	/**
+	 * Returns the measured layout of the specified label.
+	 *
+	 * @param label
+	 *            the label, not empty.
+	 * @param font
+	 *            the font.
+	 * @param frc
+	 *            the font render context of the graphics the label will be
+	 *            drawn on.
+	 * @return the layout.
+	 */
+	public LabelLayout get( final String label, final Font font, final FontRenderContext frc )
+	{
+		final Key key = new Key( label, font, frc );
+		final Segment segment = segments[ Math.floorMod( key.hash ^ ( key.hash >>> 16 ), segments.length ) ];
+		final int current = frame.get();
+		synchronized ( segment )
+		{
+			final CachedLayout entry = segment.get( key );
+			if ( entry != null )
+			{
+				entry.frame = current;
+				return entry.layout;
+			}
+		}
+		// Lay out outside of the lock. Concurrent misses for the same key
+		// compute equal layouts, and the first one is kept.
+		final LabelLayout layout = new LabelLayout( new TextLayout( label, font, frc ) );
+		synchronized ( segment )
+		{
+			segment.admit( key, layout, current );
+		}
+		return layout;
+	}
+
+	/**
+	 * Draws the specified label centered on the specified position, with the
+	 * current color of the graphics.
+	 *
+	 * @param graphics
+	 *            the graphics to draw on.
+	 * @param label
+	 *            the label, not empty.
+	 * @param font
+	 *            the font.
+	 * @param x
+	 *            the X coordinate of the center of the label.
+	 * @param y
+	 *            the Y coordinate of the center of the label.
+	 */
+	public void drawCentered( final Graphics2D graphics, final String label, final Font font, final double x,
+			final double y )
+	{
+		final LabelLayout layout = get( label, font, graphics.getFontRenderContext() );
+		layout.draw( graphics, ( float ) ( x - layout.getCenterX() ), ( float ) ( y - layout.getCenterY() ) );
+	}
+
+	/**
+	 * Removes all cached layouts.
+	 */
+	public void clear()
+	{
+		for ( final Segment segment : segments )
+		{
+			synchronized ( segment )
+			{
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of cached layouts.
+	 */
+	public int size()
+	{
+		int size = 0;
+		for ( final Segment segment : segments )
+		{
+			synchronized ( segment )
+			{
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * A {@link TextLayout} with its precomputed bounds.
+	 */
+	public static final class LabelLayout
+	{
+		private final TextLayout layout;
+
+		private final double centerX;
+
+		private final double centerY;
+
+		private final double width;
+
+		private final double height;
+
+		private LabelLayout( final TextLayout layout )
+		{
+			this.layout = layout;
+			final Rectangle2D bounds = layout.getBounds();
+			this.centerX = bounds.getCenterX();
+			this.centerY = bounds.getCenterY();
+			this.width = bounds.getWidth();
+			this.height = bounds.getHeight();
+		}
+
+		public double getCenterX()
+		{
+			return centerX;
+		}
+
+		public double getCenterY()
+		{
+			return centerY;
+		}
+
+		public double getWidth()
+		{
+			return width;
+		}
+
+		public double getHeight()
+		{
+			return height;
+		}
+
+		/**
+		 * Draws the label with its origin at the specified position.
+		 *
+		 * @param graphics
+		 *            the graphics to draw on.
+		 * @param x
+		 *            the X coordinate of the origin.
+		 * @param y
+		 *            the Y coordinate of the origin.
+		 */
+		public void draw( final Graphics2D graphics, final float x, final float y )
+		{
+			layout.draw( graphics, x, y );
+		}
+	}
+
+	/**
+	 * Part of the cache, in access order.
+	 */
+	private static final class Segment extends LinkedHashMap< Key, CachedLayout >
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment( final int capacity )
+		{
+			super( 16, 0.75f, true );
+			this.capacity = capacity;
+		}
+
+		/**
+		 * Caches the specified layout, unless the segment is full of layouts
+		 * used in the current frame.
+		 */
+		void admit( final Key key, final LabelLayout layout, final int frame )
+		{
+			if ( containsKey( key ) )
+				return;
+			if ( size() >= capacity )
+			{
+				final Iterator< CachedLayout > it = values().iterator();
+				if ( !it.hasNext() || it.next().frame == frame )
+					return;
+				it.remove();
+			}
+			put( key, new CachedLayout( layout, frame ) );
+		}
+	}
+
+	private static final class CachedLayout
+	{
+		private final LabelLayout layout;
+
+		/**
+		 * The last frame the layout was used in. Guarded by the segment.
+		 */
+		private int frame;
+
+		CachedLayout( final LabelLayout layout, final int frame )
+		{
+			this.layout = layout;
+			this.frame = frame;
+		}
+	}
+
+	private static final class Key
+	{
+		private final String label;
+
+		private final Font font;
+
+		private final FontRenderContext frc;
+
+		private final int hash;
+
+		Key( final String label, final Font font, final FontRenderContext frc )
+		{
+			this.label = label;
+			this.font = font;
+			this.frc = frc;
+			this.hash = ( 31 * label.hashCode() + font.hashCode() ) * 31 + frc.hashCode();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( this == o )
+				return true;
+			if ( !( o instanceof Key ) )
+				return false;
+			final Key k = ( Key ) o;
+			return hash == k.hash && label.equals( k.label ) && font.equals( k.font ) && frc.equals( k.frc );
+		}
+	}
+}
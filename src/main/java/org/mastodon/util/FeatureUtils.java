@@ -67,6 +67,8 @@ public class FeatureUtils
 		{
 			@SuppressWarnings( "unchecked" )
 			final Feature< O > feature = ( Feature< O > ) featureModel.getFeature( fs );
+			if ( feature == null )
+				continue;
 			@SuppressWarnings( "unchecked" )
 			final FeatureSpec< ?, O > featureSpec = ( FeatureSpec< ?, O > ) fs;
 			featureMap.put( featureSpec, feature );
@@ -93,6 +93,57 @@ public class GeometryUtil
 		return ( c * c ) / l12sq;
 	}
 
+	/**
+	 * Computes the largest eigenvalue of a symmetric 3x3 matrix, in closed
+	 * form and without allocating. Only the upper triangle of the specified
+	 * matrix is read.
+	 * <p>
+	 * Uses the trigonometric solution of the characteristic polynomial (O. K.
+	 * Smith, <em>Eigenvalues of a symmetric 3x3 matrix</em>, Communications
+	 * of the ACM 4(4), 1961).
+	 *
+	 * @param m
+	 *            the symmetric matrix, as a {@code double[][]} (line, column).
+	 * @return the largest eigenvalue of {@code m}.
+	 */
+	public static final double maxEigenvalueSymmetric3x3( final double[][] m )
+	{
+		final double a00 = m[ 0 ][ 0 ];
+		final double a01 = m[ 0 ][ 1 ];
+		final double a02 = m[ 0 ][ 2 ];
+		final double a11 = m[ 1 ][ 1 ];
+		final double a12 = m[ 1 ][ 2 ];
+		final double a22 = m[ 2 ][ 2 ];
+
+		final double p1 = a01 * a01 + a02 * a02 + a12 * a12;
+		if ( p1 == 0 )
+			return Math.max( a00, Math.max( a11, a22 ) );
+
+		final double q = ( a00 + a11 + a22 ) / 3;
+		final double b00 = a00 - q;
+		final double b11 = a11 - q;
+		final double b22 = a22 - q;
+		final double p2 = b00 * b00 + b11 * b11 + b22 * b22 + 2 * p1;
+		final double p = Math.sqrt( p2 / 6 );
+
+		// r = det( (A - qI) / p ) / 2
+		final double det = b00 * ( b11 * b22 - a12 * a12 )
+				- a01 * ( a01 * b22 - a12 * a02 )
+				+ a02 * ( a01 * a12 - b11 * a02 );
+		final double r = det / ( 2 * p * p * p );
+
+		// In exact arithmetic -1 <= r <= 1.
+		final double phi;
+		if ( r <= -1 )
+			phi = Math.PI / 3;
+		else if ( r >= 1 )
+			phi = 0;
+		else
+			phi = Math.acos( r ) / 3;
+
+		return q + 2 * p * Math.cos( phi );
+	}
+
 	private GeometryUtil()
 	{}
 
@@ -66,6 +66,7 @@ public class OverlayBranchGraphRenderer< BV extends OverlayVertex< BV, BE >, BE
 	@Override
 	public void drawOverlays( final Graphics g )
 	{
+		labelCache.newFrame();
 		final Graphics2D graphics = ( Graphics2D ) g;
 		final BasicStroke defaultVertexStroke = new BasicStroke( ( float ) settings.getSpotStrokeWidth() );
 		final BasicStroke highlightedVertexStroke = new BasicStroke( 4f );
@@ -0,0 +1,346 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mastodon.ui.util.LabelLayoutCache;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * A list of drawing operations for the spots and links of a BDV overlay.
+ * <p>
+ * {@link OverlayGraphRenderer} records what to draw into a
+ * {@link OverlayDrawList}, which can then be replayed onto a
+ * {@link Graphics2D}, possibly restricted to a horizontal strip of the canvas.
+ * Replaying the list does not access the graph, so strips can be drawn
+ * concurrently.
+ */
+class OverlayDrawList
+{
+	static final int VERTEX_STROKE = 0;
+
+	static final int HIGHLIGHTED_VERTEX_STROKE = 1;
+
+	static final int FOCUSED_VERTEX_STROKE = 2;
+
+	static final int EDGE_STROKE = 3;
+
+	static final int HIGHLIGHTED_EDGE_STROKE = 4;
+
+	private static final int EDGE = 0;
+
+	private static final int ELLIPSE = 1;
+
+	private static final int LABEL = 2;
+
+	private static final int POINT = 3;
+
+	private static final int SQUARE = 4;
+
+	/**
+	 * Number of parameters stored per operation.
+	 */
+	private static final int STRIDE = 5;
+
+	/**
+	 * Margin (in pixels) added to the vertical extent of each operation, to
+	 * account for stroke widths, arrow heads and label heights.
+	 */
+	private static final double MARGIN = 10;
+
+	/**
+	 * Size of the {@link #colorCache}. Must be a power of 2.
+	 */
+	private static final int COLOR_CACHE_SIZE = 4096;
+
+	/**
+	 * Direct-mapped cache of {@link Color} instances, to avoid allocating a
+	 * new {@link Color} for every drawn entity. Concurrent access is benign:
+	 * at worst, a {@link Color} is created twice.
+	 */
+	private static final Color[] colorCache = new Color[ COLOR_CACHE_SIZE ];
+
+	private final Stroke[] strokes;
+
+	private final boolean fillSpots;
+
+	private final boolean useGradient;
+
+	private final boolean drawArrowHeads;
+
+	/**
+	 * Type and stroke of each operation, packed as {@code type | stroke << 8}.
+	 */
+	private final TIntArrayList ops;
+
+	/**
+	 * Two ARGB colors per operation. The first one is only used for the start
+	 * of gradient edges.
+	 */
+	private final TIntArrayList colors;
+
+	/**
+	 * {@link #STRIDE} parameters per operation.
+	 */
+	private final TDoubleArrayList params;
+
+	private final List< String > labels;
+
+	private final LabelLayoutCache labelCache;
+
+	/**
+	 * Creates an empty draw list.
+	 *
+	 * @param strokes
+	 *            the strokes, indexed by {@link #VERTEX_STROKE},
+	 *            {@link #HIGHLIGHTED_VERTEX_STROKE}, etc.
+	 * @param fillSpots
+	 *            whether ellipses are filled.
+	 * @param useGradient
+	 *            whether edges are painted with a color gradient.
+	 * @param drawArrowHeads
+	 *            whether edges are drawn with an arrow head.
+	 * @param labelCache
+	 *            the cache of the label layouts of the view.
+	 */
+	OverlayDrawList( final Stroke[] strokes, final boolean fillSpots, final boolean useGradient, final boolean drawArrowHeads,
+			final LabelLayoutCache labelCache )
+	{
+		this.strokes = strokes;
+		this.labelCache = labelCache;
+		this.fillSpots = fillSpots;
+		this.useGradient = useGradient;
+		this.drawArrowHeads = drawArrowHeads;
+		ops = new TIntArrayList();
+		colors = new TIntArrayList();
+		params = new TDoubleArrayList();
+		labels = new ArrayList<>();
+	}
+
+	public int size()
+	{
+		return ops.size();
+	}
+
+	void addEdge( final int x0, final int y0, final int x1, final int y1, final int color0, final int color1, final int stroke )
+	{
+		add( EDGE, stroke, color0, color1, x0, y0, x1, y1, 0 );
+	}
+
+	void addEllipse( final double[] center, final double theta, final double halfWidth, final double halfHeight,
+			final int color, final int stroke )
+	{
+		add( ELLIPSE, stroke, color, color, center[ 0 ], center[ 1 ], theta, halfWidth, halfHeight );
+	}
+
+	void addLabel( final double[] center, final String label, final int color )
+	{
+		add( LABEL, VERTEX_STROKE, color, color, center[ 0 ], center[ 1 ], labels.size(), 0, 0 );
+		labels.add( label );
+	}
+
+	void addPoint( final int x, final int y, final int size, final boolean square, final int color )
+	{
+		add( square ? SQUARE : POINT, VERTEX_STROKE, color, color, x, y, size, 0, 0 );
+	}
+
+	private void add( final int type, final int stroke, final int color0, final int color1,
+			final double p0, final double p1, final double p2, final double p3, final double p4 )
+	{
+		ops.add( type | ( stroke << 8 ) );
+		colors.add( color0 );
+		colors.add( color1 );
+		params.add( p0 );
+		params.add( p1 );
+		params.add( p2 );
+		params.add( p3 );
+		params.add( p4 );
+	}
+
+	/**
+	 * Draws all operations onto {@code graphics}.
+	 *
+	 * @param graphics
+	 *            the graphics to draw on.
+	 * @param antialiasing
+	 *            whether to use antialiasing.
+	 */
+	void draw( final Graphics2D graphics, final boolean antialiasing )
+	{
+		draw( graphics, antialiasing, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY );
+	}
+
+	/**
+	 * Draws the operations that may touch the horizontal strip
+	 * {@code minY <= y < maxY} onto {@code graphics}.
+	 *
+	 * @param graphics
+	 *            the graphics to draw on.
+	 * @param antialiasing
+	 *            whether to use antialiasing.
+	 * @param minY
+	 *            top of the strip, in viewer coordinates.
+	 * @param maxY
+	 *            bottom of the strip, in viewer coordinates.
+	 */
+	void draw( final Graphics2D graphics, final boolean antialiasing, final double minY, final double maxY )
+	{
+		graphics.setRenderingHint( RenderingHints.KEY_ANTIALIASING, antialiasing
+				? RenderingHints.VALUE_ANTIALIAS_ON
+				: RenderingHints.VALUE_ANTIALIAS_OFF );
+		final AffineTransform torig = graphics.getTransform();
+		int currentStroke = -1;
+		final int size = ops.size();
+		for ( int i = 0; i < size; ++i )
+		{
+			final int op = ops.get( i );
+			final int type = op & 0xff;
+			final int stroke = op >> 8;
+			final int o = i * STRIDE;
+			final double p0 = params.get( o );
+			final double p1 = params.get( o + 1 );
+			final double p2 = params.get( o + 2 );
+			final double p3 = params.get( o + 3 );
+			final double p4 = params.get( o + 4 );
+
+			final double extent;
+			final double y0;
+			final double y1;
+			switch ( type )
+			{
+			case EDGE:
+				y0 = Math.min( p1, p3 );
+				y1 = Math.max( p1, p3 );
+				break;
+			case ELLIPSE:
+				extent = Math.max( p3, p4 );
+				y0 = p1 - extent;
+				y1 = p1 + extent;
+				break;
+			case LABEL:
+				y0 = p1;
+				y1 = p1;
+				break;
+			default:
+				y0 = p1;
+				y1 = p1 + p2;
+				break;
+			}
+			if ( y1 + MARGIN < minY || y0 - MARGIN >= maxY )
+				continue;
+
+			if ( stroke != currentStroke && type != LABEL )
+			{
+				graphics.setStroke( strokes[ stroke ] );
+				currentStroke = stroke;
+			}
+
+			final Color color = color( colors.get( 2 * i + 1 ) );
+			switch ( type )
+			{
+			case EDGE:
+			{
+				final int x0 = ( int ) p0;
+				final int ys = ( int ) p1;
+				final int x1 = ( int ) p2;
+				final int ye = ( int ) p3;
+				final int color0 = colors.get( 2 * i );
+				if ( useGradient && color0 != color.getRGB() )
+					graphics.setPaint( new GradientPaint( x0, ys, color( color0 ), x1, ye, color ) );
+				else
+					graphics.setPaint( color );
+				graphics.drawLine( x0, ys, x1, ye );
+
+				// Draw arrows for edge direction.
+				if ( drawArrowHeads )
+				{
+					final double dx = x1 - x0;
+					final double dy = ye - ys;
+					final double alpha = Math.atan2( dy, dx );
+					final double l = 5;
+					final double theta = Math.PI / 6.;
+					final int x1a = ( int ) Math.round( x1 - l * Math.cos( alpha - theta ) );
+					final int x1b = ( int ) Math.round( x1 - l * Math.cos( alpha + theta ) );
+					final int y1a = ( int ) Math.round( ye - l * Math.sin( alpha - theta ) );
+					final int y1b = ( int ) Math.round( ye - l * Math.sin( alpha + theta ) );
+					graphics.drawLine( x1, ye, x1a, y1a );
+					graphics.drawLine( x1, ye, x1b, y1b );
+				}
+				break;
+			}
+			case ELLIPSE:
+				graphics.setColor( color );
+				OverlayGraphRenderer.drawEllipse( graphics, p0, p1, p2, p3, p4, torig, fillSpots );
+				break;
+			case LABEL:
+				graphics.setColor( color );
+				OverlayGraphRenderer.drawEllipseLabel( labelCache, graphics, p0, p1, labels.get( ( int ) p2 ) );
+				break;
+			case POINT:
+				graphics.setColor( color );
+				graphics.fillOval( ( int ) p0, ( int ) p1, ( int ) p2, ( int ) p2 );
+				break;
+			case SQUARE:
+				graphics.setColor( color );
+				graphics.fillRect( ( int ) p0, ( int ) p1, ( int ) p2, ( int ) p2 );
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns a {@link Color} with the specified ARGB value, re-using
+	 * previously created instances when possible.
+	 *
+	 * @param argb
+	 *            the ARGB value.
+	 * @return a {@link Color}.
+	 */
+	static Color color( final int argb )
+	{
+		final int hash = argb * 0x9E3779B9;
+		final int i = ( hash ^ ( hash >>> 16 ) ) & ( COLOR_CACHE_SIZE - 1 );
+		final Color cached = colorCache[ i ];
+		if ( cached != null && cached.getRGB() == argb )
+			return cached;
+		final Color color = new Color( argb, true );
+		colorCache[ i ] = color;
+		return color;
+	}
+}
@@ -31,15 +31,11 @@ package org.mastodon.views.bdv.overlay;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
-import java.awt.GradientPaint;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.font.FontRenderContext;
-import java.awt.font.TextLayout;
+import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
-import java.awt.geom.Rectangle2D;
 
 import org.mastodon.collection.RefCollection;
 import org.mastodon.collection.RefCollections;
@@ -52,6 +48,7 @@ import org.mastodon.model.SelectionModel;
 import org.mastodon.spatial.SpatialIndex;
 import org.mastodon.spatial.SpatioTemporalIndex;
 import org.mastodon.ui.coloring.GraphColorGenerator;
+import org.mastodon.ui.util.LabelLayoutCache;
 import org.mastodon.util.GeometryUtil;
 import org.mastodon.views.bdv.overlay.ScreenVertexMath.Ellipse;
 import org.mastodon.views.bdv.overlay.Visibilities.Visibility;
@@ -124,6 +121,24 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 
 	protected final Visibilities< V, E > visibilities;
 
+	private int numThreads;
+
+	/**
+	 * Cached raster image of all spots and links. Used if
+	 * {@link RenderSettings#getUseParallelRendering()} is set.
+	 */
+	private final OverlayLayer layer;
+
+	/**
+	 * Incremented whenever the cached {@link #layer} must be rendered again.
+	 */
+	private volatile int generation;
+
+	/**
+	 * Layouts of the spot labels painted by this renderer.
+	 */
+	protected final LabelLayoutCache labelCache = new LabelLayoutCache();
+
 	public OverlayGraphRenderer(
 			final OverlayGraph< V, E > graph,
 			final HighlightModel< V, E > highlight,
@@ -139,6 +154,9 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		this.visibilities = new Visibilities<>( graph, selection, focus, graph.getLock() );
 		index = graph.getIndex();
 		renderTransform = new AffineTransform3D();
+		numThreads = Runtime.getRuntime().availableProcessors();
+		layer = new OverlayLayer();
+		visibilities.getVisibilityListeners().add( this::invalidateLayers );
 		setRenderSettings( RenderSettings.defaultStyle() ); // default RenderSettings
 	}
 
@@ -167,6 +185,38 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 	public void setRenderSettings( final RenderSettings settings )
 	{
 		this.settings = settings;
+		invalidateLayers();
+	}
+
+	/**
+	 * Sets the number of tiles rasterized in parallel if
+	 * {@link RenderSettings#getUseParallelRendering()} is set.
+	 *
+	 * @param numThreads
+	 *            the number of threads.
+	 */
+	public void setNumThreads( final int numThreads )
+	{
+		this.numThreads = Math.max( 1, numThreads );
+	}
+
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	/**
+	 * Discards the cached image layer used for parallel rendering, so that it
+	 * is rasterized again at the next repaint.
+	 * <p>
+	 * The layer is re-used as long as the viewer transform, timepoint, canvas
+	 * size, highlighted link and highlighted and focused spots do not change.
+	 * Views must call this method whenever the graph, vertex positions,
+	 * labels, selection, tags, features or coloring change.
+	 */
+	public void invalidateLayers()
+	{
+		++generation;
 	}
 
 	public VisibilityMode nextVisibilityMode()
@@ -181,6 +231,8 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 
 	public static final double pointRadius = 2.5;
 
+	private static final double timepointDistanceFade = 0.5;
+
 	/**
 	 * Return signed distance of p to a plane along Z, truncated at cutoff and
 	 * scaled by 1/cutoff. A point on the plane has d=0. A Point that is at
@@ -287,6 +339,29 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 			final int colorPast,
 			final int colorFuture,
 			final int color )
+	{
+		return OverlayDrawList.color( getARGB( sd, td, sdFade, tdFade, isSelected, isHighlighted, colorSpot,
+				colorPast, colorFuture, color ) );
+	}
+
+	/**
+	 * Same as
+	 * {@link #getColor(double, double, double, double, boolean, boolean, int, int, int, int)},
+	 * but returns the ARGB value instead of a {@link Color}.
+	 *
+	 * @return vertex/edge ARGB color suitable for display in a BDV.
+	 */
+	protected static int getARGB(
+			final double sd,
+			final double td,
+			final double sdFade,
+			final double tdFade,
+			final boolean isSelected,
+			final boolean isHighlighted,
+			final int colorSpot,
+			final int colorPast,
+			final int colorFuture,
+			final int color )
 	{
 		/*
 		 * |sf| = {                  0  for  |sd| <= sdFade,
@@ -337,7 +412,7 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 							? 0.8
 							: ( isSelected ? 0.6 : 0.4 ),
 					( 1 + tf ) * ( 1 - Math.abs( sf ) ) );
-			return new Color( truncRGBA( r, g, b, a ), true );
+			return truncRGBA( r, g, b, a );
 		}
 		else
 		{
@@ -358,7 +433,7 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 							? 0.8
 							: ( isSelected ? 0.6 : 0.4 ),
 					a0 / 255f * ( 1 + tf ) * ( 1 - Math.abs( sf ) ) );
-			return new Color( truncRGBA( r, g, b, a ), true );
+			return truncRGBA( r, g, b, a );
 		}
 	}
 
@@ -574,260 +649,420 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 		if ( visibilities.getMode() == VisibilityMode.NONE )
 			return;
 
+		labelCache.newFrame();
 		final Graphics2D graphics = ( Graphics2D ) g;
-		final BasicStroke defaultVertexStroke = new BasicStroke( ( float ) settings.getSpotStrokeWidth() );
-		final BasicStroke highlightedVertexStroke = new BasicStroke( 4f );
-		final BasicStroke focusedVertexStroke =
-				new BasicStroke( 2f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1f, new float[] { 8f, 3f }, 0 );
-		final BasicStroke defaultEdgeStroke = new BasicStroke( ( float ) settings.getLinkStrokeWidth() );
-		final BasicStroke highlightedEdgeStroke = new BasicStroke( 3f );
-
 		final AffineTransform3D transform = getRenderTransformCopy();
 		final int currentTimepoint = renderTimepoint;
-
-		final double maxDepth = getMaxDepth( transform );
-
-		final Object antialiasing = settings.getUseAntialiasing()
-				? RenderingHints.VALUE_ANTIALIAS_ON
-				: RenderingHints.VALUE_ANTIALIAS_OFF;
-		graphics.setRenderingHint( RenderingHints.KEY_ANTIALIASING, antialiasing );
+		final boolean antialiasing = settings.getUseAntialiasing();
+		final boolean parallel = settings.getUseParallelRendering();
+		final int currentGeneration = generation;
+		final int w = width;
+		final int h = height;
 
 		final V ref1 = graph.vertexRef();
 		final V ref2 = graph.vertexRef();
 		final E ref3 = graph.edgeRef();
-		final V source = graph.vertexRef();
-		final V target = graph.vertexRef();
 
-		final double sliceDistanceFade = settings.getEllipsoidFadeDepth();
-		final double timepointDistanceFade = 0.5;
-
-		final ScreenVertexMath screenVertexMath = new ScreenVertexMath();
-		final boolean drawPointsAlways = drawPointsAlways();
-		final boolean drawPointsMaybe = drawPointsMaybe();
-		final boolean useGradient = settings.getUseGradient();
-		final boolean drawArrowHeads = settings.getDrawArrowHeads();
-		final int colorSpot = settings.getColorSpot();
-		final int colorPast = settings.getColorPast();
-		final int colorFuture = settings.getColorFuture();
+		OverlayDrawList drawList = null;
+		OverlayDrawList highlightList = null;
 
 		graph.getLock().readLock().lock();
 		index.readLock().lock();
 		try
 		{
-			if ( settings.getDrawLinks() )
+			final V highlightedVertex = highlight.getHighlightedVertex( ref1 );
+			final V focusedVertex = focus.getFocusedVertex( ref2 );
+			final E highlightedEdge = highlight.getHighlightedEdge( ref3 );
+			if ( parallel )
 			{
-				final E highlighted = highlight.getHighlightedEdge( ref3 );
-				graphics.setStroke( defaultEdgeStroke );
-				forEachVisibleEdge( transform, currentTimepoint, ( edge, td0, td1, sd0, sd1, x0, y0, x1, y1 ) -> {
-					final boolean isHighlighted = edge.equals( highlighted );
-
-					edge.getSource( source );
-					edge.getTarget( target );
-					final int edgeColor = coloring.color( edge, source, target );
-					final Color c1 = getColor(
-							sd1,
-							td1,
-							sliceDistanceFade,
-							timepointDistanceFade,
-							selection.isSelected( edge ),
-							isHighlighted,
-							colorSpot,
-							colorPast,
-							colorFuture,
-							edgeColor );
-					if ( useGradient )
-					{
-						final Color c0 = getColor(
-								sd0,
-								td0,
-								sliceDistanceFade,
-								timepointDistanceFade,
-								selection.isSelected( edge ),
-								isHighlighted,
-								colorSpot,
-								colorPast,
-								colorFuture,
-								edgeColor );
-						graphics.setPaint( new GradientPaint( x0, y0, c0, x1, y1, c1 ) );
-					}
-					else
-					{
-						graphics.setPaint( c1 );
-					}
-					if ( isHighlighted )
-						graphics.setStroke( highlightedEdgeStroke );
-					graphics.drawLine( x0, y0, x1, y1 );
+				/*
+				 * The cached layer is drawn without highlight and focus, so
+				 * that hovering and focusing do not invalidate it. They are
+				 * recorded separately and drawn on top of it.
+				 */
+				final boolean layerValid;
+				synchronized ( layer )
+				{
+					layerValid = layer.isValid( w, h, transform, currentTimepoint, currentGeneration );
+				}
+				if ( !layerValid )
+				{
+					drawList = createDrawList();
+					record( drawList, transform, currentTimepoint, null, null, null );
+				}
+				highlightList = createDrawList();
+				recordHighlights( highlightList, transform, currentTimepoint, highlightedVertex, focusedVertex, highlightedEdge );
+			}
+			else
+			{
+				drawList = createDrawList();
+				record( drawList, transform, currentTimepoint, highlightedVertex, focusedVertex, highlightedEdge );
+			}
+		}
+		finally
+		{
+			graph.getLock().readLock().unlock();
+			index.readLock().unlock();
+		}
+		graph.releaseRef( ref1 );
+		graph.releaseRef( ref2 );
+		graph.releaseRef( ref3 );
 
-					// Draw arrows for edge direction.
-					if ( drawArrowHeads )
-					{
-						final double dx = x1 - x0;
-						final double dy = y1 - y0;
-						final double alpha = Math.atan2( dy, dx );
-						final double l = 5;
-						final double theta = Math.PI / 6.;
-						final int x1a = ( int ) Math.round( x1 - l * Math.cos( alpha - theta ) );
-						final int x1b = ( int ) Math.round( x1 - l * Math.cos( alpha + theta ) );
-						final int y1a = ( int ) Math.round( y1 - l * Math.sin( alpha - theta ) );
-						final int y1b = ( int ) Math.round( y1 - l * Math.sin( alpha + theta ) );
-						graphics.drawLine( x1, y1, x1a, y1a );
-						graphics.drawLine( x1, y1, x1b, y1b );
-					}
+		if ( parallel )
+		{
+			synchronized ( layer )
+			{
+				if ( drawList != null )
+					layer.render( drawList, antialiasing, numThreads, w, h, transform, currentTimepoint, currentGeneration );
+				layer.draw( graphics );
+			}
+			highlightList.draw( graphics, antialiasing );
+		}
+		else
+		{
+			synchronized ( layer )
+			{
+				layer.clear();
+			}
+			drawList.draw( graphics, antialiasing );
+		}
+	}
+
+	/**
+	 * Creates an empty {@link OverlayDrawList} with strokes and flags set
+	 * according to the current {@link RenderSettings}.
+	 *
+	 * @return a new {@link OverlayDrawList}.
+	 */
+	private OverlayDrawList createDrawList()
+	{
+		final Stroke[] strokes = new Stroke[ 5 ];
+		strokes[ OverlayDrawList.VERTEX_STROKE ] = new BasicStroke( ( float ) settings.getSpotStrokeWidth() );
+		strokes[ OverlayDrawList.HIGHLIGHTED_VERTEX_STROKE ] = new BasicStroke( 4f );
+		strokes[ OverlayDrawList.FOCUSED_VERTEX_STROKE ] =
+				new BasicStroke( 2f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1f, new float[] { 8f, 3f }, 0 );
+		strokes[ OverlayDrawList.EDGE_STROKE ] = new BasicStroke( ( float ) settings.getLinkStrokeWidth() );
+		strokes[ OverlayDrawList.HIGHLIGHTED_EDGE_STROKE ] = new BasicStroke( 3f );
+		return new OverlayDrawList( strokes, settings.getFillSpots(), settings.getUseGradient(), settings.getDrawArrowHeads(),
+				labelCache );
+	}
 
-					if ( isHighlighted )
-						graphics.setStroke( defaultEdgeStroke );
-				} );
+	/**
+	 * Records the drawing operations for all visible links and spots into
+	 * {@code drawList}.
+	 * <p>
+	 * It is the responsibility of the caller to lock the graph and the
+	 * {@link SpatioTemporalIndex} for reading.
+	 *
+	 * @param drawList
+	 *            the list to record into.
+	 * @param transform
+	 *            the viewer transform.
+	 * @param currentTimepoint
+	 *            the current timepoint.
+	 * @param highlightedVertex
+	 *            the highlighted vertex, may be {@code null}.
+	 * @param focusedVertex
+	 *            the focused vertex, may be {@code null}.
+	 * @param highlightedEdge
+	 *            the highlighted edge, may be {@code null}.
+	 */
+	private void record(
+			final OverlayDrawList drawList,
+			final AffineTransform3D transform,
+			final int currentTimepoint,
+			final V highlightedVertex,
+			final V focusedVertex,
+			final E highlightedEdge )
+	{
+		final V source = graph.vertexRef();
+		final V target = graph.vertexRef();
+
+		if ( settings.getDrawLinks() )
+		{
+			forEachVisibleEdge( transform, currentTimepoint, ( edge, td0, td1, sd0, sd1, x0, y0, x1, y1 ) -> recordEdge(
+					drawList, edge, td0, td1, sd0, sd1, x0, y0, x1, y1, edge.equals( highlightedEdge ), source, target ) );
+		}
+
+		if ( settings.getDrawSpots() )
+		{
+			final double maxDepth = getMaxDepth( transform );
+			final ScreenVertexMath screenVertexMath = new ScreenVertexMath();
+			final Visibility< V, E > visibility = visibilities.getVisibility();
+			final ConvexPolytope cropPolytopeGlobal = getVisiblePolytopeGlobal( transform, currentTimepoint );
+			final ClipConvexPolytope< V > ccp = index.getSpatialIndex( currentTimepoint ).getClipConvexPolytope();
+			ccp.clip( cropPolytopeGlobal );
+			for ( final V vertex : ccp.getInsideValues() )
+			{
+				if ( !visibility.isVisible( vertex ) )
+					continue;
+
+				recordVertex( drawList, vertex, transform, maxDepth, vertex.equals( highlightedVertex ),
+						vertex.equals( focusedVertex ), screenVertexMath );
 			}
+		}
+
+		graph.releaseRef( source );
+		graph.releaseRef( target );
+	}
 
-			if ( settings.getDrawSpots() )
+	/**
+	 * Records the drawing operations for the highlighted vertex, the focused
+	 * vertex and the highlighted edge only, if they are visible. They are
+	 * drawn on top of their non-highlighted rendering in the cached layer.
+	 * <p>
+	 * It is the responsibility of the caller to lock the graph and the
+	 * {@link SpatioTemporalIndex} for reading.
+	 *
+	 * @param drawList
+	 *            the list to record into.
+	 * @param transform
+	 *            the viewer transform.
+	 * @param currentTimepoint
+	 *            the current timepoint.
+	 * @param highlightedVertex
+	 *            the highlighted vertex, may be {@code null}.
+	 * @param focusedVertex
+	 *            the focused vertex, may be {@code null}.
+	 * @param highlightedEdge
+	 *            the highlighted edge, may be {@code null}.
+	 */
+	private void recordHighlights(
+			final OverlayDrawList drawList,
+			final AffineTransform3D transform,
+			final int currentTimepoint,
+			final V highlightedVertex,
+			final V focusedVertex,
+			final E highlightedEdge )
+	{
+		final Visibility< V, E > visibility = visibilities.getVisibility();
+		final double maxDepth = getMaxDepth( transform );
+
+		if ( highlightedEdge != null && settings.getDrawLinks() && visibility.isVisible( highlightedEdge ) )
+		{
+			final V source = graph.vertexRef();
+			final V target = graph.vertexRef();
+			highlightedEdge.getTarget( target );
+			final int t = target.getTimepoint();
+			final int timeLimit = settings.getTimeLimit();
+			final int minT = Math.max( 0, currentTimepoint - timeLimit + 1 );
+			final int maxT = settings.getDrawLinksAheadInTime()
+					? currentTimepoint + timeLimit - 1
+					: currentTimepoint;
+			if ( t >= minT && t <= maxT )
 			{
-				final double ellipsoidFadeDepth = settings.getEllipsoidFadeDepth();
-				final boolean drawSpotLabels = settings.getDrawSpotLabels();
-				final boolean drawEllipsoidSliceIntersection = settings.getDrawEllipsoidSliceIntersection();
-				final boolean drawEllipsoidSliceProjection = settings.getDrawEllipsoidSliceProjection();
-				final double pointFadeDepth = settings.getPointFadeDepth();
-				final boolean fillSpots = settings.getFillSpots();
-				final Visibility< V, E > visibility = visibilities.getVisibility();
-
-				final V highlighted = highlight.getHighlightedVertex( ref1 );
-				final V focused = focus.getFocusedVertex( ref2 );
-
-				graphics.setStroke( defaultVertexStroke );
-				final AffineTransform torig = graphics.getTransform();
-
-				final ConvexPolytope cropPolytopeGlobal = getVisiblePolytopeGlobal( transform, currentTimepoint );
-				final ClipConvexPolytope< V > ccp = index.getSpatialIndex( currentTimepoint ).getClipConvexPolytope();
-				ccp.clip( cropPolytopeGlobal );
-				for ( final V vertex : ccp.getInsideValues() )
+				final double[] gPos = new double[ 3 ];
+				final double[] lPos = new double[ 3 ];
+				target.localize( gPos );
+				transform.apply( gPos, lPos );
+				final int x1 = ( int ) lPos[ 0 ];
+				final int y1 = ( int ) lPos[ 1 ];
+				final double sd1 = sliceDistance( lPos[ 2 ], maxDepth );
+				highlightedEdge.getSource( source );
+				source.localize( gPos );
+				transform.apply( gPos, lPos );
+				final int x0 = ( int ) lPos[ 0 ];
+				final int y0 = ( int ) lPos[ 1 ];
+				final double sd0 = sliceDistance( lPos[ 2 ], maxDepth );
+				if ( ( sd0 > -1 && sd0 < 1 ) || ( sd1 > -1 && sd1 < 1 ) )
 				{
-					if ( !visibility.isVisible( vertex ) )
-						continue;
+					final double td0 = timeDistance( t - 1, currentTimepoint, timeLimit );
+					final double td1 = timeDistance( t, currentTimepoint, timeLimit );
+					recordEdge( drawList, highlightedEdge, td0, td1, sd0, sd1, x0, y0, x1, y1, true, source, target );
+				}
+			}
+			graph.releaseRef( source );
+			graph.releaseRef( target );
+		}
+
+		if ( settings.getDrawSpots() )
+		{
+			final ScreenVertexMath screenVertexMath = new ScreenVertexMath();
+			if ( highlightedVertex != null
+					&& highlightedVertex.getTimepoint() == currentTimepoint
+					&& visibility.isVisible( highlightedVertex ) )
+				recordVertex( drawList, highlightedVertex, transform, maxDepth, true,
+						highlightedVertex.equals( focusedVertex ), screenVertexMath );
+			if ( focusedVertex != null
+					&& !focusedVertex.equals( highlightedVertex )
+					&& focusedVertex.getTimepoint() == currentTimepoint
+					&& visibility.isVisible( focusedVertex ) )
+				recordVertex( drawList, focusedVertex, transform, maxDepth, false, true, screenVertexMath );
+		}
+	}
 
-					final int color = coloring.color( vertex );
-					final boolean isHighlighted = vertex.equals( highlighted );
-					final boolean isFocused = vertex.equals( focused );
+	private void recordEdge(
+			final OverlayDrawList drawList,
+			final E edge,
+			final double td0,
+			final double td1,
+			final double sd0,
+			final double sd1,
+			final int x0,
+			final int y0,
+			final int x1,
+			final int y1,
+			final boolean isHighlighted,
+			final V source,
+			final V target )
+	{
+		final double sliceDistanceFade = settings.getEllipsoidFadeDepth();
+		final int colorSpot = settings.getColorSpot();
+		final int colorPast = settings.getColorPast();
+		final int colorFuture = settings.getColorFuture();
 
-					screenVertexMath.init( vertex, transform );
+		edge.getSource( source );
+		edge.getTarget( target );
+		final int edgeColor = coloring.color( edge, source, target );
+		final boolean isSelected = selection.isSelected( edge );
+		final int c1 = getARGB(
+				sd1,
+				td1,
+				sliceDistanceFade,
+				timepointDistanceFade,
+				isSelected,
+				isHighlighted,
+				colorSpot,
+				colorPast,
+				colorFuture,
+				edgeColor );
+		final int c0 = settings.getUseGradient()
+				? getARGB(
+						sd0,
+						td0,
+						sliceDistanceFade,
+						timepointDistanceFade,
+						isSelected,
+						isHighlighted,
+						colorSpot,
+						colorPast,
+						colorFuture,
+						edgeColor )
+				: c1;
+		drawList.addEdge( x0, y0, x1, y1, c0, c1, isHighlighted
+				? OverlayDrawList.HIGHLIGHTED_EDGE_STROKE
+				: OverlayDrawList.EDGE_STROKE );
+	}
 
-					final double x = screenVertexMath.getViewPos()[ 0 ];
-					final double y = screenVertexMath.getViewPos()[ 1 ];
-					final double z = screenVertexMath.getViewPos()[ 2 ];
-					final double sd = sliceDistance( z, maxDepth );
+	private void recordVertex(
+			final OverlayDrawList drawList,
+			final V vertex,
+			final AffineTransform3D transform,
+			final double maxDepth,
+			final boolean isHighlighted,
+			final boolean isFocused,
+			final ScreenVertexMath screenVertexMath )
+	{
+		final double ellipsoidFadeDepth = settings.getEllipsoidFadeDepth();
+		final boolean drawSpotLabels = settings.getDrawSpotLabels();
+		final boolean drawEllipsoidSliceIntersection = settings.getDrawEllipsoidSliceIntersection();
+		final boolean drawEllipsoidSliceProjection = settings.getDrawEllipsoidSliceProjection();
+		final double pointFadeDepth = settings.getPointFadeDepth();
+		final int colorSpot = settings.getColorSpot();
+		final int colorPast = settings.getColorPast();
+		final int colorFuture = settings.getColorFuture();
 
-					if ( drawEllipsoidSliceIntersection )
-					{
-						if ( screenVertexMath.intersectsViewPlane() )
-						{
-							final Ellipse ellipse = screenVertexMath.getIntersectEllipse();
-
-							graphics.setColor( getColor(
-									0,
-									0,
-									ellipsoidFadeDepth,
-									timepointDistanceFade,
-									selection.isSelected( vertex ),
-									isHighlighted,
-									colorSpot,
-									colorPast,
-									colorFuture,
-									color ) );
-							if ( isHighlighted )
-								graphics.setStroke( highlightedVertexStroke );
-							else if ( isFocused )
-								graphics.setStroke( focusedVertexStroke );
-							drawEllipse( graphics, ellipse, torig, fillSpots );
-							if ( isHighlighted || isFocused )
-								graphics.setStroke( defaultVertexStroke );
-
-							if ( !drawEllipsoidSliceProjection && drawSpotLabels )
-								drawEllipseLabel( graphics, ellipse, vertex.getLabel() );
-						}
-					}
+		final int color = coloring.color( vertex );
+		final boolean isSelected = selection.isSelected( vertex );
+		final int stroke = isHighlighted
+				? OverlayDrawList.HIGHLIGHTED_VERTEX_STROKE
+				: ( isFocused ? OverlayDrawList.FOCUSED_VERTEX_STROKE : OverlayDrawList.VERTEX_STROKE );
 
-					if ( sd > -1 && sd < 1 )
-					{
-						if ( drawEllipsoidSliceProjection )
-						{
-							final Ellipse ellipse = screenVertexMath.getProjectEllipse();
-
-							graphics.setColor( getColor(
-									sd,
-									0,
-									ellipsoidFadeDepth,
-									timepointDistanceFade,
-									selection.isSelected( vertex ),
-									isHighlighted,
-									colorSpot,
-									colorPast,
-									colorFuture,
-									color ) );
-							if ( isHighlighted )
-								graphics.setStroke( highlightedVertexStroke );
-							else if ( isFocused )
-								graphics.setStroke( focusedVertexStroke );
-							drawEllipse( graphics, ellipse, torig, fillSpots );
-							if ( isHighlighted || isFocused )
-								graphics.setStroke( defaultVertexStroke );
-
-							if ( drawSpotLabels )
-								drawEllipseLabel( graphics, ellipse, vertex.getLabel() );
-
-							graphics.setTransform( torig );
-						}
-
-						if ( drawPointsAlways || ( drawPointsMaybe && !screenVertexMath.intersectsViewPlane() ) )
-						{
-							graphics.setColor( getColor(
-									sd,
-									0,
-									pointFadeDepth,
-									timepointDistanceFade,
-									selection.isSelected( vertex ),
-									isHighlighted,
-									colorSpot,
-									colorPast,
-									colorFuture,
-									color ) );
-							double radius = pointRadius;
-							if ( isHighlighted || isFocused )
-								radius *= 2;
-							final int ox = ( int ) ( x - radius );
-							final int oy = ( int ) ( y - radius );
-							final int ow = ( int ) ( 2 * radius );
-							if ( isFocused )
-								graphics.fillRect( ox, oy, ow, ow );
-							else
-								graphics.fillOval( ox, oy, ow, ow );
-						}
-					}
-				}
+		screenVertexMath.init( vertex, transform );
+
+		final double x = screenVertexMath.getViewPos()[ 0 ];
+		final double y = screenVertexMath.getViewPos()[ 1 ];
+		final double z = screenVertexMath.getViewPos()[ 2 ];
+		final double sd = sliceDistance( z, maxDepth );
+
+		if ( drawEllipsoidSliceIntersection )
+		{
+			if ( screenVertexMath.intersectsViewPlane() )
+			{
+				final Ellipse ellipse = screenVertexMath.getIntersectEllipse();
+				final int c = getARGB(
+						0,
+						0,
+						ellipsoidFadeDepth,
+						timepointDistanceFade,
+						isSelected,
+						isHighlighted,
+						colorSpot,
+						colorPast,
+						colorFuture,
+						color );
+				drawList.addEllipse( ellipse.getCenter(), ellipse.getTheta(), ellipse.getHalfWidth(),
+						ellipse.getHalfHeight(), c, stroke );
+
+				if ( !drawEllipsoidSliceProjection && drawSpotLabels )
+					drawList.addLabel( ellipse.getCenter(), vertex.getLabel(), c );
 			}
 		}
-		finally
+
+		if ( sd > -1 && sd < 1 )
 		{
-			graph.getLock().readLock().unlock();
-			index.readLock().unlock();
+			if ( drawEllipsoidSliceProjection )
+			{
+				final Ellipse ellipse = screenVertexMath.getProjectEllipse();
+				final int c = getARGB(
+						sd,
+						0,
+						ellipsoidFadeDepth,
+						timepointDistanceFade,
+						isSelected,
+						isHighlighted,
+						colorSpot,
+						colorPast,
+						colorFuture,
+						color );
+				drawList.addEllipse( ellipse.getCenter(), ellipse.getTheta(), ellipse.getHalfWidth(),
+						ellipse.getHalfHeight(), c, stroke );
+
+				if ( drawSpotLabels )
+					drawList.addLabel( ellipse.getCenter(), vertex.getLabel(), c );
+			}
+
+			if ( drawPointsAlways() || ( drawPointsMaybe() && !screenVertexMath.intersectsViewPlane() ) )
+			{
+				final int c = getARGB(
+						sd,
+						0,
+						pointFadeDepth,
+						timepointDistanceFade,
+						isSelected,
+						isHighlighted,
+						colorSpot,
+						colorPast,
+						colorFuture,
+						color );
+				double radius = pointRadius;
+				if ( isHighlighted || isFocused )
+					radius *= 2;
+				final int ox = ( int ) ( x - radius );
+				final int oy = ( int ) ( y - radius );
+				final int ow = ( int ) ( 2 * radius );
+				drawList.addPoint( ox, oy, ow, isFocused, c );
+			}
 		}
-		graph.releaseRef( ref1 );
-		graph.releaseRef( ref2 );
-		graph.releaseRef( ref3 );
-		graph.releaseRef( source );
-		graph.releaseRef( target );
 	}
 
-	static void drawEllipse( final Graphics2D graphics, final Ellipse ellipse, AffineTransform torig,
+	static void drawEllipse( final Graphics2D graphics, final Ellipse ellipse, final AffineTransform torig,
 			final boolean fillSpots )
+	{
+		final double[] tr = ellipse.getCenter();
+		drawEllipse( graphics, tr[ 0 ], tr[ 1 ], ellipse.getTheta(), ellipse.getHalfWidth(), ellipse.getHalfHeight(),
+				torig, fillSpots );
+	}
+
+	static void drawEllipse( final Graphics2D graphics, final double cx, final double cy, final double theta,
+			final double w, final double h, AffineTransform torig, final boolean fillSpots )
 	{
 		if ( torig == null )
 			torig = graphics.getTransform();
 
-		final double[] tr = ellipse.getCenter();
-		final double theta = ellipse.getTheta();
-		final double w = ellipse.getHalfWidth();
-		final double h = ellipse.getHalfHeight();
 		final Ellipse2D ellipse2D = new Ellipse2D.Double( -w, -h, 2. * w, 2. * h );
 
-		graphics.translate( tr[ 0 ], tr[ 1 ] );
+		graphics.translate( cx, cy );
 		graphics.rotate( theta );
 		if ( fillSpots )
 		{
@@ -848,15 +1083,16 @@ public class OverlayGraphRenderer< V extends OverlayVertex< V, E >, E extends Ov
 	// TODO: move to RenderSettings
 	static final Font font = new Font( "SansSerif", Font.PLAIN, 9 );
 
-	static void drawEllipseLabel( final Graphics2D graphics, final Ellipse ellipse, final String label )
+	void drawEllipseLabel( final Graphics2D graphics, final Ellipse ellipse, final String label )
 	{
 		final double[] tr = ellipse.getCenter();
-		final FontRenderContext frc = graphics.getFontRenderContext();
-		final TextLayout layout = new TextLayout( label, font, frc );
-		final Rectangle2D bounds = layout.getBounds();
-		final float tx = ( float ) ( tr[ 0 ] - bounds.getCenterX() );
-		final float ty = ( float ) ( tr[ 1 ] - bounds.getCenterY() );
-		layout.draw( graphics, tx, ty );
+		drawEllipseLabel( labelCache, graphics, tr[ 0 ], tr[ 1 ], label );
+	}
+
+	static void drawEllipseLabel( final LabelLayoutCache labelCache, final Graphics2D graphics, final double cx,
+			final double cy, final String label )
+	{
+		labelCache.drawCentered( graphics, label, font, cx, cy );
 	}
 
 	/**
@@ -0,0 +1,231 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * A cached raster image of an {@link OverlayDrawList}, split in horizontal
+ * tiles that are rasterized in parallel.
+ * <p>
+ * The layer remembers the viewer transform, timepoint, canvas size and
+ * generation it was rendered for. {@link OverlayGraphRenderer} re-uses it as
+ * long as these do not change, for instance when the viewer is repainted
+ * while image data is loading, or when the highlighted or focused objects
+ * change: those are drawn on top of the layer.
+ */
+class OverlayLayer
+{
+	/**
+	 * Tiles are not made smaller than this height (in pixels).
+	 */
+	private static final int MIN_TILE_HEIGHT = 32;
+
+	private final List< BufferedImage > tiles;
+
+	private int width;
+
+	private int height;
+
+	private int tileHeight;
+
+	private boolean valid;
+
+	private final AffineTransform3D transform;
+
+	private int timepoint;
+
+	private int generation;
+
+	OverlayLayer()
+	{
+		tiles = new ArrayList<>();
+		transform = new AffineTransform3D();
+		valid = false;
+	}
+
+	/**
+	 * Returns whether this layer was rendered for the specified state.
+	 */
+	boolean isValid( final int width, final int height, final AffineTransform3D transform, final int timepoint,
+			final int generation )
+	{
+		if ( !valid
+				|| width != this.width
+				|| height != this.height
+				|| timepoint != this.timepoint
+				|| generation != this.generation )
+			return false;
+		for ( int r = 0; r < 3; ++r )
+			for ( int c = 0; c < 4; ++c )
+				if ( transform.get( r, c ) != this.transform.get( r, c ) )
+					return false;
+		return true;
+	}
+
+	/**
+	 * Rasterizes {@code drawList} into this layer, using
+	 * {@code numThreads} parallel tasks.
+	 *
+	 * @param drawList
+	 *            the operations to draw.
+	 * @param antialiasing
+	 *            whether to use antialiasing.
+	 * @param numThreads
+	 *            the number of tiles to rasterize in parallel.
+	 * @param width
+	 *            the canvas width.
+	 * @param height
+	 *            the canvas height.
+	 * @param transform
+	 *            the viewer transform the operations were recorded for.
+	 * @param timepoint
+	 *            the timepoint the operations were recorded for.
+	 * @param generation
+	 *            the generation the operations were recorded for.
+	 */
+	void render(
+			final OverlayDrawList drawList,
+			final boolean antialiasing,
+			final int numThreads,
+			final int width,
+			final int height,
+			final AffineTransform3D transform,
+			final int timepoint,
+			final int generation )
+	{
+		valid = false;
+		if ( width <= 0 || height <= 0 )
+			return;
+
+		final int numTiles = Math.max( 1, Math.min( numThreads, height / MIN_TILE_HEIGHT ) );
+		final int th = ( height + numTiles - 1 ) / numTiles;
+		if ( width != this.width || height != this.height || th != tileHeight )
+		{
+			tiles.clear();
+			for ( int y = 0; y < height; y += th )
+				tiles.add( new BufferedImage( width, Math.min( th, height - y ), BufferedImage.TYPE_INT_ARGB_PRE ) );
+			this.width = width;
+			this.height = height;
+			tileHeight = th;
+		}
+
+		final List< Callable< Void > > tasks = new ArrayList<>( tiles.size() );
+		for ( int i = 0; i < tiles.size(); ++i )
+		{
+			final BufferedImage tile = tiles.get( i );
+			final int y0 = i * th;
+			tasks.add( () -> {
+				final Graphics2D g = tile.createGraphics();
+				try
+				{
+					g.setComposite( AlphaComposite.Clear );
+					g.fillRect( 0, 0, tile.getWidth(), tile.getHeight() );
+					g.setComposite( AlphaComposite.SrcOver );
+					g.translate( 0, -y0 );
+					drawList.draw( g, antialiasing, y0, y0 + tile.getHeight() );
+				}
+				finally
+				{
+					g.dispose();
+				}
+				return null;
+			} );
+		}
+
+		if ( tasks.size() == 1 )
+		{
+			try
+			{
+				tasks.get( 0 ).call();
+			}
+			catch ( final Exception e )
+			{
+				throw new RuntimeException( e );
+			}
+		}
+		else
+		{
+			try
+			{
+				for ( final Future< Void > future : ForkJoinPool.commonPool().invokeAll( tasks ) )
+					future.get();
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch ( final ExecutionException e )
+			{
+				throw new RuntimeException( e.getCause() );
+			}
+		}
+
+		this.transform.set( transform );
+		this.timepoint = timepoint;
+		this.generation = generation;
+		valid = true;
+	}
+
+	/**
+	 * Draws the rasterized tiles onto {@code graphics}.
+	 *
+	 * @param graphics
+	 *            the graphics to draw on.
+	 */
+	void draw( final Graphics2D graphics )
+	{
+		if ( !valid )
+			return;
+		for ( int i = 0; i < tiles.size(); ++i )
+			graphics.drawImage( tiles.get( i ), 0, i * tileHeight, null );
+	}
+
+	/**
+	 * Releases the tile images.
+	 */
+	void clear()
+	{
+		tiles.clear();
+		width = 0;
+		height = 0;
+		valid = false;
+	}
+}
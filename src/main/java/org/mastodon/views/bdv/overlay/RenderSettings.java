@@ -49,6 +49,8 @@ public class RenderSettings implements Style< RenderSettings >
 
 	public static final boolean DEFAULT_USE_ANTI_ALIASING = true;
 
+	public static final boolean DEFAULT_USE_PARALLEL_RENDERING = false;
+
 	public static final boolean DEFAULT_USE_GRADIENT = false;
 
 	public static final boolean DEFAULT_DRAW_SPOTS = true;
@@ -129,6 +131,7 @@ public class RenderSettings implements Style< RenderSettings >
 	{
 		name = settings.name;
 		useAntialiasing = settings.useAntialiasing;
+		useParallelRendering = settings.useParallelRendering;
 		useGradient = settings.useGradient;
 		timeLimit = settings.timeLimit;
 		drawLinks = settings.drawLinks;
@@ -178,6 +181,12 @@ public class RenderSettings implements Style< RenderSettings >
 	 */
 	private boolean useAntialiasing;
 
+	/**
+	 * Whether to rasterize spots and links in parallel into a cached image
+	 * layer.
+	 */
+	private boolean useParallelRendering;
+
 	/**
 	 * If {@code true}, draw links using a gradient from source color to target
 	 * color. If {@code false}, draw links using the target color.
@@ -368,6 +377,34 @@ public class RenderSettings implements Style< RenderSettings >
 		}
 	}
 
+	/**
+	 * Returns whether spots and links are rasterized in parallel into a cached
+	 * image layer.
+	 *
+	 * @return {@code true} if parallel rendering is used.
+	 */
+	public boolean getUseParallelRendering()
+	{
+		return useParallelRendering;
+	}
+
+	/**
+	 * Sets whether spots and links are rasterized in parallel, in horizontal
+	 * tiles, into a cached image layer. The layer is re-used for repaints that
+	 * do not change the overlay, for instance while image data is loading.
+	 *
+	 * @param useParallelRendering
+	 *            whether to use parallel rendering.
+	 */
+	public synchronized void setUseParallelRendering( final boolean useParallelRendering )
+	{
+		if ( this.useParallelRendering != useParallelRendering )
+		{
+			this.useParallelRendering = useParallelRendering;
+			notifyListeners();
+		}
+	}
+
 	/**
 	 * Returns whether a gradient is used for drawing links.
 	 *
@@ -996,6 +1033,7 @@ public class RenderSettings implements Style< RenderSettings >
 	{
 		df = new RenderSettings();
 		df.useAntialiasing = DEFAULT_USE_ANTI_ALIASING;
+		df.useParallelRendering = DEFAULT_USE_PARALLEL_RENDERING;
 		df.useGradient = DEFAULT_USE_GRADIENT;
 		df.timeLimit = DEFAULT_LIMIT_TIME_RANGE;
 		df.drawLinks = DEFAULT_DRAW_LINKS;
@@ -180,6 +180,7 @@ public class RenderSettingsIO
 			mapping.put( "name", s.getName() );
 
 			mapping.put( "antialiasing", s.getUseAntialiasing() );
+			mapping.put( "parallelRendering", s.getUseParallelRendering() );
 			mapping.put( "drawLinks", s.getDrawLinks() );
 			mapping.put( "drawLinksAheadInTime", s.getDrawLinksAheadInTime() );
 			mapping.put( "drawArrowHeads", s.getDrawArrowHeads() );
@@ -226,6 +227,7 @@ public class RenderSettingsIO
 				s.setName( getStringOrDefault( mapping, "name", "CouldNotFindName" ) );
 
 				s.setUseAntialiasing( getBooleanOrDefault( mapping, "antialiasing", RenderSettings.DEFAULT_USE_ANTI_ALIASING ) );
+				s.setUseParallelRendering( getBooleanOrDefault( mapping, "parallelRendering", RenderSettings.DEFAULT_USE_PARALLEL_RENDERING ) );
 				s.setDrawLinks( getBooleanOrDefault( mapping, "drawLinks", RenderSettings.DEFAULT_DRAW_LINKS ) );
 				s.setDrawLinksAheadInTime( getBooleanOrDefault( mapping, "drawLinksAheadInTime", RenderSettings.DEFAULT_DRAW_LINKS_AHEAD_IN_TIME ) );
 				s.setDrawArrowHeads( getBooleanOrDefault( mapping, "drawArrowHeads", RenderSettings.DEFAULT_DRAW_ARROW_HEADS ) );
@@ -166,6 +166,7 @@ public class RenderSettingsPanel extends JPanel
 	{
 		return Arrays.asList(
 				booleanElement( "anti-aliasing", style::getUseAntialiasing, style::setUseAntialiasing ),
+				booleanElement( "parallel rendering", style::getUseParallelRendering, style::setUseParallelRendering ),
 
 				separator(),
 
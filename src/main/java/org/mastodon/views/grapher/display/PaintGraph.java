@@ -36,13 +36,12 @@ import static org.mastodon.views.trackscheme.ScreenVertex.Transition.SELECTING;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
-import java.awt.font.FontRenderContext;
-import java.awt.font.TextLayout;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RectangularShape;
 
 import org.mastodon.collection.RefList;
+import org.mastodon.ui.util.LabelLayoutCache;
 import org.mastodon.views.grapher.datagraph.ScreenEdge;
 import org.mastodon.views.grapher.datagraph.ScreenEntities;
 import org.mastodon.views.grapher.datagraph.ScreenVertex;
@@ -115,6 +114,11 @@ public class PaintGraph
 
 	protected DataDisplayStyle style;
 
+	/**
+	 * Layouts of the vertex labels, kept across paints.
+	 */
+	protected final LabelLayoutCache labelCache = new LabelLayoutCache();
+
 	public void paintGraph(
 			final Graphics2D g2,
 			final ScreenEntities entities,
@@ -128,6 +132,7 @@ public class PaintGraph
 		this.highlightedEdgeId = highlightedEdgeId;
 		this.focusedVertexId = focusedVertexId;
 		this.style = style;
+		labelCache.newFrame();
 
 		final RefList< ScreenEdge > edges = entities.getEdges();
 		final RefList< ScreenVertex > vertices = entities.getVertices();
@@ -399,12 +404,7 @@ public class PaintGraph
 					if ( specifiedColor != 0 )
 						g2.setColor( textColorForBackground( fillColor ) );
 
-					final FontRenderContext frc = g2.getFontRenderContext();
-					final TextLayout layout = new TextLayout( label, style.getFont(), frc );
-					final Rectangle2D bounds = layout.getBounds();
-					final float tx = ( float ) ( x - bounds.getCenterX() );
-					final float ty = ( float ) ( y - bounds.getCenterY() );
-					layout.draw( g2, tx, ty );
+					labelCache.drawCentered( g2, label, style.getFont(), x, y );
 				}
 			}
 		}
@@ -76,7 +76,6 @@ import javax.swing.table.JTableHeader;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
-import javax.swing.table.TableRowSorter;
 import javax.swing.text.JTextComponent;
 
 import org.mastodon.RefPool;
@@ -121,6 +120,8 @@ public class FeatureTagTablePanel< O > extends JPanel
 
 	private final List< String > mapToTooltip;
 
+	private final List< String > mapToFeatureKeys;
+
 	private final List< int[] > mapToTagIndices;
 
 	private final List< TagSet > tagSets;
@@ -181,6 +182,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 		this.columnClasses = new ArrayList<>();
 		this.mapToProjections = new ArrayList<>();
 		this.mapToTooltip = new ArrayList<>();
+		this.mapToFeatureKeys = new ArrayList<>();
 		this.mapToTagIndices = new ArrayList<>();
 		this.featureMap = new LinkedHashMap<>();
 		this.tagSets = new ArrayList<>();
@@ -238,7 +240,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 		table.getSelectionModel().setSelectionMode( ListSelectionModel.MULTIPLE_INTERVAL_SELECTION );
 		refreshColumns();
 
-		final TableRowSorter< MyTableModel > sorter = new TableRowSorter<>( tableModel );
+		final PrimitiveRowSorter< MyTableModel > sorter = new PrimitiveRowSorter<>( tableModel, new MyColumnKeys() );
 		table.setRowSorter( sorter );
 
 		this.scrollPane = new JScrollPane( table, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
@@ -378,6 +380,8 @@ public class FeatureTagTablePanel< O > extends JPanel
 		mapToProjections.clear();
 		// Map from column index to tooltip strings.
 		mapToTooltip.clear();
+		// Map from column index to feature keys.
+		mapToFeatureKeys.clear();
 		// Map from column index to tag indices.
 		mapToTagIndices.clear();
 		// Table column model.
@@ -431,6 +435,7 @@ public class FeatureTagTablePanel< O > extends JPanel
 				final FeatureProjection< O > fp = ( FeatureProjection< O > ) projection;
 				mapToProjections.add( fp );
 				mapToTooltip.add( tooltip );
+				mapToFeatureKeys.add( fs.getKey() );
 				final String units = fp.units();
 				lastHeaderLine.add( ( units == null || units.isEmpty() ) ? "" : "(" + units + ")" );
 				tableColumnModel.addColumn( new TableColumn( colIndex++ ) );
@@ -679,6 +684,76 @@ public class FeatureTagTablePanel< O > extends JPanel
 		}
 	}
 
+	/**
+	 * Sort keys read directly from the features, ids and tags, without boxing.
+	 */
+	private class MyColumnKeys implements PrimitiveRowSorter.ColumnKeys
+	{
+
+		private final O ref = idBimap.createRef();
+
+		@Override
+		public int getId( final int modelRow )
+		{
+			return doFilter ? filterRowMap.get( modelRow ) : rowMap.get( modelRow );
+		}
+
+		@Override
+		public Object getIdentity( final int column )
+		{
+			if ( column == 0 )
+				return "Label";
+			if ( column == 1 )
+				return "ID";
+			if ( column < 2 + mapToProjections.size() )
+				return Arrays.asList( mapToFeatureKeys.get( column - 2 ),
+						mapToProjections.get( column - 2 ).getKey().toString() );
+			final int[] ids = mapToTagIndices.get( column - ( 2 + mapToProjections.size() ) );
+			final TagSet tagSet = tagSets.get( ids[ 0 ] );
+			return Arrays.asList( tagSet.id(), tagSet.getTags().get( ids[ 1 ] ).id() );
+		}
+
+		@Override
+		public boolean isText( final int column )
+		{
+			return column == 0;
+		}
+
+		@Override
+		public long getKey( final int column, final int modelRow )
+		{
+			final O o = idBimap.getObjectIfExists( getId( modelRow ), ref );
+			if ( null == o )
+				return PrimitiveRowSorter.UNSET;
+
+			if ( column == 1 )
+				return idBimap.getId( o );
+			else if ( column < 2 + mapToProjections.size() )
+			{
+				final FeatureProjection< O > featureProjection = mapToProjections.get( column - 2 );
+				if ( !featureProjection.isSet( o ) )
+					return PrimitiveRowSorter.UNSET;
+				if ( columnClasses.get( column ).equals( Integer.class ) )
+					return ( int ) featureProjection.value( o );
+				return PrimitiveRowSorter.key( featureProjection.value( o ) );
+			}
+			else
+			{
+				final int[] ids = mapToTagIndices.get( column - ( 2 + mapToProjections.size() ) );
+				final TagSet tagSet = tagSets.get( ids[ 0 ] );
+				final Tag columnTag = tagSet.getTags().get( ids[ 1 ] );
+				return columnTag.equals( tags.tags( tagSet ).get( o ) ) ? 1 : 0;
+			}
+		}
+
+		@Override
+		public String getText( final int column, final int modelRow )
+		{
+			final O o = idBimap.getObjectIfExists( getId( modelRow ), ref );
+			return null == o ? null : labelGenerator.apply( o );
+		}
+	}
+
 	private class MyTagHeaderRenderer extends DefaultTableCellRenderer
 	{
 
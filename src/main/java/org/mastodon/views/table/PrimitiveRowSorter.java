@@ -0,0 +1,725 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.table;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.swing.DefaultRowSorter;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.TableModel;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * A {@link RowSorter} for tables with many rows, that sorts on primitive keys
+ * rather than on the values returned by the table model.
+ * <p>
+ * Each column provides a <code>long</code> key per row, or a string for text
+ * columns, so that sorting does not box cell values nor resolve the objects
+ * of the table more than once per row. Rows are sorted by the id of the
+ * object they display, with a stable parallel merge sort.
+ * <p>
+ * The sorted order of the last few sorted columns is cached along with the
+ * keys it was computed from. When such a column is sorted again, only the
+ * rows that were added or whose key changed since are sorted, and merged
+ * into the cached order. This makes re-sorting cheap after the rows are
+ * reset following a graph change, or after a feature is recomputed.
+ * <p>
+ * Like the {@link DefaultRowSorter}, the sort is not updated when rows are
+ * updated, and the sort keys are reset when the table structure changes.
+ * Rows with identical keys are ordered by object id.
+ *
+ * @param <M>
+ *            the type of the table model.
+ */
+class PrimitiveRowSorter< M extends TableModel > extends RowSorter< M >
+{
+
+	/**
+	 * Provides the sort keys of a table.
+	 */
+	interface ColumnKeys
+	{
+		/**
+		 * Returns the id of the object displayed at the specified model row.
+		 *
+		 * @param modelRow
+		 *            the model row.
+		 * @return the object id, or <code>-1</code> if the row does not
+		 *         display an object.
+		 */
+		public int getId( int modelRow );
+
+		/**
+		 * Returns an object that identifies the values displayed in the
+		 * specified column, across changes of the table structure. Columns
+		 * with equal identities share their cached sort.
+		 *
+		 * @param column
+		 *            the model column.
+		 * @return the column identity.
+		 */
+		public Object getIdentity( int column );
+
+		/**
+		 * Returns whether the specified column is sorted on text, rather than
+		 * on <code>long</code> keys.
+		 *
+		 * @param column
+		 *            the model column.
+		 * @return <code>true</code> for text columns.
+		 */
+		public boolean isText( int column );
+
+		/**
+		 * Returns the sort key of a numeric column at the specified model row.
+		 * Unset values must be {@link PrimitiveRowSorter#UNSET}.
+		 *
+		 * @param column
+		 *            the model column.
+		 * @param modelRow
+		 *            the model row.
+		 * @return the sort key.
+		 */
+		public long getKey( int column, int modelRow );
+
+		/**
+		 * Returns the text of a text column at the specified model row.
+		 *
+		 * @param column
+		 *            the model column.
+		 * @param modelRow
+		 *            the model row.
+		 * @return the text, possibly <code>null</code>.
+		 */
+		public String getText( int column, int modelRow );
+	}
+
+	/**
+	 * The key of unset values, sorted before all other keys.
+	 */
+	static final long UNSET = Long.MIN_VALUE;
+
+	/**
+	 * Returns a <code>long</code> key that sorts like the specified
+	 * <code>double</code> value under {@link Double#compare(double, double)}.
+	 *
+	 * @param value
+	 *            the value.
+	 * @return the sort key, greater than {@link #UNSET}.
+	 */
+	static long key( final double value )
+	{
+		final long bits = Double.doubleToLongBits( value );
+		return bits ^ ( ( bits >> 63 ) & Long.MAX_VALUE );
+	}
+
+	private static final int MAX_SORT_KEYS = 3;
+
+	private static final int MAX_CACHED_COLUMNS = 4;
+
+	/**
+	 * Above this fraction of changed rows, a cached sort is discarded and the
+	 * column is sorted from scratch.
+	 */
+	private static final int MAX_CHANGED_FRACTION = 4;
+
+	private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+	private static final int INSERTION_THRESHOLD = 32;
+
+	private static final Collator COLLATOR = Collator.getInstance();
+
+	private final M model;
+
+	private final ColumnKeys columnKeys;
+
+	/**
+	 * Cached column keys and sorts, by column identity, in access order.
+	 */
+	private final Map< Object, Keys > cache = new LinkedHashMap<>( MAX_CACHED_COLUMNS + 1, 0.75f, true );
+
+	private List< SortKey > sortKeys = Collections.emptyList();
+
+	private int[] viewToModel;
+
+	private int[] modelToView;
+
+	private int modelRowCount;
+
+	public PrimitiveRowSorter( final M model, final ColumnKeys columnKeys )
+	{
+		this.model = model;
+		this.columnKeys = columnKeys;
+		this.modelRowCount = model.getRowCount();
+	}
+
+	@Override
+	public M getModel()
+	{
+		return model;
+	}
+
+	@Override
+	public void toggleSortOrder( final int column )
+	{
+		checkColumn( column );
+		List< SortKey > keys = new ArrayList<>( sortKeys );
+		int i;
+		for ( i = keys.size() - 1; i >= 0; i-- )
+			if ( keys.get( i ).getColumn() == column )
+				break;
+		if ( i == -1 )
+		{
+			keys.add( 0, new SortKey( column, SortOrder.ASCENDING ) );
+		}
+		else if ( i == 0 )
+		{
+			final SortOrder order = keys.get( 0 ).getSortOrder() == SortOrder.ASCENDING
+					? SortOrder.DESCENDING
+					: SortOrder.ASCENDING;
+			keys.set( 0, new SortKey( column, order ) );
+		}
+		else
+		{
+			keys.remove( i );
+			keys.add( 0, new SortKey( column, SortOrder.ASCENDING ) );
+		}
+		if ( keys.size() > MAX_SORT_KEYS )
+			keys = keys.subList( 0, MAX_SORT_KEYS );
+		setSortKeys( keys );
+	}
+
+	@Override
+	public int convertRowIndexToModel( final int index )
+	{
+		if ( viewToModel == null )
+		{
+			if ( index < 0 || index >= modelRowCount )
+				throw new IndexOutOfBoundsException( "Invalid index" );
+			return index;
+		}
+		return viewToModel[ index ];
+	}
+
+	@Override
+	public int convertRowIndexToView( final int index )
+	{
+		if ( modelToView == null )
+		{
+			if ( index < 0 || index >= modelRowCount )
+				throw new IndexOutOfBoundsException( "Invalid index" );
+			return index;
+		}
+		return modelToView[ index ];
+	}
+
+	@Override
+	public void setSortKeys( final List< ? extends SortKey > keys )
+	{
+		final List< SortKey > old = sortKeys;
+		if ( keys != null && !keys.isEmpty() )
+		{
+			for ( final SortKey key : keys )
+			{
+				if ( key == null )
+					throw new IllegalArgumentException( "Invalid SortKey" );
+				checkColumn( key.getColumn() );
+			}
+			sortKeys = Collections.unmodifiableList( new ArrayList<>( keys ) );
+		}
+		else
+		{
+			sortKeys = Collections.emptyList();
+		}
+		if ( !sortKeys.equals( old ) )
+		{
+			fireSortOrderChanged();
+			sort();
+		}
+	}
+
+	@Override
+	public List< ? extends SortKey > getSortKeys()
+	{
+		return sortKeys;
+	}
+
+	@Override
+	public int getViewRowCount()
+	{
+		return modelRowCount;
+	}
+
+	@Override
+	public int getModelRowCount()
+	{
+		return model.getRowCount();
+	}
+
+	@Override
+	public void modelStructureChanged()
+	{
+		modelRowCount = model.getRowCount();
+		if ( sortKeys.isEmpty() )
+			sort();
+		else
+			setSortKeys( null );
+	}
+
+	@Override
+	public void allRowsChanged()
+	{
+		sort();
+	}
+
+	@Override
+	public void rowsInserted( final int firstRow, final int endRow )
+	{
+		sort();
+	}
+
+	@Override
+	public void rowsDeleted( final int firstRow, final int endRow )
+	{
+		sort();
+	}
+
+	@Override
+	public void rowsUpdated( final int firstRow, final int endRow )
+	{}
+
+	@Override
+	public void rowsUpdated( final int firstRow, final int endRow, final int column )
+	{}
+
+	/**
+	 * Sorts the rows according to the current sort keys.
+	 */
+	public void sort()
+	{
+		final int[] lastViewToModel = viewToModel;
+		modelRowCount = model.getRowCount();
+
+		final List< SortKey > keys = new ArrayList<>( sortKeys.size() );
+		for ( final SortKey key : sortKeys )
+			if ( key.getSortOrder() != SortOrder.UNSORTED && key.getColumn() < model.getColumnCount() )
+				keys.add( key );
+
+		if ( keys.isEmpty() )
+		{
+			if ( viewToModel == null )
+				return;
+			viewToModel = null;
+			modelToView = null;
+		}
+		else
+		{
+			// Object ids of rows.
+			final int[] ids = new int[ modelRowCount ];
+			int maxId = -1;
+			for ( int row = 0; row < modelRowCount; row++ )
+			{
+				ids[ row ] = columnKeys.getId( row );
+				maxId = Math.max( maxId, ids[ row ] );
+			}
+			final int[] rowById = new int[ maxId + 1 ];
+			Arrays.fill( rowById, -1 );
+			for ( int row = 0; row < modelRowCount; row++ )
+				if ( ids[ row ] >= 0 )
+					rowById[ ids[ row ] ] = row;
+
+			final int[] order = ( keys.size() == 1 )
+					? sortColumn( keys.get( 0 ), ids, maxId )
+					: sortColumns( keys, ids, maxId );
+
+			// Rows without object last, in model order.
+			viewToModel = new int[ modelRowCount ];
+			modelToView = new int[ modelRowCount ];
+			int view = 0;
+			for ( final int id : order )
+				viewToModel[ view++ ] = rowById[ id ];
+			for ( int row = 0; row < modelRowCount; row++ )
+				if ( ids[ row ] < 0 )
+					viewToModel[ view++ ] = row;
+			for ( int v = 0; v < modelRowCount; v++ )
+				modelToView[ viewToModel[ v ] ] = v;
+		}
+		fireRowSorterChanged( lastViewToModel );
+	}
+
+	/**
+	 * Sorts the ids on a single column, reusing the cached sort of this column
+	 * if there is one.
+	 */
+	private int[] sortColumn( final SortKey sortKey, final int[] ids, final int maxId )
+	{
+		final Keys keys = extract( sortKey.getColumn(), ids, maxId );
+		final Keys cached = cache.get( keys.identity );
+		int[] order = null;
+		if ( cached != null && cached.text == keys.text )
+			order = update( cached, keys, ids, maxId );
+		if ( order == null )
+		{
+			order = presentIds( ids, keys.present.cardinality() );
+			sort( order, keys );
+		}
+		keys.order = order;
+		cache.put( keys.identity, keys );
+		if ( cache.size() > MAX_CACHED_COLUMNS )
+		{
+			final Iterator< Keys > it = cache.values().iterator();
+			it.next();
+			it.remove();
+		}
+
+		if ( sortKey.getSortOrder() == SortOrder.ASCENDING )
+			return order;
+
+		// Descending: reverse, but keep ties in ascending id order.
+		final int n = order.length;
+		final int[] reversed = new int[ n ];
+		final IdComparator comparator = keys.keyComparator();
+		int to = n;
+		while ( to > 0 )
+		{
+			int from = to - 1;
+			while ( from > 0 && comparator.compare( order[ from - 1 ], order[ to - 1 ] ) == 0 )
+				from--;
+			System.arraycopy( order, from, reversed, n - to, to - from );
+			to = from;
+		}
+		return reversed;
+	}
+
+	/**
+	 * Updates the cached sort of a column with the new keys. Returns
+	 * <code>null</code> if too many keys changed.
+	 */
+	private static int[] update( final Keys cached, final Keys keys, final int[] ids, final int maxId )
+	{
+		final BitSet unchanged = new BitSet( maxId + 1 );
+		final TIntArrayList changed = new TIntArrayList();
+		for ( final int id : ids )
+		{
+			if ( id < 0 )
+				continue;
+			if ( cached.present.get( id ) && keys.equalKeys( cached, id ) )
+				unchanged.set( id );
+			else
+				changed.add( id );
+		}
+		if ( changed.size() > ids.length / MAX_CHANGED_FRACTION )
+			return null;
+
+		// Cached order of unchanged rows, already sorted.
+		final int[] kept = new int[ ids.length - changed.size() ];
+		int k = 0;
+		for ( final int id : cached.order )
+			if ( unchanged.get( id ) )
+				kept[ k++ ] = id;
+		final int[] added = changed.toArray();
+		sort( added, keys );
+
+		final int[] order = new int[ k + added.length ];
+		final IdComparator comparator = keys.comparator();
+		int i = 0;
+		int j = 0;
+		int o = 0;
+		while ( i < k && j < added.length )
+			order[ o++ ] = comparator.compare( kept[ i ], added[ j ] ) <= 0 ? kept[ i++ ] : added[ j++ ];
+		while ( i < k )
+			order[ o++ ] = kept[ i++ ];
+		while ( j < added.length )
+			order[ o++ ] = added[ j++ ];
+		return order;
+	}
+
+	/**
+	 * Sorts the ids on several columns, without caching.
+	 */
+	private int[] sortColumns( final List< SortKey > sortKeys, final int[] ids, final int maxId )
+	{
+		final int nKeys = sortKeys.size();
+		final Keys[] keys = new Keys[ nKeys ];
+		final boolean[] descending = new boolean[ nKeys ];
+		for ( int i = 0; i < nKeys; i++ )
+		{
+			keys[ i ] = extract( sortKeys.get( i ).getColumn(), ids, maxId );
+			descending[ i ] = sortKeys.get( i ).getSortOrder() == SortOrder.DESCENDING;
+		}
+		final int[] order = presentIds( ids, keys[ 0 ].present.cardinality() );
+		sort( order, () -> {
+			final IdComparator[] comparators = new IdComparator[ nKeys ];
+			for ( int i = 0; i < nKeys; i++ )
+				comparators[ i ] = keys[ i ].keyComparator();
+			return ( id1, id2 ) -> {
+				for ( int i = 0; i < nKeys; i++ )
+				{
+					final int c = comparators[ i ].compare( id1, id2 );
+					if ( c != 0 )
+						return descending[ i ] ? -c : c;
+				}
+				return Integer.compare( id1, id2 );
+			};
+		} );
+		return order;
+	}
+
+	private Keys extract( final int column, final int[] ids, final int maxId )
+	{
+		final boolean text = columnKeys.isText( column );
+		final Keys keys = new Keys( columnKeys.getIdentity( column ), text, maxId + 1 );
+		for ( int row = 0; row < ids.length; row++ )
+		{
+			final int id = ids[ row ];
+			if ( id < 0 )
+				continue;
+			keys.present.set( id );
+			if ( text )
+				keys.texts[ id ] = columnKeys.getText( column, row );
+			else
+				keys.keys[ id ] = columnKeys.getKey( column, row );
+		}
+		return keys;
+	}
+
+	private static int[] presentIds( final int[] ids, final int n )
+	{
+		final int[] present = new int[ n ];
+		int i = 0;
+		for ( final int id : ids )
+			if ( id >= 0 )
+				present[ i++ ] = id;
+		return present;
+	}
+
+	private void checkColumn( final int column )
+	{
+		if ( column < 0 || column >= model.getColumnCount() )
+			throw new IndexOutOfBoundsException( "column beyond range of TableModel" );
+	}
+
+	/**
+	 * Compares two object ids.
+	 */
+	@FunctionalInterface
+	interface IdComparator
+	{
+		public int compare( int id1, int id2 );
+	}
+
+	/**
+	 * Supplies comparators. Each sort task gets its own, because collators
+	 * are not thread-safe.
+	 */
+	@FunctionalInterface
+	interface ComparatorFactory
+	{
+		public IdComparator get();
+	}
+
+	/**
+	 * The keys of a column, indexed by object id, and its cached sort.
+	 */
+	private static final class Keys implements ComparatorFactory
+	{
+
+		private final Object identity;
+
+		private final boolean text;
+
+		private final long[] keys;
+
+		private final String[] texts;
+
+		private final BitSet present;
+
+		/**
+		 * The ids sorted in ascending order, then by id.
+		 */
+		private int[] order;
+
+		private Keys( final Object identity, final boolean text, final int size )
+		{
+			this.identity = identity;
+			this.text = text;
+			this.keys = text ? null : new long[ size ];
+			this.texts = text ? new String[ size ] : null;
+			this.present = new BitSet( size );
+		}
+
+		private boolean equalKeys( final Keys other, final int id )
+		{
+			return text
+					? Objects.equals( texts[ id ], other.texts[ id ] )
+					: keys[ id ] == other.keys[ id ];
+		}
+
+		/**
+		 * Compares the keys of two ids, with <code>null</code> texts first.
+		 */
+		private IdComparator keyComparator()
+		{
+			if ( !text )
+				return ( id1, id2 ) -> Long.compare( keys[ id1 ], keys[ id2 ] );
+
+			final Collator collator = ( Collator ) COLLATOR.clone();
+			return ( id1, id2 ) -> {
+				final String s1 = texts[ id1 ];
+				final String s2 = texts[ id2 ];
+				if ( s1 == null )
+					return s2 == null ? 0 : -1;
+				if ( s2 == null )
+					return 1;
+				return collator.compare( s1, s2 );
+			};
+		}
+
+		/**
+		 * Compares the keys of two ids, then the ids.
+		 */
+		private IdComparator comparator()
+		{
+			final IdComparator c = keyComparator();
+			return ( id1, id2 ) -> {
+				final int r = c.compare( id1, id2 );
+				return r != 0 ? r : Integer.compare( id1, id2 );
+			};
+		}
+
+		@Override
+		public IdComparator get()
+		{
+			return comparator();
+		}
+	}
+
+	/*
+	 * Stable parallel merge sort of int arrays.
+	 */
+
+	static void sort( final int[] a, final ComparatorFactory comparators )
+	{
+		final int[] tmp = new int[ a.length ];
+		if ( a.length <= SEQUENTIAL_THRESHOLD )
+			mergeSort( a, tmp, 0, a.length, comparators.get() );
+		else
+			ForkJoinPool.commonPool().invoke( new SortTask( a, tmp, 0, a.length, comparators ) );
+	}
+
+	private static final class SortTask extends RecursiveAction
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] a;
+
+		private final int[] tmp;
+
+		private final int from;
+
+		private final int to;
+
+		private final ComparatorFactory comparators;
+
+		private SortTask( final int[] a, final int[] tmp, final int from, final int to, final ComparatorFactory comparators )
+		{
+			this.a = a;
+			this.tmp = tmp;
+			this.from = from;
+			this.to = to;
+			this.comparators = comparators;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from <= SEQUENTIAL_THRESHOLD )
+			{
+				mergeSort( a, tmp, from, to, comparators.get() );
+				return;
+			}
+			final int mid = ( from + to ) >>> 1;
+			invokeAll( new SortTask( a, tmp, from, mid, comparators ), new SortTask( a, tmp, mid, to, comparators ) );
+			merge( a, tmp, from, mid, to, comparators.get() );
+		}
+	}
+
+	private static void mergeSort( final int[] a, final int[] tmp, final int from, final int to, final IdComparator c )
+	{
+		if ( to - from <= INSERTION_THRESHOLD )
+		{
+			for ( int i = from + 1; i < to; i++ )
+			{
+				final int v = a[ i ];
+				int j = i - 1;
+				while ( j >= from && c.compare( a[ j ], v ) > 0 )
+				{
+					a[ j + 1 ] = a[ j ];
+					j--;
+				}
+				a[ j + 1 ] = v;
+			}
+			return;
+		}
+		final int mid = ( from + to ) >>> 1;
+		mergeSort( a, tmp, from, mid, c );
+		mergeSort( a, tmp, mid, to, c );
+		merge( a, tmp, from, mid, to, c );
+	}
+
+	private static void merge( final int[] a, final int[] tmp, final int from, final int mid, final int to, final IdComparator c )
+	{
+		if ( c.compare( a[ mid - 1 ], a[ mid ] ) <= 0 )
+			return;
+		System.arraycopy( a, from, tmp, from, to - from );
+		int i = from;
+		int j = mid;
+		for ( int k = from; k < to; k++ )
+		{
+			if ( j >= to || ( i < mid && c.compare( tmp[ i ], tmp[ j ] ) <= 0 ) )
+				a[ k ] = tmp[ i++ ];
+			else
+				a[ k ] = tmp[ j++ ];
+		}
+	}
+}
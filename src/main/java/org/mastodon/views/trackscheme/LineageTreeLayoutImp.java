@@ -32,11 +32,13 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import org.mastodon.RefPool;
 import org.mastodon.collection.RefCollection;
 import org.mastodon.collection.RefCollections;
 import org.mastodon.collection.RefList;
 import org.mastodon.collection.RefSet;
 import org.mastodon.graph.Edges;
+import org.mastodon.graph.GraphListener;
 import org.mastodon.model.FadingModel;
 import org.mastodon.model.RootsModel;
 import org.mastodon.model.SelectionModel;
@@ -51,6 +53,12 @@ import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.TDoubleList;
 import gnu.trove.list.array.TDoubleArrayList;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
 import net.imglib2.RealLocalizable;
 
 /**
@@ -73,11 +81,15 @@ import net.imglib2.RealLocalizable;
  *
  * We call vertices contained in the current layout <em>active</em>.
  *
- *
- *
- * TODO TODO TODO
- *
- *
+ * <p>
+ * Full layouts (with {@code mark = -1}) are incremental by default: the layout
+ * of the sub-tree below each layout root is remembered relative to the
+ * left-most leaf of that sub-tree. Only sub-trees that were structurally
+ * modified since the last layout (vertices or edges added or removed) are laid
+ * out again. Unmodified sub-trees are shifted to their new position without
+ * traversing the graph. Context layouts (with {@code mark >= 0}) are always
+ * computed from scratch, but leave the remembered sub-tree layouts intact. See
+ * {@link #setIncremental(boolean)}.
  *
  * @author Tobias Pietzsch &lt;tobias.pietzsch@gmail.com&gt;
  */
@@ -152,6 +164,47 @@ public class LineageTreeLayoutImp implements LineageTreeLayout
 	 */
 	protected final RefList< TrackSchemeVertex > currentLayoutColumnRoot;
 
+	/**
+	 * If the number of vertices touched since the last layout exceeds this
+	 * value, all remembered sub-tree layouts are discarded instead.
+	 */
+	private static final int MAX_DIRTY_VERTICES = 100_000;
+
+	/**
+	 * Whether full layouts re-use the layout of unmodified sub-trees.
+	 */
+	private boolean incremental;
+
+	/**
+	 * Maps layout root id to the layout of the sub-tree below it, recorded
+	 * during a previous full layout.
+	 */
+	private final TIntObjectMap< SubtreeLayout > subtreeLayouts;
+
+	/**
+	 * Maps vertex id to the id of the layout root of the remembered
+	 * {@link SubtreeLayout} containing the vertex.
+	 */
+	private final TIntIntMap subtreeLayoutRoot;
+
+	/**
+	 * Ids of vertices touched by structural changes since the last full layout.
+	 * Accessed only while synchronized on this set.
+	 */
+	private final TIntSet dirtyVertices;
+
+	/**
+	 * Whether all remembered sub-tree layouts must be discarded before the next
+	 * full layout. Guarded by {@link #dirtyVertices}.
+	 */
+	private boolean dirtyAll;
+
+	/**
+	 * The {@link SubtreeLayout} that is currently recorded in
+	 * {@link #layoutX(TrackSchemeVertex)}, or {@code null}.
+	 */
+	private SubtreeLayout recording;
+
 	public LineageTreeLayoutImp(
 			final RootsModel< TrackSchemeVertex > rootsModel,
 			final TrackSchemeGraph< ?, ? > graph,
@@ -170,6 +223,42 @@ public class LineageTreeLayoutImp implements LineageTreeLayout
 		vertexTable = new TrackSchemeVertexTable( graph );
 		currentLayoutColumnX = new TDoubleArrayList();
 		currentLayoutColumnRoot = RefCollections.createRefList( graph.vertices() );
+		incremental = true;
+		subtreeLayouts = new TIntObjectHashMap<>();
+		subtreeLayoutRoot = new TIntIntHashMap( 10, 0.5f, -1, -1 );
+		dirtyVertices = new TIntHashSet();
+		dirtyAll = false;
+		graph.graphListeners().add( new DirtySubtreeTracker() );
+	}
+
+	/**
+	 * Sets whether full layouts (with {@code mark = -1}) should only lay out
+	 * again the sub-trees that were structurally modified since the previous
+	 * full layout. Disabling the incremental layout discards all remembered
+	 * sub-tree layouts.
+	 *
+	 * @param incremental
+	 *            whether to lay out incrementally.
+	 */
+	public void setIncremental( final boolean incremental )
+	{
+		this.incremental = incremental;
+		if ( !incremental )
+		{
+			subtreeLayouts.clear();
+			subtreeLayoutRoot.clear();
+		}
+	}
+
+	/**
+	 * Returns whether full layouts only lay out again the sub-trees that were
+	 * structurally modified since the previous full layout.
+	 *
+	 * @return whether the layout is incremental.
+	 */
+	public boolean isIncremental()
+	{
+		return incremental;
 	}
 
 	/**
@@ -234,11 +323,17 @@ public class LineageTreeLayoutImp implements LineageTreeLayout
 		final TrackSchemeVertex previousGraphRoot = graph.vertexRef();
 		final TrackSchemeVertex currentGraphRoot = graph.vertexRef();
 		this.mark = mark;
+		final boolean useSubtreeLayouts = incremental && mark == -1;
+		if ( useSubtreeLayouts )
+			discardDirtySubtreeLayouts();
 		boolean first = true;
 		currentLayoutColumnX.add( rightmost );
 		for ( final TrackSchemeVertex root : layoutRoots )
 		{
-			layoutX( root );
+			if ( useSubtreeLayouts )
+				layoutSubtree( root, currentGraphRoot );
+			else
+				layoutX( root );
 			getGraphRoot( root, currentGraphRoot );
 			if ( first || !currentGraphRoot.equals( previousGraphRoot ) )
 			{
@@ -724,11 +819,15 @@ public class LineageTreeLayoutImp implements LineageTreeLayout
 				if ( hasBeenVisitedBefore )
 				{
 					// This only happens if a node has two incoming edges.
+					// The sub-tree layout then depends on the other roots.
+					recording = null;
 					step.truncate();
 					continue;
 				}
 
 				vertexTable.add( v );
+				if ( recording != null )
+					recording.ids.add( v.getInternalPoolIndex() );
 
 				final boolean ghost = v.getLayoutTimestamp() < mark;
 				v.setGhost( ghost );
@@ -755,6 +854,189 @@ public class LineageTreeLayoutImp implements LineageTreeLayout
 		}
 	}
 
+	/**
+	 * Lays out the sub-tree below {@code root}, re-using the layout remembered
+	 * from a previous full layout if the sub-tree was not modified since. If
+	 * the sub-tree needs to be laid out, its layout is remembered for the next
+	 * full layout.
+	 *
+	 * @param root
+	 *            root of sub-tree to layout.
+	 * @param ref
+	 *            a vertex ref that is used internally.
+	 */
+	private void layoutSubtree( final TrackSchemeVertex root, final TrackSchemeVertex ref )
+	{
+		final int rootId = root.getInternalPoolIndex();
+		final SubtreeLayout previous = subtreeLayouts.get( rootId );
+		if ( previous != null && shiftSubtree( previous, ref ) )
+			return;
+
+		final double start = rightmost;
+		recording = new SubtreeLayout();
+		layoutX( root );
+		final SubtreeLayout recorded = recording;
+		recording = null;
+
+		if ( recorded == null || recorded.ids.isEmpty() )
+		{
+			subtreeLayouts.remove( rootId );
+			return;
+		}
+
+		final RefPool< TrackSchemeVertex > pool = graph.getVertexPool();
+		final int size = recorded.ids.size();
+		recorded.relativeX.ensureCapacity( size );
+		for ( int i = 0; i < size; ++i )
+		{
+			final int id = recorded.ids.get( i );
+			recorded.relativeX.add( pool.getObject( id, ref ).getLayoutX() - start );
+			subtreeLayoutRoot.put( id, rootId );
+		}
+		recorded.width = rightmost - start;
+		subtreeLayouts.put( rootId, recorded );
+	}
+
+	/**
+	 * Moves all vertices of a remembered sub-tree layout such that its
+	 * left-most leaf is at {@link #rightmost}, and adds them to the current
+	 * layout.
+	 *
+	 * @return {@code false} if some vertices of the sub-tree are already part
+	 *         of the current layout. In this case, nothing is changed.
+	 */
+	private boolean shiftSubtree( final SubtreeLayout subtree, final TrackSchemeVertex ref )
+	{
+		final RefPool< TrackSchemeVertex > pool = graph.getVertexPool();
+		final int size = subtree.ids.size();
+		for ( int i = 0; i < size; ++i )
+			if ( pool.getObject( subtree.ids.get( i ), ref ).getLayoutTimestamp() >= timestamp )
+				return false;
+
+		final double start = rightmost;
+		for ( int i = 0; i < size; ++i )
+		{
+			final TrackSchemeVertex v = pool.getObject( subtree.ids.get( i ), ref );
+			v.setGhost( false );
+			v.setLayoutTimestamp( timestamp );
+			v.setLayoutX( start + subtree.relativeX.get( i ) );
+			vertexTable.add( v );
+		}
+		rightmost = start + subtree.width;
+		return true;
+	}
+
+	/**
+	 * Discards the remembered layouts of all sub-trees that contain vertices
+	 * touched by structural changes since the last full layout.
+	 */
+	private void discardDirtySubtreeLayouts()
+	{
+		synchronized ( dirtyVertices )
+		{
+			if ( dirtyAll )
+			{
+				subtreeLayouts.clear();
+				subtreeLayoutRoot.clear();
+			}
+			else
+			{
+				final TIntIterator it = dirtyVertices.iterator();
+				while ( it.hasNext() )
+				{
+					final int rootId = subtreeLayoutRoot.remove( it.next() );
+					if ( rootId >= 0 )
+						subtreeLayouts.remove( rootId );
+				}
+			}
+			dirtyVertices.clear();
+			dirtyAll = false;
+		}
+	}
+
+	/**
+	 * The layout of the sub-tree below a layout root, relative to the left-most
+	 * leaf of the sub-tree.
+	 */
+	private static final class SubtreeLayout
+	{
+		/**
+		 * Ids of the vertices of the sub-tree, in the order in which they were
+		 * added to the {@link TrackSchemeVertexTable}.
+		 */
+		final TIntArrayList ids = new TIntArrayList();
+
+		/**
+		 * LayoutX of the vertices relative to the left-most leaf.
+		 */
+		final TDoubleArrayList relativeX = new TDoubleArrayList();
+
+		/**
+		 * Number of leafs in the sub-tree.
+		 */
+		double width;
+	}
+
+	/**
+	 * Records the vertices touched by structural changes of the
+	 * {@link TrackSchemeGraph}.
+	 */
+	private class DirtySubtreeTracker implements GraphListener< TrackSchemeVertex, TrackSchemeEdge >
+	{
+		private final TrackSchemeVertex ref = graph.vertexRef();
+
+		private void touch( final TrackSchemeVertex v )
+		{
+			synchronized ( dirtyVertices )
+			{
+				if ( dirtyAll )
+					return;
+				dirtyVertices.add( v.getInternalPoolIndex() );
+				if ( dirtyVertices.size() > MAX_DIRTY_VERTICES )
+				{
+					dirtyVertices.clear();
+					dirtyAll = true;
+				}
+			}
+		}
+
+		@Override
+		public void graphRebuilt()
+		{
+			synchronized ( dirtyVertices )
+			{
+				dirtyVertices.clear();
+				dirtyAll = true;
+			}
+		}
+
+		@Override
+		public void vertexAdded( final TrackSchemeVertex vertex )
+		{
+			touch( vertex );
+		}
+
+		@Override
+		public void vertexRemoved( final TrackSchemeVertex vertex )
+		{
+			touch( vertex );
+		}
+
+		@Override
+		public void edgeAdded( final TrackSchemeEdge edge )
+		{
+			touch( edge.getSource( ref ) );
+			touch( edge.getTarget( ref ) );
+		}
+
+		@Override
+		public void edgeRemoved( final TrackSchemeEdge edge )
+		{
+			touch( edge.getSource( ref ) );
+			touch( edge.getTarget( ref ) );
+		}
+	}
+
 	/**
 	 * Layout roots are not graph roots necessarily. This helper finds the
 	 * <em>graph</em> root of a given vertex.
@@ -38,11 +38,9 @@ import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.Stroke;
-import java.awt.font.FontRenderContext;
-import java.awt.font.TextLayout;
-import java.awt.geom.Rectangle2D;
 
 import org.mastodon.collection.RefList;
+import org.mastodon.ui.util.LabelLayoutCache;
 import org.mastodon.util.ColorUtils;
 import org.mastodon.util.GeometryUtil;
 import org.mastodon.views.trackscheme.ScreenEdge;
@@ -130,6 +128,11 @@ public class PaintGraph
 
 	private final Rectangle tmpRectangle = new Rectangle();
 
+	/**
+	 * Layouts of the labels painted by this view.
+	 */
+	protected final LabelLayoutCache labelCache = new LabelLayoutCache();
+
 	public void paintGraph(
 			final Graphics2D g2,
 			final ScreenEntities entities,
@@ -143,6 +146,7 @@ public class PaintGraph
 		this.highlightedEdgeId = highlightedEdgeId;
 		this.focusedVertexId = focusedVertexId;
 		this.style = style;
+		labelCache.newFrame();
 
 		final RefList< ScreenEdge > edges = entities.getEdges();
 		final RefList< ScreenVertex > vertices = entities.getVertices();
@@ -465,12 +469,7 @@ public class PaintGraph
 		if ( !g2.getClipBounds( tmpRectangle ).contains( x, y ) )
 			return;
 
-		final FontRenderContext frc = g2.getFontRenderContext();
-		final TextLayout layout = new TextLayout( label, font, frc );
-		final Rectangle2D bounds = layout.getBounds();
-		final float tx = ( float ) ( x - bounds.getCenterX() );
-		final float ty = ( float ) ( y - bounds.getCenterY() );
-		layout.draw( g2, tx, ty );
+		labelCache.drawCentered( g2, label, font, x, y );
 	}
 
 	protected Color getColor( final boolean isSelected, final boolean isGhost, final boolean isFaded, final Transition transition,
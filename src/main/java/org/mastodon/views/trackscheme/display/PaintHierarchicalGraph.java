@@ -34,8 +34,8 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
-import java.awt.geom.Rectangle2D;
 
+import org.mastodon.ui.util.LabelLayoutCache.LabelLayout;
 import org.mastodon.util.ColorUtils;
 import org.mastodon.views.trackscheme.ScreenEntities;
 import org.mastodon.views.trackscheme.ScreenTransform;
@@ -152,11 +152,9 @@ public class PaintHierarchicalGraph extends PaintBranchGraph
 				final Color drawLabelColor =
 						faded ? ColorUtils.mixColors( labelColor, style.getBackgroundColor(), fadeRatio ) : labelColor;
 				g2.setColor( drawLabelColor );
-				final FontRenderContext frc = g2.getFontRenderContext();
-				final TextLayout layout = new TextLayout( label, style.getFont(), frc );
-				final Rectangle2D bounds = layout.getBounds();
-				final float tx = ( float ) ( x - bounds.getCenterX() );
-				final float ty = ( float ) ( y + bounds.getHeight() + 1.2 * spotRadius + 3 );
+				final LabelLayout layout = labelCache.get( label, style.getFont(), g2.getFontRenderContext() );
+				final float tx = ( float ) ( x - layout.getCenterX() );
+				final float ty = ( float ) ( y + layout.getHeight() + 1.2 * spotRadius + 3 );
 				layout.draw( g2, tx, ty );
 			}
 		}
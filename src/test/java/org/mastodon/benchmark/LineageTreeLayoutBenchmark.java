@@ -0,0 +1,114 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mastodon.adapter.FadingModelAdapter;
+import org.mastodon.adapter.SelectionModelAdapter;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.ModelGraphTrackSchemeProperties;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.DefaultRootsModel;
+import org.mastodon.model.DefaultSelectionModel;
+import org.mastodon.ui.coloring.GraphColorGeneratorAdapter;
+import org.mastodon.views.trackscheme.LineageTreeLayoutImp;
+import org.mastodon.views.trackscheme.TrackSchemeEdge;
+import org.mastodon.views.trackscheme.TrackSchemeGraph;
+import org.mastodon.views.trackscheme.TrackSchemeVertex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the TrackScheme {@link LineageTreeLayoutImp#layout()} of a
+ * synthetic lineage, with and without re-using the layout of unmodified
+ * sub-trees.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g" } )
+public class LineageTreeLayoutBenchmark
+{
+	@Param( { "6", "9" } )
+	public int nDivisions;
+
+	@Param( { "false", "true" } )
+	public boolean incremental;
+
+	private LineageTreeLayoutImp layout;
+
+	@Setup( Level.Trial )
+	public void setup()
+	{
+		final Model model = new SyntheticLineage( 50, nDivisions, 5 ).create();
+		final ModelGraph graph = model.getGraph();
+		final TrackSchemeGraph< Spot, Link > tsGraph = new TrackSchemeGraph<>(
+				graph,
+				model.getGraphIdBimap(),
+				new ModelGraphTrackSchemeProperties( graph ) );
+		final SelectionModelAdapter< Spot, Link, TrackSchemeVertex, TrackSchemeEdge > selection =
+				new SelectionModelAdapter<>(
+						new DefaultSelectionModel<>( graph, model.getGraphIdBimap() ),
+						tsGraph.getVertexMap(),
+						tsGraph.getEdgeMap() );
+		final GraphColorGeneratorAdapter< Spot, Link, TrackSchemeVertex, TrackSchemeEdge > coloring =
+				new GraphColorGeneratorAdapter<>( tsGraph.getVertexMap(), tsGraph.getEdgeMap() );
+		final FadingModelAdapter< Spot, Link, TrackSchemeVertex, TrackSchemeEdge > fading =
+				new FadingModelAdapter<>( null, tsGraph.getVertexMap(), tsGraph.getEdgeMap() );
+		layout = new LineageTreeLayoutImp(
+				new DefaultRootsModel<>( graph, tsGraph ),
+				tsGraph,
+				selection,
+				coloring,
+				fading );
+		layout.setIncremental( incremental );
+	}
+
+	@Benchmark
+	public double layout()
+	{
+		layout.layout();
+		return layout.getCurrentLayoutMaxX();
+	}
+}
@@ -0,0 +1,80 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of this package.
+ * <p>
+ * The arguments are those of the JMH command line: regular expressions
+ * selecting the benchmarks to run, for instance
+ * {@code OverlayGraphRendererBenchmark} or {@code .*Benchmark.load}, and JMH
+ * options such as {@code -f 0} or {@code -wi 2}. Without a regular
+ * expression, all the benchmarks of this package are run.
+ * <p>
+ * The benchmarks run in a forked JVM, which gets the class path of the JVM
+ * running this class. From the command line, launch a separate JVM with the
+ * test class path, using {@code exec:exec}:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.mastodon.benchmark.MastodonBenchmarks LineageTreeLayoutBenchmark"
+ * </pre>
+ *
+ * {@code exec:java} runs this class inside the Maven JVM, whose class path
+ * does not contain the test classes, so the forked JVM fails to find the
+ * benchmarks. It can still be used with {@code -f 0}, which runs the
+ * benchmarks in the Maven JVM itself, at the cost of sharing its heap and JIT
+ * state:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.mastodon.benchmark.MastodonBenchmarks \
+ *     -Dexec.args="-f 0 LineageTreeLayoutBenchmark"
+ * </pre>
+ */
+public class MastodonBenchmarks
+{
+	public static void main( final String[] args ) throws RunnerException, CommandLineOptionException
+	{
+		final CommandLineOptions commandLine = new CommandLineOptions( args );
+		final OptionsBuilder builder = new OptionsBuilder();
+		builder.parent( commandLine );
+		if ( commandLine.getIncludes().isEmpty() )
+			builder.include( MastodonBenchmarks.class.getPackage().getName() + "\\..*Benchmark" );
+		final Options options = builder.build();
+		new Runner( options ).run();
+	}
+}
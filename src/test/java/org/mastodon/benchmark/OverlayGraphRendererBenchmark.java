@@ -0,0 +1,182 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.mastodon.adapter.FocusModelAdapter;
+import org.mastodon.adapter.HighlightModelAdapter;
+import org.mastodon.adapter.RefBimap;
+import org.mastodon.adapter.SelectionModelAdapter;
+import org.mastodon.mamut.model.BoundingSphereRadiusStatistics;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.ModelOverlayProperties;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.DefaultFocusModel;
+import org.mastodon.model.DefaultHighlightModel;
+import org.mastodon.model.DefaultSelectionModel;
+import org.mastodon.model.FocusModel;
+import org.mastodon.model.HighlightModel;
+import org.mastodon.model.SelectionModel;
+import org.mastodon.ui.coloring.DefaultGraphColorGenerator;
+import org.mastodon.ui.coloring.GraphColorGeneratorAdapter;
+import org.mastodon.views.bdv.overlay.OverlayGraphRenderer;
+import org.mastodon.views.bdv.overlay.RenderSettings;
+import org.mastodon.views.bdv.overlay.wrap.OverlayEdgeWrapper;
+import org.mastodon.views.bdv.overlay.wrap.OverlayGraphWrapper;
+import org.mastodon.views.bdv.overlay.wrap.OverlayVertexWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Benchmarks {@link OverlayGraphRenderer#drawOverlays(java.awt.Graphics)} of a
+ * synthetic lineage on an offscreen image, looking at the middle timepoint
+ * and the middle Z slice.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g", "-Djava.awt.headless=true" } )
+public class OverlayGraphRendererBenchmark
+{
+	private static final int WIDTH = 1024;
+
+	private static final int HEIGHT = 1024;
+
+	@Param( { "6", "9" } )
+	public int nDivisions;
+
+	@Param( { "false", "true" } )
+	public boolean parallelRendering;
+
+	private OverlayGraphRenderer< OverlayVertexWrapper< Spot, Link >, OverlayEdgeWrapper< Spot, Link > > renderer;
+
+	private BufferedImage image;
+
+	private Graphics2D graphics;
+
+	@Setup( Level.Trial )
+	public void setup()
+	{
+		final SyntheticLineage lineage = new SyntheticLineage( 50, nDivisions, 5, 1000, 1000, 200, 5, 1l );
+		final Model model = lineage.create();
+		final ModelGraph graph = model.getGraph();
+
+		final OverlayGraphWrapper< Spot, Link > viewGraph = new OverlayGraphWrapper<>(
+				graph,
+				model.getGraphIdBimap(),
+				model.getSpatioTemporalIndex(),
+				graph.getLock(),
+				new ModelOverlayProperties( graph, new BoundingSphereRadiusStatistics( model ) ) );
+		final RefBimap< Spot, OverlayVertexWrapper< Spot, Link > > vertexMap = viewGraph.getVertexMap();
+		final RefBimap< Link, OverlayEdgeWrapper< Spot, Link > > edgeMap = viewGraph.getEdgeMap();
+		final SelectionModel< Spot, Link > selection = new DefaultSelectionModel<>( graph, model.getGraphIdBimap() );
+		final FocusModel< Spot > focus = new DefaultFocusModel<>( model.getGraphIdBimap() );
+		final HighlightModel< Spot, Link > highlight = new DefaultHighlightModel<>( model.getGraphIdBimap() );
+		final SelectionModelAdapter< Spot, Link, OverlayVertexWrapper< Spot, Link >,
+				OverlayEdgeWrapper< Spot, Link > > viewSelection =
+						new SelectionModelAdapter<>( selection, vertexMap, edgeMap );
+		final FocusModelAdapter< Spot, Link, OverlayVertexWrapper< Spot, Link >,
+				OverlayEdgeWrapper< Spot, Link > > viewFocus =
+						new FocusModelAdapter<>( focus, vertexMap, edgeMap );
+		final HighlightModelAdapter< Spot, Link, OverlayVertexWrapper< Spot, Link >,
+				OverlayEdgeWrapper< Spot, Link > > viewHighlight =
+						new HighlightModelAdapter<>( highlight, vertexMap, edgeMap );
+		final GraphColorGeneratorAdapter< Spot, Link, OverlayVertexWrapper< Spot, Link >,
+				OverlayEdgeWrapper< Spot, Link > > viewColoring =
+						new GraphColorGeneratorAdapter<>( vertexMap, edgeMap );
+		viewColoring.setColorGenerator( new DefaultGraphColorGenerator<>() );
+
+		renderer = new OverlayGraphRenderer<>( viewGraph, viewHighlight, viewFocus, viewSelection, viewColoring );
+		final RenderSettings settings = RenderSettings.defaultStyle().copy();
+		settings.setUseParallelRendering( parallelRendering );
+		renderer.setRenderSettings( settings );
+		renderer.setCanvasSize( WIDTH, HEIGHT );
+
+		// Fit the lineage box into the image, middle slice at z = 0.
+		final double s = WIDTH / 1000.;
+		final AffineTransform3D transform = new AffineTransform3D();
+		transform.set(
+				s, 0, 0, 0,
+				0, s, 0, 0,
+				0, 0, s, -s * 100 );
+		renderer.transformChanged( transform );
+		renderer.timePointChanged( lineage.numTimepoints() / 2 );
+
+		image = new BufferedImage( WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB );
+		graphics = image.createGraphics();
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown()
+	{
+		graphics.dispose();
+	}
+
+	/**
+	 * Renders the overlay from scratch.
+	 */
+	@Benchmark
+	public BufferedImage drawOverlays()
+	{
+		renderer.invalidateLayers();
+		renderer.drawOverlays( graphics );
+		return image;
+	}
+
+	/**
+	 * Draws the overlay again without changes. With parallel rendering, this
+	 * only paints the cached layer.
+	 */
+	@Benchmark
+	public BufferedImage redrawOverlays()
+	{
+		renderer.drawOverlays( graphics );
+		return image;
+	}
+}
@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.mastodon.mamut.io.project.MamutProject;
+import org.mastodon.mamut.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks saving and loading the raw model files of a project, to a
+ * project folder or to a {@code .mastodon} zip file.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g" } )
+public class RawProjectIOBenchmark
+{
+	@Param( { "6", "9" } )
+	public int nDivisions;
+
+	@Param( { "folder", "zip" } )
+	public String format;
+
+	private File tmpDir;
+
+	private Model model;
+
+	private MamutProject saveProject;
+
+	private MamutProject loadProject;
+
+	/**
+	 * The model loaded into. It is reused across invocations, since loading
+	 * clears the graph and every new {@link Model} starts a thread that is
+	 * never stopped.
+	 */
+	private Model target;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException
+	{
+		model = new SyntheticLineage( 50, nDivisions, 5 ).create();
+		target = new Model();
+		tmpDir = Files.createTempDirectory( "mastodon-benchmark" ).toFile();
+		saveProject = createProject( "save" );
+		loadProject = createProject( "load" );
+		try (final MamutProject.ProjectWriter writer = loadProject.openForWriting())
+		{
+			model.saveRaw( writer );
+		}
+	}
+
+	private MamutProject createProject( final String name ) throws IOException
+	{
+		if ( "zip".equals( format ) )
+			return new MamutProject( new File( tmpDir, name + ".mastodon" ) );
+
+		final File folder = new File( tmpDir, name );
+		Files.createDirectories( folder.toPath() );
+		return new MamutProject( folder );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() throws IOException
+	{
+		FileUtils.deleteDirectory( tmpDir );
+	}
+
+	@Benchmark
+	public Object save() throws IOException
+	{
+		try (final MamutProject.ProjectWriter writer = saveProject.openForWriting())
+		{
+			return model.saveRaw( writer );
+		}
+	}
+
+	@Benchmark
+	public Object load() throws IOException
+	{
+		try (final MamutProject.ProjectReader reader = loadProject.openForReading())
+		{
+			return target.loadRaw( reader );
+		}
+	}
+}
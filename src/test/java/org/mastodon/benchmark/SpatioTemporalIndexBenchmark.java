@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mastodon.kdtree.ClipConvexPolytope;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.spatial.SpatioTemporalIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.imglib2.RealPoint;
+import net.imglib2.algorithm.kdtree.ConvexPolytope;
+import net.imglib2.algorithm.kdtree.HyperPlane;
+import net.imglib2.neighborsearch.NearestNeighborSearch;
+
+/**
+ * Benchmarks queries of the {@link SpatioTemporalIndex} of a {@link Model}:
+ * nearest-neighbor searches, as used when clicking on spots, and clipping
+ * with a convex polytope, as used when rendering a view.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g" } )
+public class SpatioTemporalIndexBenchmark
+{
+	private static final int N_QUERIES = 1000;
+
+	@Param( { "6", "9" } )
+	public int nDivisions;
+
+	private SpatioTemporalIndex< Spot > index;
+
+	private int[] queryTimepoints;
+
+	private RealPoint[] queryPoints;
+
+	private ConvexPolytope polytope;
+
+	private int numTimepoints;
+
+	@Setup( Level.Trial )
+	public void setup()
+	{
+		final SyntheticLineage lineage = new SyntheticLineage( 50, nDivisions, 5, 1000, 1000, 200, 5, 1l );
+		final Model model = lineage.create();
+		index = model.getSpatioTemporalIndex();
+		numTimepoints = lineage.numTimepoints();
+
+		final Random random = new Random( 2l );
+		queryTimepoints = new int[ N_QUERIES ];
+		queryPoints = new RealPoint[ N_QUERIES ];
+		for ( int i = 0; i < N_QUERIES; i++ )
+		{
+			queryTimepoints[ i ] = random.nextInt( numTimepoints );
+			queryPoints[ i ] = new RealPoint(
+					1000 * random.nextDouble(),
+					1000 * random.nextDouble(),
+					200 * random.nextDouble() );
+		}
+
+		// A quarter of the field of view, 20 slices thick.
+		polytope = new ConvexPolytope(
+				new HyperPlane( 1, 0, 0, 250 ),
+				new HyperPlane( -1, 0, 0, -750 ),
+				new HyperPlane( 0, 1, 0, 250 ),
+				new HyperPlane( 0, -1, 0, -750 ),
+				new HyperPlane( 0, 0, 1, 90 ),
+				new HyperPlane( 0, 0, -1, -110 ) );
+
+		// Build the per-timepoint trees before measuring.
+		for ( int t = 0; t < numTimepoints; t++ )
+			index.getSpatialIndex( t ).getNearestNeighborSearch();
+	}
+
+	@Benchmark
+	public void nearestNeighborSearch( final Blackhole bh )
+	{
+		index.readLock().lock();
+		try
+		{
+			for ( int i = 0; i < N_QUERIES; i++ )
+			{
+				final NearestNeighborSearch< Spot > nns =
+						index.getSpatialIndex( queryTimepoints[ i ] ).getNearestNeighborSearch();
+				nns.search( queryPoints[ i ] );
+				bh.consume( nns.getSquareDistance() );
+			}
+		}
+		finally
+		{
+			index.readLock().unlock();
+		}
+	}
+
+	@Benchmark
+	public void clipConvexPolytope( final Blackhole bh )
+	{
+		index.readLock().lock();
+		try
+		{
+			for ( int t = 0; t < numTimepoints; t++ )
+			{
+				final ClipConvexPolytope< Spot > ccp = index.getSpatialIndex( t ).getClipConvexPolytope();
+				ccp.clip( polytope );
+				for ( final Spot spot : ccp.getInsideValues() )
+					bh.consume( spot.getInternalPoolIndex() );
+			}
+		}
+		finally
+		{
+			index.readLock().unlock();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mastodon.feature.Feature;
+import org.mastodon.feature.FeatureSpec;
+import org.mastodon.mamut.feature.MamutFeatureComputerService;
+import org.mastodon.mamut.feature.SpotCenterIntensityFeature;
+import org.mastodon.mamut.feature.SpotIntensityFeature;
+import org.mastodon.mamut.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+/**
+ * Benchmarks the computation of the spot intensity features on a synthetic
+ * image in which each spot of a synthetic lineage is drawn as a Gaussian
+ * blob.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g", "-Djava.awt.headless=true" } )
+public class SpotIntensityComputationBenchmark
+{
+	private static final int WIDTH = 256;
+
+	private static final int HEIGHT = 256;
+
+	private static final int DEPTH = 32;
+
+	@Param( { "3", "5" } )
+	public int nDivisions;
+
+	private Context context;
+
+	private MamutFeatureComputerService featureComputerService;
+
+	@Setup( Level.Trial )
+	public void setup()
+	{
+		final SyntheticLineage lineage = new SyntheticLineage( 20, nDivisions, 4, WIDTH, HEIGHT, DEPTH, 3, 1l );
+		final Model model = lineage.create();
+		context = new Context();
+		featureComputerService = MamutFeatureComputerService.newInstance( context );
+		featureComputerService.setModel( model );
+		featureComputerService.setSharedBdvData(
+				SyntheticImage.createBdvData( model, WIDTH, HEIGHT, DEPTH, lineage.numTimepoints() ) );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown()
+	{
+		context.dispose();
+	}
+
+	@Benchmark
+	public Map< FeatureSpec< ?, ? >, Feature< ? > > spotIntensity()
+	{
+		return featureComputerService.compute( true, SpotIntensityFeature.SPEC );
+	}
+
+	@Benchmark
+	public Map< FeatureSpec< ?, ? >, Feature< ? > > spotCenterIntensity()
+	{
+		return featureComputerService.compute( true, SpotCenterIntensityFeature.SPEC );
+	}
+}
@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.benchmark;
+
+import java.util.Random;
+
+import org.mastodon.mamut.ProjectModelTestUtils;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.views.bdv.SharedBigDataViewerData;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Generates synthetic images for benchmarks: a noisy background with one
+ * Gaussian blob per spot of a model.
+ */
+public class SyntheticImage
+{
+
+	private static final float BACKGROUND = 100f;
+
+	private static final float NOISE = 10f;
+
+	private static final float AMPLITUDE = 1000f;
+
+	/**
+	 * Creates an XYZT image with one Gaussian blob at the position of each
+	 * spot of the model. The image has a pixel size of 1, so that the spot
+	 * positions are in pixel coordinates.
+	 *
+	 * @param model
+	 *            the model whose spots are drawn.
+	 * @param width
+	 *            image width.
+	 * @param height
+	 *            image height.
+	 * @param depth
+	 *            number of Z slices.
+	 * @param numTimepoints
+	 *            number of timepoints.
+	 * @param seed
+	 *            seed for the background noise.
+	 * @return a new image.
+	 */
+	public static Img< FloatType > create(
+			final Model model,
+			final int width,
+			final int height,
+			final int depth,
+			final int numTimepoints,
+			final long seed )
+	{
+		final Img< FloatType > img = ArrayImgs.floats( width, height, depth, numTimepoints );
+		final Random random = new Random( seed );
+		for ( final FloatType t : img )
+			t.set( BACKGROUND + NOISE * ( float ) random.nextGaussian() );
+
+		final long[] max = new long[] { width - 1, height - 1, depth - 1 };
+		final long[] min = new long[ 3 ];
+		final long[] top = new long[ 3 ];
+		final double[] pos = new double[ 3 ];
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		for ( final Spot spot : model.getGraph().vertices() )
+		{
+			final int t = spot.getTimepoint();
+			if ( t < 0 || t >= numTimepoints )
+				continue;
+
+			spot.localize( pos );
+			final double sigma = Math.sqrt( spot.getBoundingSphereRadiusSquared() ) / 2;
+			final double r = 3 * sigma;
+			for ( int d = 0; d < 3; d++ )
+			{
+				min[ d ] = Math.max( 0, ( long ) Math.floor( pos[ d ] - r ) );
+				top[ d ] = Math.min( max[ d ], ( long ) Math.ceil( pos[ d ] + r ) );
+			}
+			ra.setPosition( t, 3 );
+			for ( long z = min[ 2 ]; z <= top[ 2 ]; z++ )
+			{
+				ra.setPosition( z, 2 );
+				for ( long y = min[ 1 ]; y <= top[ 1 ]; y++ )
+				{
+					ra.setPosition( y, 1 );
+					for ( long x = min[ 0 ]; x <= top[ 0 ]; x++ )
+					{
+						ra.setPosition( x, 0 );
+						final double dx = x - pos[ 0 ];
+						final double dy = y - pos[ 1 ];
+						final double dz = z - pos[ 2 ];
+						final double r2 = dx * dx + dy * dy + dz * dz;
+						final FloatType v = ra.get();
+						v.set( v.get() + AMPLITUDE * ( float ) Math.exp( -r2 / ( 2 * sigma * sigma ) ) );
+					}
+				}
+			}
+		}
+		return img;
+	}
+
+	/**
+	 * Creates a synthetic image for the specified model and wraps it as
+	 * {@link SharedBigDataViewerData}.
+	 *
+	 * @param model
+	 *            the model whose spots are drawn.
+	 * @param width
+	 *            image width.
+	 * @param height
+	 *            image height.
+	 * @param depth
+	 *            number of Z slices.
+	 * @param numTimepoints
+	 *            number of timepoints.
+	 * @return the image data.
+	 */
+	public static SharedBigDataViewerData createBdvData(
+			final Model model,
+			final int width,
+			final int height,
+			final int depth,
+			final int numTimepoints )
+	{
+		return ProjectModelTestUtils.asSharedBdvDataXyz( create( model, width, height, depth, numTimepoints, 1l ) );
+	}
+}
@@ -0,0 +1,233 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.benchmark;
+
+import java.util.Random;
+
+import org.mastodon.mamut.io.importer.ModelImporter;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+
+/**
+ * Generates reproducible synthetic lineages for benchmarks.
+ * <p>
+ * Each root cell starts at a random position at timepoint 0, moves by a small
+ * random step for {@code nFramesPerDivision} frames and then divides into two
+ * daughters, which do the same. After {@code nDivisions} rounds of division
+ * the cells stop. All spots stay inside the box
+ * {@code [0, width] x [0, height] x [0, depth]}, so that the lineage can be
+ * overlaid on a {@link SyntheticImage} of the same size.
+ * <p>
+ * The number of spots created per root is
+ * {@code nFramesPerDivision * (2^(nDivisions+1) - 1)}, and the spots span
+ * {@link #numTimepoints()} timepoints.
+ */
+public class SyntheticLineage
+{
+	private final int nRoots;
+
+	private final int nDivisions;
+
+	private final int nFramesPerDivision;
+
+	private final double[] size;
+
+	private final double radius;
+
+	private final long seed;
+
+	public SyntheticLineage( final int nRoots, final int nDivisions, final int nFramesPerDivision )
+	{
+		this( nRoots, nDivisions, nFramesPerDivision, 1000, 1000, 200, 5, 1l );
+	}
+
+	public SyntheticLineage(
+			final int nRoots,
+			final int nDivisions,
+			final int nFramesPerDivision,
+			final double width,
+			final double height,
+			final double depth,
+			final double radius,
+			final long seed )
+	{
+		this.nRoots = nRoots;
+		this.nDivisions = nDivisions;
+		this.nFramesPerDivision = nFramesPerDivision;
+		this.size = new double[] { width, height, depth };
+		this.radius = radius;
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the number of spots that {@link #addTo(ModelGraph)} creates.
+	 *
+	 * @return the number of spots.
+	 */
+	public int numSpots()
+	{
+		return nRoots * nFramesPerDivision * ( ( 2 << nDivisions ) - 1 );
+	}
+
+	/**
+	 * Returns the number of timepoints spanned by the lineage.
+	 *
+	 * @return the number of timepoints.
+	 */
+	public int numTimepoints()
+	{
+		return nFramesPerDivision * ( nDivisions + 1 );
+	}
+
+	public double getRadius()
+	{
+		return radius;
+	}
+
+	/**
+	 * Creates a new {@link Model} containing the lineage. Listeners and the
+	 * spatio-temporal index are paused while the spots are added, as is done
+	 * by importers.
+	 *
+	 * @return a new model.
+	 */
+	public Model create()
+	{
+		final Model model = new Model();
+		importTo( model );
+		return model;
+	}
+
+	/**
+	 * Replaces the content of the specified {@link Model} with the lineage.
+	 * Listeners and the spatio-temporal index are paused while the spots are
+	 * added, as is done by importers.
+	 *
+	 * @param model
+	 *            the model to import the lineage into.
+	 */
+	public void importTo( final Model model )
+	{
+		new ModelImporter( model )
+		{
+			{
+				startImport();
+			}
+		};
+		addTo( model.getGraph() );
+		new ModelImporter( model )
+		{
+			{
+				finishImport();
+			}
+		};
+	}
+
+	/**
+	 * Adds the lineage to the specified graph. The same lineage is generated
+	 * each time this method is called.
+	 *
+	 * @param graph
+	 *            the graph to add spots and links to.
+	 */
+	public void addTo( final ModelGraph graph )
+	{
+		final Random random = new Random( seed );
+		final double[] pos = new double[ 3 ];
+		for ( int i = 0; i < nRoots; i++ )
+		{
+			for ( int d = 0; d < 3; d++ )
+				pos[ d ] = radius + random.nextDouble() * ( size[ d ] - 2 * radius );
+			addBranch( graph, null, pos, 0, 0, random );
+		}
+	}
+
+	private void addBranch(
+			final ModelGraph graph,
+			final Spot mother,
+			final double[] start,
+			final int timepoint,
+			final int generation,
+			final Random random )
+	{
+		final Spot previous = graph.vertexRef();
+		final Spot spot = graph.vertexRef();
+		final Link link = graph.edgeRef();
+
+		final double[] pos = start.clone();
+		clamp( pos );
+		for ( int f = 0; f < nFramesPerDivision; f++ )
+		{
+			if ( f > 0 )
+			{
+				for ( int d = 0; d < 3; d++ )
+					pos[ d ] += 0.5 * radius * random.nextGaussian();
+				clamp( pos );
+			}
+			graph.addVertex( spot ).init( timepoint + f, pos, radius );
+			if ( f > 0 )
+				graph.addEdge( previous, spot, link ).init();
+			else if ( mother != null )
+				graph.addEdge( mother, spot, link ).init();
+			previous.refTo( spot );
+		}
+
+		if ( generation < nDivisions )
+		{
+			// Daughters are placed on both sides of the mother.
+			final double[] offset = new double[ 3 ];
+			double norm = 0;
+			for ( int d = 0; d < 3; d++ )
+			{
+				offset[ d ] = random.nextGaussian();
+				norm += offset[ d ] * offset[ d ];
+			}
+			norm = Math.sqrt( norm );
+			final double[] daughterPos = new double[ 3 ];
+			for ( final double sign : new double[] { 1, -1 } )
+			{
+				for ( int d = 0; d < 3; d++ )
+					daughterPos[ d ] = pos[ d ] + sign * radius * offset[ d ] / norm;
+				addBranch( graph, previous, daughterPos, timepoint + nFramesPerDivision, generation + 1, random );
+			}
+		}
+
+		graph.releaseRef( previous );
+		graph.releaseRef( spot );
+		graph.releaseRef( link );
+	}
+
+	private void clamp( final double[] pos )
+	{
+		for ( int d = 0; d < 3; d++ )
+			pos[ d ] = Math.max( radius, Math.min( size[ d ] - radius, pos[ d ] ) );
+	}
+}
@@ -0,0 +1,621 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.scijava.ItemIO.OUTPUT;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.feature.DefaultFeatureComputerService.FeatureComputationStatus;
+import org.mastodon.feature.DefaultFeatureComputerService.FeatureComputationStatusListener;
+import org.scijava.Context;
+import org.scijava.command.CommandService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.plugin.PluginService;
+
+public class DefaultFeatureComputerServiceTest
+{
+
+	/**
+	 * What the computers did, in order: "start X" and "end X" for computer X.
+	 */
+	private static final List< String > events = Collections.synchronizedList( new ArrayList<>() );
+
+	private static DefaultFeatureComputerService service;
+
+	/** Whether computer F throws an exception. */
+	private static volatile boolean failing;
+
+	/** Whether computer B cancels the computation. */
+	private static volatile boolean canceling;
+
+	/** The cancel state of the status given to computer B. */
+	private static volatile boolean statusCanceled;
+
+	/** Holds computers D and E until both have notified their status. */
+	private static volatile CyclicBarrier notified;
+
+	private static volatile CyclicBarrier checked;
+
+	private Context context;
+
+	@Before
+	public void setUp()
+	{
+		events.clear();
+		failing = false;
+		canceling = false;
+		statusCanceled = false;
+		notified = null;
+		checked = null;
+		context = new Context( PluginService.class, CommandService.class, FeatureSpecsService.class );
+		service = new DefaultFeatureComputerService( SchedulerTestComputer.class );
+		context.inject( service );
+		service.initialize();
+		service.setNumThreads( 4 );
+	}
+
+	@After
+	public void tearDown()
+	{
+		context.dispose();
+		service = null;
+	}
+
+	@Test
+	public void testDependenciesAreComputedFirst()
+	{
+		final Map< FeatureSpec< ?, ? >, Feature< ? > > features = service.compute( FC.SPEC, FB.SPEC, FA.SPEC );
+
+		assertTrue( features.get( FA.SPEC ) instanceof FA );
+		assertTrue( features.get( FB.SPEC ) instanceof FB );
+		assertTrue( features.get( FC.SPEC ) instanceof FC );
+		assertBefore( "end A", "start B" );
+		assertBefore( "end A", "start C" );
+		assertBefore( "end B", "start C" );
+	}
+
+	@Test
+	public void testDependenciesAreAddedToTheComputation()
+	{
+		final Map< FeatureSpec< ?, ? >, Feature< ? > > features = service.compute( FC.SPEC );
+
+		assertNotNull( features.get( FA.SPEC ) );
+		assertNotNull( features.get( FB.SPEC ) );
+		assertNotNull( features.get( FC.SPEC ) );
+	}
+
+	@Test
+	public void testErrorIsPropagated()
+	{
+		failing = true;
+		try
+		{
+			service.compute( FG.SPEC, FA.SPEC );
+			fail( "The error of computer F should be rethrown." );
+		}
+		catch ( final IllegalStateException e )
+		{
+			assertEquals( "F failed", e.getMessage() );
+		}
+		assertTrue( events.contains( "end A" ) );
+		assertFalse( "A computer depending on a failed one must not run.", events.contains( "start G" ) );
+
+		// The next computation is not affected.
+		failing = false;
+		events.clear();
+		final Map< FeatureSpec< ?, ? >, Feature< ? > > features = service.compute( FG.SPEC );
+		assertFalse( service.isCanceled() );
+		assertNotNull( features.get( FG.SPEC ) );
+	}
+
+	@Test
+	public void testCancel()
+	{
+		canceling = true;
+		final Map< FeatureSpec< ?, ? >, Feature< ? > > features = service.compute( FC.SPEC );
+
+		assertTrue( service.isCanceled() );
+		assertEquals( "test", service.getCancelReason() );
+		assertTrue( "The status of the running computer must be canceled.", statusCanceled );
+		assertFalse( "Computers not started yet must not run after cancel.", events.contains( "start C" ) );
+		assertNotNull( features.get( FA.SPEC ) );
+		assertFalse( features.containsKey( FC.SPEC ) );
+
+		// A new computation clears the cancel state.
+		canceling = false;
+		events.clear();
+		final Map< FeatureSpec< ?, ? >, Feature< ? > > recomputed = service.compute( FC.SPEC );
+		assertFalse( service.isCanceled() );
+		assertFalse( statusCanceled );
+		assertNotNull( recomputed.get( FC.SPEC ) );
+	}
+
+	@Test
+	public void testConcurrentStatusMessagesAreCombined()
+	{
+		notified = new CyclicBarrier( 2 );
+		checked = new CyclicBarrier( 2 );
+		final List< String > statuses = Collections.synchronizedList( new ArrayList<>() );
+		final List< Double > progresses = Collections.synchronizedList( new ArrayList<>() );
+		service.computationStatusListeners().add( new FeatureComputationStatusListener()
+		{
+			@Override
+			public void status( final String status )
+			{
+				statuses.add( status );
+			}
+
+			@Override
+			public void progress( final double progress )
+			{
+				progresses.add( progress );
+			}
+
+			@Override
+			public void clear()
+			{}
+		} );
+
+		service.compute( FD.SPEC, FE.SPEC );
+
+		boolean combined = false;
+		for ( final String status : statuses )
+			combined |= status.contains( "D: working on D" ) && status.contains( "E: working on E" );
+		assertTrue( "The message of one computer must not hide the other: " + statuses, combined );
+		assertTrue( progresses.contains( 0.5 ) );
+		assertEquals( 1., progresses.get( progresses.size() - 1 ), 0. );
+	}
+
+	@Test
+	public void testDetachedStatus()
+	{
+		final FeatureComputationStatus status = FeatureComputationStatus.detached();
+		status.notifyStatus( "status" );
+		status.notifyProgress( 0.5 );
+		assertFalse( status.isCanceled() );
+		status.cancel( "reason" );
+		assertTrue( status.isCanceled() );
+		assertEquals( "reason", status.getCancelReason() );
+	}
+
+	private static void assertBefore( final String first, final String second )
+	{
+		final int i1 = events.indexOf( first );
+		final int i2 = events.indexOf( second );
+		assertTrue( first + " not found in " + events, i1 >= 0 );
+		assertTrue( second + " not found in " + events, i2 >= 0 );
+		assertTrue( "Expected " + first + " before " + second + " in " + events, i1 < i2 );
+	}
+
+	private static void await( final CyclicBarrier barrier )
+	{
+		try
+		{
+			barrier.await( 10, TimeUnit.SECONDS );
+		}
+		catch ( final Exception e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+
+	/*
+	 * Features.
+	 */
+
+	public static class TestObject
+	{}
+
+	public static abstract class TestFeature implements Feature< TestObject >
+	{
+		@Override
+		public FeatureProjection< TestObject > project( final FeatureProjectionKey key )
+		{
+			return null;
+		}
+
+		@Override
+		public Set< FeatureProjection< TestObject > > projections()
+		{
+			return Collections.emptySet();
+		}
+
+		@Override
+		public void invalidate( final TestObject obj )
+		{}
+	}
+
+	public static class FA extends TestFeature
+	{
+		public static final Spec SPEC = new Spec();
+
+		@Plugin( type = FeatureSpec.class )
+		public static class Spec extends FeatureSpec< FA, TestObject >
+		{
+			public Spec()
+			{
+				super( "Scheduler test A", "No dependency.", FA.class, TestObject.class, Multiplicity.SINGLE );
+			}
+		}
+
+		@Override
+		public Spec getSpec()
+		{
+			return SPEC;
+		}
+	}
+
+	public static class FB extends TestFeature
+	{
+		public static final Spec SPEC = new Spec();
+
+		@Plugin( type = FeatureSpec.class )
+		public static class Spec extends FeatureSpec< FB, TestObject >
+		{
+			public Spec()
+			{
+				super( "Scheduler test B", "Depends on A.", FB.class, TestObject.class, Multiplicity.SINGLE );
+			}
+		}
+
+		@Override
+		public Spec getSpec()
+		{
+			return SPEC;
+		}
+	}
+
+	public static class FC extends TestFeature
+	{
+		public static final Spec SPEC = new Spec();
+
+		@Plugin( type = FeatureSpec.class )
+		public static class Spec extends FeatureSpec< FC, TestObject >
+		{
+			public Spec()
+			{
+				super( "Scheduler test C", "Depends on A and B.", FC.class, TestObject.class, Multiplicity.SINGLE );
+			}
+		}
+
+		@Override
+		public Spec getSpec()
+		{
+			return SPEC;
+		}
+	}
+
+	public static class FD extends TestFeature
+	{
+		public static final Spec SPEC = new Spec();
+
+		@Plugin( type = FeatureSpec.class )
+		public static class Spec extends FeatureSpec< FD, TestObject >
+		{
+			public Spec()
+			{
+				super( "Scheduler test D", "No dependency.", FD.class, TestObject.class, Multiplicity.SINGLE );
+			}
+		}
+
+		@Override
+		public Spec getSpec()
+		{
+			return SPEC;
+		}
+	}
+
+	public static class FE extends TestFeature
+	{
+		public static final Spec SPEC = new Spec();
+
+		@Plugin( type = FeatureSpec.class )
+		public static class Spec extends FeatureSpec< FE, TestObject >
+		{
+			public Spec()
+			{
+				super( "Scheduler test E", "No dependency.", FE.class, TestObject.class, Multiplicity.SINGLE );
+			}
+		}
+
+		@Override
+		public Spec getSpec()
+		{
+			return SPEC;
+		}
+	}
+
+	public static class FF extends TestFeature
+	{
+		public static final Spec SPEC = new Spec();
+
+		@Plugin( type = FeatureSpec.class )
+		public static class Spec extends FeatureSpec< FF, TestObject >
+		{
+			public Spec()
+			{
+				super( "Scheduler test F", "Depends on A.", FF.class, TestObject.class, Multiplicity.SINGLE );
+			}
+		}
+
+		@Override
+		public Spec getSpec()
+		{
+			return SPEC;
+		}
+	}
+
+	public static class FG extends TestFeature
+	{
+		public static final Spec SPEC = new Spec();
+
+		@Plugin( type = FeatureSpec.class )
+		public static class Spec extends FeatureSpec< FG, TestObject >
+		{
+			public Spec()
+			{
+				super( "Scheduler test G", "Depends on F.", FG.class, TestObject.class, Multiplicity.SINGLE );
+			}
+		}
+
+		@Override
+		public Spec getSpec()
+		{
+			return SPEC;
+		}
+	}
+
+	/*
+	 * Computers.
+	 */
+
+	/**
+	 * The type of the computers discovered by the service under test, so that
+	 * it ignores the other computers of the classpath.
+	 */
+	public interface SchedulerTestComputer extends FeatureComputer
+	{}
+
+	public static abstract class TestComputer implements SchedulerTestComputer
+	{
+		@Parameter
+		protected FeatureComputationStatus status;
+
+		private final String name;
+
+		protected TestComputer( final String name )
+		{
+			this.name = name;
+		}
+
+		@Override
+		public void run()
+		{
+			events.add( "start " + name );
+			compute();
+			events.add( "end " + name );
+		}
+
+		protected void compute()
+		{}
+	}
+
+	@Plugin( type = SchedulerTestComputer.class )
+	public static class FCA extends TestComputer
+	{
+		@Parameter( type = OUTPUT )
+		private FA output;
+
+		public FCA()
+		{
+			super( "A" );
+		}
+
+		@Override
+		public void createOutput()
+		{
+			output = new FA();
+		}
+	}
+
+	@Plugin( type = SchedulerTestComputer.class )
+	public static class FCB extends TestComputer
+	{
+		@Parameter
+		private FA a;
+
+		@Parameter( type = OUTPUT )
+		private FB output;
+
+		public FCB()
+		{
+			super( "B" );
+		}
+
+		@Override
+		public void createOutput()
+		{
+			if ( a == null )
+				throw new IllegalStateException( "inputs not set!" );
+			output = new FB();
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( canceling )
+				service.cancel( "test" );
+			statusCanceled = status.isCanceled();
+		}
+	}
+
+	@Plugin( type = SchedulerTestComputer.class )
+	public static class FCC extends TestComputer
+	{
+		@Parameter
+		private FA a;
+
+		@Parameter
+		private FB b;
+
+		@Parameter( type = OUTPUT )
+		private FC output;
+
+		public FCC()
+		{
+			super( "C" );
+		}
+
+		@Override
+		public void createOutput()
+		{
+			if ( a == null || b == null )
+				throw new IllegalStateException( "inputs not set!" );
+			output = new FC();
+		}
+	}
+
+	@Plugin( type = SchedulerTestComputer.class )
+	public static class FCD extends TestComputer
+	{
+		@Parameter( type = OUTPUT )
+		private FD output;
+
+		public FCD()
+		{
+			super( "D" );
+		}
+
+		@Override
+		public void createOutput()
+		{
+			output = new FD();
+		}
+
+		@Override
+		protected void compute()
+		{
+			status.notifyStatus( "working on D" );
+			await( notified );
+			await( checked );
+		}
+	}
+
+	@Plugin( type = SchedulerTestComputer.class )
+	public static class FCE extends TestComputer
+	{
+		@Parameter( type = OUTPUT )
+		private FE output;
+
+		public FCE()
+		{
+			super( "E" );
+		}
+
+		@Override
+		public void createOutput()
+		{
+			output = new FE();
+		}
+
+		@Override
+		protected void compute()
+		{
+			await( notified );
+			status.notifyStatus( "working on E" );
+			status.notifyProgress( 0. );
+			await( checked );
+		}
+	}
+
+	@Plugin( type = SchedulerTestComputer.class )
+	public static class FCF extends TestComputer
+	{
+		@Parameter
+		private FA a;
+
+		@Parameter( type = OUTPUT )
+		private FF output;
+
+		public FCF()
+		{
+			super( "F" );
+		}
+
+		@Override
+		public void createOutput()
+		{
+			output = new FF();
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( failing )
+				throw new IllegalStateException( "F failed" );
+		}
+	}
+
+	@Plugin( type = SchedulerTestComputer.class )
+	public static class FCG extends TestComputer
+	{
+		@Parameter
+		private FF f;
+
+		@Parameter( type = OUTPUT )
+		private FG output;
+
+		public FCG()
+		{
+			super( "G" );
+		}
+
+		@Override
+		public void createOutput()
+		{
+			output = new FG();
+		}
+	}
+}
@@ -0,0 +1,258 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.feature.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link FeatureColumns}.
+ */
+public class FeatureColumnsTest
+{
+
+	@Test
+	public void testDenseColumnsAreStoredInIdOrder() throws IOException
+	{
+		final int[] ids = { 2, 0, 3, 1 };
+		final double[] values = { 20., 0., 30., 10. };
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream( bytes ))
+		{
+			final boolean dense = FeatureColumns.writeIdColumn( ids, ids.length, out );
+			assertTrue( dense );
+			FeatureColumns.writeValueColumn( values, ids, ids.length, dense, out );
+		}
+
+		try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ))
+		{
+			final FeatureColumns.IdColumn idColumn = FeatureColumns.readIdColumn( in );
+			assertTrue( idColumn.isDense() );
+			assertEquals( 4, idColumn.size() );
+			final double[] read = FeatureColumns.readDoubleColumn( idColumn.size(), in );
+			assertArrayEquals( new double[] { 0., 10., 20., 30. }, read, 0. );
+			for ( int i = 0; i < idColumn.size(); i++ )
+				assertEquals( i, idColumn.id( i ) );
+		}
+	}
+
+	@Test
+	public void testSparseColumnsKeepIds() throws IOException
+	{
+		final int[] ids = { 7, 3, 12 };
+		final int[] values = { -1, 42, Integer.MIN_VALUE };
+		assertFalse( FeatureColumns.isDense( ids, ids.length ) );
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream( bytes ))
+		{
+			final boolean dense = FeatureColumns.writeIdColumn( ids, ids.length, out );
+			assertFalse( dense );
+			FeatureColumns.writeValueColumn( values, ids, ids.length, dense, out );
+		}
+
+		try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ))
+		{
+			final FeatureColumns.IdColumn idColumn = FeatureColumns.readIdColumn( in );
+			assertFalse( idColumn.isDense() );
+			final int[] read = FeatureColumns.readIntColumn( idColumn.size(), in );
+			for ( int i = 0; i < ids.length; i++ )
+			{
+				assertEquals( ids[ i ], idColumn.id( i ) );
+				assertEquals( values[ i ], read[ i ] );
+			}
+		}
+	}
+
+	@Test
+	public void testDuplicateIdsAreNotDense()
+	{
+		assertFalse( FeatureColumns.isDense( new int[] { 0, 0, 1 }, 3 ) );
+		assertFalse( FeatureColumns.isDense( new int[] { -1, 0 }, 2 ) );
+		assertTrue( FeatureColumns.isDense( new int[ 0 ], 0 ) );
+	}
+
+	@Test
+	public void testColumnsInObjectStream() throws IOException
+	{
+		final int n = 10_000;
+		final double[] constant = new double[ n ];
+		final double[] random = new double[ n ];
+		final Random ran = new Random( 1l );
+		for ( int i = 0; i < n; i++ )
+		{
+			constant[ i ] = 3.5;
+			random[ i ] = ran.nextDouble();
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream( bytes ))
+		{
+			oos.writeUTF( "before" );
+			FeatureColumns.writeColumn( constant, n, oos );
+			FeatureColumns.writeColumn( random, n, oos );
+			oos.writeUTF( "after" );
+		}
+
+		try (ObjectInputStream ois = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ))
+		{
+			assertEquals( "before", ois.readUTF() );
+			assertArrayEquals( constant, FeatureColumns.readDoubleColumn( n, ois ), 0. );
+			assertArrayEquals( random, FeatureColumns.readDoubleColumn( n, ois ), 0. );
+			assertEquals( "after", ois.readUTF() );
+		}
+	}
+
+	@Test( expected = IOException.class )
+	public void testLengthMismatchIsReported() throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream( bytes ))
+		{
+			FeatureColumns.writeColumn( new int[] { 1, 2, 3 }, 3, out );
+		}
+		try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ))
+		{
+			FeatureColumns.readIntColumn( 4, in );
+		}
+	}
+
+	@Test
+	public void testLargeColumnsAreDeflated() throws IOException
+	{
+		final int n = 10_000;
+		final int[] ids = new int[ n ];
+		for ( int i = 0; i < n; i++ )
+			ids[ i ] = 2 * i;
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream( bytes ))
+		{
+			assertFalse( FeatureColumns.writeIdColumn( ids, n, out ) );
+		}
+		final byte[] written = bytes.toByteArray();
+		assertEquals( FeatureColumns.DEFLATE, written[ Integer.BYTES + 1 ] );
+		assertTrue( written.length < n * Integer.BYTES / 2 );
+
+		try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( written ) ))
+		{
+			final FeatureColumns.IdColumn idColumn = FeatureColumns.readIdColumn( in );
+			assertEquals( n, idColumn.size() );
+			for ( int i = 0; i < n; i++ )
+				assertEquals( ids[ i ], idColumn.id( i ) );
+		}
+	}
+
+	@Test
+	public void testIncompressibleColumnsAreRaw() throws IOException
+	{
+		final int n = 1_000;
+		final int[] values = new int[ n ];
+		final Random ran = new Random( 1l );
+		for ( int i = 0; i < n; i++ )
+			values[ i ] = ran.nextInt();
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream( bytes ))
+		{
+			FeatureColumns.writeColumn( values, n, out );
+		}
+		final byte[] written = bytes.toByteArray();
+		assertEquals( FeatureColumns.RAW, written[ 0 ] );
+		try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( written ) ))
+		{
+			assertArrayEquals( values, FeatureColumns.readIntColumn( n, in ) );
+		}
+	}
+
+	@Test( expected = IOException.class )
+	public void testDeflatedLengthMismatchIsReported() throws IOException
+	{
+		final double[] values = new double[ 1_000 ];
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream( bytes ))
+		{
+			FeatureColumns.writeColumn( values, values.length, out );
+		}
+		try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ))
+		{
+			FeatureColumns.readDoubleColumn( values.length + 1, in );
+		}
+	}
+
+	@Test( expected = IOException.class )
+	public void testNegativeCountIsReported() throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream( bytes ))
+		{
+			out.writeInt( -3 );
+			out.writeBoolean( false );
+		}
+		try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ))
+		{
+			FeatureColumns.readIdColumn( in );
+		}
+	}
+
+	@Test( expected = IOException.class )
+	public void testCorruptedCountFailsBeforeAllocating() throws IOException
+	{
+		// A count of 2^28 values declares 1 GB of ints, with no data.
+		final int n = 1 << 28;
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream( bytes ))
+		{
+			out.writeInt( n );
+			out.writeBoolean( true );
+			out.writeByte( FeatureColumns.RAW );
+			out.writeInt( n * Integer.BYTES );
+			out.write( new byte[ 100 ] );
+		}
+		try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ))
+		{
+			final FeatureColumns.IdColumn idColumn = FeatureColumns.readIdColumn( in );
+			FeatureColumns.readIntColumn( idColumn.size(), in );
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+package org.mastodon.feature.update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mastodon.feature.update.GraphUpdate.Changes;
+import org.mastodon.mamut.feature.LinkDisplacementFeature;
+import org.mastodon.mamut.feature.SpotCenterIntensityFeature;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.mamut.model.SpotPool;
+
+/**
+ * Tests {@link GraphUpdateTracker} and {@link GraphUpdate}.
+ */
+public class GraphUpdateTrackerTest
+{
+
+	private ModelGraph graph;
+
+	private GraphUpdateTracker< Spot, Link > tracker;
+
+	private Spot a;
+
+	private Spot b;
+
+	private Spot c;
+
+	private Link ab;
+
+	private Link bc;
+
+	@Before
+	public void setUp()
+	{
+		graph = new Model().getGraph();
+		tracker = new GraphUpdateTracker<>( graph );
+		graph.addGraphListener( tracker );
+		final SpotPool spotPool = ( SpotPool ) graph.vertices().getRefPool();
+		spotPool.positionProperty().propertyChangeListeners().add( tracker );
+		spotPool.covarianceProperty().propertyChangeListeners().add( tracker );
+
+		a = graph.addVertex().init( 0, new double[] { 0, 0, 0 }, 1. );
+		b = graph.addVertex().init( 1, new double[] { 1, 0, 0 }, 1. );
+		c = graph.addVertex().init( 2, new double[] { 2, 0, 0 }, 1. );
+		ab = graph.addEdge( a, b ).init();
+		bc = graph.addEdge( b, c ).init();
+	}
+
+	@Test
+	public void testFirstUpdateIsFull()
+	{
+		final GraphUpdate< Spot, Link > update = tracker.getUpdate( SpotCenterIntensityFeature.SPEC );
+		final Changes< Spot, Link > first = update.poll();
+		assertTrue( first.isFull() );
+		assertTrue( first.vertices().isEmpty() );
+		assertTrue( first.edges().isEmpty() );
+
+		final Changes< Spot, Link > second = update.poll();
+		assertFalse( second.isFull() );
+		assertTrue( second.vertices().isEmpty() );
+		assertTrue( second.edges().isEmpty() );
+	}
+
+	@Test
+	public void testAddedObjectsAndTheirNeighborsAreTracked()
+	{
+		final GraphUpdate< Spot, Link > update = tracker.getUpdate( SpotCenterIntensityFeature.SPEC );
+		update.poll();
+
+		final Spot d = graph.addVertex().init( 3, new double[] { 3, 0, 0 }, 1. );
+		final Link cd = graph.addEdge( c, d ).init();
+
+		final Changes< Spot, Link > changes = update.poll();
+		assertFalse( changes.isFull() );
+		assertEquals( 2, changes.vertices().size() );
+		assertTrue( changes.vertices().contains( c ) );
+		assertTrue( changes.vertices().contains( d ) );
+		assertEquals( 1, changes.edges().size() );
+		assertTrue( changes.edges().contains( cd ) );
+	}
+
+	@Test
+	public void testRemovedObjectsAreDroppedAndTheirNeighborsTracked()
+	{
+		final GraphUpdate< Spot, Link > update = tracker.getUpdate( SpotCenterIntensityFeature.SPEC );
+		update.poll();
+
+		// Removing c also removes bc, which marks b as changed.
+		graph.remove( c );
+
+		final Changes< Spot, Link > changes = update.poll();
+		assertFalse( changes.isFull() );
+		assertEquals( 1, changes.vertices().size() );
+		assertTrue( changes.vertices().contains( b ) );
+		assertTrue( changes.edges().isEmpty() );
+
+		// Objects changed and then removed before the poll are not reported.
+		final Spot d = graph.addVertex().init( 3, new double[] { 3, 0, 0 }, 1. );
+		graph.remove( d );
+		assertTrue( update.poll().vertices().isEmpty() );
+	}
+
+	@Test
+	public void testMovedVertexMarksItsEdges()
+	{
+		final GraphUpdate< Spot, Link > update = tracker.getUpdate( LinkDisplacementFeature.SPEC );
+		update.poll();
+
+		b.setPosition( new double[] { 1, 5, 0 } );
+
+		final Changes< Spot, Link > changes = update.poll();
+		assertFalse( changes.isFull() );
+		assertEquals( 1, changes.vertices().size() );
+		assertTrue( changes.vertices().contains( b ) );
+		assertEquals( 2, changes.edges().size() );
+		assertTrue( changes.edges().contains( ab ) );
+		assertTrue( changes.edges().contains( bc ) );
+	}
+
+	@Test
+	public void testPollResetsAfterComputation()
+	{
+		final GraphUpdate< Spot, Link > update = tracker.getUpdate( SpotCenterIntensityFeature.SPEC );
+		update.poll();
+
+		a.setPosition( new double[] { 0, 1, 0 } );
+		final Changes< Spot, Link > computed = update.poll();
+		assertTrue( computed.vertices().contains( a ) );
+
+		// The next computation only sees what changed since the last one.
+		c.setPosition( new double[] { 2, 1, 0 } );
+		final Changes< Spot, Link > next = update.poll();
+		assertEquals( 1, next.vertices().size() );
+		assertTrue( next.vertices().contains( c ) );
+		assertEquals( 1, next.edges().size() );
+		assertTrue( next.edges().contains( bc ) );
+
+		// The polled snapshot is not affected by later changes.
+		assertEquals( 1, computed.vertices().size() );
+		assertTrue( update.poll().vertices().isEmpty() );
+	}
+
+	@Test
+	public void testRestoreAfterCanceledComputation()
+	{
+		final GraphUpdate< Spot, Link > update = tracker.getUpdate( SpotCenterIntensityFeature.SPEC );
+		update.poll();
+
+		a.setPosition( new double[] { 0, 1, 0 } );
+		final Changes< Spot, Link > canceled = update.poll();
+		c.setPosition( new double[] { 2, 1, 0 } );
+		update.restore( canceled );
+
+		final Changes< Spot, Link > changes = update.poll();
+		assertEquals( 2, changes.vertices().size() );
+		assertTrue( changes.vertices().contains( a ) );
+		assertTrue( changes.vertices().contains( c ) );
+	}
+
+	@Test
+	public void testEachFeatureHasItsOwnUpdate()
+	{
+		final GraphUpdate< Spot, Link > spotUpdate = tracker.getUpdate( SpotCenterIntensityFeature.SPEC );
+		final GraphUpdate< Spot, Link > linkUpdate = tracker.getUpdate( LinkDisplacementFeature.SPEC );
+		spotUpdate.poll();
+		linkUpdate.poll();
+
+		a.setPosition( new double[] { 0, 1, 0 } );
+		assertTrue( spotUpdate.poll().vertices().contains( a ) );
+
+		// Polling one feature does not reset the other.
+		final Changes< Spot, Link > changes = linkUpdate.poll();
+		assertTrue( changes.vertices().contains( a ) );
+		assertTrue( changes.edges().contains( ab ) );
+	}
+
+	@Test
+	public void testManyChangesAndRebuildBecomeFull()
+	{
+		final GraphUpdate< Spot, Link > update = tracker.getUpdate( SpotCenterIntensityFeature.SPEC );
+		update.poll();
+
+		for ( int i = 0; i < 2000; i++ )
+			graph.addVertex().init( 0, new double[] { i, 0, 0 }, 1. );
+		final Changes< Spot, Link > many = update.poll();
+		assertTrue( many.isFull() );
+		assertTrue( many.vertices().isEmpty() );
+
+		tracker.graphRebuilt();
+		assertTrue( update.poll().isFull() );
+		assertFalse( update.poll().isFull() );
+	}
+}
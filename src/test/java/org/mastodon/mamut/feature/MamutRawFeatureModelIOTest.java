@@ -0,0 +1,166 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.mastodon.feature.Feature;
+import org.mastodon.feature.FeatureModel;
+import org.mastodon.graph.io.RawGraphIO;
+import org.mastodon.mamut.ProjectModelTestUtils;
+import org.mastodon.mamut.feature.branch.exampleGraph.ExampleGraph2;
+import org.mastodon.mamut.io.importer.ModelImporter;
+import org.mastodon.mamut.io.project.MamutProject;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.scijava.Context;
+
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.util.Cast;
+
+public class MamutRawFeatureModelIOTest
+{
+
+	@Test
+	public void testFeatureIsLoadedOnFirstAccess() throws IOException
+	{
+		try (Context context = new Context())
+		{
+			final ExampleGraph2 exampleGraph2 = new ExampleGraph2();
+			final Model model = exampleGraph2.getModel();
+			final Feature< Spot > feature = FeatureComputerTestUtils.getFeature( context, model, SpotTrackIDFeature.SPEC );
+
+			final Model modelReloaded = saveAndReloadLazily( context, model );
+			final FeatureModel featureModel = modelReloaded.getFeatureModel();
+			assertTrue( featureModel.isPending( SpotTrackIDFeature.SPEC ) );
+			assertTrue( featureModel.getFeatureSpecs().contains( SpotTrackIDFeature.SPEC ) );
+
+			final Feature< Spot > featureReloaded = Cast.unchecked( featureModel.getFeature( SpotTrackIDFeature.SPEC ) );
+			assertFalse( featureModel.isPending( SpotTrackIDFeature.SPEC ) );
+			assertTrue( FeatureSerializerTestUtils.checkFeatureProjectionEquality( feature, featureReloaded, model.getGraph().vertices() ) );
+		}
+	}
+
+	@Test
+	public void testPendingFeaturesAreLoadedBeforeFirstEdit() throws IOException
+	{
+		try (Context context = new Context())
+		{
+			final ExampleGraph2 exampleGraph2 = new ExampleGraph2();
+			final Model model = exampleGraph2.getModel();
+			final Feature< Spot > feature = FeatureComputerTestUtils.getFeature( context, model, SpotTrackIDFeature.SPEC );
+
+			final Model modelReloaded = saveAndReloadLazily( context, model );
+			final FeatureModel featureModel = modelReloaded.getFeatureModel();
+			assertTrue( featureModel.isPending( SpotTrackIDFeature.SPEC ) );
+
+			modelReloaded.getGraph().addVertex().init( 0, new double[] { 0, 0, 0 }, 1 );
+			assertFalse( featureModel.isPending( SpotTrackIDFeature.SPEC ) );
+
+			final Feature< Spot > featureReloaded = Cast.unchecked( featureModel.getFeature( SpotTrackIDFeature.SPEC ) );
+			assertTrue( FeatureSerializerTestUtils.checkFeatureProjectionEquality( feature, featureReloaded, model.getGraph().vertices() ) );
+		}
+	}
+
+	@Test
+	public void testPendingFeaturesAreDroppedOnRebuild() throws IOException
+	{
+		try (Context context = new Context())
+		{
+			final ExampleGraph2 exampleGraph2 = new ExampleGraph2();
+			final Model model = exampleGraph2.getModel();
+			FeatureComputerTestUtils.getFeature( context, model, SpotTrackIDFeature.SPEC );
+
+			final Model modelReloaded = saveAndReloadLazily( context, model );
+			final FeatureModel featureModel = modelReloaded.getFeatureModel();
+			assertTrue( featureModel.isPending( SpotTrackIDFeature.SPEC ) );
+
+			new ModelImporter( modelReloaded )
+			{
+				{
+					startImport();
+					finishImport();
+				}
+			};
+			assertFalse( featureModel.isPending( SpotTrackIDFeature.SPEC ) );
+			assertFalse( featureModel.getFeatureSpecs().contains( SpotTrackIDFeature.SPEC ) );
+			assertNull( featureModel.getFeature( SpotTrackIDFeature.SPEC ) );
+		}
+	}
+
+	@Test
+	public void testFeaturesStayPendingWhenProjectModelIsCreated() throws IOException
+	{
+		try (Context context = new Context())
+		{
+			final ExampleGraph2 exampleGraph2 = new ExampleGraph2();
+			final Model model = exampleGraph2.getModel();
+			FeatureComputerTestUtils.getFeature( context, model, SpotTrackIDFeature.SPEC );
+
+			final Model modelReloaded = saveAndReloadLazily( context, model );
+			final FeatureModel featureModel = modelReloaded.getFeatureModel();
+			final File mastodonFile = File.createTempFile( "test", ".mastodon" );
+			ProjectModelTestUtils.wrapAsAppModel( ArrayImgs.floats( 1, 1, 1 ), modelReloaded, context, mastodonFile );
+			assertTrue( featureModel.isPending( SpotTrackIDFeature.SPEC ) );
+
+			// Moving a spot loads the feature, so that its value is invalidated.
+			final Spot spot = modelReloaded.getGraph().vertices().iterator().next();
+			spot.move( 1., 0 );
+			assertFalse( featureModel.isPending( SpotTrackIDFeature.SPEC ) );
+		}
+	}
+
+	private static Model saveAndReloadLazily( final Context context, final Model model ) throws IOException
+	{
+		final File projectRoot = Files.createTempDirectory( "mamut" ).toFile();
+		final File datasetXmlFile = Files.createTempFile( "project", ".xml" ).toFile();
+		final MamutProject project = new MamutProject( projectRoot, datasetXmlFile );
+		try (MamutProject.ProjectWriter writer = project.openForWriting())
+		{
+			final RawGraphIO.GraphToFileIdMap< Spot, Link > graphToFileIdMap = model.saveRaw( writer );
+			MamutRawFeatureModelIO.serialize( context, model, graphToFileIdMap, writer );
+		}
+
+		final Model modelReloaded = new Model();
+		try (MamutProject.ProjectReader reader = project.openForReading())
+		{
+			final RawGraphIO.FileIdToGraphMap< Spot, Link > fileIdToGraphMap = modelReloaded.loadRaw( reader );
+			MamutRawFeatureModelIO.deserializeLazily( context, modelReloaded, fileIdToGraphMap, projectRoot, reader );
+		}
+		return modelReloaded;
+	}
+}
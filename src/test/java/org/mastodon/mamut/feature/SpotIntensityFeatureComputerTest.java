@@ -0,0 +1,166 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mastodon.mamut.ProjectModelTestUtils;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.Spot;
+import org.scijava.Context;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class SpotIntensityFeatureComputerTest
+{
+
+	@Test
+	public void testSelectMatchesSortedMedian()
+	{
+		final Random ran = new Random( 42 );
+		for ( int trial = 0; trial < 100; trial++ )
+		{
+			final int size = 2 + ran.nextInt( 500 );
+			final double[] array = new double[ size + 10 ];
+			for ( int i = 0; i < array.length; i++ )
+				array[ i ] = ran.nextInt( 50 ); // Many duplicates.
+
+			final double[] sorted = Arrays.copyOf( array, size );
+			Arrays.sort( sorted );
+			assertEquals( sorted[ size / 2 ], SpotIntensityFeatureComputer.select( array, size, size / 2 ), 0. );
+		}
+	}
+
+	@Test
+	public void testSelectExtremes()
+	{
+		final double[] array = new double[] { 5., 3., 9., 1., 7. };
+		assertEquals( 1., SpotIntensityFeatureComputer.select( array.clone(), 5, 0 ), 0. );
+		assertEquals( 9., SpotIntensityFeatureComputer.select( array.clone(), 5, 4 ), 0. );
+		assertEquals( 5., SpotIntensityFeatureComputer.select( array.clone(), 5, 2 ), 0. );
+	}
+
+	@Test
+	public void testParallelComputationMatchesSequential()
+	{
+		final int width = 40;
+		final int height = 40;
+		final int depth = 10;
+		final int numTimepoints = 6;
+
+		// Spots at integer positions in an image that is linear in x, y, z, t.
+		final Model model = new Model();
+		final Random ran = new Random( 1l );
+		final double[] pos = new double[ 3 ];
+		for ( int t = 0; t < numTimepoints; t++ )
+		{
+			for ( int i = 0; i < 15; i++ )
+			{
+				pos[ 0 ] = 3 + ran.nextInt( width - 6 );
+				pos[ 1 ] = 3 + ran.nextInt( height - 6 );
+				pos[ 2 ] = 3 + ran.nextInt( depth - 6 );
+				model.getGraph().addVertex().init( t, pos, 2. );
+			}
+		}
+		final Img< FloatType > img = ArrayImgs.floats( width, height, depth, numTimepoints );
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursor.get().set( value( cursor.getIntPosition( 0 ), cursor.getIntPosition( 1 ),
+					cursor.getIntPosition( 2 ), cursor.getIntPosition( 3 ) ) );
+		}
+
+		final Context context = new Context();
+		try
+		{
+			final MamutFeatureComputerService service = MamutFeatureComputerService.newInstance( context );
+			service.setModel( model );
+			service.setSharedBdvData( ProjectModelTestUtils.asSharedBdvDataXyz( img ) );
+			final SpotIntensityFeatureComputer computer =
+					( SpotIntensityFeatureComputer ) service.getFeatureComputerFor( SpotIntensityFeature.SPEC );
+
+			computer.setNumThreads( 1 );
+			final List< double[] > sequential = values( model,
+					( SpotIntensityFeature ) service.compute( true, SpotIntensityFeature.SPEC ).get( SpotIntensityFeature.SPEC ) );
+
+			computer.setNumThreads( 4 );
+			final List< double[] > parallel = values( model,
+					( SpotIntensityFeature ) service.compute( true, SpotIntensityFeature.SPEC ).get( SpotIntensityFeature.SPEC ) );
+
+			assertFalse( service.isCanceled() );
+			assertEquals( model.getGraph().vertices().size(), parallel.size() );
+			for ( int i = 0; i < sequential.size(); i++ )
+				assertTrue( "Spot " + i, Arrays.equals( sequential.get( i ), parallel.get( i ) ) );
+
+			// The mean of a linear image over a centered ellipsoid is the value at the center.
+			int i = 0;
+			for ( final Spot spot : model.getGraph().vertices() )
+			{
+				final double expected = value( ( int ) spot.getDoublePosition( 0 ), ( int ) spot.getDoublePosition( 1 ),
+						( int ) spot.getDoublePosition( 2 ), spot.getTimepoint() );
+				assertEquals( expected, parallel.get( i++ )[ 0 ], 1e-9 );
+			}
+		}
+		finally
+		{
+			context.dispose();
+		}
+	}
+
+	private static float value( final int x, final int y, final int z, final int t )
+	{
+		return x + 2 * y + 3 * z + 100 * t;
+	}
+
+	private static List< double[] > values( final Model model, final SpotIntensityFeature feature )
+	{
+		final List< double[] > values = new ArrayList<>();
+		for ( final Spot spot : model.getGraph().vertices() )
+			values.add( new double[] {
+					feature.getMean( spot, 0 ),
+					feature.getStd( spot, 0 ),
+					feature.getMin( spot, 0 ),
+					feature.getMax( spot, 0 ),
+					feature.getMedian( spot, 0 ),
+					feature.getSum( spot, 0 ) } );
+		return values;
+	}
+}
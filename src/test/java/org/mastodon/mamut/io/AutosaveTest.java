@@ -0,0 +1,229 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+import org.mastodon.feature.Feature;
+import org.mastodon.mamut.ProjectModel;
+import org.mastodon.mamut.ProjectModelTestUtils;
+import org.mastodon.mamut.feature.MamutFeatureComputerService;
+import org.mastodon.mamut.feature.SpotIntensityFeature;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.tag.TagSetStructure;
+import org.mastodon.model.tag.TagSetStructure.Tag;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
+import org.scijava.Context;
+
+import mpicbg.spim.data.SpimDataException;
+
+public class AutosaveTest
+{
+	@Test
+	public void testRecoverUnsavedChanges() throws IOException, SpimDataException
+	{
+		final Model model = new Model();
+		final ModelGraph graph = model.getGraph();
+		final Spot a = graph.addVertex().init( 0, new double[] { 1, 2, 3 }, 1 );
+		a.setLabel( "a" );
+		final Spot b = graph.addVertex().init( 1, new double[] { 4, 5, 6 }, 1 );
+		b.setLabel( "b" );
+		final Spot c = graph.addVertex().init( 1, new double[] { 7, 8, 9 }, 1 );
+		c.setLabel( "c" );
+		graph.addEdge( a, b ).init();
+
+		final File mastodonFile = File.createTempFile( "test", ".mastodon" );
+		final Img< FloatType > image = ArrayImgs.floats( 1, 1, 1 );
+		try (Context context = new Context())
+		{
+			final ProjectModel appModel = ProjectModelTestUtils.wrapAsAppModel( image, model, context, mastodonFile );
+			final Autosave autosave = Autosave.install( appModel );
+			assertNotNull( autosave );
+			ProjectSaver.saveProject( mastodonFile, appModel );
+
+			// Unsaved changes.
+			b.move( new double[] { 1, 1, 1 } );
+			c.setLabel( "renamed" );
+			graph.remove( a );
+			final Spot d = graph.addVertex().init( 2, new double[] { 10, 11, 12 }, 2 );
+			d.setLabel( "d" );
+			graph.addEdge( c, d ).init();
+			graph.notifyGraphChanged();
+			autosave.flush();
+			final File journalFile = Autosave.getJournalFile( mastodonFile );
+			assertTrue( journalFile.isFile() );
+
+			// Reopen as if the session had crashed.
+			final ProjectModel reloaded = ProjectLoader.open( mastodonFile.getAbsolutePath(), context, false, true );
+			final ModelGraph reloadedGraph = reloaded.getModel().getGraph();
+			assertEquals( 3, reloadedGraph.vertices().size() );
+			assertEquals( 1, reloadedGraph.edges().size() );
+			final Map< String, double[] > positions = new HashMap<>();
+			for ( final Spot spot : reloadedGraph.vertices() )
+			{
+				final double[] pos = new double[ 3 ];
+				spot.localize( pos );
+				positions.put( spot.getLabel(), pos );
+			}
+			assertEquals( 5, positions.get( "b" )[ 0 ], 0 );
+			assertEquals( 7, positions.get( "renamed" )[ 0 ], 0 );
+			assertEquals( 12, positions.get( "d" )[ 2 ], 0 );
+			final Spot source = reloadedGraph.edges().iterator().next().getSource();
+			assertEquals( "renamed", source.getLabel() );
+
+			// A clean close discards the journal.
+			reloaded.close();
+			appModel.close();
+			assertFalse( journalFile.exists() );
+		}
+	}
+
+	@Test
+	public void testRecoverTagsOfNewTagSet() throws IOException, SpimDataException
+	{
+		final Model model = new Model();
+		final ModelGraph graph = model.getGraph();
+		final Spot a = graph.addVertex().init( 0, new double[] { 1, 2, 3 }, 1 );
+		a.setLabel( "a" );
+
+		final File mastodonFile = File.createTempFile( "test", ".mastodon" );
+		final Img< FloatType > image = ArrayImgs.floats( 1, 1, 1 );
+		try (Context context = new Context())
+		{
+			final ProjectModel appModel = ProjectModelTestUtils.wrapAsAppModel( image, model, context, mastodonFile );
+			final Autosave autosave = Autosave.install( appModel );
+			ProjectSaver.saveProject( mastodonFile, appModel );
+
+			// Unsaved tag set, and a tag from it.
+			final TagSetStructure tss = new TagSetStructure();
+			tss.set( model.getTagSetModel().getTagSetStructure() );
+			final TagSet fruits = tss.createTagSet( "fruits" );
+			fruits.createTag( "apple", 0xff00ff00 );
+			model.getTagSetModel().setTagSetStructure( tss );
+			final TagSet fruitsInModel = model.getTagSetModel().getTagSetStructure().getTagSets().get( 0 );
+			final Tag apple = fruitsInModel.getTags().get( 0 );
+			model.getTagSetModel().getVertexTags().set( a, apple );
+			autosave.flush();
+
+			// Reopen as if the session had crashed.
+			final ProjectModel reloaded = ProjectLoader.open( mastodonFile.getAbsolutePath(), context, false, true );
+			final Model reloadedModel = reloaded.getModel();
+			final TagSet reloadedFruits = reloadedModel.getTagSetModel().getTagSetStructure().getTagSets().get( 0 );
+			assertEquals( "fruits", reloadedFruits.getName() );
+			final Spot reloadedA = reloadedModel.getGraph().vertices().iterator().next();
+			final Tag reloadedTag = reloadedModel.getTagSetModel().getVertexTags().tags( reloadedFruits ).get( reloadedA );
+			assertNotNull( reloadedTag );
+			assertEquals( "apple", reloadedTag.label() );
+
+			reloaded.close();
+			appModel.close();
+		}
+	}
+
+	@Test
+	public void testRecoveredChangesInvalidateFeatures() throws IOException, SpimDataException
+	{
+		final Model model = new Model();
+		final ModelGraph graph = model.getGraph();
+		final Spot a = graph.addVertex().init( 0, new double[] { 4, 4, 4 }, 1 );
+		a.setLabel( "a" );
+		final Spot b = graph.addVertex().init( 0, new double[] { 10, 10, 10 }, 1 );
+		b.setLabel( "b" );
+
+		final File mastodonFile = File.createTempFile( "test", ".mastodon" );
+		final Img< FloatType > image = ArrayImgs.floats( 16, 16, 16, 1 );
+		image.forEach( t -> t.set( 1f ) );
+		try (Context context = new Context())
+		{
+			final ProjectModel appModel = ProjectModelTestUtils.wrapAsAppModel( image, model, context, mastodonFile );
+			final MamutFeatureComputerService computerService = MamutFeatureComputerService.newInstance( context );
+			computerService.setModel( model );
+			computerService.setSharedBdvData( appModel.getSharedBdvData() );
+			final Feature< ? > feature = computerService.compute( true, SpotIntensityFeature.SPEC ).get( SpotIntensityFeature.SPEC );
+			model.getFeatureModel().declareFeature( feature );
+			final Autosave autosave = Autosave.install( appModel );
+			ProjectSaver.saveProject( mastodonFile, appModel );
+
+			// Unsaved move.
+			b.move( new double[] { 1, 1, 1 } );
+			autosave.flush();
+
+			// Reopen as if the session had crashed: the moved spot must not keep its saved value.
+			final ProjectModel reloaded = ProjectLoader.open( mastodonFile.getAbsolutePath(), context, false, true );
+			final SpotIntensityFeature reloadedFeature =
+					( SpotIntensityFeature ) reloaded.getModel().getFeatureModel().getFeature( SpotIntensityFeature.SPEC );
+			assertNotNull( reloadedFeature );
+			for ( final Spot spot : reloaded.getModel().getGraph().vertices() )
+			{
+				if ( spot.getLabel().equals( "b" ) )
+					assertTrue( Double.isNaN( reloadedFeature.getMean( spot, 0 ) ) );
+				else
+					assertEquals( 1., reloadedFeature.getMean( spot, 0 ), 0. );
+			}
+
+			reloaded.close();
+			appModel.close();
+		}
+	}
+
+	@Test
+	public void testNoJournalWithoutChanges() throws IOException
+	{
+		final Model model = new Model();
+		model.getGraph().addVertex().init( 0, new double[] { 1, 2, 3 }, 1 );
+
+		final File mastodonFile = File.createTempFile( "test", ".mastodon" );
+		final Img< FloatType > image = ArrayImgs.floats( 1, 1, 1 );
+		try (Context context = new Context())
+		{
+			final ProjectModel appModel = ProjectModelTestUtils.wrapAsAppModel( image, model, context, mastodonFile );
+			final Autosave autosave = Autosave.install( appModel );
+			ProjectSaver.saveProject( mastodonFile, appModel );
+			autosave.flush();
+			assertFalse( Autosave.getJournalFile( mastodonFile ).exists() );
+
+			appModel.close();
+		}
+	}
+}
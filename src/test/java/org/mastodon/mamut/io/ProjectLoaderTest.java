@@ -103,6 +103,29 @@ public class ProjectLoaderTest
 		}
 	}
 
+	@Test
+	public void testSaveBeforeFeaturesAreLoaded() throws IOException, SpimDataException
+	{
+		ExampleGraph1 graph = new ExampleGraph1();
+		Model model = graph.getModel();
+		try (Context context = new Context())
+		{
+			File mastodonFile = File.createTempFile( "test", ".mastodon" );
+			Img< FloatType > image = ArrayImgs.floats( 1, 1, 1 );
+			ProjectModel projectModel = ProjectModelTestUtils.wrapAsAppModel( image, model, context, mastodonFile );
+			FeatureProjection< BranchSpot > durationProjection = FeatureComputerTestUtils.getFeatureProjection( context, model,
+					BranchDisplacementDurationFeature.SPEC, BranchDisplacementDurationFeature.DURATION_PROJECTION_SPEC );
+			double durationBeforeSave = durationProjection.value( graph.branchSpotA );
+			ProjectModel reloadedProjectModel = saveAndReloadProject( projectModel, mastodonFile, context );
+			// NB: saves over the project, possibly before its features are read
+			ProjectModel twiceReloadedProjectModel = saveAndReloadProject( reloadedProjectModel, mastodonFile, context );
+			FeatureProjection< BranchSpot > reloadedDurationProjection = getDurationProjectionFromModel( twiceReloadedProjectModel );
+			BranchSpot branchSpot = twiceReloadedProjectModel.getModel().getBranchGraph().vertices().iterator().next(); // NB: the model only has one branch spot
+			double durationAfterSave = reloadedDurationProjection.value( branchSpot );
+			assertEquals( durationBeforeSave, durationAfterSave, 0 );
+		}
+	}
+
 	@Test
 	public void testOpenProjectAfterDeletingPoints() throws IOException, SpimDataException
 	{
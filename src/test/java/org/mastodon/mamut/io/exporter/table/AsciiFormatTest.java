@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.exporter.table;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AsciiFormatTest
+{
+
+	private static String format( final double value )
+	{
+		final byte[] buf = new byte[ AsciiFormat.MAX_DOUBLE_LENGTH ];
+		return new String( buf, 0, AsciiFormat.format( value, buf, 0 ), StandardCharsets.US_ASCII );
+	}
+
+	private static String format( final int value )
+	{
+		final byte[] buf = new byte[ AsciiFormat.MAX_INT_LENGTH ];
+		return new String( buf, 0, AsciiFormat.format( value, buf, 0 ), StandardCharsets.US_ASCII );
+	}
+
+	@Test
+	public void testInts()
+	{
+		for ( final int value : new int[] { 0, 1, -1, 9, 10, -100, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE } )
+			assertEquals( Integer.toString( value ), format( value ) );
+	}
+
+	@Test
+	public void testSpecialDoubles()
+	{
+		final double[] values = { 0., -0., 1., -1., 0.1, 0.3, 1. / 3., 1e-3, 9.99e-4, 1e7, 8388607.5, 8388608.5,
+				Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE,
+				0.30000000000000004, 2e23 };
+		for ( final double value : values )
+			assertEquals( Double.toString( value ), format( value ) );
+	}
+
+	@Test
+	public void testLikeDoubleToString()
+	{
+		final Random random = new Random( 1l );
+		for ( int i = 0; i < 1_000_000; i++ )
+		{
+			// Short decimals, taking the fast path.
+			final double scale = Math.pow( 10, random.nextInt( 10 ) );
+			final double value = Math.round( random.nextGaussian() * Math.pow( 10, random.nextInt( 8 ) ) * scale ) / scale;
+			assertEquals( Double.toString( value ), format( value ) );
+			// Full precision.
+			final double other = random.nextGaussian() * 100;
+			assertEquals( Double.toString( other ), format( other ) );
+		}
+	}
+}
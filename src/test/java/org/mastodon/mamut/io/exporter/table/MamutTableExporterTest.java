@@ -0,0 +1,151 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.exporter.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+import org.mastodon.feature.io.FeatureColumns;
+import org.mastodon.mamut.feature.branch.exampleGraph.ExampleGraph1;
+import org.mastodon.mamut.io.exporter.table.FeatureTableWriter.Format;
+import org.mastodon.mamut.model.Model;
+
+public class MamutTableExporterTest
+{
+
+	private static List< String > readLines( final InputStream is ) throws IOException
+	{
+		final List< String > lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader( new InputStreamReader( is, StandardCharsets.UTF_8 ) ))
+		{
+			String line;
+			while ( ( line = reader.readLine() ) != null )
+				lines.add( line );
+		}
+		return lines;
+	}
+
+	@Test
+	public void testExportSpots() throws IOException
+	{
+		final Model model = new ExampleGraph1().getModel();
+		final File file = File.createTempFile( "spots", ".csv" );
+		file.deleteOnExit();
+		MamutTableExporter.exportSpots( model, file, Format.CSV );
+
+		final List< String > lines = readLines( new FileInputStream( file ) );
+		assertEquals( 3 + 5, lines.size() );
+		final List< String > features = Arrays.asList( lines.get( 0 ).split( "," ) );
+		final List< String > projections = Arrays.asList( lines.get( 1 ).split( "," ) );
+		assertEquals( "\"Label\"", features.get( 0 ) );
+		assertEquals( "\"ID\"", features.get( 1 ) );
+		int x = -1;
+		for ( int c = 0; c < features.size(); c++ )
+			if ( features.get( c ).equals( "\"Spot position\"" ) && projections.get( c ).equals( "\"X\"" ) )
+				x = c;
+		assertTrue( x > 1 );
+
+		// Spots are labeled after their id, and X = id + 1.
+		for ( int r = 3; r < lines.size(); r++ )
+		{
+			final String[] fields = lines.get( r ).split( "," );
+			final int id = Integer.parseInt( fields[ 1 ] );
+			assertEquals( "\"" + id + "\"", fields[ 0 ] );
+			assertEquals( id + 1., Double.parseDouble( fields[ x ] ), 0. );
+		}
+	}
+
+	@Test
+	public void testGzipIsSameAsCsv() throws IOException
+	{
+		final Model model = new ExampleGraph1().getModel();
+		final File csv = File.createTempFile( "links", ".csv" );
+		final File gzip = File.createTempFile( "links", ".csv.gz" );
+		csv.deleteOnExit();
+		gzip.deleteOnExit();
+		MamutTableExporter.exportLinks( model, csv, Format.CSV );
+		MamutTableExporter.exportLinks( model, gzip, Format.CSV_GZIP );
+		final List< String > lines = readLines( new FileInputStream( csv ) );
+		assertEquals( 3 + 4, lines.size() );
+		assertTrue( lines.get( 3 ).startsWith( "\"0 \u2192 1\"," ) );
+		assertEquals( lines, readLines( new GZIPInputStream( new FileInputStream( gzip ) ) ) );
+	}
+
+	@Test
+	public void testBinary() throws IOException
+	{
+		final Model model = new ExampleGraph1().getModel();
+		final File file = File.createTempFile( "spots", ".bin" );
+		file.deleteOnExit();
+		MamutTableExporter.exportSpots( model, file, Format.BINARY );
+		try (DataInputStream in = new DataInputStream( new FileInputStream( file ) ))
+		{
+			assertEquals( FeatureTableWriter.BINARY_MAGIC, in.readInt() );
+			assertEquals( FeatureTableWriter.BINARY_VERSION, in.readInt() );
+			final int n = in.readInt();
+			assertEquals( 5, n );
+			final int[] ids = FeatureColumns.readIntColumn( n, in );
+			for ( int i = 0; i < n; i++ )
+				assertEquals( Integer.toString( ids[ i ] ), in.readUTF() );
+			assertTrue( in.readInt() > 0 );
+		}
+	}
+
+	@Test
+	public void testExportAll() throws IOException
+	{
+		final Model model = new ExampleGraph1().getModel();
+		final File dir = File.createTempFile( "tables", "" );
+		dir.delete();
+		dir.mkdir();
+		final List< File > files = MamutTableExporter.export( model, new File( dir, "tables.csv" ), Format.CSV );
+		assertEquals( 4, files.size() );
+		assertEquals( "tables-BranchSpot.csv", files.get( 2 ).getName() );
+		for ( final File file : files )
+		{
+			assertTrue( file.isFile() );
+			file.delete();
+		}
+		dir.delete();
+	}
+}
@@ -0,0 +1,210 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.img.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link BoundedLoaderCache}.
+ */
+public class BoundedLoaderCacheTest
+{
+	private static BoundedLoaderCache< Integer, byte[] > createCache( final long maxBytes )
+	{
+		return new BoundedLoaderCache<>( maxBytes, v -> v.length );
+	}
+
+	@Test
+	public void testEvictsWhenBudgetIsExceeded() throws ExecutionException
+	{
+		final BoundedLoaderCache< Integer, byte[] > cache = createCache( 1000 );
+		for ( int i = 0; i < 20; i++ )
+			cache.get( i, k -> new byte[ 100 ] );
+
+		final BoundedLoaderCache.Statistics stats = cache.getStatistics();
+		assertEquals( 10, stats.getNumEntries() );
+		assertEquals( 1000, stats.getBytes() );
+		assertEquals( 20, stats.getMissCount() );
+		assertEquals( 10, stats.getEvictionCount() );
+		// The least recently loaded values were evicted.
+		assertNull( cache.getIfPresent( 9 ) );
+		assertNotNull( cache.getIfPresent( 10 ) );
+	}
+
+	@Test
+	public void testWeightedEviction() throws ExecutionException
+	{
+		final BoundedLoaderCache< Integer, byte[] > cache = createCache( 1000 );
+		for ( int i = 0; i < 5; i++ )
+			cache.get( i, k -> new byte[ 100 ] );
+		// A large value evicts several small ones.
+		cache.get( 5, k -> new byte[ 800 ] );
+		assertEquals( 3, cache.getStatistics().getNumEntries() );
+		assertTrue( cache.getStatistics().getBytes() <= 1000 );
+	}
+
+	@Test
+	public void testRepeatedlyUsedValuesAreProtected() throws ExecutionException
+	{
+		final BoundedLoaderCache< Integer, byte[] > cache = createCache( 1000 );
+		final byte[] value = cache.get( 0, k -> new byte[ 100 ] );
+		cache.get( 0, k -> new byte[ 100 ] );
+		// Sweep through many values that are used only once.
+		for ( int i = 1; i < 100; i++ )
+			cache.get( i, k -> new byte[ 100 ] );
+		assertSame( value, cache.getIfPresent( 0 ) );
+		assertEquals( 2, cache.getStatistics().getHitCount() );
+	}
+
+	@Test
+	public void testValueServedByFrontCacheSurvivesScan() throws ExecutionException
+	{
+		final BoundedLoaderCache< Integer, byte[] > cache = createCache( 1000 );
+		final byte[] hot = cache.get( 0, k -> new byte[ 100 ] );
+		cache.touch( 0 );
+		// Scan through many values. The hot value is only requested from a
+		// cache in front of this one, which reports it with touch().
+		for ( int i = 1; i < 100; i++ )
+		{
+			cache.get( i, k -> new byte[ 100 ] );
+			cache.touch( 0 );
+		}
+		assertSame( hot, cache.getIfPresent( 0 ) );
+		final BoundedLoaderCache.Statistics stats = cache.getStatistics();
+		assertEquals( 100, stats.getMissCount() );
+		assertEquals( 99 + 1, stats.getHitCount() );
+		assertEquals( 90, stats.getEvictionCount() );
+	}
+
+	@Test
+	public void testTouchDoesNotCountRequestTwice() throws ExecutionException
+	{
+		final BoundedLoaderCache< Integer, byte[] > cache = createCache( 1000 );
+		// The loading request is a miss, the front cache reporting it does
+		// not make it a hit.
+		cache.get( 0, k -> new byte[ 100 ] );
+		cache.touch( 0 );
+		assertEquals( 0, cache.getStatistics().getHitCount() );
+		// Same for a request that the front cache passed on to this cache.
+		cache.get( 0, k -> new byte[ 100 ] );
+		cache.touch( 0 );
+		assertEquals( 1, cache.getStatistics().getHitCount() );
+		// A request answered by the front cache alone is a hit.
+		cache.touch( 0 );
+		assertEquals( 2, cache.getStatistics().getHitCount() );
+		// Keys that are not present are ignored.
+		cache.touch( 1 );
+		assertEquals( 2, cache.getStatistics().getHitCount() );
+		assertEquals( 1, cache.getStatistics().getMissCount() );
+	}
+
+	@Test
+	public void testInvalidate() throws ExecutionException
+	{
+		final BoundedLoaderCache< Integer, byte[] > cache = createCache( 1000 );
+		for ( int i = 0; i < 5; i++ )
+			cache.get( i, k -> new byte[ 100 ] );
+		cache.invalidate( 0 );
+		assertNull( cache.getIfPresent( 0 ) );
+		cache.invalidateIf( 1, k -> k % 2 == 0 );
+		assertNull( cache.getIfPresent( 2 ) );
+		assertNull( cache.getIfPresent( 4 ) );
+		assertEquals( 2, cache.getStatistics().getNumEntries() );
+		assertEquals( 200, cache.getStatistics().getBytes() );
+		cache.invalidateAll();
+		assertEquals( 0, cache.getStatistics().getNumEntries() );
+		assertEquals( 0, cache.getStatistics().getBytes() );
+	}
+
+	@Test
+	public void testShrinkBudget() throws ExecutionException
+	{
+		final BoundedLoaderCache< Integer, byte[] > cache = createCache( 1000 );
+		for ( int i = 0; i < 10; i++ )
+			cache.get( i, k -> new byte[ 100 ] );
+		cache.setMaxBytes( 300 );
+		assertEquals( 3, cache.getStatistics().getNumEntries() );
+	}
+
+	@Test
+	public void testConcurrentRequestsLoadOnce() throws Exception
+	{
+		final BoundedLoaderCache< Integer, byte[] > cache = createCache( 1000 );
+		final AtomicInteger numLoads = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+		final List< Future< byte[] > > futures = new ArrayList<>();
+		for ( int i = 0; i < 8; i++ )
+			futures.add( executor.submit( () -> {
+				start.await();
+				return cache.get( 0, k -> {
+					numLoads.incrementAndGet();
+					Thread.sleep( 50 );
+					return new byte[ 100 ];
+				} );
+			} ) );
+		start.countDown();
+		final byte[] first = futures.get( 0 ).get();
+		for ( final Future< byte[] > future : futures )
+			assertSame( first, future.get() );
+		executor.shutdown();
+		assertEquals( 1, numLoads.get() );
+	}
+
+	@Test( expected = ExecutionException.class )
+	public void testLoaderException() throws ExecutionException
+	{
+		final BoundedLoaderCache< Integer, byte[] > cache = createCache( 1000 );
+		try
+		{
+			cache.get( 0, k -> {
+				throw new IllegalStateException();
+			} );
+		}
+		finally
+		{
+			assertNull( cache.getIfPresent( 0 ) );
+		}
+	}
+}
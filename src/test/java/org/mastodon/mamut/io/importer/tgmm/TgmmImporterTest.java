@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.importer.tgmm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import Jama.Matrix;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.util.LinAlgHelpers;
+
+public class TgmmImporterTest
+{
+
+	@Test
+	public void testCovarianceMatchesJamaInverse()
+	{
+		final Random random = new Random( 42 );
+		final double[] W = new double[ 9 ];
+		final double[] out = new double[ 9 ];
+		for ( int i = 0; i < 1000; i++ )
+		{
+			final AffineTransform3D transform = new AffineTransform3D();
+			final double[] values = new double[ 12 ];
+			for ( int j = 0; j < values.length; j++ )
+				values[ j ] = 10 * ( random.nextDouble() - 0.5 );
+			transform.set( values );
+			randomPrecisionMatrix( random, W );
+			final double nu = 0.1 + 10 * random.nextDouble();
+
+			final double[][] expected = getCovarianceJama( transform, nu, W );
+			assertTrue( TgmmImporter.getCovariance( transform.getRowPackedCopy(), nu, W, out ) );
+
+			double max = 0;
+			for ( int r = 0; r < 3; r++ )
+				for ( int c = 0; c < 3; c++ )
+					max = Math.max( max, Math.abs( expected[ r ][ c ] ) );
+			for ( int r = 0; r < 3; r++ )
+				for ( int c = 0; c < 3; c++ )
+					assertEquals( expected[ r ][ c ], out[ 3 * r + c ], 1e-9 * max );
+		}
+	}
+
+	@Test
+	public void testSingularPrecisionMatrix()
+	{
+		final double[] transform = new AffineTransform3D().getRowPackedCopy();
+		final double[] out = new double[ 9 ];
+		assertFalse( TgmmImporter.getCovariance( transform, 1., new double[ 9 ], out ) );
+		assertFalse( TgmmImporter.getCovariance( transform, 1., new double[] { 1, 2, 3, 2, 4, 6, 0, 0, 1 }, out ) );
+	}
+
+	/**
+	 * Fills {@code W} with a random symmetric positive definite matrix.
+	 */
+	private static void randomPrecisionMatrix( final Random random, final double[] W )
+	{
+		final double[][] A = new double[ 3 ][ 3 ];
+		for ( int r = 0; r < 3; r++ )
+			for ( int c = 0; c < 3; c++ )
+				A[ r ][ c ] = random.nextDouble() - 0.5;
+		final double[][] AAT = new double[ 3 ][ 3 ];
+		LinAlgHelpers.multABT( A, A, AAT );
+		for ( int r = 0; r < 3; r++ )
+			for ( int c = 0; c < 3; c++ )
+				W[ 3 * r + c ] = AAT[ r ][ c ] + ( r == c ? 0.01 : 0 );
+	}
+
+	/**
+	 * The covariance as it was computed before the closed-form inverse, with
+	 * a Jama matrix inversion.
+	 */
+	private static double[][] getCovarianceJama( final AffineTransform3D transform, final double nu, final double[] W )
+	{
+		final double[] wtmp = new double[ 9 ];
+		LinAlgHelpers.scale( W, nu, wtmp );
+
+		final Matrix precMat = new Matrix( wtmp, 3 );
+		final Matrix covMat = precMat.inverse();
+		final double[][] S = covMat.getArray();
+
+		final double[][] T = new double[ 3 ][ 3 ];
+		for ( int r = 0; r < 3; ++r )
+			for ( int c = 0; c < 3; ++c )
+				T[ r ][ c ] = transform.get( r, c );
+
+		final double[][] TS = new double[ 3 ][ 3 ];
+		LinAlgHelpers.mult( T, S, TS );
+		LinAlgHelpers.multABT( TS, T, S );
+
+		return S;
+	}
+}
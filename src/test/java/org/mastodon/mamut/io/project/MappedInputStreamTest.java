@@ -0,0 +1,153 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.project;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+public class MappedInputStreamTest
+{
+
+	@Test
+	public void testReadAcrossSegments() throws IOException
+	{
+		final byte[] data = randomBytes( 10_000 );
+		final File file = File.createTempFile( "mapped", ".raw" );
+		file.deleteOnExit();
+		Files.write( file.toPath(), data );
+
+		// Region of the file, mapped in small segments.
+		try (final InputStream is = new MappedInputStream( file, 100, 9_000, 1_000 ))
+		{
+			assertEquals( 9_000, is.available() );
+			assertEquals( data[ 100 ] & 0xFF, is.read() );
+			assertEquals( 2_500, is.skip( 2_500 ) );
+			is.mark( 0 );
+			final byte[] chunk = new byte[ 1_500 ];
+			assertEquals( 1_000, is.read( chunk ) ); // at most one segment per read
+			is.reset();
+			assertArrayEquals( Arrays.copyOfRange( data, 2_601, 9_100 ), readAll( is ) );
+			assertEquals( -1, is.read() );
+		}
+	}
+
+	@Test
+	public void testStoredZipEntries() throws IOException
+	{
+		final byte[] stored = randomBytes( 50_000 );
+		final byte[] deflated = randomBytes( 20_000 );
+
+		// Written by WriteZip, with ZIP64 local headers.
+		final File file1 = File.createTempFile( "mapped", ".zip" );
+		file1.deleteOnExit();
+		try (final WriteZip zip = new WriteZip( file1, 1 ))
+		{
+			try (final OutputStream os = zip.getOutputStream( "deflated" ))
+			{
+				os.write( deflated );
+			}
+			try (final OutputStream os = zip.getOutputStream( "stored", ZipEntry.STORED ))
+			{
+				os.write( stored );
+			}
+		}
+		checkZip( file1, stored, deflated );
+
+		// Written by ZipOutputStream, with data descriptors.
+		final File file2 = File.createTempFile( "mapped", ".zip" );
+		file2.deleteOnExit();
+		try (final ZipOutputStream zos = new ZipOutputStream( new FileOutputStream( file2 ) ))
+		{
+			zos.putNextEntry( new ZipEntry( "deflated" ) );
+			zos.write( deflated );
+			zos.closeEntry();
+			final ZipEntry entry = new ZipEntry( "stored" );
+			final CRC32 crc = new CRC32();
+			crc.update( stored );
+			entry.setMethod( ZipEntry.STORED );
+			entry.setSize( stored.length );
+			entry.setCrc( crc.getValue() );
+			zos.putNextEntry( entry );
+			zos.write( stored );
+			zos.closeEntry();
+		}
+		checkZip( file2, stored, deflated );
+	}
+
+	private static void checkZip( final File file, final byte[] stored, final byte[] deflated ) throws IOException
+	{
+		try (final ReadZip zip = new ReadZip( file ))
+		{
+			try (final InputStream is = zip.getMappedInputStream( "stored" ))
+			{
+				assertTrue( is instanceof MappedInputStream );
+				assertArrayEquals( stored, readAll( is ) );
+			}
+			try (final InputStream is = zip.getMappedInputStream( "deflated" ))
+			{
+				assertFalse( is instanceof MappedInputStream );
+				assertArrayEquals( deflated, readAll( is ) );
+			}
+		}
+	}
+
+	private static byte[] randomBytes( final int length )
+	{
+		final byte[] data = new byte[ length ];
+		new Random( length ).nextBytes( data );
+		return data;
+	}
+
+	private static byte[] readAll( final InputStream is ) throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[ 777 ];
+		int n;
+		while ( ( n = is.read( buffer ) ) > 0 )
+			out.write( buffer, 0, n );
+		return out.toByteArray();
+	}
+}
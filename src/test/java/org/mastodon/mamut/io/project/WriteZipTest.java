@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.io.project;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+public class WriteZipTest
+{
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		for ( final int level : new int[] { Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION } )
+		{
+			final Random random = new Random( level );
+			final byte[] empty = new byte[ 0 ];
+			final byte[] text = "Hello Mastodon!".getBytes();
+			// Spans several blocks, to test dictionary priming and sync flushes.
+			final byte[] compressible = new byte[ 2 * WriteZip.BLOCK_SIZE + 123 ];
+			for ( int i = 0; i < compressible.length; i++ )
+				compressible[ i ] = ( byte ) ( i % 17 + random.nextInt( 3 ) );
+			final byte[] dense = new byte[ WriteZip.BLOCK_SIZE + 1 ];
+			random.nextBytes( dense );
+
+			final File file = File.createTempFile( "writezip", ".zip" );
+			file.deleteOnExit();
+			try (final WriteZip zip = new WriteZip( file, level, 2 ))
+			{
+				write( zip.getOutputStream( "empty" ), empty );
+				write( zip.getOutputStream( "text" ), text );
+				write( zip.getOutputStream( "folder/compressible" ), compressible );
+				write( zip.getOutputStream( "folder/dense", ZipEntry.STORED ), dense );
+			}
+
+			try (final ReadZip zip = new ReadZip( file ))
+			{
+				assertArrayEquals( empty, read( zip.getInputStream( "empty" ) ) );
+				assertArrayEquals( text, read( zip.getInputStream( "text" ) ) );
+				assertArrayEquals( compressible, read( zip.getInputStream( "folder/compressible" ) ) );
+				assertArrayEquals( dense, read( zip.getInputStream( "folder/dense" ) ) );
+				assertEquals( new HashSet<>( Arrays.asList( "compressible", "dense" ) ), new HashSet<>( zip.listFile( "folder" ) ) );
+			}
+
+			try (final ZipFile zip = new ZipFile( file ))
+			{
+				final int expected = level == Deflater.NO_COMPRESSION ? ZipEntry.STORED : ZipEntry.DEFLATED;
+				assertEquals( expected, zip.getEntry( "folder/compressible" ).getMethod() );
+				assertEquals( ZipEntry.STORED, zip.getEntry( "folder/dense" ).getMethod() );
+				assertEquals( dense.length, zip.getEntry( "folder/dense" ).getCompressedSize() );
+			}
+		}
+	}
+
+	@Test( expected = IOException.class )
+	public void testPreviousEntryStillOpen() throws IOException
+	{
+		final File file = File.createTempFile( "writezip", ".zip" );
+		file.deleteOnExit();
+		try (final WriteZip zip = new WriteZip( file ))
+		{
+			zip.getOutputStream( "first" ).write( 1 );
+			zip.getOutputStream( "second" );
+		}
+	}
+
+	private static void write( final OutputStream os, final byte[] data ) throws IOException
+	{
+		try (final OutputStream out = os)
+		{
+			// Write in uneven chunks.
+			int offset = 0;
+			int chunk = 1;
+			while ( offset < data.length )
+			{
+				final int n = Math.min( chunk, data.length - offset );
+				out.write( data, offset, n );
+				offset += n;
+				chunk = chunk * 3 + 1;
+			}
+		}
+	}
+
+	private static byte[] read( final InputStream is ) throws IOException
+	{
+		try (final InputStream in = is)
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[ 8192 ];
+			int n;
+			while ( ( n = in.read( buffer ) ) > 0 )
+				out.write( buffer, 0, n );
+			return out.toByteArray();
+		}
+	}
+}
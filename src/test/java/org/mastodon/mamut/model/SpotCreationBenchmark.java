@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.model;
+
+import java.util.Random;
+
+import org.mastodon.util.GeometryUtil;
+import org.mastodon.views.bdv.overlay.util.JamaEigenvalueDecomposition;
+
+import net.imglib2.util.BenchmarkHelper;
+
+/**
+ * Benchmarks bulk creation of {@link Spot}s with a covariance matrix, and the
+ * computation of the bounding-sphere radius from the covariance matrix.
+ */
+public class SpotCreationBenchmark
+{
+	public static void main( final String[] args )
+	{
+		final int N_RUNS = 10;
+		final int N_SPOTS = 1_000_000;
+
+		final Random random = new Random( 1 );
+		final double[][][] covs = new double[ 1000 ][][];
+		for ( int i = 0; i < covs.length; i++ )
+		{
+			final double a = 1 + 5 * random.nextDouble();
+			final double b = 1 + 5 * random.nextDouble();
+			final double c = 1 + 5 * random.nextDouble();
+			final double d = random.nextDouble() - 0.5;
+			covs[ i ] = new double[][] { { a, d, 0 }, { d, b, d }, { 0, d, c } };
+		}
+
+		System.out.println( "Max eigenvalue with JamaEigenvalueDecomposition:" );
+		final JamaEigenvalueDecomposition eig = new JamaEigenvalueDecomposition( 3 );
+		final double[] sink = new double[ 1 ];
+		BenchmarkHelper.benchmarkAndPrint( N_RUNS, false, () -> {
+			double sum = 0;
+			for ( int i = 0; i < N_SPOTS; i++ )
+			{
+				eig.decomposeSymmetric( covs[ i % covs.length ] );
+				double max = 0;
+				for ( final double ev : eig.getRealEigenvalues() )
+					max = Math.max( max, ev );
+				sum += max;
+			}
+			sink[ 0 ] += sum;
+		} );
+
+		System.out.println( "Max eigenvalue in closed form:" );
+		BenchmarkHelper.benchmarkAndPrint( N_RUNS, false, () -> {
+			double sum = 0;
+			for ( int i = 0; i < N_SPOTS; i++ )
+				sum += GeometryUtil.maxEigenvalueSymmetric3x3( covs[ i % covs.length ] );
+			sink[ 0 ] += sum;
+		} );
+
+		System.out.println( String.format( "Creating %d spots with covariance:", N_SPOTS ) );
+		final double[] pos = new double[ 3 ];
+		BenchmarkHelper.benchmarkAndPrint( N_RUNS, false, () -> {
+			final ModelGraph graph = new ModelGraph( N_SPOTS );
+			final Spot ref = graph.vertexRef();
+			for ( int i = 0; i < N_SPOTS; i++ )
+			{
+				pos[ 0 ] = i;
+				graph.addVertex( ref ).init( i % 100, pos, covs[ i % covs.length ] );
+			}
+			graph.releaseRef( ref );
+		} );
+
+		// Prevents the JIT from eliminating the eigenvalue computations.
+		System.out.println( "Checksum: " + sink[ 0 ] );
+	}
+}
@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.mamut.model.branch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+
+/**
+ * Checks that a {@link ModelBranchGraph} is consistent with the
+ * {@link ModelGraph} it is built upon, by comparing it to a branch graph built
+ * from scratch over the same graph.
+ */
+public class BranchGraphConsistencyChecker
+{
+
+	private BranchGraphConsistencyChecker()
+	{}
+
+	/**
+	 * Asserts that the specified branch graph has the same branches and branch
+	 * links as a branch graph freshly rebuilt from the specified graph.
+	 *
+	 * @param graph
+	 *            the model graph.
+	 * @param branchGraph
+	 *            the branch graph to check.
+	 */
+	public static void assertConsistent( final ModelGraph graph, final ModelBranchGraph branchGraph )
+	{
+		final ModelBranchGraph reference = new ModelBranchGraph( graph );
+		reference.graphRebuilt();
+
+		assertEquals( "Unexpected number of branch spots.",
+				reference.vertices().size(), branchGraph.vertices().size() );
+		assertEquals( "Unexpected number of branch links.",
+				reference.edges().size(), branchGraph.edges().size() );
+
+		final BranchSpot bvRef1 = branchGraph.vertexRef();
+		final BranchSpot bvRef2 = reference.vertexRef();
+		final BranchLink beRef1 = branchGraph.edgeRef();
+		final BranchLink beRef2 = reference.edgeRef();
+		final Spot vRef = graph.vertexRef();
+		final Link eRef = graph.edgeRef();
+
+		for ( final Spot spot : graph.vertices() )
+		{
+			final BranchSpot actual = branchGraph.getBranchVertex( spot, bvRef1 );
+			final BranchSpot expected = reference.getBranchVertex( spot, bvRef2 );
+			assertNotNull( "No branch spot for " + spot, actual );
+			assertEquals( "Unexpected first spot in branch of " + spot,
+					reference.getFirstLinkedVertex( expected, vRef ).getInternalPoolIndex(),
+					branchGraph.getFirstLinkedVertex( actual, vRef ).getInternalPoolIndex() );
+			assertEquals( "Unexpected last spot in branch of " + spot,
+					reference.getLastLinkedVertex( expected, vRef ).getInternalPoolIndex(),
+					branchGraph.getLastLinkedVertex( actual, vRef ).getInternalPoolIndex() );
+		}
+
+		for ( final Link link : graph.edges() )
+		{
+			final BranchLink actual = branchGraph.getBranchEdge( link, beRef1 );
+			final BranchLink expected = reference.getBranchEdge( link, beRef2 );
+			assertEquals( "Branch link mismatch for " + link, expected == null, actual == null );
+			if ( expected == null )
+				continue;
+			assertEquals( "Unexpected linked edge for " + link,
+					reference.getLinkedEdge( expected, eRef ).getInternalPoolIndex(),
+					branchGraph.getLinkedEdge( actual, eRef ).getInternalPoolIndex() );
+		}
+	}
+}
@@ -41,12 +41,16 @@ import org.mastodon.mamut.feature.MamutFeatureComputerService;
 import org.mastodon.mamut.feature.branch.BranchDisplacementDurationFeature;
 import org.mastodon.mamut.feature.branch.exampleGraph.ExampleGraph1;
 import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
 import org.scijava.Context;
 
 import java.io.File;
 import java.io.IOException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class BranchGraphSynchronizerTest
 {
@@ -99,4 +103,124 @@ public class BranchGraphSynchronizerTest
 			assertEquals( durationBeforeSync, durationAfterSync, 0 );
 		}
 	}
+
+	@Test
+	public void testMovingSpotsKeepsBranchGraphConsistent() throws IOException
+	{
+		ExampleGraph1 graph = new ExampleGraph1();
+		Model model = graph.getModel();
+		try (Context context = new Context())
+		{
+			File mastodonFile = File.createTempFile( "test", ".mastodon" );
+			Img< FloatType > image = ArrayImgs.floats( 1, 1, 1 );
+			ProjectModel projectModel = ProjectModelTestUtils.wrapAsAppModel( image, model, context, mastodonFile );
+			BranchGraphSynchronizer branchGraphSynchronizer = projectModel.getBranchGraphSync();
+
+			// Move a spot in the middle of the branch, and the last one.
+			graph.spot2.setPosition( new double[] { 10, 10, 10 } );
+			model.getGraph().notifyGraphChanged();
+			branchGraphSynchronizer.sync();
+			assertTrue( branchGraphSynchronizer.isUptodate() );
+			BranchGraphConsistencyChecker.assertConsistent( model.getGraph(), model.getBranchGraph() );
+
+			graph.spot4.setPosition( new double[] { 20, 20, 20 } );
+			model.getGraph().notifyGraphChanged();
+			branchGraphSynchronizer.sync();
+			BranchGraphConsistencyChecker.assertConsistent( model.getGraph(), model.getBranchGraph() );
+			assertEquals( 20, model.getBranchGraph().getBranchVertex( graph.spot4, model.getBranchGraph().vertexRef() )
+					.getDoublePosition( 0 ), 0 );
+		}
+	}
+
+	@Test
+	public void testStructuralChangesKeepBranchGraphConsistent() throws IOException
+	{
+		ExampleGraph1 graph = new ExampleGraph1();
+		Model model = graph.getModel();
+		try (Context context = new Context())
+		{
+			File mastodonFile = File.createTempFile( "test", ".mastodon" );
+			Img< FloatType > image = ArrayImgs.floats( 1, 1, 1 );
+			ProjectModel projectModel = ProjectModelTestUtils.wrapAsAppModel( image, model, context, mastodonFile );
+			BranchGraphSynchronizer branchGraphSynchronizer = projectModel.getBranchGraphSync();
+			final ModelGraph modelGraph = model.getGraph();
+
+			// Add a division.
+			Spot daughter = modelGraph.addVertex().init( 2, new double[] { 0, 0, 0 }, 1 );
+			modelGraph.addEdge( graph.spot1, daughter );
+			modelGraph.notifyGraphChanged();
+			branchGraphSynchronizer.sync();
+			BranchGraphConsistencyChecker.assertConsistent( modelGraph, model.getBranchGraph() );
+			assertEquals( 3, model.getBranchGraph().vertices().size() );
+
+			// Remove it.
+			modelGraph.remove( daughter );
+			modelGraph.notifyGraphChanged();
+			branchGraphSynchronizer.sync();
+			BranchGraphConsistencyChecker.assertConsistent( modelGraph, model.getBranchGraph() );
+			assertEquals( 1, model.getBranchGraph().vertices().size() );
+		}
+	}
+
+	@Test
+	public void testRebuildIsSkippedUnlessBranchesChange()
+	{
+		final ExampleGraph1 graph = new ExampleGraph1();
+		final ModelGraph modelGraph = graph.getModel().getGraph();
+		final CountingBranchGraph branchGraph = new CountingBranchGraph( modelGraph );
+		final BranchGraphSynchronizer branchGraphSynchronizer =
+				new BranchGraphSynchronizer( modelGraph, branchGraph, modelGraph.getLock().readLock() );
+		modelGraph.addGraphChangeListener( branchGraphSynchronizer );
+		final int initialRebuilds = branchGraph.rebuilds;
+
+		// Moving a spot in the middle of the branch skips the rebuild.
+		graph.spot2.setPosition( new double[] { 10, 10, 10 } );
+		modelGraph.notifyGraphChanged();
+		assertFalse( branchGraphSynchronizer.isUptodate() );
+		branchGraphSynchronizer.sync();
+		assertTrue( branchGraphSynchronizer.isUptodate() );
+		assertEquals( initialRebuilds, branchGraph.rebuilds );
+		BranchGraphConsistencyChecker.assertConsistent( modelGraph, branchGraph );
+
+		// Moving the last spot of the branch rebuilds, once.
+		graph.spot4.setPosition( new double[] { 20, 20, 20 } );
+		modelGraph.notifyGraphChanged();
+		branchGraphSynchronizer.sync();
+		assertEquals( initialRebuilds + 1, branchGraph.rebuilds );
+		BranchGraphConsistencyChecker.assertConsistent( modelGraph, branchGraph );
+
+		// Syncing again without changes does nothing.
+		modelGraph.notifyGraphChanged();
+		branchGraphSynchronizer.sync();
+		assertEquals( initialRebuilds + 1, branchGraph.rebuilds );
+
+		// Adding a spot rebuilds.
+		modelGraph.addVertex().init( 5, new double[] { 0, 0, 0 }, 1 );
+		modelGraph.notifyGraphChanged();
+		branchGraphSynchronizer.sync();
+		assertEquals( initialRebuilds + 2, branchGraph.rebuilds );
+		BranchGraphConsistencyChecker.assertConsistent( modelGraph, branchGraph );
+	}
+
+	/**
+	 * Counts the full rebuilds of a branch graph.
+	 */
+	private static class CountingBranchGraph extends ModelBranchGraph
+	{
+		// No initializer: keeps the count of the rebuild done by the super
+		// constructor.
+		private int rebuilds;
+
+		CountingBranchGraph( final ModelGraph graph )
+		{
+			super( graph );
+		}
+
+		@Override
+		public void graphRebuilt()
+		{
+			rebuilds++;
+			super.graphRebuilt();
+		}
+	}
 }
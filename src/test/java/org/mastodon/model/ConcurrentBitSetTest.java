@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentBitSet}.
+ */
+public class ConcurrentBitSetTest
+{
+	@Test
+	public void testAgainstBitSet()
+	{
+		final Random random = new Random( 1 );
+		final ConcurrentBitSet bits = new ConcurrentBitSet();
+		final BitSet expected = new BitSet();
+		for ( int i = 0; i < 100_000; ++i )
+		{
+			final int index = random.nextInt( 20_000 );
+			final boolean value = random.nextBoolean();
+			final boolean changed = expected.get( index ) != value;
+			expected.set( index, value );
+			assertEquals( changed, bits.set( index, value ) );
+		}
+		assertEquals( expected.cardinality(), bits.cardinality() );
+		for ( int i = 0; i < 20_100; ++i )
+			assertEquals( expected.get( i ), bits.get( i ) );
+
+		final long[] words = bits.toLongArray();
+		int expectedIndex = expected.nextSetBit( 0 );
+		int index = ConcurrentBitSet.nextSetBit( words, 0 );
+		while ( expectedIndex >= 0 )
+		{
+			assertEquals( expectedIndex, index );
+			assertTrue( ConcurrentBitSet.get( words, index ) );
+			expectedIndex = expected.nextSetBit( expectedIndex + 1 );
+			index = ConcurrentBitSet.nextSetBit( words, index + 1 );
+		}
+		assertEquals( -1, index );
+	}
+
+	@Test
+	public void testClearAndNegativeIndices()
+	{
+		final ConcurrentBitSet bits = new ConcurrentBitSet();
+		assertFalse( bits.get( -1 ) );
+		assertFalse( bits.set( -1, true ) );
+		assertFalse( bits.clear() );
+		assertTrue( bits.set( 5000, true ) );
+		assertTrue( bits.clear() );
+		assertFalse( bits.get( 5000 ) );
+		assertEquals( 0, bits.cardinality() );
+		assertEquals( 0, bits.toLongArray().length );
+	}
+}
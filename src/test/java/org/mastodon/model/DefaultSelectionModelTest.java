@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mastodon.collection.RefCollections;
+import org.mastodon.collection.RefList;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+
+/**
+ * Tests for {@link DefaultSelectionModel}.
+ */
+public class DefaultSelectionModelTest
+{
+	@Test
+	public void testBatchSelectionAndSnapshot()
+	{
+		final ModelGraph graph = new ModelGraph();
+		final RefList< Spot > spots = RefCollections.createRefList( graph.vertices() );
+		for ( int i = 0; i < 1000; ++i )
+			spots.add( graph.addVertex().init( 0, new double[ 3 ], 1 ) );
+		final DefaultSelectionModel< Spot, Link > selection = new DefaultSelectionModel<>( graph, graph.getGraphIdBimap() );
+		final AtomicInteger events = new AtomicInteger();
+		selection.listeners().add( events::incrementAndGet );
+
+		assertTrue( selection.setVerticesSelected( spots, true ) );
+		assertEquals( 1, events.get() );
+		assertFalse( selection.setVerticesSelected( spots, true ) );
+		assertEquals( 1, events.get() );
+
+		final DefaultSelectionModel.Snapshot< Spot, Link > snapshot = selection.getSnapshot();
+		assertSame( snapshot, selection.getSnapshot() );
+		assertEquals( 1000, snapshot.numSelectedVertices() );
+		assertEquals( 1000, selection.getSelectedVertices().size() );
+
+		selection.setSelected( spots.get( 0 ), false );
+		assertEquals( 2, events.get() );
+		assertTrue( snapshot.isSelected( spots.get( 0 ) ) );
+		assertFalse( selection.isSelected( spots.get( 0 ) ) );
+		assertEquals( 999, selection.getSnapshot().numSelectedVertices() );
+	}
+
+	@Test
+	public void testRemovalEventsAreBatched()
+	{
+		final ModelGraph graph = new ModelGraph();
+		final RefList< Spot > spots = RefCollections.createRefList( graph.vertices() );
+		for ( int i = 0; i < 100; ++i )
+			spots.add( graph.addVertex().init( 0, new double[ 3 ], 1 ) );
+		final DefaultSelectionModel< Spot, Link > selection = new DefaultSelectionModel<>( graph, graph.getGraphIdBimap() );
+		selection.setVerticesSelected( spots, true );
+		final AtomicInteger events = new AtomicInteger();
+		selection.listeners().add( events::incrementAndGet );
+
+		for ( int i = 0; i < 50; ++i )
+			graph.remove( spots.get( i ) );
+		assertEquals( 0, events.get() );
+		assertEquals( 50, selection.getSelectedVertices().size() );
+		graph.notifyGraphChanged();
+		assertEquals( 1, events.get() );
+	}
+}
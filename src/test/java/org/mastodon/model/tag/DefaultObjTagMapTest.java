@@ -0,0 +1,185 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Test;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.model.tag.TagSetStructure.Tag;
+import org.mastodon.model.tag.TagSetStructure.TagSet;
+
+/**
+ * Tests for {@link DefaultObjTagMap} backed by a tag column.
+ */
+public class DefaultObjTagMapTest
+{
+	@Test
+	public void testColumnStaysConsistent()
+	{
+		final ModelGraph graph = new ModelGraph();
+		final DefaultTagSetModel< Spot, Link > tagSetModel = new DefaultTagSetModel<>( graph );
+		final TagSetStructure tss = new TagSetStructure();
+		final TagSet fruits = tss.createTagSet( "fruits" );
+		final Tag apple = fruits.createTag( "apple", 0xff00ff00 );
+		final Tag pear = fruits.createTag( "pear", 0xffffff00 );
+		final TagSet sizes = tss.createTagSet( "sizes" );
+		final Tag small = sizes.createTag( "small", 0xff000000 );
+		tagSetModel.setTagSetStructure( tss );
+
+		final TagSet fruitsInModel = tagSetModel.getTagSetStructure().getTagSets().get( 0 );
+		final TagSet sizesInModel = tagSetModel.getTagSetStructure().getTagSets().get( 1 );
+		final ObjTagMap< Spot, Tag > fruitTags = tagSetModel.getVertexTags().tags( fruitsInModel );
+		final ObjTagMap< Spot, Tag > sizeTags = tagSetModel.getVertexTags().tags( sizesInModel );
+
+		final Spot spot = graph.addVertex().init( 0, new double[ 3 ], 1 );
+		assertNull( fruitTags.get( spot ) );
+
+		fruitTags.set( spot, apple );
+		sizeTags.set( spot, small );
+		assertEquals( apple, fruitTags.get( spot ) );
+		fruitTags.set( spot, pear );
+		assertEquals( pear, fruitTags.get( spot ) );
+		assertEquals( small, sizeTags.get( spot ) );
+		assertEquals( 1, fruitTags.getTaggedWith( pear ).size() );
+		assertEquals( 0, fruitTags.getTaggedWith( apple ).size() );
+
+		// Labels changed behind the back of the tag map.
+		tagSetModel.getVertexTags().set( spot, apple );
+		assertEquals( apple, fruitTags.get( spot ) );
+
+		fruitTags.remove( spot );
+		assertNull( fruitTags.get( spot ) );
+		fruitTags.set( spot, pear );
+
+		// A new vertex reusing the id of a removed one is not tagged.
+		graph.remove( spot );
+		final Spot other = graph.addVertex().init( 0, new double[ 3 ], 1 );
+		assertNull( fruitTags.get( other ) );
+		assertNull( sizeTags.get( other ) );
+	}
+
+	@Test
+	public void testConcurrentGetDoesNotLoseSet() throws InterruptedException
+	{
+		final ModelGraph graph = new ModelGraph();
+		final DefaultTagSetModel< Spot, Link > tagSetModel = new DefaultTagSetModel<>( graph );
+		final TagSetStructure tss = new TagSetStructure();
+		final TagSet fruits = tss.createTagSet( "fruits" );
+		fruits.createTag( "apple", 0xff00ff00 );
+		fruits.createTag( "pear", 0xffffff00 );
+		tagSetModel.setTagSetStructure( tss );
+		final TagSet fruitsInModel = tagSetModel.getTagSetStructure().getTagSets().get( 0 );
+		final List< Tag > tags = fruitsInModel.getTags();
+		final ObjTagMap< Spot, Tag > fruitTags = tagSetModel.getVertexTags().tags( fruitsInModel );
+
+		// More spots than the initial column capacity, so that the column
+		// grows while it is being read.
+		final int numSpots = 5000;
+		for ( int i = 0; i < numSpots; ++i )
+			graph.addVertex().init( 0, new double[] { i, 0, 0 }, 1 );
+
+		// Painters hold the read lock, edits the write lock, as in the app.
+		final Lock readLock = graph.getLock().readLock();
+		final Lock writeLock = graph.getLock().writeLock();
+		final AtomicReference< Throwable > failure = new AtomicReference<>();
+		final List< Thread > painters = new ArrayList<>();
+		for ( int t = 0; t < 4; ++t )
+		{
+			final Thread painter = new Thread( () -> {
+				try
+				{
+					final Spot ref = graph.vertexRef();
+					for ( int round = 0; round < 20; ++round )
+					{
+						readLock.lock();
+						try
+						{
+							for ( int id = numSpots - 1; id >= 0; --id )
+								fruitTags.get( graph.getGraphIdBimap().getVertex( id, ref ) );
+						}
+						finally
+						{
+							readLock.unlock();
+						}
+					}
+					graph.releaseRef( ref );
+				}
+				catch ( final Throwable e )
+				{
+					failure.set( e );
+				}
+			} );
+			painters.add( painter );
+			painter.start();
+		}
+
+		final Spot ref = graph.vertexRef();
+		for ( int round = 0; round < 10; ++round )
+		{
+			for ( int id = 0; id < numSpots; ++id )
+			{
+				writeLock.lock();
+				try
+				{
+					final Spot spot = graph.getGraphIdBimap().getVertex( id, ref );
+					final int k = ( id + round ) % 3;
+					fruitTags.set( spot, k < tags.size() ? tags.get( k ) : null );
+				}
+				finally
+				{
+					writeLock.unlock();
+				}
+			}
+		}
+		for ( final Thread painter : painters )
+			painter.join();
+		if ( failure.get() != null )
+			throw new AssertionError( failure.get() );
+
+		final int lastRound = 9;
+		for ( int id = 0; id < numSpots; ++id )
+		{
+			final Spot spot = graph.getGraphIdBimap().getVertex( id, ref );
+			final int k = ( id + lastRound ) % 3;
+			final Tag expected = k < tags.size() ? tags.get( k ) : null;
+			assertEquals( expected, fruitTags.get( spot ) );
+			assertEquals( expected, tagSetModel.getVertexTags().tags( fruitsInModel ).get( spot ) );
+		}
+		graph.releaseRef( ref );
+	}
+}
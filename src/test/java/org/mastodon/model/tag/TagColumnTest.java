@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.model.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TagColumn}.
+ */
+public class TagColumnTest
+{
+	@Test
+	public void testFillIsRejectedAfterModification()
+	{
+		final TagColumn column = new TagColumn( 3 );
+		assertEquals( TagColumn.UNKNOWN, column.get( 5 ) );
+
+		// A lookup that raced with a modification must not be stored.
+		final int stamp = column.stamp();
+		column.set( 5, TagColumn.FIRST_TAG + 1 );
+		assertFalse( column.fill( 5, TagColumn.NONE, stamp ) );
+		assertEquals( TagColumn.FIRST_TAG + 1, column.get( 5 ) );
+
+		final int stamp2 = column.stamp();
+		column.invalidate();
+		assertFalse( column.fill( 5, TagColumn.NONE, stamp2 ) );
+		assertEquals( TagColumn.UNKNOWN, column.get( 5 ) );
+
+		// Fills do not invalidate each other, and grow the column.
+		final int stamp3 = column.stamp();
+		assertTrue( column.fill( 5, TagColumn.NONE, stamp3 ) );
+		assertTrue( column.fill( 100000, TagColumn.FIRST_TAG, stamp3 ) );
+		assertEquals( TagColumn.NONE, column.get( 5 ) );
+		assertEquals( TagColumn.FIRST_TAG, column.get( 100000 ) );
+	}
+
+	@Test
+	public void testConcurrentFillsDoNotLoseWrites() throws InterruptedException
+	{
+		final int size = 100000;
+		final TagColumn column = new TagColumn( 300 );
+		final List< Thread > readers = new ArrayList<>();
+		for ( int t = 0; t < 4; ++t )
+		{
+			final Thread reader = new Thread( () -> {
+				for ( int id = size - 1; id >= 0; --id )
+				{
+					final int stamp = column.stamp();
+					if ( column.get( id ) == TagColumn.UNKNOWN )
+						column.fill( id, TagColumn.NONE, stamp );
+				}
+			} );
+			readers.add( reader );
+			reader.start();
+		}
+		for ( int id = 0; id < size; id += 2 )
+			column.set( id, TagColumn.FIRST_TAG + id % 300 );
+		for ( final Thread reader : readers )
+			reader.join();
+
+		for ( int id = 0; id < size; id += 2 )
+			assertEquals( TagColumn.FIRST_TAG + id % 300, column.get( id ) );
+	}
+}
@@ -0,0 +1,200 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+package org.mastodon.ui.coloring;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.mastodon.graph.Edge;
+import org.mastodon.graph.Vertex;
+import org.mastodon.mamut.model.Link;
+import org.mastodon.mamut.model.Model;
+import org.mastodon.mamut.model.ModelGraph;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.views.trackscheme.display.style.dummygraph.DummyEdge;
+import org.mastodon.views.trackscheme.display.style.dummygraph.DummyGraph;
+import org.mastodon.views.trackscheme.display.style.dummygraph.DummyVertex;
+
+/**
+ * Tests for {@link CachedGraphColorGenerator}.
+ */
+public class CachedGraphColorGeneratorTest
+{
+	@Test
+	public void testColorsAreCachedUntilInvalidated()
+	{
+		final ModelGraph graph = new Model().getGraph();
+		final Spot a = graph.addVertex().init( 0, new double[ 3 ], 1. );
+		final Spot b = graph.addVertex().init( 1, new double[ 3 ], 1. );
+		final Link ab = graph.addEdge( a, b ).init();
+
+		final CountingColorGenerator< Spot, Link > generator = new CountingColorGenerator<>( 0xff000000 );
+		final CachedGraphColorGenerator< Spot, Link > cached = new CachedGraphColorGenerator<>( graph );
+		cached.setColorGenerator( generator );
+
+		assertEquals( 0xff000000, cached.color( a ) );
+		assertEquals( 0xff000000, cached.color( a ) );
+		assertEquals( 0xff000000, cached.color( b ) );
+		assertEquals( 0xff000000, cached.color( ab, a, b ) );
+		assertEquals( 0xff000000, cached.color( ab, a, b ) );
+		assertEquals( 2, generator.vertexCalls );
+		assertEquals( 1, generator.edgeCalls );
+
+		// Stale colors are kept until the cache is invalidated.
+		generator.color = 0xff00ff00;
+		assertEquals( 0xff000000, cached.color( a ) );
+		cached.invalidate();
+		assertEquals( 0xff00ff00, cached.color( a ) );
+		assertEquals( 0xff00ff00, cached.color( ab, a, b ) );
+		assertEquals( 3, generator.vertexCalls );
+		assertEquals( 2, generator.edgeCalls );
+
+		// Several invalidations in a row still start a new generation.
+		cached.invalidate();
+		cached.invalidate();
+		cached.color( a );
+		assertEquals( 4, generator.vertexCalls );
+	}
+
+	@Test
+	public void testSetColorGeneratorDiscardsCachedColors()
+	{
+		final ModelGraph graph = new Model().getGraph();
+		final Spot a = graph.addVertex().init( 0, new double[ 3 ], 1. );
+
+		final CachedGraphColorGenerator< Spot, Link > cached = new CachedGraphColorGenerator<>( graph );
+		assertEquals( 0, cached.color( a ) );
+
+		final CountingColorGenerator< Spot, Link > first = new CountingColorGenerator<>( 0xffff0000 );
+		cached.setColorGenerator( first );
+		assertEquals( 0xffff0000, cached.color( a ) );
+
+		final CountingColorGenerator< Spot, Link > second = new CountingColorGenerator<>( 0xff0000ff );
+		cached.setColorGenerator( second );
+		assertEquals( 0xff0000ff, cached.color( a ) );
+		assertEquals( 1, second.vertexCalls );
+
+		cached.setColorGenerator( null );
+		assertEquals( 0, cached.color( a ) );
+	}
+
+	@Test
+	public void testColumnsGrowWithIds()
+	{
+		final ModelGraph graph = new Model().getGraph();
+		final List< Spot > spots = new ArrayList<>();
+		final int n = 5000;
+		for ( int i = 0; i < n; i++ )
+			spots.add( graph.addVertex().init( 0, new double[] { i, 0, 0 }, 1. ) );
+
+		final IdColorGenerator generator = new IdColorGenerator();
+		final CachedGraphColorGenerator< Spot, Link > cached = new CachedGraphColorGenerator<>( graph );
+		cached.setColorGenerator( generator );
+
+		// Paint the last spots first, so that the columns grow in one step.
+		for ( int i = n - 1; i >= 0; i-- )
+			assertEquals( 0xff000000 | spots.get( i ).getInternalPoolIndex(), cached.color( spots.get( i ) ) );
+		for ( final Spot spot : spots )
+			assertEquals( 0xff000000 | spot.getInternalPoolIndex(), cached.color( spot ) );
+		assertEquals( n, generator.vertexCalls );
+	}
+
+	@Test
+	public void testUnpooledGraphIsNotCached()
+	{
+		final DummyGraph graph = new DummyGraph();
+		final DummyVertex a = graph.addVertex().init( "a", 0 );
+		final DummyVertex b = graph.addVertex().init( "b", 1 );
+		final DummyEdge ab = graph.addEdge( a, b );
+
+		final CountingColorGenerator< DummyVertex, DummyEdge > generator = new CountingColorGenerator<>( 0xff123456 );
+		final CachedGraphColorGenerator< DummyVertex, DummyEdge > cached = new CachedGraphColorGenerator<>( graph );
+		cached.setColorGenerator( generator );
+
+		assertEquals( 0xff123456, cached.color( a ) );
+		assertEquals( 0xff123456, cached.color( a ) );
+		assertEquals( 0xff123456, cached.color( ab, a, b ) );
+		assertEquals( 0xff123456, cached.color( ab, a, b ) );
+		assertEquals( 2, generator.vertexCalls );
+		assertEquals( 2, generator.edgeCalls );
+
+		// Without a cache, changes are seen without invalidation.
+		generator.color = 0xff654321;
+		assertEquals( 0xff654321, cached.color( a ) );
+	}
+
+	private static class CountingColorGenerator< V extends Vertex< E >, E extends Edge< V > >
+			implements GraphColorGenerator< V, E >
+	{
+		int color;
+
+		int vertexCalls;
+
+		int edgeCalls;
+
+		CountingColorGenerator( final int color )
+		{
+			this.color = color;
+		}
+
+		@Override
+		public int color( final V vertex )
+		{
+			vertexCalls++;
+			return color;
+		}
+
+		@Override
+		public int color( final E edge, final V source, final V target )
+		{
+			edgeCalls++;
+			return color;
+		}
+	}
+
+	private static class IdColorGenerator implements GraphColorGenerator< Spot, Link >
+	{
+		int vertexCalls;
+
+		@Override
+		public int color( final Spot vertex )
+		{
+			vertexCalls++;
+			return 0xff000000 | vertex.getInternalPoolIndex();
+		}
+
+		@Override
+		public int color( final Link edge, final Spot source, final Spot target )
+		{
+			return 0xff000000 | edge.getInternalPoolIndex();
+		}
+	}
+}
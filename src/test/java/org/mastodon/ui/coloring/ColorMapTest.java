@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.coloring;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for the lookup table of {@link ColorMap}.
+ */
+public class ColorMapTest
+{
+	@Test
+	public void testLookupMatchesInterpolation()
+	{
+		for ( final String name : ColorMap.getColorMapNames() )
+		{
+			final ColorMap cm = ColorMap.getColorMap( name );
+			for ( int i = 0; i < ColorMap.LUT_SIZE; i++ )
+			{
+				final double val = ( double ) i / ( ColorMap.LUT_SIZE - 1 );
+				assertEquals( name + " at " + val, cm.get( val ), cm.lookup( val ) );
+			}
+			assertEquals( cm.get( Double.NaN ), cm.lookup( Double.NaN ) );
+			assertEquals( cm.get( -1. ), cm.lookup( -1. ) );
+			assertEquals( cm.get( 2. ), cm.lookup( 2. ) );
+			assertEquals( cm.get( Double.POSITIVE_INFINITY ), cm.lookup( Double.POSITIVE_INFINITY ) );
+		}
+	}
+}
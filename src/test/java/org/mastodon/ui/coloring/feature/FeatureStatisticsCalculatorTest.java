@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.coloring.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.mastodon.mamut.feature.branch.exampleGraph.ExampleGraph2;
+import org.mastodon.mamut.model.Spot;
+import org.mastodon.properties.DoublePropertyMap;
+import org.mastodon.ui.coloring.feature.DefaultFeatureRangeCalculatorTest.TestDoubleFeature;
+
+/**
+ * Tests for {@link FeatureStatisticsCalculator}.
+ */
+public class FeatureStatisticsCalculatorTest
+{
+	private static final String KEY = "TestDouble";
+
+	@Test
+	public void testCachedStatistics()
+	{
+		final ExampleGraph2 exampleGraph2 = new ExampleGraph2();
+		final TestDoubleFeature feature = new TestDoubleFeature(
+				new DoublePropertyMap<>( exampleGraph2.getModel().getGraph().vertices().getRefPool(), Double.NaN ) );
+		exampleGraph2.getModel().getFeatureModel().declareFeature( feature );
+		feature.doubleValues.set( exampleGraph2.spot0, Double.NaN );
+		feature.doubleValues.set( exampleGraph2.spot1, 1 );
+		feature.doubleValues.set( exampleGraph2.spot2, 5 );
+		feature.doubleValues.set( exampleGraph2.spot3, 3 );
+
+		final Projections projections = new ProjectionsFromFeatureModel( exampleGraph2.getModel().getFeatureModel() );
+		final FeatureProjectionId id = new FeatureProjectionId( KEY, KEY, TargetType.VERTEX );
+		final FeatureStatisticsCalculator< Spot > calculator =
+				new FeatureStatisticsCalculator<>( exampleGraph2.getModel().getGraph().vertices(), projections );
+
+		final FeatureStatistics stats = calculator.getStatistics( id );
+		assertEquals( 3, stats.getCount() );
+		assertEquals( 1, stats.getMin(), 0 );
+		assertEquals( 5, stats.getMax(), 0 );
+		assertEquals( 3, stats.getMean(), 0 );
+		assertEquals( 3, stats.getPercentile( 50 ), 0 );
+		assertSame( stats, calculator.getStatistics( id ) );
+
+		final double[] minMax = calculator.computeMinMax( id );
+		assertEquals( 1, minMax[ 0 ], 0 );
+		assertEquals( 5, minMax[ 1 ], 0 );
+
+		feature.doubleValues.set( exampleGraph2.spot0, 10 );
+		calculator.invalidate();
+		final FeatureStatistics updated = calculator.getStatistics( id );
+		assertNotSame( stats, updated );
+		assertEquals( 4, updated.getCount() );
+		assertEquals( 10, updated.getMax(), 0 );
+	}
+}
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.coloring.feature;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link FeatureStatistics}.
+ */
+public class FeatureStatisticsTest
+{
+	@Test
+	public void testStatistics()
+	{
+		final Random random = new Random( 1 );
+		final int n = 100_001;
+		final double[] values = new double[ n ];
+		for ( int i = 0; i < n; i++ )
+			values[ i ] = random.nextGaussian();
+		final double[] sorted = values.clone();
+		Arrays.sort( sorted );
+		final double sum = Arrays.stream( values ).sum();
+
+		final FeatureStatistics stats = FeatureStatistics.of( values, n );
+		assertEquals( n, stats.getCount() );
+		assertEquals( sorted[ 0 ], stats.getMin(), 0 );
+		assertEquals( sorted[ n - 1 ], stats.getMax(), 0 );
+		assertEquals( sum / n, stats.getMean(), 1e-12 );
+		assertEquals( sorted[ 0 ], stats.getPercentile( 0 ), 0 );
+		assertEquals( sorted[ n / 2 ], stats.getPercentile( 50 ), 0 );
+		assertEquals( sorted[ n / 4 ], stats.getPercentile( 25 ), 0 );
+		assertEquals( sorted[ n - 1 ], stats.getPercentile( 100 ), 0 );
+		assertTrue( stats.getPercentile( 2.5 ) >= stats.getPercentile( 2 ) );
+		assertTrue( stats.getPercentile( 2.5 ) <= stats.getPercentile( 3 ) );
+
+		final int[] histogram = stats.getHistogram();
+		assertEquals( FeatureStatistics.HISTOGRAM_BINS, histogram.length );
+		assertEquals( n, Arrays.stream( histogram ).sum() );
+		assertTrue( histogram[ 0 ] >= 1 );
+		assertTrue( histogram[ histogram.length - 1 ] >= 1 );
+	}
+
+	@Test
+	public void testEmptyAndConstant()
+	{
+		final FeatureStatistics empty = FeatureStatistics.of( new double[ 0 ], 0 );
+		assertEquals( 0, empty.getCount() );
+		assertEquals( Double.POSITIVE_INFINITY, empty.getMin(), 0 );
+		assertEquals( Double.NEGATIVE_INFINITY, empty.getMax(), 0 );
+		assertTrue( Double.isNaN( empty.getPercentile( 50 ) ) );
+
+		final FeatureStatistics constant = FeatureStatistics.of( new double[] { 3, 3, 3, 42 }, 3 );
+		assertEquals( 3, constant.getCount() );
+		assertEquals( 3, constant.getMin(), 0 );
+		assertEquals( 3, constant.getMax(), 0 );
+		assertEquals( 3, constant.getPercentile( 70 ), 0 );
+		final int[] expected = new int[ FeatureStatistics.HISTOGRAM_BINS ];
+		expected[ 0 ] = 3;
+		assertArrayEquals( expected, constant.getHistogram() );
+	}
+
+	@Test
+	public void testHistogramAndPercentilesAreLazy()
+	{
+		final double[] values = { 4, 1, 3, 2 };
+		final AtomicInteger calls = new AtomicInteger();
+		final FeatureStatistics stats = new FeatureStatistics( 4, 1, 4, 10, () -> {
+			calls.incrementAndGet();
+			return values.clone();
+		} );
+		assertEquals( 4, stats.getCount() );
+		assertEquals( 1, stats.getMin(), 0 );
+		assertEquals( 4, stats.getMax(), 0 );
+		assertEquals( 2.5, stats.getMean(), 0 );
+		assertEquals( 0, calls.get() );
+
+		assertEquals( 4, Arrays.stream( stats.getHistogram() ).sum() );
+		assertEquals( 1, calls.get() );
+		stats.getHistogram();
+		assertEquals( 1, calls.get() );
+
+		assertEquals( 2.5, stats.getPercentile( 50 ), 0 );
+		assertEquals( 2, calls.get() );
+		assertEquals( 4, stats.getPercentile( 100 ), 0 );
+		assertEquals( 2, calls.get() );
+	}
+}
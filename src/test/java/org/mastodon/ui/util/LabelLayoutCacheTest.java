@@ -0,0 +1,188 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.ui.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.mastodon.ui.util.LabelLayoutCache.LabelLayout;
+
+/**
+ * Tests for {@link LabelLayoutCache}.
+ */
+public class LabelLayoutCacheTest
+{
+	private static final Font FONT = new Font( "SansSerif", Font.PLAIN, 9 );
+
+	@Test
+	public void testCachedBounds()
+	{
+		final LabelLayoutCache cache = new LabelLayoutCache( 10 );
+		final FontRenderContext frc = new FontRenderContext( new AffineTransform(), true, false );
+		final LabelLayout layout = cache.get( "spot 42", FONT, frc );
+		assertSame( layout, cache.get( "spot 42", FONT, frc ) );
+
+		final Rectangle2D bounds = new TextLayout( "spot 42", FONT, frc ).getBounds();
+		assertEquals( bounds.getCenterX(), layout.getCenterX(), 1e-6 );
+		assertEquals( bounds.getCenterY(), layout.getCenterY(), 1e-6 );
+		assertEquals( bounds.getHeight(), layout.getHeight(), 1e-6 );
+
+		final FontRenderContext scaled = new FontRenderContext( AffineTransform.getScaleInstance( 2, 2 ), true, false );
+		assertNotSame( layout, cache.get( "spot 42", FONT, scaled ) );
+		assertNotSame( layout, cache.get( "spot 42", FONT.deriveFont( 12f ), frc ) );
+	}
+
+	@Test
+	public void testLruEviction()
+	{
+		final LabelLayoutCache cache = new LabelLayoutCache( 2 );
+		final FontRenderContext frc = new FontRenderContext( new AffineTransform(), true, false );
+		final LabelLayout a = cache.get( "a", FONT, frc );
+		final LabelLayout b = cache.get( "b", FONT, frc );
+		cache.newFrame();
+		assertSame( a, cache.get( "a", FONT, frc ) );
+		cache.newFrame();
+		final LabelLayout c = cache.get( "c", FONT, frc );
+		assertSame( c, cache.get( "c", FONT, frc ) );
+		assertEquals( 2, cache.size() );
+		// "b" was the least recently used and has been evicted.
+		assertSame( a, cache.get( "a", FONT, frc ) );
+		assertNotSame( b, cache.get( "b", FONT, frc ) );
+		assertEquals( 2, cache.size() );
+	}
+
+	@Test
+	public void testLayoutsOfCurrentFrameAreNotEvicted()
+	{
+		final LabelLayoutCache cache = new LabelLayoutCache( 2 );
+		final FontRenderContext frc = new FontRenderContext( new AffineTransform(), true, false );
+		final LabelLayout a = cache.get( "a", FONT, frc );
+		final LabelLayout b = cache.get( "b", FONT, frc );
+		final LabelLayout c = cache.get( "c", FONT, frc );
+		assertNotSame( c, cache.get( "c", FONT, frc ) );
+		assertSame( a, cache.get( "a", FONT, frc ) );
+		assertSame( b, cache.get( "b", FONT, frc ) );
+	}
+
+	@Test
+	public void testScanLargerThanCapacity()
+	{
+		// Single segment, and segmented caches.
+		assertScanHits( 100, 250 );
+		assertScanHits( 2048, 5000 );
+	}
+
+	/**
+	 * Paints the same labels, more than the cache holds, in the same order at
+	 * each frame. A least-recently-used cache would evict each layout just
+	 * before it is needed again, and never hit.
+	 */
+	private static void assertScanHits( final int capacity, final int nLabels )
+	{
+		final LabelLayoutCache cache = new LabelLayoutCache( capacity );
+		final FontRenderContext frc = new FontRenderContext( new AffineTransform(), true, false );
+		final LabelLayout[] previous = new LabelLayout[ nLabels ];
+		for ( int frame = 0; frame < 3; frame++ )
+		{
+			cache.newFrame();
+			int hits = 0;
+			for ( int i = 0; i < nLabels; i++ )
+			{
+				final LabelLayout layout = cache.get( "spot " + i, FONT, frc );
+				if ( layout == previous[ i ] )
+					hits++;
+				previous[ i ] = layout;
+			}
+			assertTrue( cache.size() <= capacity );
+			if ( frame > 0 )
+				assertTrue( "Only " + hits + " hits out of " + nLabels + " labels for a capacity of " + capacity,
+						hits >= 0.9 * capacity );
+		}
+	}
+
+	@Test
+	public void testConcurrentPainters() throws InterruptedException
+	{
+		final LabelLayoutCache cache = new LabelLayoutCache( 2048 );
+		final FontRenderContext frc = new FontRenderContext( new AffineTransform(), true, false );
+		final AtomicReference< Throwable > error = new AtomicReference<>();
+		final Thread[] threads = new Thread[ 4 ];
+		for ( int t = 0; t < threads.length; t++ )
+		{
+			threads[ t ] = new Thread( () -> {
+				try
+				{
+					for ( int i = 0; i < 3000; i++ )
+					{
+						final String label = "spot " + ( i % 1500 );
+						final LabelLayout layout = cache.get( label, FONT, frc );
+						assertEquals( new TextLayout( label, FONT, frc ).getBounds().getWidth(), layout.getWidth(), 1e-6 );
+					}
+				}
+				catch ( final Throwable e )
+				{
+					error.compareAndSet( null, e );
+				}
+			} );
+			threads[ t ].start();
+		}
+		for ( final Thread thread : threads )
+			thread.join();
+		assertNull( error.get() );
+		assertTrue( cache.size() <= 1500 );
+	}
+
+	@Test
+	public void testDrawCentered()
+	{
+		final BufferedImage img = new BufferedImage( 64, 32, BufferedImage.TYPE_INT_ARGB );
+		final Graphics2D g = img.createGraphics();
+		new LabelLayoutCache( 10 ).drawCentered( g, "42", FONT, 32, 16 );
+		g.dispose();
+		int painted = 0;
+		for ( int y = 0; y < img.getHeight(); y++ )
+			for ( int x = 0; x < img.getWidth(); x++ )
+				if ( img.getRGB( x, y ) != 0 )
+					painted++;
+		assertTrue( painted > 0 );
+	}
+}
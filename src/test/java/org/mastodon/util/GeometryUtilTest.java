@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.mastodon.views.bdv.overlay.util.JamaEigenvalueDecomposition;
+
+public class GeometryUtilTest
+{
+	@Test
+	public void testMaxEigenvalueSymmetric3x3()
+	{
+		final Random random = new Random( 42 );
+		final JamaEigenvalueDecomposition eig = new JamaEigenvalueDecomposition( 3 );
+		for ( int n = 0; n < 1000; n++ )
+		{
+			final double[][] cov = randomCovariance( random, n % 2 == 0 ? 1e-3 : 10 );
+			eig.decomposeSymmetric( cov );
+			double expected = Double.NEGATIVE_INFINITY;
+			for ( final double ev : eig.getRealEigenvalues() )
+				expected = Math.max( expected, ev );
+			assertEquals( expected, GeometryUtil.maxEigenvalueSymmetric3x3( cov ), 1e-9 * expected );
+		}
+	}
+
+	@Test
+	public void testMaxEigenvalueSymmetric3x3Degenerate()
+	{
+		assertEquals( 4, GeometryUtil.maxEigenvalueSymmetric3x3( new double[][] { { 4, 0, 0 }, { 0, 4, 0 }, { 0, 0, 4 } } ), 0 );
+		assertEquals( 7, GeometryUtil.maxEigenvalueSymmetric3x3( new double[][] { { 1, 0, 0 }, { 0, 7, 0 }, { 0, 0, 3 } } ), 0 );
+		assertEquals( 3, GeometryUtil.maxEigenvalueSymmetric3x3( new double[][] { { 2, 1, 0 }, { 1, 2, 0 }, { 0, 0, 1 } } ), 1e-12 );
+		assertEquals( 0, GeometryUtil.maxEigenvalueSymmetric3x3( new double[ 3 ][ 3 ] ), 0 );
+	}
+
+	private static double[][] randomCovariance( final Random random, final double scale )
+	{
+		final double[][] l = new double[ 3 ][ 3 ];
+		for ( int i = 0; i < 3; i++ )
+			for ( int j = 0; j < 3; j++ )
+				l[ i ][ j ] = scale * random.nextGaussian();
+		final double[][] cov = new double[ 3 ][ 3 ];
+		for ( int i = 0; i < 3; i++ )
+			for ( int j = 0; j < 3; j++ )
+				for ( int k = 0; k < 3; k++ )
+					cov[ i ][ j ] += l[ i ][ k ] * l[ j ][ k ];
+		return cov;
+	}
+}
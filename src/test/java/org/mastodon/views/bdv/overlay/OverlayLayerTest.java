@@ -0,0 +1,149 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.bdv.overlay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Stroke;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+import org.mastodon.ui.util.LabelLayoutCache;
+
+import net.imglib2.realtransform.AffineTransform3D;
+
+public class OverlayLayerTest
+{
+
+	private static final int WIDTH = 200;
+
+	private static final int HEIGHT = 256;
+
+	@Test
+	public void testValidOnlyForRenderedState()
+	{
+		final OverlayLayer layer = new OverlayLayer();
+		final AffineTransform3D transform = new AffineTransform3D();
+		assertFalse( layer.isValid( WIDTH, HEIGHT, transform, 0, 0 ) );
+
+		layer.render( createDrawList(), false, 4, WIDTH, HEIGHT, transform, 0, 0 );
+		assertTrue( layer.isValid( WIDTH, HEIGHT, transform, 0, 0 ) );
+		assertTrue( layer.isValid( WIDTH, HEIGHT, transform.copy(), 0, 0 ) );
+
+		assertFalse( layer.isValid( WIDTH + 1, HEIGHT, transform, 0, 0 ) );
+		assertFalse( layer.isValid( WIDTH, HEIGHT + 1, transform, 0, 0 ) );
+		assertFalse( layer.isValid( WIDTH, HEIGHT, transform, 1, 0 ) );
+		assertFalse( layer.isValid( WIDTH, HEIGHT, transform, 0, 1 ) );
+		final AffineTransform3D moved = transform.copy();
+		moved.translate( 1, 0, 0 );
+		assertFalse( layer.isValid( WIDTH, HEIGHT, moved, 0, 0 ) );
+
+		layer.clear();
+		assertFalse( layer.isValid( WIDTH, HEIGHT, transform, 0, 0 ) );
+	}
+
+	@Test
+	public void testTilesMatchDirectDrawing()
+	{
+		final OverlayDrawList drawList = createDrawList();
+		final BufferedImage expected = newImage();
+		final Graphics2D g = expected.createGraphics();
+		drawList.draw( g, false );
+		g.dispose();
+
+		for ( final int numThreads : new int[] { 1, 3, 8 } )
+		{
+			final OverlayLayer layer = new OverlayLayer();
+			layer.render( drawList, false, numThreads, WIDTH, HEIGHT, new AffineTransform3D(), 0, 0 );
+			final BufferedImage actual = newImage();
+			final Graphics2D ga = actual.createGraphics();
+			layer.draw( ga );
+			ga.dispose();
+			assertArrayEquals( "Tiled rendering with " + numThreads + " threads differs from direct drawing.",
+					pixels( expected ), pixels( actual ) );
+		}
+	}
+
+	@Test
+	public void testRerenderClearsPreviousContent()
+	{
+		final OverlayLayer layer = new OverlayLayer();
+		final AffineTransform3D transform = new AffineTransform3D();
+		layer.render( createDrawList(), false, 4, WIDTH, HEIGHT, transform, 0, 0 );
+		layer.render( new OverlayDrawList( strokes(), false, false, false, new LabelLayoutCache() ), false, 4, WIDTH, HEIGHT, transform, 0, 1 );
+
+		final BufferedImage actual = newImage();
+		final Graphics2D g = actual.createGraphics();
+		layer.draw( g );
+		g.dispose();
+		assertArrayEquals( pixels( newImage() ), pixels( actual ) );
+	}
+
+	/**
+	 * Edges and points crossing the tile boundaries.
+	 */
+	private static OverlayDrawList createDrawList()
+	{
+		final OverlayDrawList drawList = new OverlayDrawList( strokes(), false, false, true, new LabelLayoutCache() );
+		final int red = 0xFFFF0000;
+		final int green = 0xFF00FF00;
+		final int blue = 0xFF0000FF;
+		drawList.addEdge( 10, 5, 190, 250, red, red, OverlayDrawList.EDGE_STROKE );
+		drawList.addEdge( 5, 60, 195, 70, green, green, OverlayDrawList.HIGHLIGHTED_EDGE_STROKE );
+		drawList.addEdge( 100, 0, 100, 255, blue, blue, OverlayDrawList.EDGE_STROKE );
+		for ( int i = 0; i < 10; i++ )
+			drawList.addPoint( 15 + 17 * i, 20 + 23 * i, 9, i % 2 == 0, i % 2 == 0 ? red : blue );
+		return drawList;
+	}
+
+	private static Stroke[] strokes()
+	{
+		final Stroke[] strokes = new Stroke[ 5 ];
+		strokes[ OverlayDrawList.VERTEX_STROKE ] = new BasicStroke( 1f );
+		strokes[ OverlayDrawList.HIGHLIGHTED_VERTEX_STROKE ] = new BasicStroke( 4f );
+		strokes[ OverlayDrawList.FOCUSED_VERTEX_STROKE ] = new BasicStroke( 2f );
+		strokes[ OverlayDrawList.EDGE_STROKE ] = new BasicStroke( 1f );
+		strokes[ OverlayDrawList.HIGHLIGHTED_EDGE_STROKE ] = new BasicStroke( 3f );
+		return strokes;
+	}
+
+	private static BufferedImage newImage()
+	{
+		return new BufferedImage( WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB );
+	}
+
+	private static int[] pixels( final BufferedImage image )
+	{
+		return image.getRGB( 0, 0, WIDTH, HEIGHT, null, 0, WIDTH );
+	}
+}
@@ -0,0 +1,205 @@
+/*-
+ * #%L
+ * Mastodon
+ * %%
+ * Copyright (C) 2014 - 2025 Tobias Pietzsch, Jean-Yves Tinevez
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.mastodon.views.table;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.swing.RowSorter.SortKey;
+import javax.swing.SortOrder;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
+
+import org.junit.Test;
+
+public class PrimitiveRowSorterTest
+{
+
+	private static final Class< ? >[] CLASSES = { String.class, Integer.class, Double.class, Boolean.class };
+
+	private static final String[] LABELS = { "a", "B", "b", "c", "Ab", null };
+
+	/**
+	 * Table model where the row index is the object id.
+	 */
+	private static class Model extends DefaultTableModel implements PrimitiveRowSorter.ColumnKeys
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private Model()
+		{
+			super( 0, CLASSES.length );
+		}
+
+		@Override
+		public Class< ? > getColumnClass( final int columnIndex )
+		{
+			return CLASSES[ columnIndex ];
+		}
+
+		@Override
+		public int getId( final int modelRow )
+		{
+			return modelRow;
+		}
+
+		@Override
+		public Object getIdentity( final int column )
+		{
+			return Integer.valueOf( column );
+		}
+
+		@Override
+		public boolean isText( final int column )
+		{
+			return column == 0;
+		}
+
+		@Override
+		public long getKey( final int column, final int modelRow )
+		{
+			final Object value = getValueAt( modelRow, column );
+			if ( value == null )
+				return PrimitiveRowSorter.UNSET;
+			if ( value instanceof Integer )
+				return ( Integer ) value;
+			if ( value instanceof Double )
+				return PrimitiveRowSorter.key( ( Double ) value );
+			return ( ( Boolean ) value ) ? 1 : 0;
+		}
+
+		@Override
+		public String getText( final int column, final int modelRow )
+		{
+			return ( String ) getValueAt( modelRow, column );
+		}
+	}
+
+	private static Object[] randomRow( final Random random )
+	{
+		final double[] doubles = { -0., 0., Double.NaN, Double.NEGATIVE_INFINITY, 1e-300, -2.5 };
+		return new Object[] {
+				LABELS[ random.nextInt( LABELS.length ) ],
+				Integer.valueOf( random.nextInt( 20 ) - 10 ),
+				random.nextInt( 10 ) == 0 ? null
+						: Double.valueOf( random.nextBoolean() ? doubles[ random.nextInt( doubles.length ) ] : random.nextGaussian() ),
+				Boolean.valueOf( random.nextBoolean() ) };
+	}
+
+	private static void assertSameOrder( final Model model, final PrimitiveRowSorter< Model > sorter,
+			final SortKey... keys )
+	{
+		final TableRowSorter< Model > expected = new TableRowSorter<>( model );
+		expected.setSortKeys( Arrays.asList( keys ) );
+		sorter.setSortKeys( Arrays.asList( keys ) );
+		sorter.sort();
+		assertEquals( model.getRowCount(), sorter.getViewRowCount() );
+		for ( int i = 0; i < model.getRowCount(); i++ )
+		{
+			assertEquals( "View row " + i + " when sorting on column " + keys[ 0 ].getColumn() + " " + keys[ 0 ].getSortOrder(),
+					expected.convertRowIndexToModel( i ), sorter.convertRowIndexToModel( i ) );
+			assertEquals( i, sorter.convertRowIndexToView( sorter.convertRowIndexToModel( i ) ) );
+		}
+	}
+
+	@Test
+	public void testSortLikeTableRowSorter()
+	{
+		final Random random = new Random( 1l );
+		final Model model = new Model();
+		for ( int i = 0; i < 20_000; i++ )
+			model.addRow( randomRow( random ) );
+		final PrimitiveRowSorter< Model > sorter = new PrimitiveRowSorter<>( model, model );
+
+		for ( int c = 0; c < CLASSES.length; c++ )
+		{
+			assertSameOrder( model, sorter, new SortKey( c, SortOrder.ASCENDING ) );
+			assertSameOrder( model, sorter, new SortKey( c, SortOrder.DESCENDING ) );
+		}
+		assertSameOrder( model, sorter,
+				new SortKey( 3, SortOrder.ASCENDING ),
+				new SortKey( 0, SortOrder.DESCENDING ),
+				new SortKey( 2, SortOrder.ASCENDING ) );
+	}
+
+	@Test
+	public void testIncrementalSort()
+	{
+		final Random random = new Random( 2l );
+		final Model model = new Model();
+		for ( int i = 0; i < 20_000; i++ )
+			model.addRow( randomRow( random ) );
+		final PrimitiveRowSorter< Model > sorter = new PrimitiveRowSorter<>( model, model );
+		for ( int c = 0; c < CLASSES.length; c++ )
+			assertSameOrder( model, sorter, new SortKey( c, SortOrder.ASCENDING ) );
+
+		// Few changes: merged into the cached sorts.
+		for ( int i = 0; i < 100; i++ )
+		{
+			final int row = random.nextInt( model.getRowCount() );
+			final int column = random.nextInt( CLASSES.length );
+			model.setValueAt( randomRow( random )[ column ], row, column );
+		}
+		model.removeRow( 5 );
+		model.addRow( randomRow( random ) );
+		for ( int c = 0; c < CLASSES.length; c++ )
+		{
+			assertSameOrder( model, sorter, new SortKey( c, SortOrder.DESCENDING ) );
+			assertSameOrder( model, sorter, new SortKey( c, SortOrder.ASCENDING ) );
+		}
+
+		// Many changes: sorted again.
+		for ( int row = 0; row < model.getRowCount(); row += 2 )
+			model.setValueAt( randomRow( random )[ 2 ], row, 2 );
+		assertSameOrder( model, sorter, new SortKey( 2, SortOrder.ASCENDING ) );
+	}
+
+	@Test
+	public void testToggleSortOrder()
+	{
+		final Model model = new Model();
+		for ( int i = 0; i < 10; i++ )
+			model.addRow( new Object[] { "l" + i, Integer.valueOf( i ), Double.valueOf( -i ), Boolean.TRUE } );
+		final PrimitiveRowSorter< Model > sorter = new PrimitiveRowSorter<>( model, model );
+		sorter.toggleSortOrder( 2 );
+		assertEquals( 9, sorter.convertRowIndexToModel( 0 ) );
+		sorter.toggleSortOrder( 2 );
+		assertEquals( 0, sorter.convertRowIndexToModel( 0 ) );
+		sorter.toggleSortOrder( 1 );
+		assertEquals( 2, sorter.getSortKeys().size() );
+		assertEquals( 1, sorter.getSortKeys().get( 0 ).getColumn() );
+		assertEquals( 0, sorter.convertRowIndexToModel( 0 ) );
+		sorter.modelStructureChanged();
+		assertEquals( 0, sorter.getSortKeys().size() );
+		assertEquals( 3, sorter.convertRowIndexToView( 3 ) );
+	}
+}
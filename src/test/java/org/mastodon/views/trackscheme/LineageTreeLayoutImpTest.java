@@ -33,6 +33,8 @@ import static org.junit.Assert.assertEquals;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.junit.Test;
 import org.mastodon.adapter.FadingModelAdapter;
@@ -82,6 +84,52 @@ public class LineageTreeLayoutImpTest
 		assertEquals( Arrays.asList( "a->b", "a->c", "b->d", "c->d" ), getEdges( screenEntities ) );
 	}
 
+	/**
+	 * Tests that the incremental layout after structural changes is the same
+	 * as a layout computed from scratch.
+	 */
+	@Test
+	public void testIncrementalLayout()
+	{
+		// setup
+		ModelGraph graph = new ModelGraph();
+		Spot a = addSpot( graph, 0, "a", 0, 0, 0 );
+		Spot b = addSpot( graph, 1, "b", 0, 0, 0 );
+		Spot c = addSpot( graph, 1, "c", 1, 0, 0 );
+		Spot d = addSpot( graph, 0, "d", 2, 0, 0 );
+		Spot e = addSpot( graph, 1, "e", 2, 0, 0 );
+		Spot f = addSpot( graph, 0, "f", 3, 0, 0 );
+		graph.addEdge( a, b ).init();
+		graph.addEdge( a, c ).init();
+		graph.addEdge( d, e ).init();
+		TrackSchemeGraph< Spot, Link > tsGraph =
+				new TrackSchemeGraph<>( graph, graph.getGraphIdBimap(), new ModelGraphTrackSchemeProperties( graph ) );
+		LineageTreeLayoutImp layout = ( LineageTreeLayoutImp ) initLineageTreeLayout( graph, tsGraph );
+		layout.layout();
+		// run
+		Spot g = addSpot( graph, 2, "g", 0, 0, 0 );
+		graph.addEdge( b, g ).init();
+		Spot h = addSpot( graph, 2, "h", 1, 0, 0 );
+		graph.addEdge( b, h ).init();
+		graph.remove( f );
+		layout.layout();
+		Map< String, Double > incremental = getLayoutX( tsGraph );
+		double incrementalMaxX = layout.getCurrentLayoutMaxX();
+		layout.setIncremental( false );
+		layout.layout();
+		// test
+		assertEquals( getLayoutX( tsGraph ), incremental );
+		assertEquals( layout.getCurrentLayoutMaxX(), incrementalMaxX, 0 );
+	}
+
+	private Map< String, Double > getLayoutX( TrackSchemeGraph< ?, ? > tsGraph )
+	{
+		Map< String, Double > xs = new TreeMap<>();
+		for ( TrackSchemeVertex v : tsGraph.vertices() )
+			xs.put( v.getLabel(), v.getLayoutX() );
+		return xs;
+	}
+
 	private ModelGraph initDiamondModelGraph()
 	{
 		ModelGraph graph = new ModelGraph();